@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random access to an indexed BAM file, and full scans of it (decoding records, and through a
+ * {@link BAMRecordView}) for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BAMFileReaderQueryBenchmark {
+    private static final int NUM_PAIRS = 200_000;
+    private static final int NUM_QUERIES = 200;
+
+    @Param({"1000", "100000"})
+    public int queryLength;
+
+    private Path tmpDir;
+    private Path bam;
+    private QueryInterval[] queries;
+    private SamReader reader;
+
+    @Setup
+    public void setup() throws IOException {
+        tmpDir = BenchmarkData.createTempDirectory();
+        bam = BenchmarkData.writeBam(BenchmarkData.makeReadPairs(NUM_PAIRS, 150, true), tmpDir);
+        queries = BenchmarkData.makeQueryIntervals(NUM_QUERIES, queryLength);
+        reader = SamReaderFactory.makeDefault().open(bam);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        BenchmarkData.deleteDirectory(tmpDir);
+    }
+
+    @Benchmark
+    public void query(final Blackhole blackhole) {
+        for (final QueryInterval query : queries) {
+            try (SAMRecordIterator it = reader.query(new QueryInterval[]{query}, false)) {
+                while (it.hasNext()) {
+                    blackhole.consume(it.next());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void scan(final Blackhole blackhole) throws IOException {
+        try (SamReader scanReader = SamReaderFactory.makeDefault().open(bam)) {
+            for (final SAMRecord rec : scanReader) {
+                blackhole.consume(rec);
+            }
+        }
+    }
+
+    @Benchmark
+    public void scanView(final Blackhole blackhole) throws IOException {
+        try (BAMRecordViewReader viewReader = new BAMRecordViewReader(bam)) {
+            for (BAMRecordView view = viewReader.next(); view != null; view = viewReader.next()) {
+                blackhole.consume(view.getFlags());
+                blackhole.consume(view.getAlignmentStart());
+                blackhole.consume(view.getMappingQuality());
+            }
+        }
+    }
+}
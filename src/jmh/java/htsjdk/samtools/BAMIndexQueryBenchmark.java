@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Region lookups against the BAI index of a BAM file, with each of the index implementations, and the cost
+ * of loading a {@link CompactBAMFileIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BAMIndexQueryBenchmark {
+    private static final int NUM_PAIRS = 200_000;
+    private static final int NUM_QUERIES = 200;
+
+    @Param({"disk", "caching", "compact"})
+    public String indexType;
+
+    @Param({"1000", "100000"})
+    public int queryLength;
+
+    private Path tmpDir;
+    private File indexFile;
+    private QueryInterval[] queries;
+    private BAMIndex index;
+
+    @Setup
+    public void setup() throws IOException {
+        tmpDir = BenchmarkData.createTempDirectory();
+        final SAMRecordSetBuilder builder = BenchmarkData.makeReadPairs(NUM_PAIRS, 150, true);
+        final Path bam = BenchmarkData.writeBam(builder, tmpDir);
+        indexFile = SamFiles.findIndex(bam).toFile();
+        queries = BenchmarkData.makeQueryIntervals(NUM_QUERIES, queryLength);
+        final SAMSequenceDictionary dictionary = builder.getHeader().getSequenceDictionary();
+        switch (indexType) {
+            case "disk":
+                index = new DiskBasedBAMFileIndex(indexFile, dictionary);
+                break;
+            case "caching":
+                index = new CachingBAMFileIndex(indexFile, dictionary);
+                break;
+            case "compact":
+                index = CompactBAMFileIndex.load(indexFile);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown index type: " + indexType);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        index.close();
+        BenchmarkData.deleteDirectory(tmpDir);
+    }
+
+    /**
+     * Index lookups only; run with several threads (-t) to see the effect of contention on the shared index.
+     * The disk based and caching indexes are not thread safe, so they are only meaningful with a single thread.
+     */
+    @Benchmark
+    public void getSpanOverlapping(final Blackhole blackhole) {
+        for (final QueryInterval query : queries) {
+            blackhole.consume(index.getSpanOverlapping(query.referenceIndex, query.start, query.end));
+        }
+    }
+
+    @Benchmark
+    public CompactBAMFileIndex loadCompact() {
+        return CompactBAMFileIndex.load(indexFile);
+    }
+}
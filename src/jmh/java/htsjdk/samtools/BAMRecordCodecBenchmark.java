@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of BAM records, without BGZF compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BAMRecordCodecBenchmark {
+    private static final int NUM_PAIRS = 50_000;
+
+    @Param({"100", "250"})
+    public int readLength;
+
+    private SAMFileHeader header;
+    private List<SAMRecord> records;
+    private List<SAMRecord> bamRecords;
+    private byte[] encoded;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() {
+        final SAMRecordSetBuilder builder = BenchmarkData.makeReadPairs(NUM_PAIRS, readLength, true);
+        header = builder.getHeader();
+        records = new ArrayList<>(builder.getRecords());
+
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        codec.setOutputStream(os);
+        records.forEach(codec::encode);
+        encoded = os.toByteArray();
+
+        bamRecords = new ArrayList<>(records.size());
+        codec.setInputStream(new ByteArrayInputStream(encoded));
+        for (SAMRecord rec = codec.decode(); rec != null; rec = codec.decode()) {
+            bamRecords.add(rec);
+        }
+    }
+
+    /**
+     * Decode records lazily, as {@link BAMFileReader} does.
+     */
+    @Benchmark
+    public void decode(final Blackhole blackhole) {
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setInputStream(new ByteArrayInputStream(encoded));
+        for (SAMRecord rec = codec.decode(); rec != null; rec = codec.decode()) {
+            blackhole.consume(rec);
+        }
+    }
+
+    /**
+     * Decode records and every variable-length field.
+     */
+    @Benchmark
+    public void decodeAllFields(final Blackhole blackhole) {
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setInputStream(new ByteArrayInputStream(encoded));
+        for (SAMRecord rec = codec.decode(); rec != null; rec = codec.decode()) {
+            blackhole.consume(rec.getReadName());
+            blackhole.consume(rec.getCigar());
+            blackhole.consume(rec.getReadBases());
+            blackhole.consume(rec.getBaseQualities());
+            blackhole.consume(rec.getAttributes());
+        }
+    }
+
+    /**
+     * Encode records built in memory, which requires every field to be encoded.
+     */
+    @Benchmark
+    public void encode(final Blackhole blackhole) {
+        output.reset();
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setOutputStream(output);
+        records.forEach(codec::encode);
+        blackhole.consume(output.size());
+    }
+
+    /**
+     * Encode unmodified records that were decoded from BAM, which copies their variable-length data.
+     */
+    @Benchmark
+    public void encodeDecoded(final Blackhole blackhole) {
+        output.reset();
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setOutputStream(output);
+        bamRecords.forEach(codec::encode);
+        blackhole.consume(output.size());
+    }
+
+    /**
+     * Encode unmodified records that were decoded from BAM for a temporary file.
+     */
+    @Benchmark
+    public void encodeDecodedForTemporaryFile(final Blackhole blackhole) {
+        output.reset();
+        final BAMRecordCodec codec = new BAMRecordCodec(header, DefaultSAMRecordFactory.getInstance(), true);
+        codec.setOutputStream(output);
+        bamRecords.forEach(codec::encode);
+        blackhole.consume(output.size());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekablePathStream;
+import htsjdk.samtools.util.FileExtensions;
+import htsjdk.samtools.util.IOUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic data for the benchmarks: read pairs generated by {@link SAMRecordSetBuilder}, and the
+ * BAM, CRAM and reference files written from them.  Files are written to a temporary directory that the caller
+ * deletes with {@link #deleteDirectory(Path)} when the benchmark is torn down.
+ */
+public final class BenchmarkData {
+    /**
+     * Length of every contig in the header.  Kept small so that the random reference written for CRAM stays small.
+     */
+    public static final int CONTIG_LENGTH = 1_000_000;
+
+    /**
+     * Reads are placed on the first few contigs only.
+     */
+    public static final int NUM_CONTIGS_WITH_READS = 3;
+
+    private static final long SEED = 42;
+
+    private BenchmarkData() {}
+
+    /**
+     * @param numPairs number of read pairs to generate
+     * @param readLength length of every read
+     * @param coordinateSorted if true the records are kept in coordinate order, otherwise they are in the order generated
+     * @return a builder holding the records, with a header describing them
+     */
+    public static SAMRecordSetBuilder makeReadPairs(final int numPairs, final int readLength, final boolean coordinateSorted) {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(coordinateSorted,
+                coordinateSorted ? SAMFileHeader.SortOrder.coordinate : SAMFileHeader.SortOrder.unsorted,
+                true,
+                CONTIG_LENGTH);
+        builder.setRandomSeed(SEED);
+        builder.setReadLength(readLength);
+        final Random random = new Random(SEED);
+        for (int i = 0; i < numPairs; i++) {
+            final int contig = random.nextInt(NUM_CONTIGS_WITH_READS);
+            final int start1 = 1 + random.nextInt(CONTIG_LENGTH - 2 * readLength - 1000);
+            final int start2 = start1 + random.nextInt(500) + readLength;
+            builder.addPair("pair" + i, contig, start1, start2);
+        }
+        return builder;
+    }
+
+    /**
+     * @return random query intervals of {@code length} bases on the contigs that have reads
+     */
+    public static QueryInterval[] makeQueryIntervals(final int numIntervals, final int length) {
+        final Random random = new Random(SEED);
+        final QueryInterval[] intervals = new QueryInterval[numIntervals];
+        for (int i = 0; i < numIntervals; i++) {
+            final int start = 1 + random.nextInt(CONTIG_LENGTH - length);
+            intervals[i] = new QueryInterval(random.nextInt(NUM_CONTIGS_WITH_READS), start, start + length - 1);
+        }
+        return intervals;
+    }
+
+    /**
+     * Write the records of a coordinate sorted builder to an indexed BAM file.
+     */
+    public static Path writeBam(final SAMRecordSetBuilder builder, final Path directory) {
+        final Path bam = directory.resolve("reads.bam");
+        try (SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true)
+                .makeBAMWriter(builder.getHeader(), true, bam)) {
+            builder.getRecords().forEach(writer::addAlignment);
+        }
+        return bam;
+    }
+
+    /**
+     * Write a random reference, with .fai and .dict files, for the contigs of the builder's header.
+     */
+    public static Path writeReference(final SAMRecordSetBuilder builder, final Path directory) throws IOException {
+        final Path fasta = directory.resolve("reference.fasta");
+        SAMRecordSetBuilder.writeRandomReference(builder.getHeader(), fasta);
+        return fasta;
+    }
+
+    /**
+     * Write the records of a coordinate sorted builder to a CRAM file against {@code reference}, with a .crai index.
+     */
+    public static Path writeCram(final SAMRecordSetBuilder builder, final Path reference, final Path directory) throws IOException {
+        final Path cram = directory.resolve("reads.cram");
+        try (SAMFileWriter writer = new SAMFileWriterFactory()
+                .makeCRAMWriter(builder.getHeader(), true, cram, reference)) {
+            builder.getRecords().forEach(writer::addAlignment);
+        }
+        try (SeekablePathStream cramStream = new SeekablePathStream(cram);
+             OutputStream craiStream = Files.newOutputStream(directory.resolve("reads.cram" + FileExtensions.CRAM_INDEX))) {
+            CRAMCRAIIndexer.writeIndex(cramStream, craiStream);
+        }
+        return cram;
+    }
+
+    public static Path createTempDirectory() throws IOException {
+        return Files.createTempDirectory("htsjdk-benchmark");
+    }
+
+    public static void deleteDirectory(final Path directory) {
+        if (directory != null) {
+            IOUtil.recursiveDelete(directory);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram;
+
+import htsjdk.samtools.BenchmarkData;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a CRAM file with {@link htsjdk.samtools.CRAMIterator}, both as a full scan and through
+ * indexed queries.  The number of decoding threads can be set with -Dsamjdk.cram_decode_threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CRAMIteratorBenchmark {
+    private static final int NUM_PAIRS = 200_000;
+    private static final int NUM_QUERIES = 100;
+
+    private Path tmpDir;
+    private Path reference;
+    private Path cram;
+    private QueryInterval[] queries;
+
+    @Setup
+    public void setup() throws IOException {
+        tmpDir = BenchmarkData.createTempDirectory();
+        final SAMRecordSetBuilder builder = BenchmarkData.makeReadPairs(NUM_PAIRS, 150, true);
+        reference = BenchmarkData.writeReference(builder, tmpDir);
+        cram = BenchmarkData.writeCram(builder, reference, tmpDir);
+        queries = BenchmarkData.makeQueryIntervals(NUM_QUERIES, 10_000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteDirectory(tmpDir);
+    }
+
+    private SamReader open() {
+        return SamReaderFactory.makeDefault()
+                .referenceSequence(reference)
+                .validationStringency(ValidationStringency.SILENT)
+                .open(cram);
+    }
+
+    @Benchmark
+    public void scan(final Blackhole blackhole) throws IOException {
+        try (SamReader reader = open()) {
+            for (final SAMRecord rec : reader) {
+                blackhole.consume(rec);
+            }
+        }
+    }
+
+    @Benchmark
+    public void query(final Blackhole blackhole) throws IOException {
+        try (SamReader reader = open()) {
+            for (final QueryInterval query : queries) {
+                try (SAMRecordIterator it = reader.query(new QueryInterval[]{query}, false)) {
+                    while (it.hasNext()) {
+                        blackhole.consume(it.next());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.BenchmarkData;
+import htsjdk.samtools.SAMRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BGZF compression and decompression of SAM text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BlockCompressedStreamBenchmark {
+    private static final int NUM_PAIRS = 50_000;
+
+    @Param({"1", "5"})
+    public int compressionLevel;
+
+    private byte[] uncompressed;
+    private byte[] compressed;
+    private final byte[] readBuffer = new byte[64 * 1024];
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (final SAMRecord rec : BenchmarkData.makeReadPairs(NUM_PAIRS, 150, true).getRecords()) {
+            text.append(rec.getSAMString());
+        }
+        uncompressed = text.toString().getBytes(StandardCharsets.US_ASCII);
+        compressed = deflate();
+    }
+
+    private byte[] deflate() throws IOException {
+        output.reset();
+        try (BlockCompressedOutputStream os = new BlockCompressedOutputStream(output, (Path) null, compressionLevel)) {
+            os.write(uncompressed);
+        }
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public void deflate(final Blackhole blackhole) throws IOException {
+        blackhole.consume(deflate().length);
+    }
+
+    @Benchmark
+    public void inflate(final Blackhole blackhole) throws IOException {
+        long total = 0;
+        try (BlockCompressedInputStream is = new BlockCompressedInputStream(new ByteArrayInputStream(compressed))) {
+            for (int n = is.read(readBuffer); n > 0; n = is.read(readBuffer)) {
+                total += n;
+            }
+        }
+        blackhole.consume(total);
+    }
+}
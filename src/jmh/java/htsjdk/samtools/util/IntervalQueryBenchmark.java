@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overlap queries against {@link IntervalTree}, {@link OverlapDetector} and {@link FlatIntervalIndex}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IntervalQueryBenchmark {
+    private static final int NUM_QUERIES = 10_000;
+    private static final String CONTIG = "chr1";
+
+    @Param({"10000", "1000000"})
+    public int numIntervals;
+
+    private IntervalTree<Integer> tree;
+    private OverlapDetector<Interval> detector;
+    private FlatIntervalIndex<Interval> index;
+    private Interval[] queries;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        tree = new IntervalTree<>();
+        final List<Interval> intervals = new ArrayList<>(numIntervals);
+        for (int i = 0; i < numIntervals; i++) {
+            final Interval interval = randomInterval(random, 1000);
+            tree.put(interval.getStart(), interval.getEnd(), i);
+            intervals.add(interval);
+        }
+        detector = OverlapDetector.create(intervals);
+        index = FlatIntervalIndex.create(intervals);
+
+        queries = new Interval[NUM_QUERIES];
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            queries[i] = randomInterval(random, 10_000);
+        }
+    }
+
+    private static Interval randomInterval(final Random random, final int maxLength) {
+        final int start = 1 + random.nextInt(BenchmarkData.CONTIG_LENGTH * 100);
+        return new Interval(CONTIG, start, start + random.nextInt(maxLength));
+    }
+
+    @Benchmark
+    public void intervalTreeOverlappers(final Blackhole blackhole) {
+        for (final Interval query : queries) {
+            final Iterator<IntervalTree.Node<Integer>> it = tree.overlappers(query.getStart(), query.getEnd());
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public void overlapDetectorGetOverlaps(final Blackhole blackhole) {
+        for (final Interval query : queries) {
+            blackhole.consume(detector.getOverlaps(query));
+        }
+    }
+
+    @Benchmark
+    public void overlapDetectorOverlapsAny(final Blackhole blackhole) {
+        for (final Interval query : queries) {
+            blackhole.consume(detector.overlapsAny(query));
+        }
+    }
+
+    @Benchmark
+    public void flatIndexGetOverlapping(final Blackhole blackhole) {
+        for (final Interval query : queries) {
+            blackhole.consume(index.getOverlapping(query));
+        }
+    }
+
+    @Benchmark
+    public void flatIndexOverlapsAny(final Blackhole blackhole) {
+        for (final Interval query : queries) {
+            blackhole.consume(index.overlapsAny(query));
+        }
+    }
+}
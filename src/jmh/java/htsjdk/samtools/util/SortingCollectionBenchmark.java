@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.BenchmarkData;
+import htsjdk.samtools.DefaultSAMRecordFactory;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinate sorting of unsorted records with a {@link SortingCollection} that spills to disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SortingCollectionBenchmark {
+    private static final int NUM_PAIRS = 100_000;
+    private static final int MAX_RECORDS_IN_RAM = 20_000;
+
+    @Param({"0", "2"})
+    public int spillThreads;
+
+    @Param({"SNAPPY", "DEFLATE"})
+    public TempStreamFactory.Compression compression;
+
+    private SAMFileHeader header;
+    private List<SAMRecord> records;
+    private Path tmpDir;
+
+    @Setup
+    public void setup() throws IOException {
+        final SAMRecordSetBuilder builder = BenchmarkData.makeReadPairs(NUM_PAIRS, 150, false);
+        header = builder.getHeader();
+        records = new ArrayList<>(builder.getRecords());
+        tmpDir = BenchmarkData.createTempDirectory();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteDirectory(tmpDir);
+    }
+
+    @Benchmark
+    public void sort(final Blackhole blackhole) {
+        final SortingCollection<SAMRecord> sorter = SortingCollection.newInstance(SAMRecord.class,
+                new BAMRecordCodec(header, DefaultSAMRecordFactory.getInstance(), true),
+                new SAMRecordCoordinateComparator(),
+                MAX_RECORDS_IN_RAM,
+                tmpDir);
+        sorter.setSpillThreads(spillThreads);
+        sorter.setTempStreamFactory(new TempStreamFactory(compression, 1));
+        records.forEach(sorter::add);
+        try (CloseableIterator<SAMRecord> it = sorter.iterator()) {
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+            }
+        }
+        sorter.cleanup();
+    }
+}
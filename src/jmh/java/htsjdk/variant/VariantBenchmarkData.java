@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.variant;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFConstants;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderLine;
+import htsjdk.variant.vcf.VCFStandardHeaderLines;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic synthetic variants for the benchmarks: biallelic SNPs on a single contig with the standard
+ * INFO and FORMAT fields, and the VCF and BCF files written from them.
+ */
+public final class VariantBenchmarkData {
+    public static final String CONTIG = "chr1";
+    private static final int CONTIG_LENGTH = 100_000_000;
+    private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+    private static final long SEED = 42;
+
+    private final VCFHeader header;
+    private final List<VariantContext> variants;
+
+    /**
+     * @param numVariants number of variants
+     * @param numSamples number of samples genotyped at each variant
+     */
+    public VariantBenchmarkData(final int numVariants, final int numSamples) {
+        final List<String> samples = new ArrayList<>(numSamples);
+        for (int i = 0; i < numSamples; i++) {
+            samples.add("SAMPLE" + i);
+        }
+        final Set<VCFHeaderLine> lines = new HashSet<>();
+        lines.add(VCFStandardHeaderLines.getInfoLine(VCFConstants.DEPTH_KEY));
+        lines.add(VCFStandardHeaderLines.getInfoLine(VCFConstants.ALLELE_FREQUENCY_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.DEPTH_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_QUALITY_KEY));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_ALLELE_DEPTHS));
+        lines.add(VCFStandardHeaderLines.getFormatLine(VCFConstants.GENOTYPE_PL_KEY));
+        header = new VCFHeader(lines, samples);
+        header.setSequenceDictionary(new SAMSequenceDictionary(
+                Collections.singletonList(new SAMSequenceRecord(CONTIG, CONTIG_LENGTH))));
+
+        final Random random = new Random(SEED);
+        variants = new ArrayList<>(numVariants);
+        int position = 0;
+        for (int i = 0; i < numVariants; i++) {
+            position += 1 + random.nextInt(200);
+            final int refIndex = random.nextInt(BASES.length);
+            final Allele ref = Allele.create(BASES[refIndex], true);
+            final Allele alt = Allele.create(BASES[(refIndex + 1 + random.nextInt(3)) % BASES.length], false);
+            final List<Genotype> genotypes = new ArrayList<>(numSamples);
+            int totalDepth = 0;
+            int altCount = 0;
+            for (final String sample : samples) {
+                final int altAlleles = random.nextInt(3);
+                final int depth = 10 + random.nextInt(40);
+                final int altDepth = altAlleles == 0 ? 0 : altAlleles == 2 ? depth : depth / 2;
+                totalDepth += depth;
+                altCount += altAlleles;
+                genotypes.add(new GenotypeBuilder(sample,
+                        Arrays.asList(altAlleles == 2 ? alt : ref, altAlleles == 0 ? ref : alt))
+                        .DP(depth)
+                        .GQ(random.nextInt(100))
+                        .AD(new int[]{depth - altDepth, altDepth})
+                        .PL(new int[]{random.nextInt(500), random.nextInt(100), random.nextInt(500)})
+                        .make());
+            }
+            variants.add(new VariantContextBuilder("benchmark", CONTIG, position, position, Arrays.asList(ref, alt))
+                    .id("rs" + i)
+                    .log10PError(-random.nextInt(1000) / 10.0)
+                    .attribute(VCFConstants.DEPTH_KEY, totalDepth)
+                    .attribute(VCFConstants.ALLELE_FREQUENCY_KEY, altCount / (2.0 * numSamples))
+                    .genotypes(genotypes)
+                    .make());
+        }
+    }
+
+    public VCFHeader getHeader() {
+        return header;
+    }
+
+    public List<VariantContext> getVariants() {
+        return variants;
+    }
+
+    /**
+     * Write the variants to {@code path}, as VCF, bgzipped VCF or BCF depending on its extension.
+     */
+    public void write(final Path path) {
+        try (VariantContextWriter writer = new VariantContextWriterBuilder()
+                .setOutputPath(path)
+                .unsetOption(Options.INDEX_ON_THE_FLY)
+                .build()) {
+            writer.writeHeader(header);
+            variants.forEach(writer::add);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.variant.bcf2;
+
+import htsjdk.samtools.BenchmarkData;
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.CloseableTribbleIterator;
+import htsjdk.variant.VariantBenchmarkData;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.VariantContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of BCF with {@link BCF2Codec}, with and without decoding the genotypes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BCF2CodecBenchmark {
+    private static final int NUM_VARIANTS = 20_000;
+
+    @Param({"1", "100"})
+    public int numSamples;
+
+    private Path tmpDir;
+    private Path bcf;
+
+    @Setup
+    public void setup() throws IOException {
+        tmpDir = BenchmarkData.createTempDirectory();
+        bcf = tmpDir.resolve("variants.bcf");
+        new VariantBenchmarkData(NUM_VARIANTS, numSamples).write(bcf);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteDirectory(tmpDir);
+    }
+
+    private AbstractFeatureReader<VariantContext, ?> open() {
+        return AbstractFeatureReader.getFeatureReader(bcf.toUri().toString(), new BCF2Codec(), false);
+    }
+
+    /**
+     * Decode the site-level fields only; genotypes are decoded lazily and never accessed.
+     */
+    @Benchmark
+    public void decodeSites(final Blackhole blackhole) throws IOException {
+        try (AbstractFeatureReader<VariantContext, ?> reader = open();
+             CloseableTribbleIterator<VariantContext> it = reader.iterator()) {
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public void decodeGenotypes(final Blackhole blackhole) throws IOException {
+        try (AbstractFeatureReader<VariantContext, ?> reader = open();
+             CloseableTribbleIterator<VariantContext> it = reader.iterator()) {
+            while (it.hasNext()) {
+                for (final Genotype genotype : it.next().getGenotypes()) {
+                    blackhole.consume(genotype);
+                }
+            }
+        }
+    }
+}
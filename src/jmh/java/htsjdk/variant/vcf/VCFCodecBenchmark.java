@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.variant.vcf;
+
+import htsjdk.samtools.BenchmarkData;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.variant.VariantBenchmarkData;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.VariantContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of VCF text with {@link VCFCodec}, with and without decoding the genotypes, and from Strings or bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VCFCodecBenchmark {
+    private static final int NUM_VARIANTS = 20_000;
+
+    @Param({"1", "100"})
+    public int numSamples;
+
+    @Param({"vcf", "vcf.gz"})
+    public String extension;
+
+    private Path tmpDir;
+    private Path vcf;
+
+    @Setup
+    public void setup() throws IOException {
+        tmpDir = BenchmarkData.createTempDirectory();
+        vcf = tmpDir.resolve("variants." + extension);
+        new VariantBenchmarkData(NUM_VARIANTS, numSamples).write(vcf);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteDirectory(tmpDir);
+    }
+
+    /**
+     * Decode the site-level fields only; genotypes are decoded lazily and never accessed.
+     */
+    @Benchmark
+    public void decodeSites(final Blackhole blackhole) {
+        try (VCFFileReader reader = new VCFFileReader(vcf, false);
+             CloseableIterator<VariantContext> it = reader.iterator()) {
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+            }
+        }
+    }
+
+    /**
+     * Decode the site-level fields only, from the bytes of each line.
+     */
+    @Benchmark
+    public void decodeSitesFromBytes(final Blackhole blackhole) throws IOException {
+        try (VCFIterator it = new VCFIteratorBuilder().setDecodeFromBytes(true).open(vcf)) {
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public void decodeGenotypes(final Blackhole blackhole) {
+        try (VCFFileReader reader = new VCFFileReader(vcf, false);
+             CloseableIterator<VariantContext> it = reader.iterator()) {
+            while (it.hasNext()) {
+                for (final Genotype genotype : it.next().getGenotypes()) {
+                    blackhole.consume(genotype);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.variant.vcf;
+
+import htsjdk.variant.VariantBenchmarkData;
+import htsjdk.variant.variantcontext.VariantContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of fully decoded variants to VCF text with {@link VCFEncoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VCFEncoderBenchmark {
+    private static final int NUM_VARIANTS = 20_000;
+
+    @Param({"1", "100"})
+    public int numSamples;
+
+    private VCFEncoder encoder;
+    private List<VariantContext> variants;
+    private final StringBuilder line = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        final VariantBenchmarkData data = new VariantBenchmarkData(NUM_VARIANTS, numSamples);
+        encoder = new VCFEncoder(data.getHeader(), false, false);
+        variants = data.getVariants();
+    }
+
+    @Benchmark
+    public void encode(final Blackhole blackhole) throws IOException {
+        for (final VariantContext vc : variants) {
+            line.setLength(0);
+            encoder.write(line, vc);
+            blackhole.consume(line.length());
+        }
+    }
+}
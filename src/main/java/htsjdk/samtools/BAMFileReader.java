@@ -79,6 +79,11 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
      */
     private boolean mEnableIndexMemoryMapping = true;
 
+    /**
+     * Load the whole index into the process-wide {@link CompactBAMFileIndex} rather than reading it on demand.
+     */
+    private boolean mEnableSharedCompactIndex = false;
+
     /**
      * Add information about the origin (reader and position) to SAM records.
      */
@@ -126,7 +131,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             throws IOException {
         mIndexFile = indexFile;
         mIsSeekable = false;
-        mCompressedInputStream = useAsynchronousIO ? new AsyncBlockCompressedInputStream(stream, inflaterFactory) : new BlockCompressedInputStream(stream, inflaterFactory);
+        mCompressedInputStream = useAsynchronousIO ? makeAsyncStream(stream, inflaterFactory) : new BlockCompressedInputStream(stream, inflaterFactory);
         mStream = new BinaryCodec(new DataInputStream(mCompressedInputStream));
         this.eagerDecode = eagerDecode;
         this.mValidationStringency = validationStringency;
@@ -173,7 +178,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
         throws IOException {
-        this(useAsynchronousIO ? new AsyncBlockCompressedInputStream(file, inflaterFactory) : new BlockCompressedInputStream(file, inflaterFactory),
+        this(useAsynchronousIO ? makeAsyncStream(file, inflaterFactory) : new BlockCompressedInputStream(file, inflaterFactory),
                 indexFile!=null ? indexFile : SamFiles.findIndex(file), eagerDecode, useAsynchronousIO, file.getAbsolutePath(), validationStringency, samRecordFactory);
         // if (mIndexFile != null && mIndexFile.lastModified() < file.lastModified()) {
         //     System.err.println("WARNING: BAM index file " + mIndexFile.getAbsolutePath() +
@@ -222,7 +227,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
         throws IOException {
-        this(useAsynchronousIO ? new AsyncBlockCompressedInputStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
+        this(useAsynchronousIO ? makeAsyncStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
                 indexFile, eagerDecode, useAsynchronousIO, strm.getSource(), validationStringency, samRecordFactory);
     }
 
@@ -265,10 +270,32 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
         throws IOException {
-        this(useAsynchronousIO ? new AsyncBlockCompressedInputStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
+        this(useAsynchronousIO ? makeAsyncStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
                 indexStream, eagerDecode, useAsynchronousIO, strm.getSource(), validationStringency, samRecordFactory);
     }
 
+    /**
+     * Creates the read-ahead stream used for asynchronous I/O.  If {@link Defaults#BGZF_INFLATE_THREADS} is set,
+     * that many blocks are inflated concurrently, otherwise a single block is read ahead.
+     */
+    private static BlockCompressedInputStream makeAsyncStream(final InputStream stream, final InflaterFactory inflaterFactory) {
+        return Defaults.BGZF_INFLATE_THREADS > 0 ?
+                new ParallelBlockCompressedInputStream(stream, inflaterFactory, Defaults.BGZF_INFLATE_THREADS) :
+                new AsyncBlockCompressedInputStream(stream, inflaterFactory);
+    }
+
+    private static BlockCompressedInputStream makeAsyncStream(final File file, final InflaterFactory inflaterFactory) throws IOException {
+        return Defaults.BGZF_INFLATE_THREADS > 0 ?
+                new ParallelBlockCompressedInputStream(file, inflaterFactory, Defaults.BGZF_INFLATE_THREADS) :
+                new AsyncBlockCompressedInputStream(file, inflaterFactory);
+    }
+
+    private static BlockCompressedInputStream makeAsyncStream(final SeekableStream strm, final InflaterFactory inflaterFactory) {
+        return Defaults.BGZF_INFLATE_THREADS > 0 ?
+                new ParallelBlockCompressedInputStream(strm, inflaterFactory, Defaults.BGZF_INFLATE_THREADS) :
+                new AsyncBlockCompressedInputStream(strm, inflaterFactory);
+    }
+
     /**
      * Prepare to read BAM from a compressed stream (seekable)
      * @param compressedInputStream source of bytes
@@ -379,6 +406,17 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         this.mEnableIndexMemoryMapping = enabled;
     }
 
+    /**
+     * If true, load the whole index into a {@link CompactBAMFileIndex}, shared with other readers of the same index file.
+     * @param enabled true to use the shared compact index.
+     */
+    void enableSharedCompactIndex(final boolean enabled) {
+        if (mIndex != null) {
+            throw new SAMException("Unable to turn on the shared compact index; index file has already been loaded.");
+        }
+        this.mEnableSharedCompactIndex = enabled;
+    }
+
     @Override void enableCrcChecking(final boolean enabled) {
         this.mCompressedInputStream.setCheckCrcs(enabled);
     }
@@ -411,7 +449,10 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             throw new SAMException("No index is available for this BAM file.");
         if(mIndex == null) {
             SamIndexes samIndex = getIndexType();
-            if (samIndex == null) {
+            if (mEnableSharedCompactIndex) {
+                mIndex = mIndexFile != null ? CompactBAMFileIndex.getShared(mIndexFile)
+                        : CompactBAMFileIndex.load(mIndexStream);
+            } else if (samIndex == null) {
                 mIndex = mEnableIndexCaching ? new CachingBAMFileIndex(mIndexStream, getFileHeader().getSequenceDictionary())
                         : new DiskBasedBAMFileIndex(mIndexStream, getFileHeader().getSequenceDictionary());
             } else if (samIndex.equals(SamIndexes.BAI)) {
@@ -23,11 +23,14 @@
  */
 package htsjdk.samtools;
 
+import htsjdk.samtools.util.AbstractAsyncWriter;
 import htsjdk.samtools.util.BinaryCodec;
 import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
 import htsjdk.samtools.util.FileExtensions;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.ThreadPoolUtil;
 import htsjdk.samtools.util.zip.DeflaterFactory;
 
 import java.io.File;
@@ -37,16 +40,48 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Concrete implementation of SAMFileWriter for writing gzipped BAM files.
+ *
+ * If the writer is created with encode threads (see {@link Defaults#BAM_ENCODE_THREADS} and
+ * {@link SAMFileWriterFactory#setEncodeThreads(int)}), writing is pipelined: batches of records are encoded by a pool
+ * of worker threads, the encoded records are written in order by the writing thread to the block compressed stream,
+ * which may itself deflate blocks on worker threads (see {@link Defaults#BGZF_DEFLATE_THREADS}), and records are
+ * passed to the BAM indexer, if any, on a thread of its own.  Each stage holds a bounded number of records or blocks,
+ * and the output and index are byte-identical to those written without threads.  Records must not be modified
+ * after they are added to a pipelined writer.
  */
 public class BAMFileWriter extends SAMFileWriterImpl {
+    private static final ExecutorService encodeThreadpool = ThreadPoolUtil.newDaemonCachedThreadPool("BAMFileWriter-encode-");
+
+    /** Number of records encoded together by one encode worker. */
+    private static final int RECORDS_PER_ENCODE_BATCH = 1000;
 
     private final BinaryCodec outputBinaryCodec;
     private BAMRecordCodec bamRecordCodec = null;
     private final BlockCompressedOutputStream blockCompressedOutputStream;
     private BAMIndexer bamIndexer = null;
+    // Records written but not yet indexed because their blocks are still being deflated.
+    private final ArrayDeque<PendingIndexRecord> pendingIndexRecords = new ArrayDeque<>();
+
+    // Pipelined mode only: the batch being filled, the batches being encoded in stream order, tasks that are no
+    // longer in use, and the thread that builds the index.
+    private int encodeThreads = 0;
+    private Executor encodeExecutor = null;
+    private EncodeTask currentBatch = null;
+    private final ArrayDeque<EncodeTask> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<EncodeTask> freeTasks = new ArrayDeque<>();
+    private AsyncIndexer asyncIndexer = null;
 
     protected BAMFileWriter(final File path) {
         blockCompressedOutputStream = new BlockCompressedOutputStream(path);
@@ -84,6 +119,24 @@ public class BAMFileWriter extends SAMFileWriterImpl {
       outputBinaryCodec.setOutputFileName(absoluteFilename);
     }
 
+    /**
+     * @param deflateThreads number of blocks to deflate concurrently, or 0 to deflate on the writing thread
+     * @param encodeThreads number of batches of records to encode concurrently, or 0 to encode on the writing thread
+     */
+    protected BAMFileWriter(final OutputStream os, final String absoluteFilename, final int compressionLevel, final DeflaterFactory deflaterFactory,
+                            final int deflateThreads, final int encodeThreads) {
+        if (encodeThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of encode threads: " + encodeThreads);
+        }
+        blockCompressedOutputStream = new BlockCompressedOutputStream(os, (Path)null, compressionLevel, deflaterFactory, deflateThreads);
+        outputBinaryCodec = new BinaryCodec(blockCompressedOutputStream);
+        outputBinaryCodec.setOutputFileName(absoluteFilename);
+        this.encodeThreads = encodeThreads;
+        if (encodeThreads > 0) {
+            encodeExecutor = ThreadPoolUtil.limitConcurrency(encodeThreadpool, encodeThreads);
+        }
+    }
+
   private void prepareToWriteAlignments() {
         if (bamRecordCodec == null) {
             bamRecordCodec = new BAMRecordCodec(getFileHeader());
@@ -128,7 +181,22 @@ public class BAMFileWriter extends SAMFileWriterImpl {
     protected void writeAlignment(final SAMRecord alignment) {
         prepareToWriteAlignments();
 
-        if (bamIndexer != null) {
+        if (encodeThreads > 0) {
+            if (currentBatch == null) {
+                currentBatch = freeTasks.isEmpty() ? new EncodeTask(getFileHeader(), getFilename()) : freeTasks.pop();
+            }
+            currentBatch.records.add(alignment);
+            if (currentBatch.records.size() == RECORDS_PER_ENCODE_BATCH) {
+                submitBatch();
+            }
+        } else if (bamIndexer != null && blockCompressedOutputStream.isParallelDeflation()) {
+            // Don't wait for the block to be deflated; index the record once its offsets are known.
+            final long startOffset = blockCompressedOutputStream.getUnresolvedFilePointer();
+            bamRecordCodec.encode(alignment);
+            final long stopOffset = blockCompressedOutputStream.getUnresolvedFilePointer();
+            pendingIndexRecords.add(new PendingIndexRecord(alignment, startOffset, stopOffset));
+            indexPendingRecords(false);
+        } else if (bamIndexer != null) {
             try {
                 final long startOffset = blockCompressedOutputStream.getFilePointer();
                 bamRecordCodec.encode(alignment);
@@ -150,11 +218,99 @@ public class BAMFileWriter extends SAMFileWriterImpl {
         writeHeader(outputBinaryCodec, getFileHeader(), textHeader);
     }
 
+    /**
+     * Hand the current batch of records to the encode workers, first writing out batches that have already been
+     * encoded, and waiting for the oldest one if the maximum number of batches are in flight.
+     */
+    private void submitBatch() {
+        // allow a batch per worker to be queued, beyond those being encoded, while the oldest is being written
+        while (!inFlight.isEmpty() && (inFlight.size() >= 2 * encodeThreads || inFlight.peek().future.isDone())) {
+            writeEncodedBatch();
+        }
+        final FutureTask<EncodeTask> future = new FutureTask<>(currentBatch);
+        encodeExecutor.execute(future);
+        currentBatch.future = future;
+        inFlight.add(currentBatch);
+        currentBatch = null;
+    }
+
+    /**
+     * Wait for the oldest batch in flight to be encoded, and write its records, noting their offsets if indexing.
+     */
+    private void writeEncodedBatch() {
+        final EncodeTask task = inFlight.remove();
+        task.await();
+        final byte[] bytes = task.encoded.getBuffer();
+        try {
+            int start = 0;
+            for (int i = 0; i < task.records.size(); i++) {
+                final int end = task.recordEnds[i];
+                if (bamIndexer != null) {
+                    final long startOffset = blockCompressedOutputStream.getUnresolvedFilePointer();
+                    blockCompressedOutputStream.write(bytes, start, end - start);
+                    final long stopOffset = blockCompressedOutputStream.getUnresolvedFilePointer();
+                    pendingIndexRecords.add(new PendingIndexRecord(task.records.get(i), startOffset, stopOffset));
+                } else {
+                    blockCompressedOutputStream.write(bytes, start, end - start);
+                }
+                start = end;
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+        indexPendingRecords(false);
+        task.records.clear();
+        task.encoded.reset();
+        task.future = null;
+        freeTasks.push(task);
+    }
+
+    /**
+     * Passes records whose virtual file offsets are known to the indexer, in the order they were written.
+     * @param waitForBlocks if true, wait for block deflation so that all pending records are indexed
+     */
+    private void indexPendingRecords(final boolean waitForBlocks) {
+        while (!pendingIndexRecords.isEmpty() && bamIndexer != null) {
+            final PendingIndexRecord pending = pendingIndexRecords.peek();
+            if (!waitForBlocks && !blockCompressedOutputStream.isFilePointerResolvable(pending.stopOffset)) {
+                return;
+            }
+            pendingIndexRecords.remove();
+            try {
+                pending.startOffset = blockCompressedOutputStream.resolveFilePointer(pending.startOffset);
+                pending.stopOffset = blockCompressedOutputStream.resolveFilePointer(pending.stopOffset);
+                if (encodeThreads > 0) {
+                    if (asyncIndexer == null) {
+                        asyncIndexer = new AsyncIndexer(bamIndexer);
+                    }
+                    asyncIndexer.write(pending);
+                } else {
+                    pending.index(bamIndexer);
+                }
+            } catch (Exception e) {
+                bamIndexer = null;
+                throw new SAMException("Exception when processing alignment for BAM index " + pending.readName, e);
+            }
+        }
+    }
+
     @Override
     protected void finish() {
+        if (encodeThreads > 0) {
+            if (currentBatch != null) {
+                submitBatch();
+            }
+            while (!inFlight.isEmpty()) {
+                writeEncodedBatch();
+            }
+        }
         outputBinaryCodec.close();
             try {
-                if (bamIndexer != null) {
+                indexPendingRecords(true);
+                if (asyncIndexer != null) {
+                    // finishes the index once the indexing thread has processed all of the records
+                    asyncIndexer.close();
+                } else if (bamIndexer != null) {
                     bamIndexer.finish();
                 }
             } catch (Exception e) {
@@ -169,6 +325,135 @@ public class BAMFileWriter extends SAMFileWriterImpl {
         return outputBinaryCodec.getOutputFileName();
     }
 
+    /**
+     * The values of a written record that the index needs, together with the virtual file offsets of its start and
+     * end, which are unresolved until its blocks have been deflated.  The record itself is not kept, so the caller
+     * may reuse it once it has been written.
+     */
+    private static final class PendingIndexRecord {
+        private final String readName;
+        private final int referenceIndex;
+        private final int alignmentStart;
+        private final int alignmentEnd;
+        private final int indexingBin;
+        private final boolean readUnmapped;
+        private long startOffset;
+        private long stopOffset;
+
+        private PendingIndexRecord(final SAMRecord alignment, final long startOffset, final long stopOffset) {
+            this.readName = alignment.getReadName();
+            this.referenceIndex = alignment.getReferenceIndex();
+            this.alignmentStart = alignment.getAlignmentStart();
+            this.alignmentEnd = alignment.getAlignmentEnd();
+            this.indexingBin = alignmentStart == SAMRecord.NO_ALIGNMENT_START ? 0 : alignment.computeIndexingBin();
+            this.readUnmapped = alignment.getReadUnmappedFlag();
+            this.startOffset = startOffset;
+            this.stopOffset = stopOffset;
+        }
+
+        /** Passes the record to the indexer, once its offsets have been resolved. */
+        private void index(final BAMIndexer bamIndexer) {
+            bamIndexer.processAlignment(referenceIndex, alignmentStart, alignmentEnd, indexingBin, readUnmapped,
+                    new Chunk(startOffset, stopOffset));
+        }
+    }
+
+    /** A batch of records, and the buffer into which an encode worker encodes them back to back. */
+    private static final class EncodeTask implements Callable<EncodeTask> {
+        private final List<SAMRecord> records = new ArrayList<>(RECORDS_PER_ENCODE_BATCH);
+        private final int[] recordEnds = new int[RECORDS_PER_ENCODE_BATCH];
+        private final EncodedRecords encoded = new EncodedRecords();
+        private final BAMRecordCodec codec;
+        private Future<EncodeTask> future;
+
+        private EncodeTask(final SAMFileHeader header, final String filename) {
+            codec = new BAMRecordCodec(header);
+            codec.setOutputStream(encoded, filename);
+        }
+
+        @Override
+        public EncodeTask call() {
+            for (int i = 0; i < records.size(); i++) {
+                codec.encode(records.get(i));
+                recordEnds[i] = encoded.size();
+            }
+            return this;
+        }
+
+        /**
+         * Foreground thread blocking operation that waits for this batch to be encoded.
+         */
+        private void await() {
+            ThreadPoolUtil.await(future, "Interrupted while encoding BAM records");
+        }
+    }
+
+    /** Growable, unsynchronized buffer of encoded records, whose bytes can be written without copying them. */
+    private static final class EncodedRecords extends OutputStream {
+        private byte[] buffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+        private int size = 0;
+
+        @Override
+        public void write(final int b) {
+            ensureCapacity(size + 1);
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (capacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(capacity, 2 * buffer.length));
+            }
+        }
+
+        private byte[] getBuffer() {
+            return buffer;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void reset() {
+            size = 0;
+        }
+    }
+
+    /** Passes records, whose offsets have been resolved, to the BAM indexer on a thread of its own. */
+    private static final class AsyncIndexer extends AbstractAsyncWriter<PendingIndexRecord> {
+        private final BAMIndexer bamIndexer;
+
+        private AsyncIndexer(final BAMIndexer bamIndexer) {
+            super(DEFAULT_QUEUE_SIZE);
+            this.bamIndexer = bamIndexer;
+        }
+
+        @Override
+        protected String getThreadNamePrefix() {
+            return "BAMFileWriter-index-";
+        }
+
+        @Override
+        protected void synchronouslyWrite(final PendingIndexRecord pending) {
+            try {
+                pending.index(bamIndexer);
+            } catch (Exception e) {
+                throw new SAMException("Exception when processing alignment for BAM index " + pending.readName, e);
+            }
+        }
+
+        @Override
+        protected void synchronouslyClose() {
+            bamIndexer.finish();
+        }
+    }
+
     /**
      * Writes a header to a BAM file. samFileHeader and headerText are redundant - one can be used to regenerate the other but in
      * some instances we already have both so this allows us to save some cycles
@@ -137,10 +137,23 @@ public class BAMIndexMetaData {
             throw new SAMException("BAM cannot be indexed without setting a fileSource for record " + rec);
         }
         final Chunk newChunk = ((BAMFileSpan) rec.getFileSource().getFilePointer()).getSingleChunk();
+        recordMetaData(alignmentStart, rec.getReadUnmappedFlag(), newChunk);
+    }
+
+    /**
+     * Record the metadata of a BAM record, given its alignment start, read unmapped flag and the virtual file
+     * offsets of its start and end
+     */
+    void recordMetaData(final int alignmentStart, final boolean readUnmapped, final Chunk newChunk) {
+        if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+            incrementNoCoordinateRecordCount();
+            return;
+        }
+
         final long start = newChunk.getChunkStart();
         final long end = newChunk.getChunkEnd();
 
-        if (rec.getReadUnmappedFlag()) {
+        if (readUnmapped) {
             unAlignedRecords++;
         } else {
             alignedRecords++;
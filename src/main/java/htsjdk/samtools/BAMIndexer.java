@@ -133,6 +133,30 @@ public class BAMIndexer {
         }
     }
 
+    /**
+     * Record the index information of a BAM record, as {@link #processAlignment(SAMRecord)} does, given only the
+     * values the index needs, e.g. when the record itself may since have been modified.
+     *
+     * @param reference the record's reference index
+     * @param alignmentStart the record's alignment start, or {@link SAMRecord#NO_ALIGNMENT_START}
+     * @param alignmentEnd the record's alignment end
+     * @param indexingBin the record's BAI indexing bin, as computed by SAMRecord.computeIndexingBin()
+     * @param readUnmapped the record's read unmapped flag
+     * @param chunk the virtual file offsets of the start and end of the record in the BAM file
+     */
+    void processAlignment(final int reference, final int alignmentStart, final int alignmentEnd,
+                          final int indexingBin, final boolean readUnmapped, final Chunk chunk) {
+        try {
+            if (reference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && reference != currentReference) {
+                // process any completed references
+                advanceToReference(reference);
+            }
+            indexBuilder.processAlignment(reference, alignmentStart, alignmentEnd, indexingBin, readUnmapped, chunk);
+        } catch (final Exception e) {
+            throw new SAMException("Exception creating BAM index for record at " + reference + ":" + alignmentStart, e);
+        }
+    }
+
     /**
      * After all the alignment records have been processed, finish is called.
      * Writes any final information and closes the output file.
@@ -220,45 +244,58 @@ public class BAMIndexer {
          * @param rec The BAM record. Requires rec.getFileSource() is non-null.
          */
         public void processAlignment(final SAMRecord rec) {
+            if (rec.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) {
+                indexStats.recordMetaData(rec);
+                return; // do nothing for records without coordinates, but count them
+            }
+
+            final SAMFileSource source = rec.getFileSource();
+            if (source == null) {
+                throw new SAMException("No source (virtual file offsets); needed for indexing on BAM Record " + rec);
+            }
+            processAlignment(rec.getReferenceIndex(), rec.getAlignmentStart(), rec.getAlignmentEnd(),
+                    rec.computeIndexingBin(), rec.getReadUnmappedFlag(),
+                    ((BAMFileSpan) source.getFilePointer()).getSingleChunk());
+        }
+
+        /**
+         * Record any index information for a BAM record, given the values the index needs
+         */
+        public void processAlignment(final int reference, final int alignmentStart, final int alignmentEnd,
+                                     final int indexingBin, final boolean readUnmapped, final Chunk chunk) {
 
             // metadata
-            indexStats.recordMetaData(rec);
+            indexStats.recordMetaData(alignmentStart, readUnmapped, chunk);
 
-            if (rec.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) {
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
                 return; // do nothing for records without coordinates, but count them
             }
 
             // various checks
-            final int reference = rec.getReferenceIndex();
             if (reference != currentReference) {
                 throw new SAMException("Unexpected reference " + reference +
-                        " when constructing index for " + currentReference + " for record " + rec);
+                        " when constructing index for " + currentReference + " for record at " + alignmentStart);
             }
 
             binningIndexBuilder.processFeature(new BinningIndexBuilder.FeatureToBeIndexed() {
                 @Override
                 public int getStart() {
-                    return rec.getAlignmentStart();
+                    return alignmentStart;
                 }
 
                 @Override
                 public int getEnd() {
-                    return rec.getAlignmentEnd();
+                    return alignmentEnd;
                 }
 
                 @Override
-                public Integer getIndexingBin() { return rec.computeIndexingBin(); }
+                public Integer getIndexingBin() { return indexingBin; }
 
                 @Override
                 public Chunk getChunk() {
-                    final SAMFileSource source = rec.getFileSource();
-                    if (source == null) {
-                        throw new SAMException("No source (virtual file offsets); needed for indexing on BAM Record " + rec);
-                    }
-                    return ((BAMFileSpan) source.getFilePointer()).getSingleChunk();
+                    return chunk;
                 }
             });
-
         }
 
         /**
@@ -27,6 +27,7 @@ import htsjdk.samtools.util.StringUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 
 import static htsjdk.samtools.SAMTag.CG;
 
@@ -82,6 +83,14 @@ public class BAMRecord extends SAMRecord {
     private boolean mAttributesDecoded = false;
     private boolean mCigarDecoded = false;
 
+    /**
+     * Tag and offset in mRestOfBinaryData of each attribute, in file order, built on the first lookup of a single
+     * attribute so that attributes can be read one at a time without decoding them all.  mTagOffsets has one
+     * extra element, the end of the attributes.  Not used once the attributes have been decoded.
+     */
+    private short[] mTagIds = null;
+    private int[] mTagOffsets = null;
+
     /**
      * If any of the properties set from mRestOfBinaryData have been overridden by calls to setters,
      * this is set to true, indicating that mRestOfBinaryData cannot be used to write this record to disk.
@@ -385,14 +394,85 @@ public class BAMRecord extends SAMRecord {
         return ret;
     }
 
+    /**
+     * Until the attributes are modified (or the whole list is requested), only the requested attribute is decoded.
+     */
     @Override
     public Object getAttribute(final short tag) {
+        if (canReadUndecodedAttribute(tag)) {
+            final int index = findUndecodedAttribute(tag);
+            if (index < 0) {
+                return null;
+            }
+            final int offset = mTagOffsets[index];
+            return BinaryTagCodec.readTags(mRestOfBinaryData, offset, mTagOffsets[index + 1] - offset, getValidationStringency()).value;
+        }
         if (!mAttributesDecoded) {
             decodeAttributes();
         }
         return super.getAttribute(tag);
     }
 
+    @Override
+    public boolean isUnsignedArrayAttribute(final String tag) {
+        final short binaryTag = SAMTag.makeBinaryTag(tag);
+        if (canReadUndecodedAttribute(binaryTag)) {
+            final int index = findUndecodedAttribute(binaryTag);
+            if (index < 0) {
+                throw new SAMException("Tag " + tag + " is not present in this SAMRecord");
+            }
+            final int offset = mTagOffsets[index];
+            return mRestOfBinaryData[offset + 2] == 'B' && Character.isUpperCase(mRestOfBinaryData[offset + 3]);
+        }
+        if (!mAttributesDecoded) {
+            decodeAttributes();
+        }
+        return super.isUnsignedArrayAttribute(tag);
+    }
+
+    /**
+     * A single attribute can be read from the binary block until the attributes are decoded, except for the CG tag,
+     * which must go through the attribute list so that a long cigar hiding in it is moved into the cigar.
+     */
+    private boolean canReadUndecodedAttribute(final short tag) {
+        return !mAttributesDecoded && mRestOfBinaryData != null && tag != CG.getBinaryTag();
+    }
+
+    /**
+     * @return the index in mTagIds of the given tag, or -1 if the record does not have it
+     */
+    private int findUndecodedAttribute(final short tag) {
+        if (mTagIds == null) {
+            indexAttributes();
+        }
+        // search backwards: if a tag is repeated, the last value wins, as it does when decoding all the attributes
+        for (int i = mTagIds.length - 1; i >= 0; i--) {
+            if (mTagIds[i] == tag) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void indexAttributes() {
+        final int tagsOffset = readNameSize() + cigarSize() + basesSize() + qualsSize();
+        final int tagsEnd = mRestOfBinaryData.length;
+        short[] tagIds = new short[8];
+        int[] tagOffsets = new int[9];
+        int numTags = 0;
+        for (int offset = tagsOffset; offset < tagsEnd; offset = tagOffsets[numTags]) {
+            if (numTags == tagIds.length) {
+                tagIds = Arrays.copyOf(tagIds, numTags * 2);
+                tagOffsets = Arrays.copyOf(tagOffsets, numTags * 2 + 1);
+            }
+            tagIds[numTags] = (short) ((mRestOfBinaryData[offset] & 0xFF) | (mRestOfBinaryData[offset + 1] & 0xFF) << 8);
+            tagOffsets[numTags] = offset;
+            tagOffsets[++numTags] = BinaryTagCodec.getTagEnd(mRestOfBinaryData, offset, tagsEnd);
+        }
+        mTagOffsets = Arrays.copyOf(tagOffsets, numTags + 1);
+        mTagIds = Arrays.copyOf(tagIds, numTags);
+    }
+
     @Override
     protected SAMBinaryTagAndValue getBinaryAttributes() {
         if (!mAttributesDecoded) {
@@ -407,6 +487,8 @@ public class BAMRecord extends SAMRecord {
         }
 
         mAttributesDecoded = true;
+        mTagIds = null;
+        mTagOffsets = null;
         final int tagsOffset = readNameSize() + cigarSize() + basesSize() + qualsSize();
         final int tagsSize = mRestOfBinaryData.length - tagsOffset;
         final SAMBinaryTagAndValue attributes = BinaryTagCodec.readTags(mRestOfBinaryData, tagsOffset, tagsSize, getValidationStringency());
@@ -44,6 +44,7 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
     private final BinaryCodec binaryCodec = new BinaryCodec();
     private final BinaryTagCodec binaryTagCodec = new BinaryTagCodec(binaryCodec);
     private final SAMRecordFactory samRecordFactory;
+    private final boolean forTemporaryFiles;
 
     private boolean isReferenceSizeWarningShowed = false;
 
@@ -52,14 +53,28 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
     }
 
     public BAMRecordCodec(final SAMFileHeader header, final SAMRecordFactory factory) {
+        this(header, factory, false);
+    }
+
+    /**
+     * @param header header of the records
+     * @param factory used to create records when decoding
+     * @param forTemporaryFiles if true, records are encoded for temporary files that are only read back by a
+     *                          BAMRecordCodec, such as {@link SortingCollection} spill files.  The indexing bin is
+     *                          not computed (it is written as 0), so BAMRecords that have not been modified since they
+     *                          were read are written by copying their raw bytes, without decoding the CIGAR or any other
+     *                          variable-length field.  The output of such a codec is not a valid BAM record stream.
+     */
+    public BAMRecordCodec(final SAMFileHeader header, final SAMRecordFactory factory, final boolean forTemporaryFiles) {
         this.header = header;
         this.samRecordFactory = factory;
+        this.forTemporaryFiles = forTemporaryFiles;
     }
 
     @Override
     public BAMRecordCodec clone() {
         // Do not clone the references to codecs, as they must be distinct for each instance.
-        return new BAMRecordCodec(this.header, this.samRecordFactory);
+        return new BAMRecordCodec(this.header, this.samRecordFactory, this.forTemporaryFiles);
     }
 
     /**
@@ -104,6 +119,19 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
      */
     @Override
     public void encode(final SAMRecord alignment) {
+        if (forTemporaryFiles) {
+            final byte[] variableLengthBinaryBlock = alignment.getVariableBinaryRepresentation();
+            if (variableLengthBinaryBlock != null) {
+                // Unmodified BAMRecord: its cigar length is known without decoding the cigar, and the bin is not needed.
+                writeFixedLengthFields(alignment,
+                        BAMFileConstants.FIXED_BLOCK_SIZE + variableLengthBinaryBlock.length,
+                        0,
+                        alignment.getCigarLength());
+                this.binaryCodec.writeBytes(variableLengthBinaryBlock);
+                return;
+            }
+        }
+
         // Compute block size, as it is the first element of the file representation of SAMRecord
         final int readLength = alignment.getReadLength();
 
@@ -141,26 +169,14 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         // shouldn't interact with the long-cigar above since the Sentinel Cigar has the same referenceLength as
         // the actual cigar.
         int indexBin = 0;
-        if (alignment.getAlignmentStart() != SAMRecord.NO_ALIGNMENT_START) {
+        if (!forTemporaryFiles && alignment.getAlignmentStart() != SAMRecord.NO_ALIGNMENT_START) {
             if (!warnIfReferenceIsTooLargeForBinField(alignment)) {
                 indexBin = alignment.computeIndexingBin();
             }
         }
 
         // Blurt out the elements
-        this.binaryCodec.writeInt(blockSize);
-        this.binaryCodec.writeInt(alignment.getReferenceIndex());
-        // 0-based!!
-        this.binaryCodec.writeInt(alignment.getAlignmentStart() - 1);
-        this.binaryCodec.writeUByte((short) (alignment.getReadNameLength() + 1));
-        this.binaryCodec.writeUByte((short) alignment.getMappingQuality());
-        this.binaryCodec.writeUShort(indexBin);
-        this.binaryCodec.writeUShort(cigarToWrite.numCigarElements());
-        this.binaryCodec.writeUShort(alignment.getFlags());
-        this.binaryCodec.writeInt(alignment.getReadLength());
-        this.binaryCodec.writeInt(alignment.getMateReferenceIndex());
-        this.binaryCodec.writeInt(alignment.getMateAlignmentStart() - 1);
-        this.binaryCodec.writeInt(alignment.getInferredInsertSize());
+        writeFixedLengthFields(alignment, blockSize, indexBin, cigarToWrite.numCigarElements());
         final byte[] variableLengthBinaryBlock = alignment.getVariableBinaryRepresentation();
         if (variableLengthBinaryBlock != null) {
             // Don't need to encode variable-length block, because it is unchanged from
@@ -204,6 +220,22 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         }
     }
 
+    private void writeFixedLengthFields(final SAMRecord alignment, final int blockSize, final int indexBin, final int numCigarElements) {
+        this.binaryCodec.writeInt(blockSize);
+        this.binaryCodec.writeInt(alignment.getReferenceIndex());
+        // 0-based!!
+        this.binaryCodec.writeInt(alignment.getAlignmentStart() - 1);
+        this.binaryCodec.writeUByte((short) (alignment.getReadNameLength() + 1));
+        this.binaryCodec.writeUByte((short) alignment.getMappingQuality());
+        this.binaryCodec.writeUShort(indexBin);
+        this.binaryCodec.writeUShort(numCigarElements);
+        this.binaryCodec.writeUShort(alignment.getFlags());
+        this.binaryCodec.writeInt(alignment.getReadLength());
+        this.binaryCodec.writeInt(alignment.getMateReferenceIndex());
+        this.binaryCodec.writeInt(alignment.getMateAlignmentStart() - 1);
+        this.binaryCodec.writeInt(alignment.getInferredInsertSize());
+    }
+
     /**
      * Create a "Sentinel" cigar that will be placed in BAM file when the actual cigar has more than 0xffff operator,
      * which are not supported by the bam format. The actual cigar will be encoded and placed in the CG attribute.
@@ -290,4 +322,22 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
         }
         return ret;
     }
+
+    /**
+     * Read the next record from the input stream into a reusable view, without creating a {@link SAMRecord}.
+     *
+     * @param view the view to fill; its previous contents are discarded
+     * @return false if there are no more records in the stream, in which case the view is unchanged
+     */
+    public boolean decode(final BAMRecordView view) {
+        final int recordLength;
+        try {
+            recordLength = this.binaryCodec.readInt();
+        } catch (final RuntimeEOFException e) {
+            return false;
+        }
+        this.binaryCodec.readBytes(view.prepare(recordLength), 0, recordLength);
+        view.recordLoaded(recordLength);
+        return true;
+    }
 }
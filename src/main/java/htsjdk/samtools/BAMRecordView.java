@@ -0,0 +1,372 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A reusable, read-only view of a single BAM record in its binary form.  Fields are read directly from the
+ * encoded bytes when they are asked for, so scanning records through a view allocates nothing per record unless
+ * a String, array or attribute value is requested.
+ *
+ * A view is filled by {@link BAMRecordCodec#decode(BAMRecordView)}, usually through a {@link BAMRecordViewReader}.
+ * Its contents are only valid until it is filled with the next record: use {@link #toSAMRecord()} to keep a record.
+ *
+ * Positions follow {@link SAMRecord}: alignment starts are 1-based, and 0 when there is no alignment.
+ * Long CIGARs stored in the CG tag are resolved, so the CIGAR accessors always describe the real alignment.
+ *
+ * Note that this class is not thread-safe.
+ */
+public class BAMRecordView {
+    private static final byte[] BASES = "=ACMGRSVTWYHKDBN".getBytes();
+    private static final short CG_TAG = SAMTag.makeBinaryTag(SAMTag.CG.name());
+
+    private final SAMFileHeader header;
+    private final SAMRecordFactory samRecordFactory;
+
+    /** the record, starting at refID (i.e. without the leading block_size) */
+    private byte[] buffer = new byte[1024];
+    private int length = 0;
+
+    private int cigarOffset;
+    private int cigarLength;
+    private int basesOffset;
+    private int qualitiesOffset;
+    private int tagsOffset;
+
+    /**
+     * @param header header used to resolve reference names and to create {@link SAMRecord}s
+     */
+    public BAMRecordView(final SAMFileHeader header) {
+        this(header, DefaultSAMRecordFactory.getInstance());
+    }
+
+    /**
+     * @param header header used to resolve reference names and to create {@link SAMRecord}s
+     * @param samRecordFactory factory used by {@link #toSAMRecord()}
+     */
+    public BAMRecordView(final SAMFileHeader header, final SAMRecordFactory samRecordFactory) {
+        this.header = header;
+        this.samRecordFactory = samRecordFactory;
+    }
+
+    /**
+     * Make room for a record of the given length.
+     * @return the buffer that the caller must fill with the record, starting at its reference index
+     */
+    byte[] prepare(final int recordLength) {
+        if (recordLength < BAMFileConstants.FIXED_BLOCK_SIZE) {
+            throw new SAMFormatException("Invalid record length: " + recordLength);
+        }
+        if (buffer.length < recordLength) {
+            buffer = new byte[Math.max(recordLength, buffer.length * 2)];
+        }
+        length = 0;
+        return buffer;
+    }
+
+    /**
+     * Called once the record written to the buffer returned by {@link #prepare(int)} is complete.
+     */
+    void recordLoaded(final int recordLength) {
+        length = recordLength;
+        cigarOffset = BAMFileConstants.FIXED_BLOCK_SIZE + getReadNameLength();
+        cigarLength = getUShort(12);
+        basesOffset = cigarOffset + cigarLength * 4;
+        qualitiesOffset = basesOffset + (getReadLength() + 1) / 2;
+        tagsOffset = qualitiesOffset + getReadLength();
+        if (tagsOffset > length) {
+            throw new SAMFormatException("BAM record is shorter than its read name, CIGAR and bases: " + length);
+        }
+        if (cigarLength == 2 && getCigarOperator(1) == CigarOperator.N &&
+                getCigarOperator(0) == CigarOperator.S && getCigarOperationLength(0) == getReadLength()) {
+            // sentinel CIGAR: the real one is a uint32 array in the CG tag
+            final int cg = findAttribute(CG_TAG);
+            if (cg >= 0 && buffer[cg + 2] == 'B' && (buffer[cg + 3] == 'I' || buffer[cg + 3] == 'i')) {
+                cigarLength = getInt(cg + 4);
+                cigarOffset = cg + 8;
+            }
+        }
+    }
+
+    /** @return the header of the file this record was read from */
+    public SAMFileHeader getHeader() {
+        return header;
+    }
+
+    /** @return the length of the record in bytes, excluding the leading block size */
+    public int getRecordLength() {
+        return length;
+    }
+
+    public int getReferenceIndex() {
+        return getInt(0);
+    }
+
+    /** @return the reference name, or {@link SAMRecord#NO_ALIGNMENT_REFERENCE_NAME} for unplaced records */
+    public String getReferenceName() {
+        return getReferenceName(getReferenceIndex());
+    }
+
+    /** @return 1-based inclusive leftmost position of the clipped sequence, or 0 if there is no position */
+    public int getAlignmentStart() {
+        return getInt(4) + 1;
+    }
+
+    /**
+     * @return 1-based inclusive rightmost position of the clipped sequence, or 0 if the read is unmapped
+     */
+    public int getAlignmentEnd() {
+        if (getReadUnmappedFlag()) {
+            return SAMRecord.NO_ALIGNMENT_START;
+        }
+        int referenceLength = 0;
+        for (int i = 0; i < cigarLength; i++) {
+            if (getCigarOperator(i).consumesReferenceBases()) {
+                referenceLength += getCigarOperationLength(i);
+            }
+        }
+        return getAlignmentStart() + referenceLength - 1;
+    }
+
+    public int getMappingQuality() {
+        return buffer[9] & 0xFF;
+    }
+
+    public int getIndexingBin() {
+        return getUShort(10);
+    }
+
+    public int getFlags() {
+        return getUShort(14);
+    }
+
+    public boolean getReadPairedFlag() {
+        return (getFlags() & SAMFlag.READ_PAIRED.intValue()) != 0;
+    }
+
+    public boolean getReadUnmappedFlag() {
+        return (getFlags() & SAMFlag.READ_UNMAPPED.intValue()) != 0;
+    }
+
+    public boolean getReadNegativeStrandFlag() {
+        return (getFlags() & SAMFlag.READ_REVERSE_STRAND.intValue()) != 0;
+    }
+
+    public boolean isSecondaryOrSupplementary() {
+        return (getFlags() & (SAMFlag.SECONDARY_ALIGNMENT.intValue() | SAMFlag.SUPPLEMENTARY_ALIGNMENT.intValue())) != 0;
+    }
+
+    public boolean getDuplicateReadFlag() {
+        return (getFlags() & SAMFlag.DUPLICATE_READ.intValue()) != 0;
+    }
+
+    public boolean getReadFailsVendorQualityCheckFlag() {
+        return (getFlags() & SAMFlag.READ_FAILS_VENDOR_QUALITY_CHECK.intValue()) != 0;
+    }
+
+    /** @return the number of bases (and qualities) in the read */
+    public int getReadLength() {
+        return getInt(16);
+    }
+
+    public int getMateReferenceIndex() {
+        return getInt(20);
+    }
+
+    public String getMateReferenceName() {
+        return getReferenceName(getMateReferenceIndex());
+    }
+
+    public int getMateAlignmentStart() {
+        return getInt(24) + 1;
+    }
+
+    public int getInferredInsertSize() {
+        return getInt(28);
+    }
+
+    /** @return the length of the read name, including the terminating null */
+    int getReadNameLength() {
+        return buffer[8] & 0xFF;
+    }
+
+    public String getReadName() {
+        return new String(buffer, BAMFileConstants.FIXED_BLOCK_SIZE, getReadNameLength() - 1, StandardCharsets.US_ASCII);
+    }
+
+    /** @return the number of CIGAR operations */
+    public int getCigarLength() {
+        return cigarLength;
+    }
+
+    /** @return the operator of the i'th CIGAR operation */
+    public CigarOperator getCigarOperator(final int i) {
+        return CigarOperator.binaryToEnum(getInt(cigarOffset + 4 * i) & 0xF);
+    }
+
+    /** @return the length of the i'th CIGAR operation */
+    public int getCigarOperationLength(final int i) {
+        return getInt(cigarOffset + 4 * i) >>> 4;
+    }
+
+    public Cigar getCigar() {
+        final Cigar cigar = new Cigar();
+        for (int i = 0; i < cigarLength; i++) {
+            cigar.add(new CigarElement(getCigarOperationLength(i), getCigarOperator(i)));
+        }
+        return cigar;
+    }
+
+    /** @return the i'th base of the read, as an upper case ASCII character */
+    public byte getBase(final int i) {
+        final int packed = buffer[basesOffset + (i >> 1)];
+        return BASES[(i & 1) == 0 ? (packed >> 4) & 0xF : packed & 0xF];
+    }
+
+    public byte[] getReadBases() {
+        final byte[] bases = new byte[getReadLength()];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = getBase(i);
+        }
+        return bases;
+    }
+
+    /** @return the phred scaled quality of the i'th base, or 0xFF if the record has no qualities */
+    public int getBaseQuality(final int i) {
+        return buffer[qualitiesOffset + i] & 0xFF;
+    }
+
+    /** @return the phred scaled base qualities, or {@link SAMRecord#NULL_QUALS} if the record has none */
+    public byte[] getBaseQualities() {
+        final int readLength = getReadLength();
+        if (readLength == 0 || buffer[qualitiesOffset] == (byte) 0xFF) {
+            return SAMRecord.NULL_QUALS;
+        }
+        return Arrays.copyOfRange(buffer, qualitiesOffset, qualitiesOffset + readLength);
+    }
+
+    /**
+     * @param tag two character tag name
+     * @return true if the record has the given tag
+     */
+    public boolean hasAttribute(final String tag) {
+        return findAttribute(SAMTag.makeBinaryTag(tag)) >= 0;
+    }
+
+    /**
+     * @param tag two character tag name
+     * @return the decoded value of the tag, as {@link SAMRecord#getAttribute(String)} would return it, or null if absent
+     */
+    public Object getAttribute(final String tag) {
+        final int offset = findAttribute(SAMTag.makeBinaryTag(tag));
+        if (offset < 0) {
+            return null;
+        }
+        final int end = BinaryTagCodec.getTagEnd(buffer, offset, length);
+        return BinaryTagCodec.readTags(buffer, offset, end - offset, ValidationStringency.SILENT).value;
+    }
+
+    /**
+     * @param tag two character tag name
+     * @return the value of an integer tag, or null if the record does not have the tag
+     * @throws SAMException if the tag is not an integer
+     */
+    public Integer getIntegerAttribute(final String tag) {
+        final int offset = findAttribute(SAMTag.makeBinaryTag(tag));
+        if (offset < 0) {
+            return null;
+        }
+        final int value = offset + 3;
+        switch (buffer[offset + 2]) {
+            case 'c':
+                return (int) buffer[value];
+            case 'C':
+                return buffer[value] & 0xFF;
+            case 's':
+                return (int) (short) getUShort(value);
+            case 'S':
+                return getUShort(value);
+            case 'i':
+                return getInt(value);
+            case 'I':
+                final long unsigned = getInt(value) & 0xFFFFFFFFL;
+                if (unsigned > Integer.MAX_VALUE) {
+                    throw new SAMException("Value for tag " + tag + " is not an Integer: " + unsigned);
+                }
+                return (int) unsigned;
+            default:
+                throw new SAMException("Value for tag " + tag + " is not integer: " + (char) buffer[offset + 2]);
+        }
+    }
+
+    /**
+     * @return the offset in the buffer of the given tag, or -1 if the record does not have it
+     */
+    private int findAttribute(final short binaryTag) {
+        int offset = tagsOffset;
+        while (offset < length) {
+            if ((short) getUShort(offset) == binaryTag) {
+                return offset;
+            }
+            offset = BinaryTagCodec.getTagEnd(buffer, offset, length);
+        }
+        return -1;
+    }
+
+    /**
+     * Copy this record into a new {@link SAMRecord}, which remains valid after the view moves on to another record.
+     */
+    public SAMRecord toSAMRecord() {
+        final byte[] restOfRecord = Arrays.copyOfRange(buffer, BAMFileConstants.FIXED_BLOCK_SIZE, length);
+        final BAMRecord record = samRecordFactory.createBAMRecord(
+                header, getReferenceIndex(), getAlignmentStart(), (short) getReadNameLength(), (short) getMappingQuality(),
+                getIndexingBin(), getUShort(12), getFlags(), getReadLength(), getMateReferenceIndex(),
+                getMateAlignmentStart(), getInferredInsertSize(), restOfRecord);
+        if (header != null) {
+            record.setHeader(header);
+        }
+        return record;
+    }
+
+    private String getReferenceName(final int referenceIndex) {
+        if (referenceIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+            return SAMRecord.NO_ALIGNMENT_REFERENCE_NAME;
+        }
+        if (header == null) {
+            throw new IllegalStateException("A header is required to resolve reference index " + referenceIndex);
+        }
+        return header.getSequence(referenceIndex).getSequenceName();
+    }
+
+    private int getInt(final int offset) {
+        return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8 |
+                (buffer[offset + 2] & 0xFF) << 16 | buffer[offset + 3] << 24;
+    }
+
+    private int getUShort(final int offset) {
+        return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8;
+    }
+}
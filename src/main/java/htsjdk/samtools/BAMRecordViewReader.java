@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekablePathStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Low-overhead sequential reader of BAM files, for scans that only need a few fields of each record.  Every record
+ * is read into the same {@link BAMRecordView}, so records are not decoded, and no objects are allocated per record.
+ * Call {@link BAMRecordView#toSAMRecord()} for records that must be kept.
+ *
+ * <pre>
+ *     try (final BAMRecordViewReader reader = new BAMRecordViewReader(path)) {
+ *         for (BAMRecordView view = reader.next(); view != null; view = reader.next()) {
+ *             if (view.getMappingQuality() &gt;= 20 &amp;&amp; !view.getDuplicateReadFlag()) {
+ *                 ...
+ *             }
+ *         }
+ *     }
+ * </pre>
+ *
+ * Note that this class is not thread-safe.
+ */
+public class BAMRecordViewReader implements Closeable {
+    private final BlockCompressedInputStream compressedInputStream;
+    private final SAMFileHeader header;
+    private final BAMRecordCodec codec;
+    private final BAMRecordView view;
+    private final long firstRecordPointer;
+
+    /**
+     * @param path the BAM file to read
+     */
+    public BAMRecordViewReader(final Path path) throws IOException {
+        this(new SeekablePathStream(path));
+    }
+
+    /**
+     * @param stream the BAM file to read
+     */
+    public BAMRecordViewReader(final SeekableStream stream) throws IOException {
+        this(new BlockCompressedInputStream(stream), stream.getSource(), ValidationStringency.DEFAULT_STRINGENCY);
+    }
+
+    /**
+     * @param compressedInputStream the BAM file to read, positioned at its start.  This may be any kind of
+     *                              {@link BlockCompressedInputStream}, e.g. one that inflates blocks in parallel.
+     * @param source description of the file, used when reporting errors
+     * @param validationStringency stringency used when reading the header
+     */
+    public BAMRecordViewReader(final BlockCompressedInputStream compressedInputStream, final String source,
+                               final ValidationStringency validationStringency) throws IOException {
+        this.compressedInputStream = compressedInputStream;
+        final DataInputStream dataInputStream = new DataInputStream(compressedInputStream);
+        this.header = BAMFileReader.readHeader(new BinaryCodec(dataInputStream), validationStringency, source);
+        this.firstRecordPointer = compressedInputStream.getFilePointer();
+        this.codec = new BAMRecordCodec(header);
+        this.codec.setInputStream(dataInputStream, source);
+        this.view = new BAMRecordView(header);
+    }
+
+    public SAMFileHeader getFileHeader() {
+        return header;
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return the reader's view, now showing the next record, or null if there are no more records.  The same
+     * view is returned by every call, and its contents are replaced by the next call.
+     */
+    public BAMRecordView next() {
+        return codec.decode(view) ? view : null;
+    }
+
+    /**
+     * @return the virtual file pointer of the next record
+     */
+    public long getFilePointer() {
+        return compressedInputStream.getFilePointer();
+    }
+
+    /**
+     * @return the virtual file pointer of the first record in the file
+     */
+    public long getFirstRecordPointer() {
+        return firstRecordPointer;
+    }
+
+    /**
+     * Position the reader at the record starting at the given virtual file pointer, e.g. the start of a
+     * {@link Chunk} from the index.  The underlying stream must be seekable.
+     */
+    public void seek(final long virtualFilePointer) {
+        try {
+            compressedInputStream.seek(virtualFilePointer);
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            compressedInputStream.close();
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+}
@@ -305,6 +305,79 @@ public class BinaryTagCodec {
         return head;
     }
 
+    /**
+     * Find the end of a single tag in the disk representation, without decoding its value.
+     * @param binaryRep Byte buffer containing file representation of tags.
+     * @param offset Where in binaryRep the tag starts.
+     * @param end Where in binaryRep tag storage ends.
+     * @return The offset in binaryRep of the byte following the tag's value.
+     */
+    static int getTagEnd(final byte[] binaryRep, final int offset, final int end) {
+        final int valueOffset = offset + 3;
+        if (valueOffset > end) {
+            throw new SAMFormatException("Truncated tag at offset " + offset);
+        }
+        final int tagEnd;
+        final byte tagType = binaryRep[offset + 2];
+        switch (tagType) {
+            case 'Z':
+            case 'H':
+                int nullTerminator = valueOffset;
+                while (nullTerminator < end && binaryRep[nullTerminator] != 0) {
+                    nullTerminator++;
+                }
+                tagEnd = nullTerminator + 1;
+                break;
+            case 'B':
+                if (valueOffset + 5 > end) {
+                    throw new SAMFormatException("Truncated tag at offset " + offset);
+                }
+                final long length = (binaryRep[valueOffset + 1] & 0xffL) | (binaryRep[valueOffset + 2] & 0xffL) << 8 |
+                        (binaryRep[valueOffset + 3] & 0xffL) << 16 | (binaryRep[valueOffset + 4] & 0xffL) << 24;
+                tagEnd = (int) Math.min(Integer.MAX_VALUE, valueOffset + 5 + length * getArrayElementSize(binaryRep[valueOffset]));
+                break;
+            default:
+                tagEnd = valueOffset + getSingleValueSize(tagType);
+                break;
+        }
+        if (tagEnd > end) {
+            throw new SAMFormatException("Truncated tag at offset " + offset);
+        }
+        return tagEnd;
+    }
+
+    private static int getSingleValueSize(final byte tagType) {
+        switch (tagType) {
+            case 'A':
+            case 'c':
+            case 'C':
+                return 1;
+            case 's':
+            case 'S':
+                return 2;
+            case 'i':
+            case 'I':
+            case 'f':
+                return 4;
+            default:
+                throw new SAMFormatException("Unrecognized tag type: " + (char)tagType);
+        }
+    }
+
+    private static int getArrayElementSize(final byte arrayType) {
+        switch (Character.toLowerCase(arrayType)) {
+            case 'c':
+                return 1;
+            case 's':
+                return 2;
+            case 'i':
+            case 'f':
+                return 4;
+            default:
+                throw new SAMFormatException("Unrecognized tag array type: " + (char)arrayType);
+        }
+    }
+
     /**
      * Read value of specified non-array type.
      * @param tagType What type to read.
@@ -1,27 +1,46 @@
 package htsjdk.samtools;
 
+import htsjdk.samtools.cram.build.CompressionHeaderFactory;
 import htsjdk.samtools.cram.build.ContainerFactory;
 import htsjdk.samtools.cram.build.CramIO;
-import htsjdk.samtools.cram.common.CramVersions;
+import htsjdk.samtools.cram.common.CRAMVersion;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.structure.*;
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.ThreadPoolUtil;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Class for writing SAMRecords into a series of CRAM containers on an output stream, with an optional index.
+ *
+ * If {@link Defaults#CRAM_ENCODE_THREADS} is non-zero, records are still accumulated into containers by the
+ * thread calling {@link #writeAlignment(SAMRecord)}, but containers are encoded and compressed by a pool of
+ * worker threads, and written (and indexed) in order by the writing thread.
  */
 public class CRAMContainerStreamWriter {
+    private static final ExecutorService encodeThreadpool = ThreadPoolUtil.newDaemonCachedThreadPool("CRAMContainerStreamWriter-encode-");
+
     private final OutputStream outputStream;
     private final String outputStreamIdentifier;
     private final SAMFileHeader samFileHeader;
     private final ContainerFactory containerFactory;
     private final CRAMIndexer cramIndexer;
+    private final CRAMVersion cramVersion;
 
     private long streamOffset = 0;
 
+    // Parallel mode only: the maximum number of containers in flight, the containers being encoded
+    // in stream order, and tasks (with their compression header factories) that are no longer in use.
+    private final int encodeThreads;
+    private final ArrayDeque<ContainerEncodeTask> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<ContainerEncodeTask> freeTasks = new ArrayDeque<>();
+
     /**
      * Create a CRAMContainerStreamWriter for writing SAM records into a series of CRAM
      * containers on output stream, with an optional index.
@@ -88,7 +107,12 @@ public class CRAMContainerStreamWriter {
         this.outputStream = outputStream;
         this.cramIndexer = indexer;
         this.outputStreamIdentifier = outputIdentifier;
+        this.cramVersion = encodingStrategy.getCRAMVersion();
         this.containerFactory = new ContainerFactory(samFileHeader, encodingStrategy, referenceSource);
+        // a custom encoding map is shared by all compression header factories, so can't be used concurrently
+        this.encodeThreads = encodingStrategy.getCustomCompressionHeaderEncodingMap() == null ?
+                Defaults.CRAM_ENCODE_THREADS :
+                0;
     }
 
     /**
@@ -96,9 +120,16 @@ public class CRAMContainerStreamWriter {
      * @param alignment must not be null
      */
     public void writeAlignment(final SAMRecord alignment) {
-        final Container container = containerFactory.getNextContainer(alignment, streamOffset);
-        if (container != null) {
-            writeContainer(container);
+        if (encodeThreads > 0) {
+            final ContainerFactory.ContainerStagingEntry containerStagingEntry = containerFactory.getNextContainerStagingEntry(alignment);
+            if (containerStagingEntry != null) {
+                submitContainer(containerStagingEntry);
+            }
+        } else {
+            final Container container = containerFactory.getNextContainer(alignment, streamOffset);
+            if (container != null) {
+                writeContainer(container);
+            }
         }
     }
 
@@ -107,7 +138,7 @@ public class CRAMContainerStreamWriter {
      */
     // TODO: retained for backward compatibility for disq in order to run GATK tests (remove before merging this branch)
     public void writeHeader(final SAMFileHeader requestedSAMFileHeader) {
-        final CramHeader cramHeader = new CramHeader(CramVersions.DEFAULT_CRAM_VERSION, outputStreamIdentifier);
+        final CramHeader cramHeader = new CramHeader(cramVersion, outputStreamIdentifier);
         streamOffset = CramIO.writeCramHeader(cramHeader, outputStream);
         streamOffset += Container.writeSAMFileHeaderContainer(cramHeader.getCRAMVersion(), requestedSAMFileHeader, outputStream);
     }
@@ -126,12 +157,22 @@ public class CRAMContainerStreamWriter {
      */
     public void finish(final boolean writeEOFContainer) {
         try {
-            final Container container = containerFactory.getFinalContainer(streamOffset);
-            if (container != null) {
-                writeContainer(container);
+            if (encodeThreads > 0) {
+                final ContainerFactory.ContainerStagingEntry containerStagingEntry = containerFactory.getFinalContainerStagingEntry();
+                if (containerStagingEntry != null) {
+                    submitContainer(containerStagingEntry);
+                }
+                while (!inFlight.isEmpty()) {
+                    writeEncodedContainer();
+                }
+            } else {
+                final Container container = containerFactory.getFinalContainer(streamOffset);
+                if (container != null) {
+                    writeContainer(container);
+                }
             }
             if (writeEOFContainer) {
-                CramIO.writeCramEOF(CramVersions.DEFAULT_CRAM_VERSION, outputStream);
+                CramIO.writeCramEOF(cramVersion, outputStream);
             }
             outputStream.flush();
             if (cramIndexer != null) {
@@ -144,7 +185,7 @@ public class CRAMContainerStreamWriter {
     }
 
     protected void writeContainer(final Container container) {
-        streamOffset += container.write(CramVersions.DEFAULT_CRAM_VERSION, outputStream);
+        streamOffset += container.write(cramVersion, outputStream);
         if (cramIndexer != null) {
             // using silent validation here because the reads have been through validation already or
             // they have been generated somehow through the htsjdk
@@ -152,4 +193,58 @@ public class CRAMContainerStreamWriter {
         }
     }
 
+    /**
+     * Hand a container's records to the encode workers, first writing out containers that have already been
+     * encoded, and waiting for the oldest one if the maximum number of containers are in flight.
+     */
+    private void submitContainer(final ContainerFactory.ContainerStagingEntry containerStagingEntry) {
+        while (!inFlight.isEmpty() && (inFlight.size() >= encodeThreads || inFlight.peek().future.isDone())) {
+            writeEncodedContainer();
+        }
+        final ContainerEncodeTask task = freeTasks.isEmpty() ?
+                new ContainerEncodeTask(containerFactory.createCompressionHeaderFactory()) :
+                freeTasks.pop();
+        task.containerStagingEntry = containerStagingEntry;
+        task.future = encodeThreadpool.submit(task);
+        inFlight.add(task);
+    }
+
+    /**
+     * Wait for the oldest container in flight to be encoded, and write it at the current stream offset.
+     */
+    private void writeEncodedContainer() {
+        final ContainerEncodeTask task = inFlight.remove();
+        final Container container = task.await();
+        container.setContainerByteOffset(streamOffset);
+        writeContainer(container);
+        // the container's compression header refers to the task's encoding map, so don't reuse the
+        // task until the container has been written
+        task.containerStagingEntry = null;
+        task.future = null;
+        freeTasks.push(task);
+    }
+
+    private static class ContainerEncodeTask implements Callable<Container> {
+        private final CompressionHeaderFactory compressionHeaderFactory;
+        private ContainerFactory.ContainerStagingEntry containerStagingEntry;
+        private Future<Container> future;
+
+        private ContainerEncodeTask(final CompressionHeaderFactory compressionHeaderFactory) {
+            this.compressionHeaderFactory = compressionHeaderFactory;
+        }
+
+        @Override
+        public Container call() {
+            // the real offset is set when the container is written
+            return containerStagingEntry.makeContainer(compressionHeaderFactory, 0);
+        }
+
+        /**
+         * Foreground thread blocking operation that waits for this container to be encoded.
+         */
+        private Container await() {
+            return ThreadPoolUtil.await(future, "Interrupted while encoding CRAM container");
+        }
+    }
+
 }
@@ -16,6 +16,7 @@
 package htsjdk.samtools;
 
 import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.cram.CRAMException;
 import htsjdk.samtools.cram.build.CRAMReferenceRegion;
 import htsjdk.samtools.cram.build.CramContainerIterator;
 import htsjdk.samtools.cram.build.CramSpanContainerIterator;
@@ -27,14 +28,21 @@ import htsjdk.samtools.seekablestream.SeekableStream;
 import java.io.Closeable;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.ThreadPoolUtil;
 
 public class CRAMIterator implements SAMRecordIterator, Closeable {
+    private static final ExecutorService decodeThreadpool = ThreadPoolUtil.newDaemonCachedThreadPool("CRAMIterator-decode-");
+
     private final CountingInputStream countingInputStream;
     private final CramContainerIterator containerIterator;
     private final CramHeader cramHeader;
     private final SAMFileHeader samFileHeader;
+    private final CRAMReferenceSource referenceSource;
     private final CRAMReferenceRegion cramReferenceState;
     private final QueryInterval[] queryIntervals;
 
@@ -56,6 +64,23 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
     private long samRecordIndex;
     private Iterator<SAMRecord> samRecordIterator = Collections.EMPTY_LIST.iterator();
 
+    /**
+     * Number of slices to decode concurrently, or 0 if slices are decoded by the thread calling hasNext().
+     * See {@link Defaults#CRAM_DECODE_THREADS}.
+     */
+    private final int decodeThreads = Defaults.CRAM_DECODE_THREADS;
+    /**
+     * Containers that have been read from the stream and whose slices have been handed to the decode workers,
+     * in stream order.
+     */
+    private final ArrayDeque<ContainerDecode> inFlight = new ArrayDeque<>();
+    /**
+     * Slice decode tasks (and their compressor caches and reference regions) that are no longer in use.
+     */
+    private final ArrayDeque<SliceDecodeTask> freeTasks = new ArrayDeque<>();
+    private int slicesInFlight;
+    private boolean endOfContainers;
+
     public CRAMIterator(final InputStream inputStream,
                         final CRAMReferenceSource referenceSource,
                         final ValidationStringency validationStringency) {
@@ -64,6 +89,7 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
 
         this.validationStringency = validationStringency;
         samFileHeader = containerIterator.getSamFileHeader();
+        this.referenceSource = referenceSource;
         cramReferenceState = new CRAMReferenceRegion(referenceSource, samFileHeader);
         cramHeader = containerIterator.getCramHeader();
         firstContainerOffset = this.countingInputStream.getCount();
@@ -81,6 +107,7 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
 
         this.validationStringency = validationStringency;
         samFileHeader = containerIterator.getSamFileHeader();
+        this.referenceSource = referenceSource;
         cramReferenceState = new CRAMReferenceRegion(referenceSource, samFileHeader);
         cramHeader = containerIterator.getCramHeader();
         firstContainerOffset = this.countingInputStream.getCount();
@@ -89,23 +116,18 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
     }
 
     private BAMIteratorFilter.FilteringIteratorState nextContainer() {
-        if (containerIterator != null) {
-            if (!containerIterator.hasNext()) {
-                samRecords.clear();
-                return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
-            }
-            container = containerIterator.next();
-            if (container.isEOF()) {
-                samRecords.clear();
-                return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
-            }
-        } else {
-            final long containerByteOffset = countingInputStream.getCount();
-            container = new Container(cramHeader.getCRAMVersion(), countingInputStream, containerByteOffset);
-            if (container.isEOF()) {
-                samRecords.clear();
-                return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
-            }
+        if (decodeThreads > 0) {
+            return nextDecodedContainer();
+        }
+        final Container nextContainer = readContainer();
+        if (nextContainer == null) {
+            samRecords.clear();
+            return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
+        }
+        container = nextContainer;
+        if (container.isEOF()) {
+            samRecords.clear();
+            return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
         }
 
         if (containerMatchesQuery(container)) {
@@ -121,6 +143,75 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
         }
     }
 
+    /**
+     * @return the next container in the stream (which may be the EOF container), or null if there are no more containers
+     */
+    private Container readContainer() {
+        if (containerIterator != null) {
+            return containerIterator.hasNext() ? containerIterator.next() : null;
+        } else {
+            final long containerByteOffset = countingInputStream.getCount();
+            return new Container(cramHeader.getCRAMVersion(), countingInputStream, containerByteOffset);
+        }
+    }
+
+    /**
+     * Parallel version of {@link #nextContainer()}: waits for the slices of the oldest container in the decode window,
+     * and makes its records current. Containers that don't match the query are never submitted for decoding.
+     */
+    private BAMIteratorFilter.FilteringIteratorState nextDecodedContainer() {
+        fillDecodeWindow();
+        final ContainerDecode containerDecode = inFlight.poll();
+        if (containerDecode == null) {
+            samRecords.clear();
+            return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
+        }
+        container = containerDecode.container;
+        samRecords = containerDecode.await();
+        samRecordIterator = samRecords.iterator();
+        // keep the workers busy while the caller consumes this container
+        fillDecodeWindow();
+        return BAMIteratorFilter.FilteringIteratorState.MATCHES_FILTER;
+    }
+
+    /**
+     * Reads containers and hands their slices to the decode workers until there are at least as many slices
+     * in flight as decode threads, or the end of the stream is reached.
+     */
+    private void fillDecodeWindow() {
+        while (!endOfContainers && (inFlight.isEmpty() || slicesInFlight < decodeThreads)) {
+            final Container nextContainer = readContainer();
+            if (nextContainer == null || nextContainer.isEOF()) {
+                endOfContainers = true;
+            } else if (containerMatchesQuery(nextContainer)) {
+                final ContainerDecode containerDecode = new ContainerDecode(nextContainer);
+                for (final Slice slice : nextContainer.getSlices()) {
+                    final SliceDecodeTask task = freeTasks.isEmpty() ? new SliceDecodeTask() : freeTasks.pop();
+                    task.slice = slice;
+                    task.validationStringency = validationStringency;
+                    task.future = decodeThreadpool.submit(task);
+                    containerDecode.tasks.add(task);
+                }
+                slicesInFlight += containerDecode.tasks.size();
+                inFlight.add(containerDecode);
+            }
+        }
+    }
+
+    /**
+     * Abandons all containers in the decode window.  Tasks that may still be running are not reused.
+     */
+    private void discardDecodeWindow() {
+        for (final ContainerDecode containerDecode : inFlight) {
+            for (final SliceDecodeTask task : containerDecode.tasks) {
+                task.future.cancel(false);
+            }
+        }
+        inFlight.clear();
+        slicesInFlight = 0;
+        endOfContainers = true;
+    }
+
     private boolean containerMatchesQuery(final Container container) {
         if (queryIntervals == null) {
             return true;
@@ -229,6 +320,7 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
 
     @Override
     public void close() {
+        discardDecodeWindow();
         samRecords.clear();
         try {
             if (countingInputStream != null) {
@@ -270,4 +362,58 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
         return samFileHeader;
     }
 
+    /**
+     * The slices of a container that are being decoded by the workers.
+     */
+    private class ContainerDecode {
+        private final Container container;
+        private final List<SliceDecodeTask> tasks = new ArrayList<>();
+
+        private ContainerDecode(final Container container) {
+            this.container = container;
+        }
+
+        /**
+         * Foreground thread blocking operation that waits for all slices of this container to be decoded,
+         * and returns their records in slice order.
+         */
+        private List<SAMRecord> await() {
+            final List<SAMRecord> records = new ArrayList<>(container.getContainerHeader().getNumberOfRecords());
+            for (final SliceDecodeTask task : tasks) {
+                records.addAll(task.await());
+                task.slice = null;
+                task.future = null;
+                freeTasks.push(task);
+                slicesInFlight--;
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Decodes a single slice, using a compressor cache and reference region that are private to the task, since
+     * neither is safe for concurrent use.
+     */
+    private class SliceDecodeTask implements Callable<List<SAMRecord>> {
+        private final CompressorCache taskCompressorCache = new CompressorCache();
+        private final CRAMReferenceRegion taskReferenceRegion = new CRAMReferenceRegion(referenceSource, samFileHeader);
+        private Slice slice;
+        private ValidationStringency validationStringency;
+        private Future<List<SAMRecord>> future;
+
+        @Override
+        public List<SAMRecord> call() {
+            return slice.getSAMRecords(validationStringency, taskReferenceRegion, taskCompressorCache, samFileHeader);
+        }
+
+        private List<SAMRecord> await() {
+            try {
+                return ThreadPoolUtil.awaitInterruptibly(future);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CRAMException("Interrupted while decoding CRAM slice", e);
+            }
+        }
+    }
+
 }
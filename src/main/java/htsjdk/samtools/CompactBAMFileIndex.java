@@ -0,0 +1,503 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable, fully loaded BAI or CSI index.  The whole index is read once and packed into a handful of
+ * primitive arrays (bin numbers, chunk offsets and linear index entries for all references), so queries neither
+ * touch the index file nor allocate index objects, and a single instance can be queried concurrently by any
+ * number of threads.
+ *
+ * Queries return the same spans as {@link CachingBAMFileIndex} (for BAI) and {@link CSIIndex} (for CSI).
+ * {@link #getShared(File)} hands out one instance per index file for the whole process, which is how
+ * {@link SamReaderFactory.Option#SHARED_COMPACT_INDEX} readers of the same BAM avoid each loading their own copy.
+ * {@link #getSizeInBytes()} and {@link #getLoadTimeNanos()} report the footprint and load cost of an instance.
+ */
+public final class CompactBAMFileIndex implements BAMIndex {
+    private static final Log log = Log.getInstance(CompactBAMFileIndex.class);
+
+    private static final int BAI_MIN_SHIFT = 14;
+    private static final int BAI_DEPTH = 6;
+
+    private static final ConcurrentHashMap<String, SharedIndex> sharedIndexes = new ConcurrentHashMap<>();
+
+    private final boolean isCSI;
+    private final int minShift;
+    /** number of levels in the binning scheme, including bin 0 */
+    private final int depth;
+    private final int metaDataBin;
+
+    /** bins of reference i are at [referenceBinStarts[i], referenceBinStarts[i+1]), sorted by bin number */
+    private final int[] referenceBinStarts;
+    private final int[] binNumbers;
+    /** chunks of bin j are at [binChunkStarts[j], binChunkStarts[j+1]) */
+    private final int[] binChunkStarts;
+    /** for CSI, the loffset of each bin; null for BAI */
+    private final long[] binLOffsets;
+    private final long[] chunkBegins;
+    private final long[] chunkEnds;
+
+    /** linear index of reference i is at [referenceLinearStarts[i], referenceLinearStarts[i+1]); empty for CSI */
+    private final int[] referenceLinearStarts;
+    private final long[] linearOffsets;
+
+    /** meta data pseudo-bin chunks of reference i are at [referenceMetaDataStarts[i], referenceMetaDataStarts[i+1]) */
+    private final int[] referenceMetaDataStarts;
+    private final long[] metaDataBegins;
+    private final long[] metaDataEnds;
+
+    private final long startOfLastLinearBin;
+    private final Long noCoordinateCount;
+    private final long loadTimeNanos;
+
+    private CompactBAMFileIndex(final ByteBuffer buffer, final String source, final long loadStartNanos) {
+        final byte[] magic = new byte[4];
+        buffer.get(magic);
+        if (Arrays.equals(magic, BAMFileConstants.BAI_INDEX_MAGIC)) {
+            isCSI = false;
+            minShift = BAI_MIN_SHIFT;
+            depth = BAI_DEPTH;
+        } else if (Arrays.equals(magic, BAMFileConstants.CSI_INDEX_MAGIC)) {
+            isCSI = true;
+            minShift = buffer.getInt();
+            depth = buffer.getInt() + 1; // HTSlib doesn't count the first level (bin 0)
+            skip(buffer, buffer.getInt(), source); // aux data
+        } else {
+            throw new RuntimeIOException("Invalid file header in BAM index " + source + ": " + new String(magic));
+        }
+        metaDataBin = getFirstBinInLevel(depth) + 1;
+
+        final int numReferences = buffer.getInt();
+        referenceBinStarts = new int[numReferences + 1];
+        referenceLinearStarts = new int[numReferences + 1];
+        referenceMetaDataStarts = new int[numReferences + 1];
+
+        // first pass: count everything so that the arrays can be allocated at their final size
+        final int referencesStart = buffer.position();
+        int totalBins = 0;
+        int totalChunks = 0;
+        int totalLinear = 0;
+        int totalMetaData = 0;
+        for (int reference = 0; reference < numReferences; reference++) {
+            final int numBins = buffer.getInt();
+            for (int i = 0; i < numBins; i++) {
+                final int bin = buffer.getInt();
+                if (isCSI) {
+                    buffer.getLong(); // loffset
+                }
+                final int numChunks = buffer.getInt();
+                skip(buffer, 16 * numChunks, source);
+                if (bin == metaDataBin) {
+                    totalMetaData += numChunks;
+                } else {
+                    totalBins++;
+                    totalChunks += numChunks;
+                }
+            }
+            if (!isCSI) {
+                final int numLinear = buffer.getInt();
+                skip(buffer, 8 * numLinear, source);
+                totalLinear += numLinear;
+            }
+        }
+
+        binNumbers = new int[totalBins];
+        binChunkStarts = new int[totalBins + 1];
+        binLOffsets = isCSI ? new long[totalBins] : null;
+        chunkBegins = new long[totalChunks];
+        chunkEnds = new long[totalChunks];
+        linearOffsets = new long[totalLinear];
+        metaDataBegins = new long[totalMetaData];
+        metaDataEnds = new long[totalMetaData];
+
+        // second pass: fill in the arrays, sorting the bins of each reference by bin number
+        buffer.position(referencesStart);
+        int binIndex = 0;
+        int chunkIndex = 0;
+        int linearIndex = 0;
+        int metaDataIndex = 0;
+        long lastLinearOffset = -1L;
+        long[] binOrder = new long[0];
+        for (int reference = 0; reference < numReferences; reference++) {
+            referenceBinStarts[reference] = binIndex;
+            referenceMetaDataStarts[reference] = metaDataIndex;
+            final int numBins = buffer.getInt();
+            if (binOrder.length < numBins) {
+                binOrder = new long[numBins];
+            }
+            int numRegularBins = 0;
+            for (int i = 0; i < numBins; i++) {
+                final int binPosition = buffer.position();
+                final int bin = buffer.getInt();
+                if (isCSI) {
+                    lastLinearOffset = buffer.getLong();
+                }
+                final int numChunks = buffer.getInt();
+                if (bin == metaDataBin) {
+                    for (int c = 0; c < numChunks; c++, metaDataIndex++) {
+                        metaDataBegins[metaDataIndex] = buffer.getLong();
+                        metaDataEnds[metaDataIndex] = buffer.getLong();
+                    }
+                } else {
+                    binOrder[numRegularBins++] = ((long) bin << 32) | binPosition;
+                    skip(buffer, 16 * numChunks, source);
+                }
+            }
+            final int endOfBins = buffer.position();
+            Arrays.sort(binOrder, 0, numRegularBins);
+            for (int i = 0; i < numRegularBins; i++, binIndex++) {
+                buffer.position((int) binOrder[i]);
+                binNumbers[binIndex] = buffer.getInt();
+                if (isCSI) {
+                    binLOffsets[binIndex] = buffer.getLong();
+                }
+                final int numChunks = buffer.getInt();
+                binChunkStarts[binIndex] = chunkIndex;
+                for (int c = 0; c < numChunks; c++, chunkIndex++) {
+                    chunkBegins[chunkIndex] = buffer.getLong();
+                    chunkEnds[chunkIndex] = buffer.getLong();
+                }
+            }
+            buffer.position(endOfBins);
+
+            referenceLinearStarts[reference] = linearIndex;
+            if (!isCSI) {
+                final int numLinear = buffer.getInt();
+                for (int i = 0; i < numLinear; i++, linearIndex++) {
+                    linearOffsets[linearIndex] = buffer.getLong();
+                }
+                if (numLinear > 0) {
+                    lastLinearOffset = linearOffsets[linearIndex - 1];
+                }
+            }
+        }
+        binChunkStarts[totalBins] = chunkIndex;
+        referenceBinStarts[numReferences] = binIndex;
+        referenceLinearStarts[numReferences] = linearIndex;
+        referenceMetaDataStarts[numReferences] = metaDataIndex;
+
+        startOfLastLinearBin = lastLinearOffset;
+        noCoordinateCount = buffer.remaining() >= 8 ? buffer.getLong() : null;
+        loadTimeNanos = System.nanoTime() - loadStartNanos;
+        log.debug("Loaded ", isCSI ? "CSI" : "BAI", " index ", source, ": ", totalBins, " bins, ", totalChunks,
+                " chunks, ", getSizeInBytes(), " bytes in ", loadTimeNanos / 1000000, " ms");
+    }
+
+    /**
+     * Load a BAI or CSI index file.
+     *
+     * @param indexFile the index file
+     * @return a new, fully loaded index
+     */
+    public static CompactBAMFileIndex load(final File indexFile) {
+        final long loadStartNanos = System.nanoTime();
+        try {
+            return load(Files.readAllBytes(indexFile.toPath()), indexFile.getName(), loadStartNanos);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading BAM index " + indexFile, e);
+        }
+    }
+
+    /**
+     * Load a BAI or CSI index from a seekable stream, which is read from the beginning to the end but not closed.
+     *
+     * @param stream the stream to read the index from
+     * @return a new, fully loaded index
+     */
+    public static CompactBAMFileIndex load(final SeekableStream stream) {
+        try {
+            stream.seek(0);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading BAM index " + stream.getSource(), e);
+        }
+        return load(stream, stream.getSource());
+    }
+
+    /**
+     * Load a BAI or CSI index from a stream, which is read to the end but not closed.
+     *
+     * @param stream the stream to read the index from
+     * @param source a description of the stream, for error messages
+     * @return a new, fully loaded index
+     */
+    public static CompactBAMFileIndex load(final InputStream stream, final String source) {
+        final long loadStartNanos = System.nanoTime();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IOUtil.copyStream(stream, bytes);
+        return load(bytes.toByteArray(), source, loadStartNanos);
+    }
+
+    private static CompactBAMFileIndex load(final byte[] bytes, final String source, final long loadStartNanos) {
+        byte[] data = bytes;
+        // CSI indexes are block compressed
+        if (data.length >= 2 && data[0] == BlockCompressedStreamConstants.GZIP_ID1 &&
+                (data[1] & 0xFF) == BlockCompressedStreamConstants.GZIP_ID2) {
+            final ByteArrayOutputStream inflated = new ByteArrayOutputStream(data.length * 4);
+            try (final BlockCompressedInputStream in = new BlockCompressedInputStream(new ByteArrayInputStream(data))) {
+                IOUtil.copyStream(in, inflated);
+            } catch (final IOException e) {
+                throw new RuntimeIOException("Error reading BAM index " + source, e);
+            }
+            data = inflated.toByteArray();
+        }
+        try {
+            return new CompactBAMFileIndex(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN), source, loadStartNanos);
+        } catch (final BufferUnderflowException e) {
+            throw new SAMFormatException("Premature end of BAM index " + source);
+        }
+    }
+
+    /**
+     * Get the index for the given file, loading it if it is not already held by this process.  The returned
+     * instance is shared by all callers, and is reloaded if the file has been modified since it was loaded.
+     * Indexes that are no longer in use may be dropped if memory runs short.
+     *
+     * @param indexFile the index file
+     * @return the shared index for {@code indexFile}
+     */
+    public static CompactBAMFileIndex getShared(final File indexFile) {
+        final File absoluteFile = indexFile.getAbsoluteFile();
+        final SharedIndex shared = sharedIndexes.computeIfAbsent(absoluteFile.getPath(), path -> new SharedIndex());
+        synchronized (shared) {
+            CompactBAMFileIndex index = shared.index == null ? null : shared.index.get();
+            final long length = absoluteFile.length();
+            final long lastModified = absoluteFile.lastModified();
+            if (index == null || shared.length != length || shared.lastModified != lastModified) {
+                index = load(absoluteFile);
+                shared.index = new SoftReference<>(index);
+                shared.length = length;
+                shared.lastModified = lastModified;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Drop all indexes held for {@link #getShared(File)}.  Instances already handed out remain usable.
+     */
+    public static void clearSharedIndexes() {
+        sharedIndexes.clear();
+    }
+
+    @Override
+    public BAMFileSpan getSpanOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        if (referenceIndex < 0 || referenceIndex >= getNumberOfReferences()) {
+            return null;
+        }
+        final long maxPos = (1L << (minShift + 3 * (depth - 1))) - 1;
+        final long start = (startPos <= 0) ? 0 : ((long) startPos - 1L) & maxPos;
+        final long end = (endPos <= 0) ? maxPos : ((long) endPos - 1L) & maxPos;
+        if (start > end) {
+            return null;
+        }
+
+        final long minimumOffset = isCSI ? getMinimumOffsetCSI(referenceIndex, startPos) : getMinimumOffsetBAI(referenceIndex, startPos);
+        final int firstBin = referenceBinStarts[referenceIndex];
+        final int lastBin = referenceBinStarts[referenceIndex + 1];
+        final List<Chunk> chunkList = new ArrayList<>();
+        boolean anyChunks = false;
+        for (int level = 0; level < depth; level++) {
+            final int shift = minShift + 3 * (depth - 1 - level);
+            final int firstBinInLevel = getFirstBinInLevel(level);
+            final int levelEnd = firstBinInLevel + (int) (end >> shift);
+            for (int bin = lowerBound(firstBin, lastBin, firstBinInLevel + (int) (start >> shift));
+                 bin < lastBin && binNumbers[bin] <= levelEnd; bin++) {
+                for (int chunk = binChunkStarts[bin]; chunk < binChunkStarts[bin + 1]; chunk++) {
+                    anyChunks = true;
+                    // chunks that end before the linear index minimum would be dropped when optimizing anyway
+                    if (chunkEnds[chunk] > minimumOffset) {
+                        chunkList.add(new Chunk(chunkBegins[chunk], chunkEnds[chunk]));
+                    }
+                }
+            }
+        }
+        if (!anyChunks && !isCSI) {
+            return null;
+        }
+        return new BAMFileSpan(Chunk.optimizeChunkList(chunkList, minimumOffset));
+    }
+
+    private long getMinimumOffsetBAI(final int referenceIndex, final int startPos) {
+        final int start = (startPos <= 0) ? 0 : startPos - 1;
+        final int linearIndex = referenceLinearStarts[referenceIndex] + (start >> LinearIndex.BAM_LIDX_SHIFT);
+        return linearIndex < referenceLinearStarts[referenceIndex + 1] ? linearOffsets[linearIndex] : 0L;
+    }
+
+    /**
+     * The loffset of the lowest level bin containing startPos or, if that bin is not in the index, of the closest
+     * preceding sibling, or else of the closest ancestor, as in {@link CSIIndex}.
+     */
+    private long getMinimumOffsetCSI(final int referenceIndex, final int startPos) {
+        final int firstBin = referenceBinStarts[referenceIndex];
+        final int lastBin = referenceBinStarts[referenceIndex + 1];
+        int binNumber = getFirstBinInLevel(depth - 1) + (startPos - 1 >> minShift);
+        int bin;
+        do {
+            bin = find(firstBin, lastBin, binNumber);
+            if (bin >= 0) {
+                return binLOffsets[bin];
+            }
+            final int parentBinNumber = binNumber == 0 ? 0 : (binNumber - 1) >> 3;
+            if (binNumber > (parentBinNumber << 3) + 1) {
+                binNumber--;
+            } else {
+                binNumber = parentBinNumber;
+            }
+        } while (binNumber != 0);
+        bin = find(firstBin, lastBin, 0);
+        return bin >= 0 ? binLOffsets[bin] : 0L;
+    }
+
+    /** @return the first position in [from, to) whose bin number is at least binNumber */
+    private int lowerBound(int from, int to, final int binNumber) {
+        while (from < to) {
+            final int mid = (from + to) >>> 1;
+            if (binNumbers[mid] < binNumber) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /** @return the position of binNumber in [from, to), or -1 if it is not there */
+    private int find(final int from, final int to, final int binNumber) {
+        final int bin = lowerBound(from, to, binNumber);
+        return bin < to && binNumbers[bin] == binNumber ? bin : -1;
+    }
+
+    private static int getFirstBinInLevel(final int level) {
+        return ((1 << 3 * level) - 1) / 7;
+    }
+
+    private static void skip(final ByteBuffer buffer, final int length, final String source) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new SAMFormatException("Premature end of BAM index " + source);
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * @return the start offsets of all chunks of the given reference (excluding meta data), in bin order
+     */
+    long[] getChunkStarts(final int referenceIndex) {
+        if (referenceIndex < 0 || referenceIndex >= getNumberOfReferences()) {
+            return new long[0];
+        }
+        final int from = binChunkStarts[referenceBinStarts[referenceIndex]];
+        final int to = binChunkStarts[referenceBinStarts[referenceIndex + 1]];
+        return Arrays.copyOfRange(chunkBegins, from, to);
+    }
+
+    @Override
+    public long getStartOfLastLinearBin() {
+        return startOfLastLinearBin;
+    }
+
+    @Override
+    public BAMIndexMetaData getMetaData(final int reference) {
+        if (reference < 0 || reference >= getNumberOfReferences()) {
+            return null;
+        }
+        final List<Chunk> metaDataChunks = new ArrayList<>(2);
+        for (int i = referenceMetaDataStarts[reference]; i < referenceMetaDataStarts[reference + 1]; i++) {
+            metaDataChunks.add(new Chunk(metaDataBegins[i], metaDataEnds[i]));
+        }
+        return new BAMIndexMetaData(metaDataChunks);
+    }
+
+    /**
+     * @return the count of records unassociated with any reference, or null if the index does not record it
+     */
+    public Long getNoCoordinateCount() {
+        return noCoordinateCount;
+    }
+
+    /**
+     * @return the number of references in the index
+     */
+    public int getNumberOfReferences() {
+        return referenceBinStarts.length - 1;
+    }
+
+    /**
+     * @return true if this index was loaded from a CSI file, false if from a BAI file
+     */
+    public boolean isCSI() {
+        return isCSI;
+    }
+
+    /**
+     * @return the approximate heap footprint of the index data, in bytes
+     */
+    public long getSizeInBytes() {
+        return 4L * (referenceBinStarts.length + binNumbers.length + binChunkStarts.length +
+                referenceLinearStarts.length + referenceMetaDataStarts.length) +
+                8L * ((binLOffsets == null ? 0 : binLOffsets.length) + chunkBegins.length + chunkEnds.length +
+                linearOffsets.length + metaDataBegins.length + metaDataEnds.length);
+    }
+
+    /**
+     * @return the time it took to read and pack the index, in nanoseconds
+     */
+    public long getLoadTimeNanos() {
+        return loadTimeNanos;
+    }
+
+    /**
+     * Does nothing: the index holds no resources other than memory, and may be shared with other readers.
+     */
+    @Override
+    public void close() {
+    }
+
+    private static class SharedIndex {
+        private SoftReference<CompactBAMFileIndex> index;
+        private long length;
+        private long lastModified;
+    }
+}
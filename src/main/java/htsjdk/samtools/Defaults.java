@@ -1,6 +1,7 @@
 package htsjdk.samtools;
 
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.TempStreamFactory;
 
 import java.io.File;
 import java.util.Collections;
@@ -28,6 +29,13 @@ public class Defaults {
      */
     public static final boolean USE_ASYNC_IO_READ_FOR_SAMTOOLS;
 
+    /**
+     * Number of blocks to inflate concurrently when asynchronous read I/O is used for BAM files, and when
+     * scanning tabix-indexed files.  0 means that the single-block read-ahead of asynchronous I/O is used, and that
+     * tabix-indexed files are inflated synchronously.  Default = 0.
+     */
+    public static final int BGZF_INFLATE_THREADS;
+
     /** Should asynchronous write I/O be used where supported by the samtools package (one thread per file).
      *  Default = false.
      */
@@ -41,6 +49,18 @@ public class Defaults {
     /** Compression level to be used for writing BAM and other block-compressed outputs.  Default = 5. */
     public static final int COMPRESSION_LEVEL;
 
+    /**
+     * Number of worker threads used to deflate blocks when writing BAM and other block-compressed outputs.
+     * 0 means that blocks are deflated synchronously by the writing thread.  Default = 0.
+     */
+    public static final int BGZF_DEFLATE_THREADS;
+
+    /**
+     * Number of worker threads used to encode records when writing BAM files.  0 means that records are encoded
+     * synchronously by the writing thread.  Default = 0.
+     */
+    public static final int BAM_ENCODE_THREADS;
+
     /** Buffer size, in bytes, used whenever reading/writing files or streams.  Default = 128k. */
     public static final int BUFFER_SIZE;
 
@@ -86,6 +106,73 @@ public class Defaults {
      */
     public static final boolean USE_CRAM_REF_DOWNLOAD;
 
+    /**
+     * Number of CRAM slices to decode concurrently when iterating over CRAM files.  0 means that slices are
+     * decoded synchronously by the reading thread.  When enabled, the CRAM reference source must be safe for
+     * concurrent use.  Default = 0.
+     */
+    public static final int CRAM_DECODE_THREADS;
+
+    /**
+     * Number of CRAM containers to encode concurrently when writing CRAM files.  0 means that containers are
+     * encoded synchronously by the writing thread.  Ignored when a custom compression header encoding map is used.
+     * Default = 0.
+     */
+    public static final int CRAM_ENCODE_THREADS;
+
+    /**
+     * Size, in megabytes, of a reference cache shared by all CRAM reference sources that are not given their own
+     * cache.  0 means that each reference source keeps reference sequences only as long as they are in use
+     * elsewhere.  Default = 0.
+     */
+    public static final int CRAM_REFERENCE_CACHE_SIZE_MB;
+
+    /**
+     * Should indexed, uncompressed fasta files on the default file system be memory-mapped when opened through
+     * {@link htsjdk.samtools.reference.ReferenceSequenceFileFactory}?  Default = false.
+     */
+    public static final boolean USE_MEMORY_MAPPED_FASTA;
+
+    /**
+     * Number of background threads {@link htsjdk.samtools.util.SortingCollection} uses to sort and spill full
+     * buffers of records to disk, and to merge temporary files, while the producer keeps adding records.
+     * 0 = spill synchronously on the calling thread.  Default = 0.
+     */
+    public static final int SORTING_COLLECTION_THREADS;
+
+    /**
+     * Maximum number of temporary files a {@link htsjdk.samtools.util.SortingCollection} merges at once.  When more
+     * files than this have been spilled, they are merged into larger intermediate files before iteration, which bounds
+     * the number of open file handles.  0 = no limit.  Default = 0.
+     */
+    public static final int SORTING_COLLECTION_MAX_FILES_TO_MERGE;
+
+    /**
+     * How temporary files written by {@link htsjdk.samtools.util.SortingCollection} and
+     * {@link htsjdk.samtools.util.DiskBackedQueue} are compressed: SNAPPY (if available), DEFLATE or NONE.
+     * Default = SNAPPY.
+     */
+    public static final TempStreamFactory.Compression TEMP_FILE_COMPRESSION;
+
+    /**
+     * Deflate level used when {@link #TEMP_FILE_COMPRESSION} is DEFLATE.  Default = 1.
+     */
+    public static final int TEMP_FILE_COMPRESSION_LEVEL;
+
+    /**
+     * Number of threads {@link htsjdk.variant.vcf.VCFFileReader#iterator()} uses to decode VCF text concurrently.
+     * The file is read in line-aligned chunks that are decoded by worker threads, and records are still returned in
+     * file order.  0 means that records are decoded by the reading thread.  Default = 0.
+     */
+    public static final int VCF_DECODE_THREADS;
+
+    /**
+     * Should the VCF and BCF codecs store decoded genotypes in primitive columns, creating Genotype objects only when
+     * they are accessed, to save memory for sites with many samples?  Default = false.
+     * @see htsjdk.variant.variantcontext.ColumnarGenotypesContext
+     */
+    public static final boolean COLUMNAR_GENOTYPES;
+
     /**
      * A mask (pattern) to use when building EBI reference service URL for a
      * given MD5 checksum. Must contain one and only one string placeholder.
@@ -116,9 +203,12 @@ public class Defaults {
         CREATE_INDEX = getBooleanProperty("create_index", false);
         CREATE_MD5 = getBooleanProperty("create_md5", false);
         USE_ASYNC_IO_READ_FOR_SAMTOOLS = getBooleanProperty("use_async_io_read_samtools", false);
+        BGZF_INFLATE_THREADS = getIntProperty("bgzf_inflate_threads", 0);
         USE_ASYNC_IO_WRITE_FOR_SAMTOOLS = getBooleanProperty("use_async_io_write_samtools", false);
         USE_ASYNC_IO_WRITE_FOR_TRIBBLE = getBooleanProperty("use_async_io_write_tribble", false);
         COMPRESSION_LEVEL = getIntProperty("compression_level", 5);
+        BGZF_DEFLATE_THREADS = getIntProperty("bgzf_deflate_threads", 0);
+        BAM_ENCODE_THREADS = getIntProperty("bam_encode_threads", 0);
         DEFAULT_SAM_EXTENSION = getStringProperty("default_sam_type", "bam");
         DEFAULT_VCF_EXTENSION = getStringProperty("default_vcf_type", "vcf");
         BUFFER_SIZE = getIntProperty("buffer_size", 1024 * 128);
@@ -129,6 +219,16 @@ public class Defaults {
         }
         REFERENCE_FASTA = getFileProperty("reference_fasta", null);
         USE_CRAM_REF_DOWNLOAD = getBooleanProperty("use_cram_ref_download", false);
+        CRAM_DECODE_THREADS = getIntProperty("cram_decode_threads", 0);
+        CRAM_ENCODE_THREADS = getIntProperty("cram_encode_threads", 0);
+        CRAM_REFERENCE_CACHE_SIZE_MB = getIntProperty("cram_reference_cache_size_mb", 0);
+        USE_MEMORY_MAPPED_FASTA = getBooleanProperty("use_memory_mapped_fasta", false);
+        SORTING_COLLECTION_THREADS = getIntProperty("sorting_collection_threads", 0);
+        SORTING_COLLECTION_MAX_FILES_TO_MERGE = getIntProperty("sorting_collection_max_files_to_merge", 0);
+        TEMP_FILE_COMPRESSION = TempStreamFactory.Compression.valueOf(getStringProperty("temp_file_compression", TempStreamFactory.Compression.SNAPPY.name()).toUpperCase());
+        TEMP_FILE_COMPRESSION_LEVEL = getIntProperty("temp_file_compression_level", 1);
+        VCF_DECODE_THREADS = getIntProperty("vcf_decode_threads", 0);
+        COLUMNAR_GENOTYPES = getBooleanProperty("columnar_genotypes", false);
         EBI_REFERENCE_SERVICE_URL_MASK = "https://www.ebi.ac.uk/ena/cram/md5/%s";
         CUSTOM_READER_FACTORY = getStringProperty("custom_reader", "");
         SAM_FLAG_FIELD_FORMAT = SamFlagField.valueOf(getStringProperty("sam_flag_field_format", SamFlagField.DECIMAL.name()));
@@ -146,13 +246,26 @@ public class Defaults {
         result.put("CREATE_INDEX", CREATE_INDEX);
         result.put("CREATE_MD5", CREATE_MD5);
         result.put("USE_ASYNC_IO_READ_FOR_SAMTOOLS", USE_ASYNC_IO_READ_FOR_SAMTOOLS);
+        result.put("BGZF_INFLATE_THREADS", BGZF_INFLATE_THREADS);
         result.put("USE_ASYNC_IO_WRITE_FOR_SAMTOOLS", USE_ASYNC_IO_WRITE_FOR_SAMTOOLS);
         result.put("USE_ASYNC_IO_WRITE_FOR_TRIBBLE", USE_ASYNC_IO_WRITE_FOR_TRIBBLE);
         result.put("COMPRESSION_LEVEL", COMPRESSION_LEVEL);
+        result.put("BGZF_DEFLATE_THREADS", BGZF_DEFLATE_THREADS);
+        result.put("BAM_ENCODE_THREADS", BAM_ENCODE_THREADS);
         result.put("BUFFER_SIZE", BUFFER_SIZE);
         result.put("NON_ZERO_BUFFER_SIZE", NON_ZERO_BUFFER_SIZE);
         result.put("REFERENCE_FASTA", REFERENCE_FASTA);
         result.put("USE_CRAM_REF_DOWNLOAD", USE_CRAM_REF_DOWNLOAD);
+        result.put("CRAM_DECODE_THREADS", CRAM_DECODE_THREADS);
+        result.put("CRAM_ENCODE_THREADS", CRAM_ENCODE_THREADS);
+        result.put("CRAM_REFERENCE_CACHE_SIZE_MB", CRAM_REFERENCE_CACHE_SIZE_MB);
+        result.put("USE_MEMORY_MAPPED_FASTA", USE_MEMORY_MAPPED_FASTA);
+        result.put("SORTING_COLLECTION_THREADS", SORTING_COLLECTION_THREADS);
+        result.put("SORTING_COLLECTION_MAX_FILES_TO_MERGE", SORTING_COLLECTION_MAX_FILES_TO_MERGE);
+        result.put("TEMP_FILE_COMPRESSION", TEMP_FILE_COMPRESSION);
+        result.put("TEMP_FILE_COMPRESSION_LEVEL", TEMP_FILE_COMPRESSION_LEVEL);
+        result.put("VCF_DECODE_THREADS", VCF_DECODE_THREADS);
+        result.put("COLUMNAR_GENOTYPES", COLUMNAR_GENOTYPES);
         result.put("EBI_REFERENCE_SERVICE_URL_MASK", EBI_REFERENCE_SERVICE_URL_MASK);
         result.put("CUSTOM_READER_FACTORY", CUSTOM_READER_FACTORY);
         result.put("SAM_FLAG_FIELD_FORMAT", SAM_FLAG_FIELD_FORMAT);
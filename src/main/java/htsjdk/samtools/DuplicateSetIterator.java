@@ -91,7 +91,7 @@ public class DuplicateSetIterator implements CloseableIterator<DuplicateSet> {
             final int maxRecordsInRam = SAMFileWriterImpl.getDefaultMaxRecordsInRam();
             final File tmpDir = new File(System.getProperty("java.io.tmpdir"));
             final SortingCollection<SAMRecord> alignmentSorter = SortingCollection.newInstance(SAMRecord.class,
-                    new BAMRecordCodec(header), this.comparator,
+                    new BAMRecordCodec(header, DefaultSAMRecordFactory.getInstance(), true), this.comparator,
                     maxRecordsInRam, tmpDir);
 
             while (iterator.hasNext()) {
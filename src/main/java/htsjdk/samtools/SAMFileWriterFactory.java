@@ -60,6 +60,8 @@ public class SAMFileWriterFactory implements Cloneable {
     private SamFlagField samFlagFieldOutput = SamFlagField.NONE;
     private Integer maxRecordsInRam = null;
     private DeflaterFactory deflaterFactory = BlockCompressedOutputStream.getDefaultDeflaterFactory();
+    private int deflateThreads = BlockCompressedOutputStream.getDefaultDeflateThreads();
+    private int encodeThreads = Defaults.BAM_ENCODE_THREADS;
 
     /** simple constructor */
     public SAMFileWriterFactory() {
@@ -76,6 +78,8 @@ public class SAMFileWriterFactory implements Cloneable {
         this.tmpDir = other.tmpDir;
         this.compressionLevel = other.compressionLevel;
         this.maxRecordsInRam = other.maxRecordsInRam;
+        this.deflateThreads = other.deflateThreads;
+        this.encodeThreads = other.encodeThreads;
     }
     
     @Override
@@ -127,6 +131,38 @@ public class SAMFileWriterFactory implements Cloneable {
     public int getCompressionLevel() {
         return compressionLevel;
     }
+
+    /**
+     * Sets the number of worker threads used to deflate the blocks of BAM files written by this factory,
+     * or 0 to deflate them on the writing thread.
+     * Default value: [[htsjdk.samtools.Defaults#BGZF_DEFLATE_THREADS]]
+     */
+    public SAMFileWriterFactory setDeflateThreads(final int deflateThreads) {
+        if (deflateThreads < 0) throw new IllegalArgumentException("Invalid number of deflate threads: " + deflateThreads);
+        this.deflateThreads = deflateThreads;
+        return this;
+    }
+
+    public int getDeflateThreads() {
+        return deflateThreads;
+    }
+
+    /**
+     * Sets the number of worker threads used to encode the records of BAM files written by this factory,
+     * or 0 to encode them on the writing thread.  When non-zero, BAM writers are pipelined: records are encoded,
+     * block compressed and indexed by separate stages, see {@link BAMFileWriter}.  Records are then encoded after
+     * {@link SAMFileWriter#addAlignment(SAMRecord)} returns, so they must not be modified or reused once added.
+     * Default value: [[htsjdk.samtools.Defaults#BAM_ENCODE_THREADS]]
+     */
+    public SAMFileWriterFactory setEncodeThreads(final int encodeThreads) {
+        if (encodeThreads < 0) throw new IllegalArgumentException("Invalid number of encode threads: " + encodeThreads);
+        this.encodeThreads = encodeThreads;
+        return this;
+    }
+
+    public int getEncodeThreads() {
+        return encodeThreads;
+    }
     
     /**
      * Sets the default for subsequent SAMFileWriterFactories
@@ -293,7 +329,8 @@ public class SAMFileWriterFactory implements Cloneable {
             }
             OutputStream os = IOUtil.maybeBufferOutputStream(Files.newOutputStream(outputPath), bufferSize);
             if (createMd5File) os = new Md5CalculatingOutputStream(os, IOUtil.addExtension(outputPath,".md5"));
-            final BAMFileWriter ret = new BAMFileWriter(os, outputPath.toUri().toString(), compressionLevel, deflaterFactory);
+            final BAMFileWriter ret = new BAMFileWriter(os, outputPath.toUri().toString(), compressionLevel, deflaterFactory,
+                    deflateThreads, encodeThreads);
             final boolean createIndex = this.createIndex && IOUtil.isRegularPath(outputPath);
             if (this.createIndex && !createIndex) {
                 log.warn("Cannot create index for BAM because output file is not a regular file: " + outputPath.toUri());
@@ -390,7 +427,8 @@ public class SAMFileWriterFactory implements Cloneable {
      */
 
     public SAMFileWriter makeBAMWriter(final SAMFileHeader header, final boolean presorted, final OutputStream stream) {
-        return initWriter(header, presorted, new BAMFileWriter(stream, (File)null, this.getCompressionLevel(), this.deflaterFactory));
+        return initWriter(header, presorted, new BAMFileWriter(stream, (String)null, this.getCompressionLevel(), this.deflaterFactory,
+                this.deflateThreads, this.encodeThreads));
     }
 
     /**
@@ -692,7 +730,7 @@ public class SAMFileWriterFactory implements Cloneable {
         return "SAMFileWriterFactory [createIndex=" + createIndex + ", createMd5File=" + createMd5File + ", useAsyncIo="
                 + useAsyncIo + ", asyncOutputBufferSize=" + asyncOutputBufferSize + ", bufferSize=" + bufferSize
                 + ", tmpDir=" + tmpDir + ", compressionLevel=" + compressionLevel + ", maxRecordsInRam="
-                + maxRecordsInRam + "]";
+                + maxRecordsInRam + ", deflateThreads=" + deflateThreads + ", encodeThreads=" + encodeThreads + "]";
     }
 
 }
@@ -156,7 +156,7 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
             }
         } else if (!sortOrder.equals(SAMFileHeader.SortOrder.unsorted)) {
             alignmentSorter = SortingCollection.newInstance(SAMRecord.class,
-                    new BAMRecordCodec(header), sortOrder.getComparatorInstance(), maxRecordsInRam, tmpDir);
+                    new BAMRecordCodec(header, DefaultSAMRecordFactory.getInstance(), true), sortOrder.getComparatorInstance(), maxRecordsInRam, tmpDir);
         }
     }
 
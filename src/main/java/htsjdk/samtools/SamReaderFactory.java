@@ -605,6 +605,36 @@ public abstract class SamReaderFactory {
                 logDebugIgnoringOption(reader, this);
             }
 
+        },
+
+        /**
+         * The factory's BAM {@link SamReader}s will load their BAI or CSI index fully into memory as a
+         * {@link CompactBAMFileIndex}, shared by all readers of the same index file in this process.  This suits
+         * many concurrent readers issuing region queries against the same BAM.
+         *
+         * @see SamReader#indexing()
+         * @see htsjdk.samtools.SamReader.Indexing#getIndex()
+         */
+        SHARED_COMPACT_INDEX {
+            @Override
+            void applyTo(final BAMFileReader underlyingReader, final SamReader reader) {
+                underlyingReader.enableSharedCompactIndex(true);
+            }
+
+            @Override
+            void applyTo(final SAMTextReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final CRAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final SRAFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
         };
 
         public static final EnumSet<Option> DEFAULTS = EnumSet.noneOf(Option.class);
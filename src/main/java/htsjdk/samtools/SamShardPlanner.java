@@ -0,0 +1,265 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.ThreadPoolUtil;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Splits an indexed BAM or CRAM file into shards that can be read independently, and processes shards in parallel.
+ *
+ * Each shard is a {@link SAMFileSpan} that can be passed to {@link SamReader.Indexing#iterator(SAMFileSpan)}.
+ * Shards start and end at record boundaries (container boundaries for CRAM), are disjoint, and together cover
+ * every record in the file, including unmapped reads at the end, so each record is returned by exactly one shard.
+ * Shards are returned in file order, so for a coordinate sorted file the concatenation of the records of all
+ * the shards is in coordinate order.  Shard boundaries are chosen so that shards have roughly the same compressed
+ * size, using the record start offsets recorded in an {@link SBIIndex}, or the chunk offsets in the BAI, CSI or
+ * CRAI index of the file.
+ *
+ * <pre>{@code
+ *    List<SAMFileSpan> shards = SamShardPlanner.planShards(reader, 16);
+ *    List<Long> counts = SamShardPlanner.processShards(
+ *            () -> SamReaderFactory.makeDefault().open(path), shards, 4, SamShardPlanner::countRecords);
+ * }</pre>
+ */
+public final class SamShardPlanner {
+    private static final ExecutorService threadpool = ThreadPoolUtil.newDaemonCachedThreadPool("SamShardPlanner-shard-");
+
+    private SamShardPlanner() {
+    }
+
+    /**
+     * Plan shards using the BAI, CSI or CRAI index of the reader.  Shards can be no finer than the index: a BAI or CSI
+     * index records offsets about once per 16kb of reference, and a CRAI index once per slice.
+     *
+     * @param reader    an indexed BAM or CRAM reader
+     * @param numShards the desired number of shards; fewer may be returned if the index does not have enough
+     *                  distinct offsets
+     * @return disjoint shards, in file order
+     */
+    public static List<SAMFileSpan> planShards(final SamReader reader, final int numShards) {
+        validateNumShards(numShards);
+        final boolean isCram = reader.type() == SamReader.Type.CRAM_TYPE;
+        if (!reader.hasIndex() || !(isCram || reader.type() == SamReader.Type.BAM_TYPE || reader.type() == SamReader.Type.BAM_CSI_TYPE)) {
+            throw new IllegalArgumentException("Shards can only be planned for an indexed BAM or CRAM file: " + reader.getResourceDescription());
+        }
+        final BAMIndex index = reader.indexing().getIndex();
+        if (!(index instanceof AbstractBAMFileIndex || index instanceof CompactBAMFileIndex)) {
+            throw new IllegalArgumentException("Unsupported index type for planning shards: " + index.getClass().getSimpleName());
+        }
+
+        // every chunk in the index starts at a record (for CRAM, at a slice of a container)
+        final long firstOffset = ((BAMFileSpan) reader.indexing().getFilePointerSpanningReads()).getFirstOffset();
+        final List<Long> offsets = new ArrayList<>();
+        offsets.add(firstOffset);
+        final int numReferences = reader.getFileHeader().getSequenceDictionary().size();
+        for (int reference = 0; reference < numReferences; reference++) {
+            if (index instanceof CompactBAMFileIndex) {
+                for (final long chunkStart : ((CompactBAMFileIndex) index).getChunkStarts(reference)) {
+                    offsets.add(chunkStart);
+                }
+                continue;
+            }
+            final BAMIndexContent content = ((AbstractBAMFileIndex) index).query(reference, 1, -1);
+            if (content != null) {
+                for (final Chunk chunk : content.getAllChunks()) {
+                    offsets.add(chunk.getChunkStart());
+                }
+            }
+        }
+
+        final long[] splitPoints = new long[offsets.size()];
+        for (int i = 0; i < splitPoints.length; i++) {
+            // CRAM files can only be split at container boundaries
+            splitPoints[i] = isCram ? offsets.get(i) >>> 16 << 16 : offsets.get(i);
+        }
+        return planShards(splitPoints, firstOffset, numShards, isCram);
+    }
+
+    /**
+     * Plan shards for a BAM file using its SBI index, which records the start of every record (or every
+     * granularity'th record), so the shards can be balanced more precisely than with a BAI or CSI index.
+     *
+     * @param sbiIndex  the splitting index of the BAM file
+     * @param numShards the desired number of shards; fewer may be returned if the file is small
+     * @return disjoint shards, in file order
+     */
+    public static List<SAMFileSpan> planShards(final SBIIndex sbiIndex, final int numShards) {
+        validateNumShards(numShards);
+        final long splitSize = Math.max(1, (sbiIndex.dataFileLength() + numShards - 1) / numShards);
+        final List<SAMFileSpan> shards = new ArrayList<>(numShards);
+        for (final Chunk chunk : sbiIndex.split(splitSize)) {
+            shards.add(new BAMFileSpan(chunk));
+        }
+        return shards;
+    }
+
+    private static void validateNumShards(final int numShards) {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("Invalid number of shards: " + numShards);
+        }
+    }
+
+    /**
+     * Choose up to numShards - 1 of the split points, evenly spaced by compressed offset, and make shards between
+     * them.  The last shard is open-ended, so it includes any unmapped reads that are not covered by the index.
+     */
+    private static List<SAMFileSpan> planShards(final long[] splitPoints, final long firstOffset, final int numShards, final boolean isCram) {
+        Arrays.sort(splitPoints);
+        final long firstAddress = BlockCompressedFilePointerUtil.getBlockAddress(firstOffset);
+        final long lastAddress = BlockCompressedFilePointerUtil.getBlockAddress(splitPoints[splitPoints.length - 1]);
+        final List<Long> boundaries = new ArrayList<>(numShards + 1);
+        boundaries.add(firstOffset);
+        int next = 0;
+        for (int shard = 1; shard < numShards; shard++) {
+            final long targetAddress = firstAddress + (lastAddress - firstAddress) * shard / numShards;
+            while (next < splitPoints.length && BlockCompressedFilePointerUtil.getBlockAddress(splitPoints[next]) < targetAddress) {
+                next++;
+            }
+            if (next == splitPoints.length) {
+                break;
+            }
+            if (splitPoints[next] > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(splitPoints[next]);
+            }
+        }
+
+        final List<SAMFileSpan> shards = new ArrayList<>(boundaries.size());
+        for (int i = 0; i < boundaries.size(); i++) {
+            final long end;
+            if (i + 1 < boundaries.size()) {
+                // container iteration includes the container at the end offset, so end just before it
+                end = isCram ? boundaries.get(i + 1) - 1 : boundaries.get(i + 1);
+            } else {
+                end = Long.MAX_VALUE;
+            }
+            shards.add(new BAMFileSpan(new Chunk(boundaries.get(i), end)));
+        }
+        return shards;
+    }
+
+    /**
+     * Process shards on a thread pool, and return the results in shard order.
+     *
+     * @param readerSupplier opens a new reader over the file the shards were planned for; each shard is read
+     *                       with its own reader, which is closed once the shard has been processed
+     * @param shards         shards as returned by {@link #planShards}
+     * @param threads        the maximum number of shards to process concurrently, or 0 to process them one at a time
+     *                       on the calling thread
+     * @param processor      consumes the records of a shard and returns a result
+     * @return the results of processing each shard, in shard order
+     */
+    public static <R> List<R> processShards(final Supplier<SamReader> readerSupplier, final List<SAMFileSpan> shards, final int threads,
+                                            final Function<CloseableIterator<SAMRecord>, R> processor) {
+        final List<R> results = new ArrayList<>(shards.size());
+        processShards(readerSupplier, shards, threads, processor, results::add);
+        return results;
+    }
+
+    /**
+     * Process shards on a thread pool, and hand the results to the consumer in shard order (which is coordinate
+     * order for a coordinate sorted file) on the calling thread.  At most threads shards are in progress, or
+     * completed but waiting to be consumed, at any time.
+     *
+     * @param readerSupplier opens a new reader over the file the shards were planned for; each shard is read
+     *                       with its own reader, which is closed once the shard has been processed
+     * @param shards         shards as returned by {@link #planShards}
+     * @param threads        the maximum number of shards to process concurrently, or 0 to process them one at a time
+     *                       on the calling thread
+     * @param processor      consumes the records of a shard and returns a result
+     * @param consumer       receives the result of each shard, in shard order
+     */
+    public static <R> void processShards(final Supplier<SamReader> readerSupplier, final List<SAMFileSpan> shards, final int threads,
+                                         final Function<CloseableIterator<SAMRecord>, R> processor, final Consumer<? super R> consumer) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        if (threads == 0) {
+            for (final SAMFileSpan shard : shards) {
+                consumer.accept(processShard(readerSupplier, shard, processor));
+            }
+            return;
+        }
+
+        final ArrayDeque<Future<R>> inFlight = new ArrayDeque<>(threads);
+        int next = 0;
+        try {
+            while (next < shards.size() || !inFlight.isEmpty()) {
+                while (next < shards.size() && inFlight.size() < threads) {
+                    final SAMFileSpan shard = shards.get(next++);
+                    inFlight.add(threadpool.submit(() -> processShard(readerSupplier, shard, processor)));
+                }
+                consumer.accept(await(inFlight.remove()));
+            }
+        } finally {
+            for (final Future<R> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static <R> R processShard(final Supplier<SamReader> readerSupplier, final SAMFileSpan shard,
+                                      final Function<CloseableIterator<SAMRecord>, R> processor) {
+        try (final SamReader reader = readerSupplier.get();
+             final SAMRecordIterator iterator = reader.indexing().iterator(shard)) {
+            return processor.apply(iterator);
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    private static <R> R await(final Future<R> future) {
+        try {
+            return ThreadPoolUtil.awaitInterruptibly(future);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAMException("Interrupted while processing shard", e);
+        }
+    }
+
+    /**
+     * A shard processor that counts the records in a shard.
+     */
+    public static long countRecords(final CloseableIterator<SAMRecord> records) {
+        long count = 0;
+        while (records.hasNext()) {
+            records.next();
+            count++;
+        }
+        return count;
+    }
+}
@@ -63,6 +63,12 @@ import java.util.*;
  * remaining reads mapped to the previous sequence, plus some subsequent records are accumulated until
  * MINIMUM_SINGLE_REFERENCE_SLICE_THRESHOLD is hit, and the resulting MULTI_REFERENCE slice will be emitted into
  * it's own container.
+ *
+ * Encoding a Container (creating the compression header, and writing and compressing the slice blocks) is the
+ * expensive part of this process. Callers that want to encode Containers on other threads can instead obtain a
+ * {@link ContainerStagingEntry} for each Container via {@link #getNextContainerStagingEntry} and
+ * {@link #getFinalContainerStagingEntry}, and encode it with a {@link CompressionHeaderFactory} that is private
+ * to the encoding thread (see {@link #createCompressionHeaderFactory()}).
  */
 public final class ContainerFactory {
     private final CRAMEncodingStrategy encodingStrategy;
@@ -101,7 +107,22 @@ public final class ContainerFactory {
      * @return a {@link Container} if the threshold for emitting a {@link Container} has been reached, otherwise null
      */
     public final Container getNextContainer(final SAMRecord samRecord, final long containerByteOffset) {
-        Container container = null;
+        final ContainerStagingEntry containerStagingEntry = getNextContainerStagingEntry(samRecord);
+        return containerStagingEntry == null ?
+                null :
+                containerStagingEntry.makeContainer(compressionHeaderFactory, containerByteOffset);
+    }
+
+    /**
+     * Add a new {@link SAMRecord} object to the factory, obtaining the records for the next {@link Container}
+     * if one is ready. The records are not encoded until {@link ContainerStagingEntry#makeContainer} is called.
+     *
+     * @param samRecord the next SAMRecord to be written
+     * @return a {@link ContainerStagingEntry} if the threshold for emitting a {@link Container} has been reached,
+     * otherwise null
+     */
+    public final ContainerStagingEntry getNextContainerStagingEntry(final SAMRecord samRecord) {
+        ContainerStagingEntry containerStagingEntry = null;
 
         if (samRecord.getHeader() == null) {
             samRecord.setHeaderStrict(samFileHeader);
@@ -122,7 +143,7 @@ public final class ContainerFactory {
                     currentReferenceContextID,
                     nextRecordIndex,
                     sliceFactory.getNumberOfSliceEntries())) {
-                container = makeContainer(containerByteOffset);
+                containerStagingEntry = stageContainer();
             }
             currentReferenceContextID = nextRecordIndex;
         } else {
@@ -130,7 +151,7 @@ public final class ContainerFactory {
         }
 
         sliceSAMRecords.add(samRecord);
-        return container;
+        return containerStagingEntry;
     }
 
     /**
@@ -140,18 +161,41 @@ public final class ContainerFactory {
      * @return a {@link Container} if any record have been accumulated, otherwise null
      */
     public Container getFinalContainer(final long containerByteOffset) {
+        final ContainerStagingEntry containerStagingEntry = getFinalContainerStagingEntry();
+        return containerStagingEntry == null ?
+                null :
+                containerStagingEntry.makeContainer(compressionHeaderFactory, containerByteOffset);
+    }
+
+    /**
+     * Obtain the records for a final {@link Container} from any remaining accumulated SAMRecords, if any.
+     *
+     * @return a {@link ContainerStagingEntry} if any records have been accumulated, otherwise null
+     */
+    public ContainerStagingEntry getFinalContainerStagingEntry() {
         // write a final slice, if any, and a final container, if there are any slices
         if (sliceSAMRecords.size() > 0) {
             sliceFactory.createNewSliceEntry(currentReferenceContextID, sliceSAMRecords);
             sliceSAMRecords.clear();
         }
+        ContainerStagingEntry containerStagingEntry = null;
         if (sliceFactory.getNumberOfSliceEntries() != 0) {
-            final Container container = makeContainer(containerByteOffset);
-            currentReferenceContextID = ReferenceContext.UNINITIALIZED_REFERENCE_ID;
-            return container;
+            containerStagingEntry = stageContainer();
         }
         currentReferenceContextID = ReferenceContext.UNINITIALIZED_REFERENCE_ID;
-        return null;
+        return containerStagingEntry;
+    }
+
+    /**
+     * Create a new {@link CompressionHeaderFactory} for encoding {@link ContainerStagingEntry}s from this factory.
+     * {@link CompressionHeaderFactory} objects are not thread-safe, so each encoding thread needs its own. Note that
+     * all of them share the encoding strategy's custom encoding map, if there is one, in which case
+     * containers must not be encoded concurrently.
+     *
+     * @return a new {@link CompressionHeaderFactory} using this factory's encoding strategy
+     */
+    public CompressionHeaderFactory createCompressionHeaderFactory() {
+        return new CompressionHeaderFactory(encodingStrategy);
     }
 
     /**
@@ -192,32 +236,76 @@ public final class ContainerFactory {
     }
 
     /**
-     * Build a Container (and its constituent Slices) from {@link CRAMCompressionRecord}s.
-     * Note that this will always result in a single Container, regardless of how many Slices
-     * are created.  It is up to the caller to divide the records into multiple Containers,
-     * if that is desired.
+     * Remove the accumulated slice entries from the slice factory, and stage them for a single Container.
      *
-     * @param containerByteOffset the Container's byte offset from the start of the stream
-     * @return the container built from the records
+     * @return the staged records for the next container
      */
-    private final Container makeContainer(final long containerByteOffset) {
+    private ContainerStagingEntry stageContainer() {
         ValidationUtils.validateArg(
                 sliceFactory.getNumberOfSliceEntries() != 0,
                 "must have slice entries to create a container");
 
-        // Create the compression header, then convert to slices. The compression header  must
-        // be presented with ALL reads that will be included in the container, no matter how
-        // they may be distributed across slices.
-        final CompressionHeader compressionHeader = compressionHeaderFactory.createCompressionHeader(
-                sliceFactory.getCRAMRecordsForAllSlices(),
-                coordinateSorted);
-        final Container container = new Container(
-                compressionHeader,
-                sliceFactory.createSlices(compressionHeader, containerByteOffset),
-                containerByteOffset,
+        final ContainerStagingEntry containerStagingEntry = new ContainerStagingEntry(
+                sliceFactory.removeSliceEntries(),
+                sliceFactory.getCurrentReferenceBases(),
+                coordinateSorted,
                 globalRecordCounter);
-        globalRecordCounter += container.getContainerHeader().getNumberOfRecords();
-        return container;
+        globalRecordCounter += containerStagingEntry.getNumberOfRecords();
+        return containerStagingEntry;
+    }
+
+    /**
+     * The records for a single Container, which have been accumulated and converted to
+     * {@link CRAMCompressionRecord}s, but not yet encoded. A ContainerStagingEntry no longer depends on the
+     * state of the {@link ContainerFactory} that created it, so it can be encoded on any thread.
+     */
+    public static final class ContainerStagingEntry {
+        private final List<SliceFactory.SliceStagingEntry> sliceStagingEntries;
+        private final byte[] referenceBases;
+        private final boolean coordinateSorted;
+        private final long globalRecordCounter;
+        private final int numberOfRecords;
+
+        private ContainerStagingEntry(
+                final List<SliceFactory.SliceStagingEntry> sliceStagingEntries,
+                final byte[] referenceBases,
+                final boolean coordinateSorted,
+                final long globalRecordCounter) {
+            this.sliceStagingEntries = sliceStagingEntries;
+            this.referenceBases = referenceBases;
+            this.coordinateSorted = coordinateSorted;
+            this.globalRecordCounter = globalRecordCounter;
+            this.numberOfRecords = sliceStagingEntries.stream().mapToInt(e -> e.getRecords().size()).sum();
+        }
+
+        public int getNumberOfRecords() {
+            return numberOfRecords;
+        }
+
+        /**
+         * Build a Container (and its constituent Slices) from the staged {@link CRAMCompressionRecord}s.
+         * Note that this will always result in a single Container, regardless of how many Slices
+         * are created. This should be called at most once, since encoding updates the records.
+         *
+         * @param compressionHeaderFactory the {@link CompressionHeaderFactory} to use, which must not be used
+         *                                 concurrently by any other thread
+         * @param containerByteOffset the Container's byte offset from the start of the stream, if known (see
+         *                            {@link Container#setContainerByteOffset(long)})
+         * @return the container built from the records
+         */
+        public Container makeContainer(final CompressionHeaderFactory compressionHeaderFactory, final long containerByteOffset) {
+            // Create the compression header, then convert to slices. The compression header  must
+            // be presented with ALL reads that will be included in the container, no matter how
+            // they may be distributed across slices.
+            final CompressionHeader compressionHeader = compressionHeaderFactory.createCompressionHeader(
+                    SliceFactory.getCRAMRecordsForAllSlices(sliceStagingEntries),
+                    coordinateSorted);
+            return new Container(
+                    compressionHeader,
+                    SliceFactory.createSlices(sliceStagingEntries, referenceBases, compressionHeader, containerByteOffset),
+                    containerByteOffset,
+                    globalRecordCounter);
+        }
     }
 
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.samtools.cram.CRAMException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Helpers shared by the CRAM 3.1 codecs (rANS Nx16, the adaptive arithmetic coder, fqzcomp and the
+ * name tokeniser): the "uint7" variable length integer encoding, and the STRIPE and PACK transformations
+ * that are common to the rANS Nx16 and arithmetic coder formats.
+ */
+public final class CompressionUtils {
+
+    private CompressionUtils() {}
+
+    /**
+     * Read a "uint7" value: big-endian groups of 7 bits, with the top bit of each byte set on all but the last.
+     * @param buffer the buffer to read from
+     * @return the decoded value
+     */
+    public static int readUint7(final ByteBuffer buffer) {
+        int value = 0;
+        int b;
+        int count = 0;
+        do {
+            if (!buffer.hasRemaining() || ++count > 5) {
+                throw new CRAMException("Invalid or truncated uint7 value in compressed stream");
+            }
+            b = buffer.get() & 0xFF;
+            value = (value << 7) | (b & 0x7F);
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Write a "uint7" value: big-endian groups of 7 bits, with the top bit of each byte set on all but the last.
+     * @param value the (non-negative) value to write
+     * @param out the stream to write to
+     */
+    public static void writeUint7(final int value, final ByteArrayOutputStream out) {
+        if (value < 0) {
+            throw new IllegalArgumentException("uint7 values must be non-negative: " + value);
+        }
+        int shift = 0;
+        for (int v = value >>> 7; v != 0; v >>>= 7) {
+            shift += 7;
+        }
+        for (; shift > 0; shift -= 7) {
+            out.write(((value >>> shift) & 0x7F) | 0x80);
+        }
+        out.write(value & 0x7F);
+    }
+
+    /**
+     * @param data the array to wrap
+     * @return a little-endian {@link ByteBuffer} wrapping {@code data}
+     */
+    public static ByteBuffer wrap(final byte[] data) {
+        return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Return a little-endian view of the next {@code length} bytes of {@code buffer}, and advance {@code buffer}
+     * past them.
+     */
+    public static ByteBuffer slice(final ByteBuffer buffer, final int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new CRAMException(String.format("Compressed sub-stream length %d exceeds the %d bytes available",
+                    length, buffer.remaining()));
+        }
+        final ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    /**
+     * Read {@code length} bytes from {@code buffer} into a new array.
+     */
+    public static byte[] readBytes(final ByteBuffer buffer, final int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new CRAMException(String.format("Attempt to read %d bytes from a compressed stream with %d remaining",
+                    length, buffer.remaining()));
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return the uncompressed length of stripe {@code stripe} of {@code numStripes} for a stream of {@code length} bytes
+     */
+    public static int getStripeLength(final int length, final int numStripes, final int stripe) {
+        return length / numStripes + ((length % numStripes) > stripe ? 1 : 0);
+    }
+
+    /**
+     * Split {@code data} into {@code numStripes} interleaved streams, so that byte {@code i} of stripe {@code j}
+     * is byte {@code i * numStripes + j} of the input.
+     */
+    public static byte[][] stripe(final byte[] data, final int numStripes) {
+        final byte[][] stripes = new byte[numStripes][];
+        for (int j = 0; j < numStripes; j++) {
+            stripes[j] = new byte[getStripeLength(data.length, numStripes, j)];
+        }
+        for (int i = 0; i < data.length; i++) {
+            stripes[i % numStripes][i / numStripes] = data[i];
+        }
+        return stripes;
+    }
+
+    /**
+     * Reverse {@link #stripe(byte[], int)}.
+     */
+    public static byte[] unstripe(final byte[][] stripes, final int length) {
+        final int numStripes = stripes.length;
+        final byte[] data = new byte[length];
+        for (int j = 0; j < numStripes; j++) {
+            final byte[] stripe = stripes[j];
+            if (stripe.length != getStripeLength(length, numStripes, j)) {
+                throw new CRAMException(String.format("Stripe %d has length %d, expected %d",
+                        j, stripe.length, getStripeLength(length, numStripes, j)));
+            }
+            for (int i = 0; i < stripe.length; i++) {
+                data[i * numStripes + j] = stripe[i];
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Bit-pack {@code data} if it uses no more than 16 distinct symbols, writing the symbol map to {@code out}.
+     * Symbols are assigned codes in increasing order, and are stored 2, 4 or 8 per byte (least significant
+     * bits first). A single symbol requires no packed data at all.
+     *
+     * @param data the data to pack
+     * @param out the stream that will receive the symbol count and symbol map
+     * @return the packed data, or null if {@code data} has too many distinct symbols to be packed
+     */
+    public static byte[] encodePack(final byte[] data, final ByteArrayOutputStream out) {
+        final int[] codes = new int[256];
+        final boolean[] present = new boolean[256];
+        for (final byte b : data) {
+            present[b & 0xFF] = true;
+        }
+        int numSymbols = 0;
+        for (int i = 0; i < 256; i++) {
+            if (present[i]) {
+                codes[i] = numSymbols++;
+            }
+        }
+        if (numSymbols > 16 || numSymbols == 0) {
+            return null;
+        }
+        out.write(numSymbols);
+        for (int i = 0; i < 256; i++) {
+            if (present[i]) {
+                out.write(i);
+            }
+        }
+
+        final int symbolsPerByte = getSymbolsPerByte(numSymbols);
+        if (symbolsPerByte == 0) {
+            return new byte[0];
+        }
+        final int bitsPerSymbol = 8 / symbolsPerByte;
+        final byte[] packed = new byte[(data.length + symbolsPerByte - 1) / symbolsPerByte];
+        for (int i = 0; i < data.length; i++) {
+            packed[i / symbolsPerByte] |= codes[data[i] & 0xFF] << ((i % symbolsPerByte) * bitsPerSymbol);
+        }
+        return packed;
+    }
+
+    /**
+     * Reverse {@link #encodePack(byte[], ByteArrayOutputStream)}.
+     *
+     * @param packed the packed data
+     * @param symbolMap the symbols, indexed by code
+     * @param numSymbols the number of symbols in the map
+     * @param length the unpacked length
+     * @return the unpacked data
+     */
+    public static byte[] decodePack(final byte[] packed, final byte[] symbolMap, final int numSymbols, final int length) {
+        final byte[] data = new byte[length];
+        if (numSymbols > 16) {
+            // not actually packed
+            if (packed.length < length) {
+                throw new CRAMException("Unpacked data is shorter than expected");
+            }
+            System.arraycopy(packed, 0, data, 0, length);
+            return data;
+        }
+        final int symbolsPerByte = getSymbolsPerByte(numSymbols);
+        if (symbolsPerByte == 0) {
+            java.util.Arrays.fill(data, symbolMap[0]);
+            return data;
+        }
+        final int bitsPerSymbol = 8 / symbolsPerByte;
+        final int mask = (1 << bitsPerSymbol) - 1;
+        if ((long) packed.length * symbolsPerByte < length) {
+            throw new CRAMException("Packed data is too short for the expected unpacked length");
+        }
+        for (int i = 0; i < length; i++) {
+            data[i] = symbolMap[((packed[i / symbolsPerByte] & 0xFF) >> ((i % symbolsPerByte) * bitsPerSymbol)) & mask];
+        }
+        return data;
+    }
+
+    private static int getSymbolsPerByte(final int numSymbols) {
+        if (numSymbols <= 1) {
+            return 0;
+        } else if (numSymbols <= 2) {
+            return 8;
+        } else if (numSymbols <= 4) {
+            return 4;
+        } else {
+            return 2;
+        }
+    }
+
+}
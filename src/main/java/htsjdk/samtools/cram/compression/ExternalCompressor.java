@@ -44,8 +44,9 @@ public abstract class ExternalCompressor {
      * Return an ExternalCompressor subclass based on the BlockCompressionMethod. Compressor-specific arguments
      * must be populated by the caller.
      * @param compressionMethod the type of compressor required ({@link BlockCompressionMethod})
-     * @param compressorSpecificArg the required order for RANS compressors; or the desired write compression
-     *                             level for GZIP
+     * @param compressorSpecificArg the required order for RANS compressors; the desired write compression
+     *                             level for GZIP; the flags for RANSNx16 and ADAPTIVE_ARITHMETIC compressors; or
+     *                             1 to use the arithmetic coder for NAME_TOKENISER
      * @return an ExternalCompressor of the requested type, populated with an compressor-specific args
      */
     public static ExternalCompressor getCompressorForMethod(
@@ -80,6 +81,28 @@ public abstract class ExternalCompressor {
                         String.format(argErrorMessage, compressorSpecificArg, compressionMethod));
                 return new BZIP2ExternalCompressor();
 
+            case RANSNx16:
+                return compressorSpecificArg == NO_COMPRESSION_ARG ?
+                        new RANSNx16ExternalCompressor() :
+                        new RANSNx16ExternalCompressor(compressorSpecificArg);
+
+            case ADAPTIVE_ARITHMETIC:
+                return compressorSpecificArg == NO_COMPRESSION_ARG ?
+                        new RangeExternalCompressor() :
+                        new RangeExternalCompressor(compressorSpecificArg);
+
+            case FQZCOMP:
+                ValidationUtils.validateArg(
+                        compressorSpecificArg == NO_COMPRESSION_ARG,
+                        String.format(argErrorMessage, compressorSpecificArg, compressionMethod));
+                return new FQZCompExternalCompressor();
+
+            case NAME_TOKENISER:
+                ValidationUtils.validateArg(
+                        compressorSpecificArg == NO_COMPRESSION_ARG || compressorSpecificArg == 0 || compressorSpecificArg == 1,
+                        String.format(argErrorMessage, compressorSpecificArg, compressionMethod));
+                return new NameTokeniserExternalCompressor(compressorSpecificArg == 1);
+
             default:
                 throw new IllegalArgumentException(String.format("Unknown compression method %s", compressionMethod));
         }
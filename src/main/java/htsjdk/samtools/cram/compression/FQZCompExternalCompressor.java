@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.samtools.cram.compression.fqzcomp.FQZComp;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
+
+/**
+ * CRAM 3.1 fqzcomp quality score compressor. A block doesn't carry the lengths of the records whose quality
+ * scores it contains, so the block is compressed as a single record, using only the preceding quality scores
+ * as context.
+ */
+public final class FQZCompExternalCompressor extends ExternalCompressor {
+    private final FQZComp fqzComp = new FQZComp();
+
+    public FQZCompExternalCompressor() {
+        super(BlockCompressionMethod.FQZCOMP);
+    }
+
+    @Override
+    public byte[] compress(final byte[] data) {
+        return fqzComp.compress(data);
+    }
+
+    @Override
+    public byte[] uncompress(final byte[] data) {
+        return fqzComp.uncompress(data);
+    }
+}
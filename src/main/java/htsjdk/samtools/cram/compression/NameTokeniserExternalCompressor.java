@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.samtools.cram.compression.tokeniser.NameTokeniser;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
+
+import java.util.Objects;
+
+/**
+ * CRAM 3.1 read name tokeniser compressor. The block must contain read names that are each terminated by a
+ * NUL byte, which is what the {@link htsjdk.samtools.cram.encoding.external.ByteArrayStopEncoding} for the
+ * read name data series produces when its stop byte is {@link #NAME_SEPARATOR}.
+ */
+public final class NameTokeniserExternalCompressor extends ExternalCompressor {
+    public static final byte NAME_SEPARATOR = 0;
+
+    private final boolean useArithmeticCoder;
+    private final NameTokeniser nameTokeniser = new NameTokeniser();
+
+    public NameTokeniserExternalCompressor() {
+        this(false);
+    }
+
+    /**
+     * @param useArithmeticCoder compress the token streams with the arithmetic coder rather than rANS Nx16
+     */
+    public NameTokeniserExternalCompressor(final boolean useArithmeticCoder) {
+        super(BlockCompressionMethod.NAME_TOKENISER);
+        this.useArithmeticCoder = useArithmeticCoder;
+    }
+
+    @Override
+    public byte[] compress(final byte[] data) {
+        return nameTokeniser.compress(data, NAME_SEPARATOR, useArithmeticCoder);
+    }
+
+    @Override
+    public byte[] uncompress(final byte[] data) {
+        return nameTokeniser.uncompress(data, NAME_SEPARATOR);
+    }
+
+    public boolean getUseArithmeticCoder() { return useArithmeticCoder; }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%s)", this.getMethod(), useArithmeticCoder ? "arith" : "rans");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        NameTokeniserExternalCompressor that = (NameTokeniserExternalCompressor) o;
+
+        return this.useArithmeticCoder == that.useArithmeticCoder;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getMethod(), useArithmeticCoder);
+    }
+}
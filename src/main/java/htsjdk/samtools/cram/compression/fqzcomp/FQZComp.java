@@ -0,0 +1,522 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.compression.fqzcomp;
+
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.CompressionUtils;
+import htsjdk.samtools.cram.compression.range.ByteModel;
+import htsjdk.samtools.cram.compression.range.RangeCoder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The CRAM 3.1 fqzcomp quality score codec. Quality values are coded with adaptive models selected by a 16 bit
+ * context built from the preceding quality values, the position in the read and the number of changes in quality
+ * seen so far in the read, using the parameters stored at the start of the stream.
+ *
+ * The decoder supports the complete format, including multiple parameter sets, selectors, quality maps,
+ * reversed and duplicate records. The encoder writes a single parameter set; the position and delta contexts
+ * are only used when the record lengths are known.
+ *
+ * Instances hold no state between calls and may be shared.
+ */
+public final class FQZComp {
+    private static final int VERSION = 5;
+
+    // global flags
+    private static final int GFLAG_MULTI_PARAM = 0x01;
+    private static final int GFLAG_HAVE_STAB = 0x02;
+    private static final int GFLAG_DO_REV = 0x04;
+
+    // per parameter set flags
+    private static final int PFLAG_DO_DEDUP = 0x02;
+    private static final int PFLAG_DO_LEN = 0x04;
+    private static final int PFLAG_DO_SEL = 0x08;
+    private static final int PFLAG_HAVE_QMAP = 0x10;
+    private static final int PFLAG_HAVE_PTAB = 0x20;
+    private static final int PFLAG_HAVE_DTAB = 0x40;
+    private static final int PFLAG_HAVE_QTAB = 0x80;
+
+    private static final int NUMBER_OF_CONTEXTS = 1 << 16;
+    private static final int CONTEXT_MASK = NUMBER_OF_CONTEXTS - 1;
+    private static final int QUALITY_TABLE_SIZE = 256;
+    private static final int POSITION_TABLE_SIZE = 1024;
+    private static final int DELTA_TABLE_SIZE = 256;
+
+    // encoder parameters: two previous quality values of 6 bits each, then 2 bits each of position and delta
+    private static final int ENCODER_QUALITY_BITS = 12;
+    private static final int ENCODER_QUALITY_SHIFT = 6;
+    private static final int ENCODER_POSITION_LOCATION = 12;
+    private static final int ENCODER_DELTA_LOCATION = 14;
+
+    /**
+     * Compress {@code qualities} as a single record.
+     */
+    public byte[] compress(final byte[] qualities) {
+        return compress(qualities, new int[]{qualities.length});
+    }
+
+    /**
+     * Compress the concatenated quality values of a series of records.
+     *
+     * @param qualities the quality values of all records
+     * @param recordLengths the number of quality values in each record, summing to {@code qualities.length}
+     * @return the compressed stream
+     */
+    public byte[] compress(final byte[] qualities, final int[] recordLengths) {
+        long total = 0;
+        boolean fixedLength = true;
+        for (final int length : recordLengths) {
+            if (length < 0) {
+                throw new IllegalArgumentException("Negative record length " + length);
+            }
+            fixedLength &= length == recordLengths[0];
+            total += length;
+        }
+        if (total != qualities.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Record lengths sum to %d but there are %d quality values", total, qualities.length));
+        }
+
+        int maxSymbol = 0;
+        for (final byte q : qualities) {
+            maxSymbol = Math.max(maxSymbol, q & 0xFF);
+        }
+        final Parameters params = new Parameters();
+        params.maxSymbol = maxSymbol;
+        params.qualityBits = ENCODER_QUALITY_BITS;
+        params.qualityShift = ENCODER_QUALITY_SHIFT;
+        params.fixedLength = fixedLength ? 1 : 0;
+        params.flags = fixedLength ? PFLAG_DO_LEN : 0;
+        if (maxSymbol >= (1 << ENCODER_QUALITY_SHIFT)) {
+            // clamp the contribution of the (rare) very high quality values to the context
+            params.flags |= PFLAG_HAVE_QTAB;
+            for (int i = 0; i < QUALITY_TABLE_SIZE; i++) {
+                params.qualityTable[i] = Math.min(i, (1 << ENCODER_QUALITY_SHIFT) - 1);
+            }
+        }
+        if (recordLengths.length > 1) {
+            // with a single record the position and delta contexts would only reflect the position in the block
+            params.flags |= PFLAG_HAVE_PTAB | PFLAG_HAVE_DTAB;
+            params.positionLocation = ENCODER_POSITION_LOCATION;
+            params.positionTable = new int[POSITION_TABLE_SIZE];
+            for (int i = 0; i < POSITION_TABLE_SIZE; i++) {
+                params.positionTable[i] = Math.min(3, i >> 5);
+            }
+            params.deltaLocation = ENCODER_DELTA_LOCATION;
+            params.deltaTable = new int[DELTA_TABLE_SIZE];
+            for (int i = 0; i < DELTA_TABLE_SIZE; i++) {
+                params.deltaTable[i] = i < 2 ? i : (i < 8 ? 2 : 3);
+            }
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(qualities.length / 2 + 64);
+        CompressionUtils.writeUint7(qualities.length, out);
+        out.write(VERSION);
+        out.write(0);
+        params.write(out);
+
+        final RangeCoder rangeCoder = new RangeCoder(out);
+        final Models models = new Models(maxSymbol, 0);
+        final State state = new State();
+        int position = 0;
+        for (final int length : recordLengths) {
+            if (params.fixedLength >= 0) {
+                for (int i = 0; i < 4; i++) {
+                    models.lengths[i].encode(rangeCoder, (length >>> (8 * i)) & 0xFF);
+                }
+                if (params.fixedLength > 0) {
+                    params.fixedLength = -length;
+                }
+            }
+            state.startRecord(length);
+            int context = params.context;
+            for (int i = 0; i < length; i++) {
+                final int q = qualities[position++] & 0xFF;
+                models.getQualityModel(context).encode(rangeCoder, q);
+                context = params.updateContext(state, q);
+            }
+        }
+        rangeCoder.finishEncode();
+        return out.toByteArray();
+    }
+
+    /**
+     * @param compressed a compressed fqzcomp stream
+     * @return the uncompressed quality values
+     */
+    public byte[] uncompress(final byte[] compressed) {
+        final ByteBuffer in = CompressionUtils.wrap(compressed);
+        final int length = CompressionUtils.readUint7(in);
+        final int version = in.get() & 0xFF;
+        if (version != VERSION) {
+            throw new CRAMException(String.format("Unsupported fqzcomp version %d, expected %d", version, VERSION));
+        }
+        final int globalFlags = in.get() & 0xFF;
+        final int numParams = (globalFlags & GFLAG_MULTI_PARAM) != 0 ? in.get() & 0xFF : 1;
+        if (numParams == 0) {
+            throw new CRAMException("fqzcomp stream has no parameter sets");
+        }
+        int maxSelector = numParams > 1 ? numParams - 1 : 0;
+        final int[] selectorTable = new int[256];
+        if ((globalFlags & GFLAG_HAVE_STAB) != 0) {
+            maxSelector = in.get() & 0xFF;
+            readArray(in, selectorTable, selectorTable.length);
+        } else {
+            for (int i = 0; i < selectorTable.length; i++) {
+                selectorTable[i] = Math.min(i, numParams - 1);
+            }
+        }
+        final Parameters[] params = new Parameters[numParams];
+        int maxSymbol = 0;
+        for (int i = 0; i < numParams; i++) {
+            params[i] = Parameters.read(in);
+            maxSymbol = Math.max(maxSymbol, params[i].maxSymbol);
+        }
+
+        final byte[] qualities = new byte[length];
+        final RangeCoder rangeCoder = new RangeCoder(in);
+        final Models models = new Models(maxSymbol, maxSelector);
+        final State state = new State();
+        final boolean doReverse = (globalFlags & GFLAG_DO_REV) != 0;
+        int[] recordLengths = new int[16];
+        boolean[] reversed = new boolean[16];
+        int numRecords = 0;
+        int position = 0;
+        while (position < length) {
+            // start of a record
+            final int selector = maxSelector > 0 ? models.selector.decode(rangeCoder) : 0;
+            final int paramIndex = selectorTable[selector];
+            if (paramIndex >= numParams) {
+                throw new CRAMException("fqzcomp selector refers to a missing parameter set");
+            }
+            final Parameters pm = params[paramIndex];
+            int recordLength;
+            if (pm.fixedLength >= 0) {
+                recordLength = 0;
+                for (int i = 0; i < 4; i++) {
+                    recordLength |= models.lengths[i].decode(rangeCoder) << (8 * i);
+                }
+                if (pm.fixedLength > 0) {
+                    pm.fixedLength = -recordLength;
+                }
+            } else {
+                recordLength = -pm.fixedLength;
+            }
+            if (recordLength < 0 || recordLength > length - position) {
+                throw new CRAMException(String.format(
+                        "fqzcomp record length %d exceeds the remaining %d quality values", recordLength, length - position));
+            }
+            if (numRecords == recordLengths.length) {
+                recordLengths = Arrays.copyOf(recordLengths, numRecords * 2);
+                reversed = Arrays.copyOf(reversed, numRecords * 2);
+            }
+            reversed[numRecords] = doReverse && models.reverse.decode(rangeCoder) != 0;
+            recordLengths[numRecords++] = recordLength;
+
+            if ((pm.flags & PFLAG_DO_DEDUP) != 0 && models.duplicate.decode(rangeCoder) != 0) {
+                if (recordLength > position) {
+                    throw new CRAMException("fqzcomp duplicate record has no previous record to copy");
+                }
+                System.arraycopy(qualities, position - recordLength, qualities, position, recordLength);
+                position += recordLength;
+                continue;
+            }
+
+            state.startRecord(recordLength);
+            state.selector = selector;
+            int context = pm.context;
+            for (int i = 0; i < recordLength; i++) {
+                final int q = models.getQualityModel(context).decode(rangeCoder);
+                qualities[position++] = (byte) ((pm.flags & PFLAG_HAVE_QMAP) != 0 ? pm.qualityMap[q] : q);
+                context = pm.updateContext(state, q);
+            }
+        }
+
+        if (doReverse) {
+            position = 0;
+            for (int r = 0; r < numRecords; r++) {
+                if (reversed[r]) {
+                    for (int i = position, j = position + recordLengths[r] - 1; i < j; i++, j--) {
+                        final byte tmp = qualities[i];
+                        qualities[i] = qualities[j];
+                        qualities[j] = tmp;
+                    }
+                }
+                position += recordLengths[r];
+            }
+        }
+        return qualities;
+    }
+
+    /**
+     * Read a table of (non-decreasing) values stored as two levels of run-length encoding: the first level gives
+     * the number of times each successive value occurs (as a sum of bytes, continued while a byte is 255), and
+     * the second compresses repeated bytes in the first level as a byte followed by a repeat count.
+     */
+    static void readArray(final ByteBuffer in, final int[] array, final int size) {
+        final int[] runs = new int[1024];
+        int numRuns = 0;
+        int total = 0;
+        int last = -1;
+        while (total < size) {
+            if (numRuns == runs.length) {
+                throw new CRAMException("Invalid fqzcomp table encoding");
+            }
+            final int run = in.get() & 0xFF;
+            runs[numRuns++] = run;
+            total += run;
+            if (run == last) {
+                int copies = in.get() & 0xFF;
+                total += run * copies;
+                if (numRuns + copies > runs.length) {
+                    throw new CRAMException("Invalid fqzcomp table encoding");
+                }
+                while (copies-- > 0) {
+                    runs[numRuns++] = run;
+                }
+            }
+            last = run;
+        }
+
+        int value = 0;
+        int i = 0;
+        int r = 0;
+        while (i < size) {
+            int count = 0;
+            int run;
+            do {
+                // a final run of 255 has no terminating zero
+                run = r < numRuns ? runs[r++] : 0;
+                count += run;
+            } while (run == 255);
+            if (count == 0 && r == numRuns) {
+                throw new CRAMException("Invalid fqzcomp table encoding");
+            }
+            while (count-- > 0 && i < size) {
+                array[i++] = value;
+            }
+            value++;
+        }
+    }
+
+    /**
+     * Reverse {@link #readArray(ByteBuffer, int[], int)}: {@code array} must be non-decreasing.
+     */
+    static void writeArray(final int[] array, final ByteArrayOutputStream out) {
+        final int[] runs = new int[1024];
+        int numRuns = 0;
+        for (int i = 0, value = 0; i < array.length; value++) {
+            int count = 0;
+            while (i < array.length && array[i] == value) {
+                count++;
+                i++;
+            }
+            if (i < array.length && array[i] < value) {
+                throw new IllegalArgumentException("fqzcomp tables must be non-decreasing");
+            }
+            while (count >= 255) {
+                runs[numRuns++] = 255;
+                count -= 255;
+            }
+            runs[numRuns++] = count;
+        }
+
+        // stop as soon as the reader has seen enough values, as it will not consume any trailing runs
+        int total = 0;
+        int last = -1;
+        for (int r = 0; r < numRuns && total < array.length; ) {
+            final int run = runs[r++];
+            out.write(run);
+            total += run;
+            if (run == last) {
+                int copies = 0;
+                while (r < numRuns && runs[r] == run && copies < 255) {
+                    copies++;
+                    r++;
+                }
+                out.write(copies);
+                total += run * copies;
+            }
+            last = run;
+        }
+    }
+
+    /**
+     * A parameter set: the layout of the 16 bit context and the tables that map quality values, positions
+     * and deltas into it.
+     */
+    private static final class Parameters {
+        private int context;
+        private int flags;
+        private int maxSymbol;
+        private int qualityBits;
+        private int qualityShift;
+        private int qualityLocation;
+        private int selectorLocation;
+        private int positionLocation;
+        private int deltaLocation;
+        // > 0 if all records share the length of the first one, < 0 once that length is known
+        private int fixedLength;
+        private int[] qualityMap;
+        private final int[] qualityTable = new int[QUALITY_TABLE_SIZE];
+        private int[] positionTable;
+        private int[] deltaTable;
+
+        private Parameters() {
+            for (int i = 0; i < QUALITY_TABLE_SIZE; i++) {
+                qualityTable[i] = i;
+            }
+        }
+
+        private static Parameters read(final ByteBuffer in) {
+            final Parameters pm = new Parameters();
+            pm.context = (in.get() & 0xFF) | ((in.get() & 0xFF) << 8);
+            pm.flags = in.get() & 0xFF;
+            pm.fixedLength = pm.flags & PFLAG_DO_LEN;
+            pm.maxSymbol = in.get() & 0xFF;
+            int b = in.get() & 0xFF;
+            pm.qualityBits = b >> 4;
+            pm.qualityShift = b & 0x0F;
+            b = in.get() & 0xFF;
+            pm.qualityLocation = b >> 4;
+            pm.selectorLocation = b & 0x0F;
+            b = in.get() & 0xFF;
+            pm.positionLocation = b >> 4;
+            pm.deltaLocation = b & 0x0F;
+
+            if ((pm.flags & PFLAG_HAVE_QMAP) != 0) {
+                pm.qualityMap = new int[256];
+                for (int i = 0; i < pm.maxSymbol; i++) {
+                    pm.qualityMap[i] = in.get() & 0xFF;
+                }
+            }
+            if (pm.qualityBits > 0 && (pm.flags & PFLAG_HAVE_QTAB) != 0) {
+                readArray(in, pm.qualityTable, QUALITY_TABLE_SIZE);
+            }
+            if ((pm.flags & PFLAG_HAVE_PTAB) != 0) {
+                pm.positionTable = new int[POSITION_TABLE_SIZE];
+                readArray(in, pm.positionTable, POSITION_TABLE_SIZE);
+            }
+            if ((pm.flags & PFLAG_HAVE_DTAB) != 0) {
+                pm.deltaTable = new int[DELTA_TABLE_SIZE];
+                readArray(in, pm.deltaTable, DELTA_TABLE_SIZE);
+            }
+            return pm;
+        }
+
+        private void write(final ByteArrayOutputStream out) {
+            out.write(context & 0xFF);
+            out.write((context >> 8) & 0xFF);
+            out.write(flags);
+            out.write(maxSymbol);
+            out.write((qualityBits << 4) | qualityShift);
+            out.write((qualityLocation << 4) | selectorLocation);
+            out.write((positionLocation << 4) | deltaLocation);
+            if (qualityBits > 0 && (flags & PFLAG_HAVE_QTAB) != 0) {
+                writeArray(qualityTable, out);
+            }
+            if ((flags & PFLAG_HAVE_PTAB) != 0) {
+                writeArray(positionTable, out);
+            }
+            if ((flags & PFLAG_HAVE_DTAB) != 0) {
+                writeArray(deltaTable, out);
+            }
+        }
+
+        /**
+         * Update {@code state} with quality value {@code q} and return the context for the next value.
+         */
+        private int updateContext(final State state, final int q) {
+            int ctx = context;
+            state.qualityContext = (state.qualityContext << qualityShift) + qualityTable[q];
+            ctx += (state.qualityContext & ((1 << qualityBits) - 1)) << qualityLocation;
+            if ((flags & PFLAG_HAVE_PTAB) != 0) {
+                ctx += positionTable[Math.min(POSITION_TABLE_SIZE - 1, state.remaining)] << positionLocation;
+            }
+            if ((flags & PFLAG_HAVE_DTAB) != 0) {
+                ctx += deltaTable[Math.min(DELTA_TABLE_SIZE - 1, state.delta)] << deltaLocation;
+                if (state.previousQuality != q) {
+                    state.delta++;
+                }
+                state.previousQuality = q;
+            }
+            if ((flags & PFLAG_DO_SEL) != 0) {
+                ctx += state.selector << selectorLocation;
+            }
+            state.remaining--;
+            return ctx & CONTEXT_MASK;
+        }
+    }
+
+    /**
+     * The context state within the current record.
+     */
+    private static final class State {
+        private int qualityContext;
+        private int remaining;
+        private int delta;
+        private int previousQuality;
+        private int selector;
+
+        private void startRecord(final int length) {
+            qualityContext = 0;
+            remaining = length;
+            delta = 0;
+            previousQuality = 0;
+        }
+    }
+
+    /**
+     * The adaptive models. Quality models are created on first use, as a typical stream only visits a small
+     * fraction of the possible contexts.
+     */
+    private static final class Models {
+        private final int numQualitySymbols;
+        private final ByteModel[] quality = new ByteModel[NUMBER_OF_CONTEXTS];
+        private final ByteModel[] lengths = new ByteModel[4];
+        private final ByteModel reverse = new ByteModel(2);
+        private final ByteModel duplicate = new ByteModel(2);
+        private final ByteModel selector;
+
+        private Models(final int maxSymbol, final int maxSelector) {
+            numQualitySymbols = maxSymbol + 1;
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = new ByteModel(256);
+            }
+            selector = new ByteModel(maxSelector + 1);
+        }
+
+        private ByteModel getQualityModel(final int context) {
+            ByteModel model = quality[context];
+            if (model == null) {
+                model = quality[context] = new ByteModel(numQualitySymbols);
+            }
+            return model;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.compression.range;
+
+import htsjdk.samtools.cram.CRAMException;
+
+/**
+ * An adaptive frequency model over the symbols {@code 0..numSymbols-1}, used with a {@link RangeCoder}. Every
+ * symbol starts with a frequency of 1, and each coded symbol has its frequency increased; symbols are kept
+ * approximately sorted by decreasing frequency so that common symbols are found quickly.
+ */
+public final class ByteModel {
+    private static final int MAX_FREQUENCY = (1 << 16) - 17;
+    private static final int STEP = 16;
+
+    private final int[] symbols;
+    private final int[] frequencies;
+    private int totalFrequency;
+
+    /**
+     * @param numSymbols the number of symbols in the model
+     */
+    public ByteModel(final int numSymbols) {
+        symbols = new int[numSymbols];
+        frequencies = new int[numSymbols];
+        for (int i = 0; i < numSymbols; i++) {
+            symbols[i] = i;
+            frequencies[i] = 1;
+        }
+        totalFrequency = numSymbols;
+    }
+
+    /**
+     * Encode {@code symbol} with {@code rangeCoder} and update the model.
+     */
+    public void encode(final RangeCoder rangeCoder, final int symbol) {
+        int cumulativeFrequency = 0;
+        int i = 0;
+        while (symbols[i] != symbol) {
+            cumulativeFrequency += frequencies[i++];
+            if (i == symbols.length) {
+                throw new IllegalArgumentException(String.format(
+                        "Symbol %d is outside of the range of a model with %d symbols", symbol, symbols.length));
+            }
+        }
+        rangeCoder.encode(cumulativeFrequency, frequencies[i], totalFrequency);
+        update(i);
+    }
+
+    /**
+     * Decode a symbol with {@code rangeCoder} and update the model.
+     */
+    public int decode(final RangeCoder rangeCoder) {
+        final int frequency = rangeCoder.getFrequency(totalFrequency);
+        int cumulativeFrequency = 0;
+        int i = 0;
+        while (cumulativeFrequency + frequencies[i] <= frequency) {
+            cumulativeFrequency += frequencies[i++];
+            if (i == symbols.length) {
+                throw new CRAMException("Corrupt range coded data");
+            }
+        }
+        rangeCoder.decode(cumulativeFrequency, frequencies[i]);
+        final int symbol = symbols[i];
+        update(i);
+        return symbol;
+    }
+
+    private void update(final int i) {
+        frequencies[i] += STEP;
+        totalFrequency += STEP;
+        if (totalFrequency > MAX_FREQUENCY) {
+            totalFrequency = 0;
+            for (int j = 0; j < frequencies.length; j++) {
+                frequencies[j] -= frequencies[j] >> 1;
+                totalFrequency += frequencies[j];
+            }
+        }
+        if (i > 0 && frequencies[i] > frequencies[i - 1]) {
+            final int frequency = frequencies[i];
+            frequencies[i] = frequencies[i - 1];
+            frequencies[i - 1] = frequency;
+            final int symbol = symbols[i];
+            symbols[i] = symbols[i - 1];
+            symbols[i - 1] = symbol;
+        }
+    }
+}
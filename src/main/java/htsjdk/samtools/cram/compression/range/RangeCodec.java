@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.compression.range;
+
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.BZIP2ExternalCompressor;
+import htsjdk.samtools.cram.compression.CompressionUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The CRAM 3.1 adaptive arithmetic codec: order-0 or order-1 adaptive models driving a {@link RangeCoder},
+ * with optional run-length modelling and the same STRIPE and PACK transformations as rANS Nx16. The data can
+ * alternatively be stored uncompressed ({@link #CAT_FLAG}) or bzip2 compressed ({@link #EXT_FLAG}).
+ *
+ * A compressed stream starts with a flags byte (a combination of the *_FLAG constants below), followed by the
+ * uncompressed size as a uint7 (unless {@link #NOSZ_FLAG} is set), the PACK metadata if present, and the coded
+ * data.
+ *
+ * Instances hold no state between calls and may be shared.
+ */
+public final class RangeCodec {
+    public static final int ORDER_FLAG = 0x01;
+    public static final int EXT_FLAG = 0x04;
+    public static final int STRIPE_FLAG = 0x08;
+    public static final int NOSZ_FLAG = 0x10;
+    public static final int CAT_FLAG = 0x20;
+    public static final int RLE_FLAG = 0x40;
+    public static final int PACK_FLAG = 0x80;
+
+    private static final int NUMBER_OF_SYMBOLS = 256;
+    private static final int NUMBER_OF_STRIPES = 4;
+    // run lengths are coded in parts of at most 3, with a model per literal symbol for the first part
+    // and two shared models for subsequent parts
+    private static final int RUN_MODEL_SYMBOLS = 4;
+    private static final int NUMBER_OF_RUN_MODELS = NUMBER_OF_SYMBOLS + 2;
+
+    /**
+     * Compress {@code data} using the transformations and model selected by {@code flags}. PACK is dropped if the
+     * data has more than 16 distinct symbols, and the data is stored uncompressed if coding would expand it.
+     *
+     * @param data the data to compress
+     * @param flags a combination of the *_FLAG constants, other than {@link #NOSZ_FLAG}, which is only used
+     *              internally for the stripes of a {@link #STRIPE_FLAG} stream
+     * @return the compressed stream
+     */
+    public byte[] compress(final byte[] data, final int flags) {
+        if ((flags & NOSZ_FLAG) != 0) {
+            throw new IllegalArgumentException("Arithmetic coder streams without an uncompressed size can't be decoded");
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        if ((flags & STRIPE_FLAG) != 0) {
+            compressStripes(data, flags, out);
+        } else {
+            compress(data, flags, out);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param compressed a stream created by {@link #compress(byte[], int)}
+     * @return the uncompressed data
+     */
+    public byte[] uncompress(final byte[] compressed) {
+        return uncompress(CompressionUtils.wrap(compressed), -1);
+    }
+
+    private void compressStripes(final byte[] data, final int flags, final ByteArrayOutputStream out) {
+        final int subFlags = (flags & ~(STRIPE_FLAG | NOSZ_FLAG)) | NOSZ_FLAG;
+        final byte[][] stripes = CompressionUtils.stripe(data, NUMBER_OF_STRIPES);
+        final byte[][] compressedStripes = new byte[NUMBER_OF_STRIPES][];
+        for (int i = 0; i < NUMBER_OF_STRIPES; i++) {
+            final ByteArrayOutputStream stripeOut = new ByteArrayOutputStream(stripes[i].length / 2 + 64);
+            compress(stripes[i], subFlags, stripeOut);
+            compressedStripes[i] = stripeOut.toByteArray();
+        }
+        out.write(STRIPE_FLAG);
+        CompressionUtils.writeUint7(data.length, out);
+        out.write(NUMBER_OF_STRIPES);
+        for (final byte[] compressedStripe : compressedStripes) {
+            CompressionUtils.writeUint7(compressedStripe.length, out);
+        }
+        for (final byte[] compressedStripe : compressedStripes) {
+            out.write(compressedStripe, 0, compressedStripe.length);
+        }
+    }
+
+    private void compress(final byte[] data, final int requestedFlags, final ByteArrayOutputStream out) {
+        int flags = requestedFlags & ~STRIPE_FLAG;
+        final ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        byte[] transformed = data;
+
+        if ((flags & PACK_FLAG) != 0) {
+            final byte[] packed = CompressionUtils.encodePack(transformed, meta);
+            if (packed == null) {
+                flags &= ~PACK_FLAG;
+            } else {
+                CompressionUtils.writeUint7(packed.length, meta);
+                transformed = packed;
+            }
+        }
+
+        byte[] encoded = null;
+        if ((flags & CAT_FLAG) == 0 && transformed.length > 0) {
+            if ((flags & EXT_FLAG) != 0) {
+                encoded = new BZIP2ExternalCompressor().compress(transformed);
+            } else if ((flags & RLE_FLAG) != 0) {
+                encoded = compressRLE(transformed, (flags & ORDER_FLAG) != 0);
+            } else {
+                encoded = compress(transformed, (flags & ORDER_FLAG) != 0);
+            }
+            if (encoded.length >= transformed.length) {
+                encoded = null;
+            }
+        }
+        if (encoded == null) {
+            flags = (flags | CAT_FLAG) & ~(ORDER_FLAG | EXT_FLAG | RLE_FLAG);
+            encoded = transformed;
+        }
+
+        out.write(flags);
+        if ((flags & NOSZ_FLAG) == 0) {
+            CompressionUtils.writeUint7(data.length, out);
+        }
+        out.write(meta.toByteArray(), 0, meta.size());
+        out.write(encoded, 0, encoded.length);
+    }
+
+    private byte[] uncompress(final ByteBuffer in, final int knownLength) {
+        if (!in.hasRemaining()) {
+            return new byte[0];
+        }
+        final int flags = in.get() & 0xFF;
+        final int length = (flags & NOSZ_FLAG) == 0 ? CompressionUtils.readUint7(in) : knownLength;
+        if (length < 0) {
+            throw new CRAMException("Arithmetic coder stream has no uncompressed size");
+        }
+        if ((flags & STRIPE_FLAG) != 0) {
+            return uncompressStripes(in, length);
+        }
+
+        int transformedLength = length;
+        byte[] packMap = null;
+        int packSymbols = 0;
+        if ((flags & PACK_FLAG) != 0) {
+            packSymbols = in.get() & 0xFF;
+            if (packSymbols == 0) {
+                packSymbols = NUMBER_OF_SYMBOLS;
+            }
+            packMap = packSymbols <= 16 ? CompressionUtils.readBytes(in, packSymbols) : new byte[0];
+            transformedLength = CompressionUtils.readUint7(in);
+        }
+
+        byte[] data;
+        if ((flags & CAT_FLAG) != 0) {
+            data = CompressionUtils.readBytes(in, transformedLength);
+        } else if ((flags & EXT_FLAG) != 0) {
+            data = new BZIP2ExternalCompressor().uncompress(CompressionUtils.readBytes(in, in.remaining()));
+            if (data.length != transformedLength) {
+                throw new CRAMException(String.format(
+                        "bzip2 data in arithmetic coder stream has length %d, expected %d", data.length, transformedLength));
+            }
+        } else if ((flags & RLE_FLAG) != 0) {
+            data = uncompressRLE(in, transformedLength, (flags & ORDER_FLAG) != 0);
+        } else {
+            data = uncompress(in, transformedLength, (flags & ORDER_FLAG) != 0);
+        }
+        if (packMap != null) {
+            data = CompressionUtils.decodePack(data, packMap, packSymbols, length);
+        }
+        return data;
+    }
+
+    private byte[] uncompressStripes(final ByteBuffer in, final int length) {
+        final int numStripes = in.get() & 0xFF;
+        if (numStripes == 0) {
+            throw new CRAMException("Arithmetic coder stream has no stripes");
+        }
+        final int[] compressedLengths = new int[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            compressedLengths[i] = CompressionUtils.readUint7(in);
+        }
+        final byte[][] stripes = new byte[numStripes][];
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = uncompress(
+                    CompressionUtils.slice(in, compressedLengths[i]),
+                    CompressionUtils.getStripeLength(length, numStripes, i));
+        }
+        return CompressionUtils.unstripe(stripes, length);
+    }
+
+    private static byte[] compress(final byte[] data, final boolean order1) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        final int numSymbols = writeNumberOfSymbols(data, out);
+        final ByteModel[] models = createModels(order1 ? NUMBER_OF_SYMBOLS : 1, numSymbols);
+        final RangeCoder rangeCoder = new RangeCoder(out);
+        int last = 0;
+        for (final byte b : data) {
+            final int sym = b & 0xFF;
+            models[order1 ? last : 0].encode(rangeCoder, sym);
+            last = sym;
+        }
+        rangeCoder.finishEncode();
+        return out.toByteArray();
+    }
+
+    private static byte[] uncompress(final ByteBuffer in, final int length, final boolean order1) {
+        final byte[] data = new byte[length];
+        final int numSymbols = readNumberOfSymbols(in);
+        final ByteModel[] models = createModels(order1 ? NUMBER_OF_SYMBOLS : 1, numSymbols);
+        final RangeCoder rangeCoder = new RangeCoder(in);
+        int last = 0;
+        for (int i = 0; i < length; i++) {
+            final int sym = models[order1 ? last : 0].decode(rangeCoder);
+            data[i] = (byte) sym;
+            last = sym;
+        }
+        return data;
+    }
+
+    private static byte[] compressRLE(final byte[] data, final boolean order1) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        final int numSymbols = writeNumberOfSymbols(data, out);
+        final ByteModel[] literalModels = createModels(order1 ? NUMBER_OF_SYMBOLS : 1, numSymbols);
+        final ByteModel[] runModels = createModels(NUMBER_OF_RUN_MODELS, RUN_MODEL_SYMBOLS);
+        final RangeCoder rangeCoder = new RangeCoder(out);
+        int last = 0;
+        for (int i = 0; i < data.length; i++) {
+            final int sym = data[i] & 0xFF;
+            literalModels[order1 ? last : 0].encode(rangeCoder, sym);
+            last = sym;
+
+            int run = 0;
+            while (i + 1 < data.length && (data[i + 1] & 0xFF) == sym) {
+                run++;
+                i++;
+            }
+            int runContext = sym;
+            int part;
+            do {
+                part = Math.min(run, RUN_MODEL_SYMBOLS - 1);
+                runModels[runContext].encode(rangeCoder, part);
+                run -= part;
+                runContext = runContext == sym ? NUMBER_OF_SYMBOLS : NUMBER_OF_SYMBOLS + 1;
+            } while (part == RUN_MODEL_SYMBOLS - 1);
+        }
+        rangeCoder.finishEncode();
+        return out.toByteArray();
+    }
+
+    private static byte[] uncompressRLE(final ByteBuffer in, final int length, final boolean order1) {
+        final byte[] data = new byte[length];
+        final int numSymbols = readNumberOfSymbols(in);
+        final ByteModel[] literalModels = createModels(order1 ? NUMBER_OF_SYMBOLS : 1, numSymbols);
+        final ByteModel[] runModels = createModels(NUMBER_OF_RUN_MODELS, RUN_MODEL_SYMBOLS);
+        final RangeCoder rangeCoder = new RangeCoder(in);
+        int last = 0;
+        for (int i = 0; i < length; ) {
+            final int sym = literalModels[order1 ? last : 0].decode(rangeCoder);
+            last = sym;
+
+            int part = runModels[sym].decode(rangeCoder);
+            int run = part;
+            int runContext = NUMBER_OF_SYMBOLS;
+            while (part == RUN_MODEL_SYMBOLS - 1) {
+                part = runModels[runContext].decode(rangeCoder);
+                runContext = NUMBER_OF_SYMBOLS + 1;
+                run += part;
+            }
+            if (i + run + 1 > length) {
+                throw new CRAMException("Run length extends beyond the expected uncompressed length");
+            }
+            for (int j = 0; j <= run; j++) {
+                data[i++] = (byte) sym;
+            }
+        }
+        return data;
+    }
+
+    // the models only need to cover the symbols up to the largest one present
+    private static int writeNumberOfSymbols(final byte[] data, final ByteArrayOutputStream out) {
+        int max = 0;
+        for (final byte b : data) {
+            max = Math.max(max, b & 0xFF);
+        }
+        out.write((max + 1) & 0xFF);
+        return max + 1;
+    }
+
+    private static int readNumberOfSymbols(final ByteBuffer in) {
+        final int numSymbols = in.get() & 0xFF;
+        return numSymbols == 0 ? NUMBER_OF_SYMBOLS : numSymbols;
+    }
+
+    private static ByteModel[] createModels(final int numModels, final int numSymbols) {
+        final ByteModel[] models = new ByteModel[numModels];
+        for (int i = 0; i < numModels; i++) {
+            models[i] = new ByteModel(numSymbols);
+        }
+        return models;
+    }
+}
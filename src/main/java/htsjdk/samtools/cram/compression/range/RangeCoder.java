@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.compression.range;
+
+import htsjdk.samtools.cram.CRAMException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The range coder used by the CRAM 3.1 adaptive arithmetic codec and by fqzcomp: a 32-bit range coder with
+ * carry propagation. An instance is used either for encoding (see {@link #RangeCoder(ByteArrayOutputStream)})
+ * or for decoding (see {@link #RangeCoder(ByteBuffer)}), but not both.
+ */
+public final class RangeCoder {
+    private static final long MASK_32 = 0xFFFFFFFFL;
+    private static final long TOP = 1L << 24;
+    private static final long THRESHOLD = 0xFF000000L;
+
+    private long low;
+    private long range = MASK_32;
+    private long code;
+
+    // encoder state
+    private final ByteArrayOutputStream out;
+    private int pendingFFs;
+    private int carry;
+    private int cache;
+
+    // decoder state
+    private final ByteBuffer in;
+
+    /**
+     * Create a range coder for encoding.
+     * @param out the stream to which encoded bytes are written
+     */
+    public RangeCoder(final ByteArrayOutputStream out) {
+        this.out = out;
+        this.in = null;
+    }
+
+    /**
+     * Create a range coder for decoding, and consume the initial bytes of the encoded data.
+     * @param in the encoded data
+     */
+    public RangeCoder(final ByteBuffer in) {
+        this.out = null;
+        this.in = in;
+        for (int i = 0; i < 5; i++) {
+            code = ((code << 8) | nextByte()) & MASK_32;
+        }
+    }
+
+    /**
+     * Encode the symbol occupying {@code [cumulativeFrequency, cumulativeFrequency + frequency)} out of
+     * {@code totalFrequency}.
+     */
+    public void encode(final int cumulativeFrequency, final int frequency, final int totalFrequency) {
+        final long oldLow = low;
+        range /= totalFrequency;
+        low = (low + cumulativeFrequency * range) & MASK_32;
+        range *= frequency;
+        if (low < oldLow) {
+            carry = 1;
+        }
+        while (range < TOP) {
+            range <<= 8;
+            shiftLow();
+        }
+    }
+
+    /**
+     * Flush the encoder. No further symbols may be encoded.
+     */
+    public void finishEncode() {
+        for (int i = 0; i < 5; i++) {
+            shiftLow();
+        }
+    }
+
+    /**
+     * Return the cumulative frequency of the next symbol out of {@code totalFrequency}; this must be followed by a
+     * call to {@link #decode(int, int)} for the symbol that occupies that frequency.
+     */
+    public int getFrequency(final int totalFrequency) {
+        range /= totalFrequency;
+        final long frequency = code / range;
+        if (frequency >= totalFrequency) {
+            throw new CRAMException("Corrupt range coded data");
+        }
+        return (int) frequency;
+    }
+
+    /**
+     * Consume the symbol occupying {@code [cumulativeFrequency, cumulativeFrequency + frequency)}.
+     */
+    public void decode(final int cumulativeFrequency, final int frequency) {
+        code -= cumulativeFrequency * range;
+        range *= frequency;
+        while (range < TOP) {
+            range <<= 8;
+            code = ((code << 8) | nextByte()) & MASK_32;
+        }
+    }
+
+    private void shiftLow() {
+        if (low < THRESHOLD || carry != 0) {
+            out.write(cache + carry);
+            for (; pendingFFs > 0; pendingFFs--) {
+                out.write(carry - 1);
+            }
+            cache = (int) (low >>> 24);
+            carry = 0;
+        } else {
+            pendingFFs++;
+        }
+        low = (low << 8) & MASK_32;
+    }
+
+    private int nextByte() {
+        // the encoder flushes enough bytes that a valid stream never runs out
+        return in.hasRemaining() ? in.get() & 0xFF : 0;
+    }
+}
@@ -0,0 +1,785 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.compression.rans;
+
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.CompressionUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The CRAM 3.1 rANS Nx16 codec: rANS with 16-bit renormalisation and 4 or 32 interleaved states, order-0 or
+ * order-1 frequency models, and optional STRIPE, RLE and PACK transformations applied to the data before
+ * entropy coding.
+ *
+ * A compressed stream starts with a flags byte (a combination of the *_FLAG constants below), followed by the
+ * uncompressed size as a uint7 (unless {@link #NOSZ_FLAG} is set), the PACK and RLE metadata if present, and
+ * finally the entropy coded data (or the raw data if {@link #CAT_FLAG} is set).
+ *
+ * Instances hold no state between calls and may be shared.
+ */
+public final class RANSNx16 {
+    public static final int ORDER_FLAG = 0x01;
+    public static final int N32_FLAG = 0x04;
+    public static final int STRIPE_FLAG = 0x08;
+    public static final int NOSZ_FLAG = 0x10;
+    public static final int CAT_FLAG = 0x20;
+    public static final int RLE_FLAG = 0x40;
+    public static final int PACK_FLAG = 0x80;
+
+    private static final int NUMBER_OF_SYMBOLS = 256;
+    private static final int NUMBER_OF_STRIPES = 4;
+    private static final int ORDER_0_SHIFT = 12;
+    private static final int ORDER_1_SHIFT = 12;
+    private static final int RANS_L = 1 << 15;
+
+    /**
+     * Compress {@code data} using the transformations and model selected by {@code flags}. Transformations that
+     * don't reduce the size of the data (RLE), or that can't be applied to it (PACK with more than 16 distinct
+     * symbols), are dropped, and the data is stored uncompressed if entropy coding would expand it.
+     *
+     * @param data the data to compress
+     * @param flags a combination of the *_FLAG constants, other than {@link #NOSZ_FLAG}, which is only used
+     *              internally for the stripes of a {@link #STRIPE_FLAG} stream
+     * @return the compressed stream
+     */
+    public byte[] compress(final byte[] data, final int flags) {
+        if ((flags & NOSZ_FLAG) != 0) {
+            throw new IllegalArgumentException("rANS Nx16 streams without an uncompressed size can't be decoded");
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        if ((flags & STRIPE_FLAG) != 0) {
+            compressStripes(data, flags, out);
+        } else {
+            compress(data, flags, out);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param compressed a stream created by {@link #compress(byte[], int)}
+     * @return the uncompressed data
+     */
+    public byte[] uncompress(final byte[] compressed) {
+        return uncompress(CompressionUtils.wrap(compressed), -1);
+    }
+
+    private void compressStripes(final byte[] data, final int flags, final ByteArrayOutputStream out) {
+        final int subFlags = (flags & ~(STRIPE_FLAG | NOSZ_FLAG)) | NOSZ_FLAG;
+        final byte[][] stripes = CompressionUtils.stripe(data, NUMBER_OF_STRIPES);
+        final byte[][] compressedStripes = new byte[NUMBER_OF_STRIPES][];
+        for (int i = 0; i < NUMBER_OF_STRIPES; i++) {
+            final ByteArrayOutputStream stripeOut = new ByteArrayOutputStream(stripes[i].length / 2 + 64);
+            compress(stripes[i], subFlags, stripeOut);
+            compressedStripes[i] = stripeOut.toByteArray();
+        }
+        out.write(STRIPE_FLAG);
+        CompressionUtils.writeUint7(data.length, out);
+        out.write(NUMBER_OF_STRIPES);
+        for (final byte[] compressedStripe : compressedStripes) {
+            CompressionUtils.writeUint7(compressedStripe.length, out);
+        }
+        for (final byte[] compressedStripe : compressedStripes) {
+            out.write(compressedStripe, 0, compressedStripe.length);
+        }
+    }
+
+    private void compress(final byte[] data, final int requestedFlags, final ByteArrayOutputStream out) {
+        int flags = requestedFlags & ~STRIPE_FLAG;
+        final ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        byte[] transformed = data;
+
+        if ((flags & PACK_FLAG) != 0) {
+            final ByteArrayOutputStream packMeta = new ByteArrayOutputStream();
+            final byte[] packed = CompressionUtils.encodePack(transformed, packMeta);
+            if (packed == null) {
+                flags &= ~PACK_FLAG;
+            } else {
+                CompressionUtils.writeUint7(packed.length, packMeta);
+                meta.write(packMeta.toByteArray(), 0, packMeta.size());
+                transformed = packed;
+            }
+        }
+        if ((flags & RLE_FLAG) != 0) {
+            final byte[] literals = encodeRLE(transformed, meta);
+            if (literals == null) {
+                flags &= ~RLE_FLAG;
+            } else {
+                transformed = literals;
+            }
+        }
+
+        byte[] encoded = null;
+        if ((flags & CAT_FLAG) == 0 && transformed.length > 0) {
+            final int numStates = (flags & N32_FLAG) != 0 ? 32 : 4;
+            encoded = (flags & ORDER_FLAG) != 0 ?
+                    compressOrder1(transformed, numStates) :
+                    compressOrder0(transformed, numStates);
+            if (encoded.length >= transformed.length) {
+                encoded = null;
+            }
+        }
+        if (encoded == null) {
+            flags = (flags | CAT_FLAG) & ~(ORDER_FLAG | N32_FLAG);
+            encoded = transformed;
+        }
+
+        out.write(flags);
+        if ((flags & NOSZ_FLAG) == 0) {
+            CompressionUtils.writeUint7(data.length, out);
+        }
+        out.write(meta.toByteArray(), 0, meta.size());
+        out.write(encoded, 0, encoded.length);
+    }
+
+    private byte[] uncompress(final ByteBuffer in, final int knownLength) {
+        if (!in.hasRemaining()) {
+            return new byte[0];
+        }
+        final int flags = in.get() & 0xFF;
+        final int length = (flags & NOSZ_FLAG) == 0 ? CompressionUtils.readUint7(in) : knownLength;
+        if (length < 0) {
+            throw new CRAMException("rANS Nx16 stream has no uncompressed size");
+        }
+        if ((flags & STRIPE_FLAG) != 0) {
+            return uncompressStripes(in, length);
+        }
+
+        int transformedLength = length;
+        byte[] packMap = null;
+        int packSymbols = 0;
+        if ((flags & PACK_FLAG) != 0) {
+            packSymbols = in.get() & 0xFF;
+            if (packSymbols == 0) {
+                packSymbols = NUMBER_OF_SYMBOLS;
+            }
+            packMap = packSymbols <= 16 ? CompressionUtils.readBytes(in, packSymbols) : new byte[0];
+            transformedLength = CompressionUtils.readUint7(in);
+        }
+        final int packedLength = transformedLength;
+
+        byte[] rleMeta = null;
+        if ((flags & RLE_FLAG) != 0) {
+            final int metaLength = CompressionUtils.readUint7(in);
+            transformedLength = CompressionUtils.readUint7(in);
+            if ((metaLength & 1) != 0) {
+                rleMeta = CompressionUtils.readBytes(in, metaLength / 2);
+            } else {
+                final int compressedMetaLength = CompressionUtils.readUint7(in);
+                rleMeta = uncompressOrder0(CompressionUtils.slice(in, compressedMetaLength), metaLength / 2, 4);
+            }
+        }
+
+        byte[] data;
+        if ((flags & CAT_FLAG) != 0) {
+            data = CompressionUtils.readBytes(in, transformedLength);
+        } else {
+            final int numStates = (flags & N32_FLAG) != 0 ? 32 : 4;
+            data = (flags & ORDER_FLAG) != 0 ?
+                    uncompressOrder1(in, transformedLength, numStates) :
+                    uncompressOrder0(in, transformedLength, numStates);
+        }
+        if (rleMeta != null) {
+            data = decodeRLE(data, rleMeta, packedLength);
+        }
+        if (packMap != null) {
+            data = CompressionUtils.decodePack(data, packMap, packSymbols, length);
+        }
+        return data;
+    }
+
+    private byte[] uncompressStripes(final ByteBuffer in, final int length) {
+        final int numStripes = in.get() & 0xFF;
+        if (numStripes == 0) {
+            throw new CRAMException("rANS Nx16 stream has no stripes");
+        }
+        final int[] compressedLengths = new int[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            compressedLengths[i] = CompressionUtils.readUint7(in);
+        }
+        final byte[][] stripes = new byte[numStripes][];
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = uncompress(
+                    CompressionUtils.slice(in, compressedLengths[i]),
+                    CompressionUtils.getStripeLength(length, numStripes, i));
+        }
+        return CompressionUtils.unstripe(stripes, length);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+    // RLE: runs of selected symbols are replaced by a single literal, and the run lengths stored
+    // in the metadata, which is itself order-0 compressed if that makes it smaller.
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    private byte[] encodeRLE(final byte[] data, final ByteArrayOutputStream meta) {
+        // a symbol is worth run-length encoding if it repeats more often than not
+        final int[] saved = new int[NUMBER_OF_SYMBOLS];
+        int last = -1;
+        for (final byte b : data) {
+            final int sym = b & 0xFF;
+            if (sym == last) {
+                saved[sym]++;
+            } else {
+                saved[sym]--;
+                last = sym;
+            }
+        }
+        final ByteArrayOutputStream runs = new ByteArrayOutputStream();
+        int numRLESymbols = 0;
+        for (int i = 0; i < NUMBER_OF_SYMBOLS; i++) {
+            if (saved[i] > 0) {
+                numRLESymbols++;
+            }
+        }
+        if (numRLESymbols == 0) {
+            return null;
+        }
+        runs.write(numRLESymbols == NUMBER_OF_SYMBOLS ? 0 : numRLESymbols);
+        for (int i = 0; i < NUMBER_OF_SYMBOLS; i++) {
+            if (saved[i] > 0) {
+                runs.write(i);
+            }
+        }
+
+        final byte[] literals = new byte[data.length];
+        int numLiterals = 0;
+        for (int i = 0; i < data.length; i++) {
+            final byte sym = data[i];
+            literals[numLiterals++] = sym;
+            if (saved[sym & 0xFF] > 0) {
+                int run = 0;
+                while (i + 1 < data.length && data[i + 1] == sym) {
+                    run++;
+                    i++;
+                }
+                CompressionUtils.writeUint7(run, runs);
+            }
+        }
+        final byte[] runData = runs.toByteArray();
+        if (numLiterals + runData.length >= data.length * 0.99) {
+            return null;
+        }
+
+        final byte[] compressedRuns = runData.length > 0 ? compressOrder0(runData, 4) : runData;
+        if (compressedRuns.length < runData.length) {
+            CompressionUtils.writeUint7(runData.length * 2, meta);
+            CompressionUtils.writeUint7(numLiterals, meta);
+            CompressionUtils.writeUint7(compressedRuns.length, meta);
+            meta.write(compressedRuns, 0, compressedRuns.length);
+        } else {
+            CompressionUtils.writeUint7(runData.length * 2 + 1, meta);
+            CompressionUtils.writeUint7(numLiterals, meta);
+            meta.write(runData, 0, runData.length);
+        }
+        final byte[] trimmed = new byte[numLiterals];
+        System.arraycopy(literals, 0, trimmed, 0, numLiterals);
+        return trimmed;
+    }
+
+    private byte[] decodeRLE(final byte[] literals, final byte[] meta, final int length) {
+        final ByteBuffer metaBuffer = CompressionUtils.wrap(meta);
+        int numRLESymbols = metaBuffer.get() & 0xFF;
+        if (numRLESymbols == 0) {
+            numRLESymbols = NUMBER_OF_SYMBOLS;
+        }
+        final boolean[] isRLESymbol = new boolean[NUMBER_OF_SYMBOLS];
+        for (int i = 0; i < numRLESymbols; i++) {
+            isRLESymbol[metaBuffer.get() & 0xFF] = true;
+        }
+        final byte[] data = new byte[length];
+        int j = 0;
+        for (final byte sym : literals) {
+            final int run = isRLESymbol[sym & 0xFF] ? CompressionUtils.readUint7(metaBuffer) : 0;
+            if (j + run + 1 > length) {
+                throw new CRAMException("RLE run extends beyond the expected uncompressed length");
+            }
+            for (int k = 0; k <= run; k++) {
+                data[j++] = sym;
+            }
+        }
+        if (j != length) {
+            throw new CRAMException(String.format("RLE decoded %d bytes, expected %d", j, length));
+        }
+        return data;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+    // Order-0 and order-1 rANS with N interleaved states
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static byte[] compressOrder0(final byte[] data, final int numStates) {
+        final int[] freqs = new int[NUMBER_OF_SYMBOLS];
+        for (final byte b : data) {
+            freqs[b & 0xFF]++;
+        }
+        normaliseFrequencies(freqs, 1 << ORDER_0_SHIFT);
+        final int[] starts = cumulativeFrequencies(freqs);
+
+        final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        writeAlphabet(freqs, table);
+        for (int i = 0; i < NUMBER_OF_SYMBOLS; i++) {
+            if (freqs[i] != 0) {
+                CompressionUtils.writeUint7(freqs[i], table);
+            }
+        }
+
+        final ReverseOutput out = new ReverseOutput(data.length + data.length / 8 + 16 + 4 * numStates);
+        final int[] states = initialStates(numStates);
+        for (int i = data.length - 1; i >= 0; i--) {
+            final int sym = data[i] & 0xFF;
+            final int z = i % numStates;
+            states[z] = encodeSymbol(states[z], freqs[sym], starts[sym], ORDER_0_SHIFT, out);
+        }
+        for (int z = numStates - 1; z >= 0; z--) {
+            out.putInt(states[z]);
+        }
+        return concatenate(table, out);
+    }
+
+    private static byte[] uncompressOrder0(final ByteBuffer in, final int length, final int numStates) {
+        final byte[] data = new byte[length];
+        if (length == 0) {
+            return data;
+        }
+        final int[] freqs = new int[NUMBER_OF_SYMBOLS];
+        final boolean[] alphabet = readAlphabet(in);
+        int total = 0;
+        for (int i = 0; i < NUMBER_OF_SYMBOLS; i++) {
+            if (alphabet[i]) {
+                freqs[i] = CompressionUtils.readUint7(in);
+                total += freqs[i];
+            }
+        }
+        scaleToPowerOfTwo(freqs, total, ORDER_0_SHIFT);
+        final int[] starts = cumulativeFrequencies(freqs);
+        final byte[] symbols = reverseLookup(freqs, starts, ORDER_0_SHIFT);
+
+        final int mask = (1 << ORDER_0_SHIFT) - 1;
+        final int[] states = readStates(in, numStates);
+        final int blockEnd = length - (length % numStates);
+        for (int i = 0; i < blockEnd; i += numStates) {
+            for (int z = 0; z < numStates; z++) {
+                final int m = states[z] & mask;
+                final int sym = symbols[m] & 0xFF;
+                data[i + z] = (byte) sym;
+                states[z] = renormalise(freqs[sym] * (states[z] >>> ORDER_0_SHIFT) + m - starts[sym], in);
+            }
+        }
+        for (int i = blockEnd; i < length; i++) {
+            data[i] = symbols[states[i - blockEnd] & mask];
+        }
+        return data;
+    }
+
+    private static byte[] compressOrder1(final byte[] data, final int numStates) {
+        final int length = data.length;
+        final int segmentLength = length / numStates;
+        final int[][] freqs = new int[NUMBER_OF_SYMBOLS][NUMBER_OF_SYMBOLS];
+        final boolean[] alphabet = new boolean[NUMBER_OF_SYMBOLS];
+        alphabet[0] = true;
+        for (int i = 0; i < length; i++) {
+            final int sym = data[i] & 0xFF;
+            freqs[order1Context(data, i, segmentLength, numStates)][sym]++;
+            alphabet[sym] = true;
+        }
+
+        final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        writeAlphabet(alphabet, table);
+        final int[][] starts = new int[NUMBER_OF_SYMBOLS][];
+        for (int ctx = 0; ctx < NUMBER_OF_SYMBOLS; ctx++) {
+            if (!alphabet[ctx]) {
+                continue;
+            }
+            normaliseFrequencies(freqs[ctx], 1 << ORDER_1_SHIFT);
+            starts[ctx] = cumulativeFrequencies(freqs[ctx]);
+            // frequencies of the symbols in the alphabet, with runs of zeros stored as a zero and a run count
+            int zeroRun = 0;
+            for (int sym = 0; sym < NUMBER_OF_SYMBOLS; sym++) {
+                if (!alphabet[sym]) {
+                    continue;
+                }
+                if (freqs[ctx][sym] == 0) {
+                    if (zeroRun++ == 0) {
+                        table.write(0);
+                    }
+                } else {
+                    if (zeroRun > 0) {
+                        table.write(zeroRun - 1);
+                        zeroRun = 0;
+                    }
+                    CompressionUtils.writeUint7(freqs[ctx][sym], table);
+                }
+            }
+            if (zeroRun > 0) {
+                table.write(zeroRun - 1);
+            }
+        }
+
+        final ReverseOutput out = new ReverseOutput(length + length / 8 + 16 + 4 * numStates);
+        final int[] states = initialStates(numStates);
+        final int last = numStates - 1;
+        // the remainder of the data is handled by the last state after the interleaved segments
+        for (int i = length - 1; i >= numStates * segmentLength; i--) {
+            final int sym = data[i] & 0xFF;
+            final int ctx = order1Context(data, i, segmentLength, numStates);
+            states[last] = encodeSymbol(states[last], freqs[ctx][sym], starts[ctx][sym], ORDER_1_SHIFT, out);
+        }
+        for (int j = segmentLength - 1; j >= 0; j--) {
+            for (int z = last; z >= 0; z--) {
+                final int i = z * segmentLength + j;
+                final int sym = data[i] & 0xFF;
+                final int ctx = j == 0 ? 0 : data[i - 1] & 0xFF;
+                states[z] = encodeSymbol(states[z], freqs[ctx][sym], starts[ctx][sym], ORDER_1_SHIFT, out);
+            }
+        }
+        for (int z = last; z >= 0; z--) {
+            out.putInt(states[z]);
+        }
+
+        // the frequency table is itself order-0 compressed if that makes it smaller
+        final byte[] rawTable = table.toByteArray();
+        final byte[] compressedTable = compressOrder0(rawTable, 4);
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        final ByteArrayOutputStream compressedHeader = new ByteArrayOutputStream();
+        compressedHeader.write((ORDER_1_SHIFT << 4) | 1);
+        CompressionUtils.writeUint7(rawTable.length, compressedHeader);
+        CompressionUtils.writeUint7(compressedTable.length, compressedHeader);
+        compressedHeader.write(compressedTable, 0, compressedTable.length);
+        if (compressedHeader.size() < rawTable.length + 1) {
+            return concatenate(compressedHeader, out);
+        }
+        header.write(ORDER_1_SHIFT << 4);
+        header.write(rawTable, 0, rawTable.length);
+        return concatenate(header, out);
+    }
+
+    private static int order1Context(final byte[] data, final int i, final int segmentLength, final int numStates) {
+        final int segmentStart = segmentLength == 0 ? 0 : Math.min(i / segmentLength, numStates - 1) * segmentLength;
+        return i == segmentStart ? 0 : data[i - 1] & 0xFF;
+    }
+
+    private static byte[] uncompressOrder1(final ByteBuffer in, final int length, final int numStates) {
+        final byte[] data = new byte[length];
+        if (length == 0) {
+            return data;
+        }
+        final int tableFlags = in.get() & 0xFF;
+        final int shift = tableFlags >> 4;
+        if (shift < 1 || shift > ORDER_1_SHIFT) {
+            throw new CRAMException("Invalid rANS Nx16 order-1 frequency precision: " + shift);
+        }
+        final ByteBuffer table;
+        if ((tableFlags & 1) != 0) {
+            final int uncompressedTableLength = CompressionUtils.readUint7(in);
+            final int compressedTableLength = CompressionUtils.readUint7(in);
+            table = CompressionUtils.wrap(
+                    uncompressOrder0(CompressionUtils.slice(in, compressedTableLength), uncompressedTableLength, 4));
+        } else {
+            table = in;
+        }
+
+        final boolean[] alphabet = readAlphabet(table);
+        final int[][] freqs = new int[NUMBER_OF_SYMBOLS][];
+        final int[][] starts = new int[NUMBER_OF_SYMBOLS][];
+        final byte[][] symbols = new byte[NUMBER_OF_SYMBOLS][];
+        for (int ctx = 0; ctx < NUMBER_OF_SYMBOLS; ctx++) {
+            if (!alphabet[ctx]) {
+                continue;
+            }
+            final int[] f = new int[NUMBER_OF_SYMBOLS];
+            int total = 0;
+            int zeroRun = 0;
+            for (int sym = 0; sym < NUMBER_OF_SYMBOLS; sym++) {
+                if (!alphabet[sym]) {
+                    continue;
+                }
+                if (zeroRun > 0) {
+                    zeroRun--;
+                    continue;
+                }
+                f[sym] = CompressionUtils.readUint7(table);
+                total += f[sym];
+                if (f[sym] == 0) {
+                    zeroRun = table.get() & 0xFF;
+                }
+            }
+            if (total == 0) {
+                continue;
+            }
+            scaleToPowerOfTwo(f, total, shift);
+            freqs[ctx] = f;
+            starts[ctx] = cumulativeFrequencies(f);
+            symbols[ctx] = reverseLookup(f, starts[ctx], shift);
+        }
+
+        final int mask = (1 << shift) - 1;
+        final int[] states = readStates(in, numStates);
+        final int[] contexts = new int[numStates];
+        final int segmentLength = length / numStates;
+        final int last = numStates - 1;
+        for (int j = 0; j < segmentLength; j++) {
+            for (int z = 0; z < numStates; z++) {
+                final int ctx = contexts[z];
+                if (symbols[ctx] == null) {
+                    throw new CRAMException("rANS Nx16 order-1 stream references an empty context: " + ctx);
+                }
+                final int m = states[z] & mask;
+                final int sym = symbols[ctx][m] & 0xFF;
+                data[z * segmentLength + j] = (byte) sym;
+                states[z] = renormalise(freqs[ctx][sym] * (states[z] >>> shift) + m - starts[ctx][sym], in);
+                contexts[z] = sym;
+            }
+        }
+        // the remainder is decoded by the last state
+        for (int i = numStates * segmentLength; i < length; i++) {
+            final int ctx = contexts[last];
+            if (symbols[ctx] == null) {
+                throw new CRAMException("rANS Nx16 order-1 stream references an empty context: " + ctx);
+            }
+            final int m = states[last] & mask;
+            final int sym = symbols[ctx][m] & 0xFF;
+            data[i] = (byte) sym;
+            states[last] = renormalise(freqs[ctx][sym] * (states[last] >>> shift) + m - starts[ctx][sym], in);
+            contexts[last] = sym;
+        }
+        return data;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+    // Shared helpers
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static int[] initialStates(final int numStates) {
+        final int[] states = new int[numStates];
+        java.util.Arrays.fill(states, RANS_L);
+        return states;
+    }
+
+    private static int[] readStates(final ByteBuffer in, final int numStates) {
+        final int[] states = new int[numStates];
+        for (int z = 0; z < numStates; z++) {
+            states[z] = in.getInt();
+        }
+        return states;
+    }
+
+    private static int encodeSymbol(int state, final int freq, final int start, final int shift, final ReverseOutput out) {
+        final long maxState = ((long) (RANS_L >> shift) << 16) * freq;
+        if ((state & 0xFFFFFFFFL) >= maxState) {
+            out.putShort(state & 0xFFFF);
+            state >>>= 16;
+        }
+        return ((state / freq) << shift) + (state % freq) + start;
+    }
+
+    private static int renormalise(int state, final ByteBuffer in) {
+        if (state < RANS_L) {
+            state = (state << 16) | (in.getShort() & 0xFFFF);
+        }
+        return state;
+    }
+
+    /**
+     * Scale the non-zero frequencies so they add up to exactly {@code total}, keeping every symbol that is present
+     * at a frequency of at least 1.
+     */
+    private static void normaliseFrequencies(final int[] freqs, final int total) {
+        long sum = 0;
+        for (final int f : freqs) {
+            sum += f;
+        }
+        if (sum == 0) {
+            return;
+        }
+        int newSum = 0;
+        int maxIndex = 0;
+        for (int i = 0; i < freqs.length; i++) {
+            if (freqs[i] == 0) {
+                continue;
+            }
+            freqs[i] = Math.max(1, (int) ((freqs[i] * (long) total) / sum));
+            newSum += freqs[i];
+            if (freqs[i] > freqs[maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        int excess = newSum - total;
+        if (excess <= 0 || freqs[maxIndex] - excess >= 1) {
+            freqs[maxIndex] -= excess;
+            return;
+        }
+        // too many symbols were rounded up to 1; take the excess from the largest frequencies
+        while (excess > 0) {
+            int largest = 0;
+            for (int i = 0; i < freqs.length; i++) {
+                if (freqs[i] > freqs[largest]) {
+                    largest = i;
+                }
+            }
+            final int reduction = Math.min(excess, Math.max(1, freqs[largest] / 2));
+            freqs[largest] -= reduction;
+            excess -= reduction;
+        }
+    }
+
+    private static void scaleToPowerOfTwo(final int[] freqs, final int total, final int shift) {
+        if (total <= 0 || total > (1 << shift) || Integer.bitCount(total) != 1) {
+            throw new CRAMException(String.format("Invalid rANS Nx16 frequency total %d", total));
+        }
+        final int scale = shift - Integer.numberOfTrailingZeros(total);
+        for (int i = 0; i < freqs.length; i++) {
+            freqs[i] <<= scale;
+        }
+    }
+
+    private static int[] cumulativeFrequencies(final int[] freqs) {
+        final int[] starts = new int[NUMBER_OF_SYMBOLS];
+        for (int i = 1; i < NUMBER_OF_SYMBOLS; i++) {
+            starts[i] = starts[i - 1] + freqs[i - 1];
+        }
+        return starts;
+    }
+
+    private static byte[] reverseLookup(final int[] freqs, final int[] starts, final int shift) {
+        final byte[] symbols = new byte[1 << shift];
+        for (int i = 0; i < NUMBER_OF_SYMBOLS; i++) {
+            for (int j = 0; j < freqs[i]; j++) {
+                symbols[starts[i] + j] = (byte) i;
+            }
+        }
+        return symbols;
+    }
+
+    private static void writeAlphabet(final int[] freqs, final ByteArrayOutputStream out) {
+        final boolean[] alphabet = new boolean[NUMBER_OF_SYMBOLS];
+        for (int i = 0; i < NUMBER_OF_SYMBOLS; i++) {
+            alphabet[i] = freqs[i] != 0;
+        }
+        writeAlphabet(alphabet, out);
+    }
+
+    // The alphabet is a list of symbols, with runs of consecutive symbols stored as the first symbol,
+    // the second symbol and a count of the remaining symbols in the run; it is terminated by a zero.
+    private static void writeAlphabet(final boolean[] alphabet, final ByteArrayOutputStream out) {
+        int run = 0;
+        for (int j = 0; j < NUMBER_OF_SYMBOLS; j++) {
+            if (!alphabet[j]) {
+                continue;
+            }
+            if (run > 0) {
+                run--;
+            } else {
+                out.write(j);
+                if (j > 0 && alphabet[j - 1]) {
+                    int end = j + 1;
+                    while (end < NUMBER_OF_SYMBOLS && alphabet[end]) {
+                        end++;
+                    }
+                    run = end - (j + 1);
+                    out.write(run);
+                }
+            }
+        }
+        out.write(0);
+    }
+
+    private static boolean[] readAlphabet(final ByteBuffer in) {
+        final boolean[] alphabet = new boolean[NUMBER_OF_SYMBOLS];
+        int run = 0;
+        int sym = in.get() & 0xFF;
+        do {
+            alphabet[sym] = true;
+            if (run > 0) {
+                run--;
+                sym++;
+                if (sym >= NUMBER_OF_SYMBOLS) {
+                    throw new CRAMException("Invalid rANS Nx16 symbol alphabet");
+                }
+            } else {
+                final int next = in.get() & 0xFF;
+                if (next == sym + 1) {
+                    sym = next;
+                    run = in.get() & 0xFF;
+                } else {
+                    sym = next;
+                }
+            }
+        } while (sym != 0);
+        return alphabet;
+    }
+
+    private static byte[] concatenate(final ByteArrayOutputStream header, final ReverseOutput body) {
+        final byte[] result = new byte[header.size() + body.size()];
+        System.arraycopy(header.toByteArray(), 0, result, 0, header.size());
+        body.copyTo(result, header.size());
+        return result;
+    }
+
+    /**
+     * rANS encoders work backwards through the data, so their output is written from the end of a buffer.
+     */
+    private static final class ReverseOutput {
+        private byte[] buffer;
+        private int position;
+
+        ReverseOutput(final int initialCapacity) {
+            buffer = new byte[Math.max(16, initialCapacity)];
+            position = buffer.length;
+        }
+
+        void putShort(final int value) {
+            ensureCapacity(2);
+            buffer[--position] = (byte) (value >> 8);
+            buffer[--position] = (byte) value;
+        }
+
+        void putInt(final int value) {
+            ensureCapacity(4);
+            buffer[--position] = (byte) (value >> 24);
+            buffer[--position] = (byte) (value >> 16);
+            buffer[--position] = (byte) (value >> 8);
+            buffer[--position] = (byte) value;
+        }
+
+        int size() {
+            return buffer.length - position;
+        }
+
+        void copyTo(final byte[] destination, final int offset) {
+            System.arraycopy(buffer, position, destination, offset, size());
+        }
+
+        private void ensureCapacity(final int bytes) {
+            if (position < bytes) {
+                final int size = size();
+                final byte[] newBuffer = new byte[buffer.length * 2];
+                System.arraycopy(buffer, position, newBuffer, newBuffer.length - size, size);
+                position = newBuffer.length - size;
+                buffer = newBuffer;
+            }
+        }
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.compression.tokeniser;
+
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.CompressionUtils;
+import htsjdk.samtools.cram.compression.range.RangeCodec;
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The CRAM 3.1 read name tokeniser ("tok3"). Each name is split into tokens (runs of digits, runs of letters and
+ * single punctuation characters), and each token is described relative to the token in the same position of the
+ * previous name: an exact match, a small numeric delta, or a new literal value. The token types and values are
+ * gathered into one stream per token position and type, and each stream is compressed with rANS Nx16 or the
+ * arithmetic coder.
+ *
+ * The input to {@link #compress} and the output of {@link #uncompress} is a series of names, each terminated by a
+ * separator byte.
+ *
+ * Instances hold no state between calls and may be shared.
+ */
+public final class NameTokeniser {
+    // token types, which are also the stream types within each position
+    private static final int TOKEN_TYPE = 0;
+    private static final int TOKEN_STRING = 1;
+    private static final int TOKEN_CHAR = 2;
+    private static final int TOKEN_DIGITS0 = 3;
+    private static final int TOKEN_DZLEN = 4;
+    private static final int TOKEN_DUP = 5;
+    private static final int TOKEN_DIFF = 6;
+    private static final int TOKEN_DIGITS = 7;
+    private static final int TOKEN_DELTA = 8;
+    private static final int TOKEN_DELTA0 = 9;
+    private static final int TOKEN_MATCH = 10;
+    private static final int TOKEN_NOP = 11;
+    private static final int TOKEN_END = 12;
+    private static final int NUMBER_OF_TOKEN_TYPES = 13;
+
+    private static final int NEW_POSITION_FLAG = 0x80;
+    private static final int DUP_STREAM_FLAG = 0x40;
+    private static final int TYPE_MASK = 0x3F;
+
+    // the reference implementation supports at most 128 positions, including position 0 and the END token
+    private static final int MAX_TOKENS = 126;
+    // longer runs of digits may not fit in the 32 bit DIGITS values, and are stored as strings
+    private static final int MAX_DIGITS = 9;
+    private static final int MAX_DELTA = 255;
+
+    // the transformations tried for each stream, which have the same flag values for rANS Nx16 and the arithmetic coder
+    private static final int[] STREAM_FLAGS = {
+            0x00,
+            RANSNx16.ORDER_FLAG,
+            RANSNx16.RLE_FLAG,
+            RANSNx16.RLE_FLAG | RANSNx16.ORDER_FLAG,
+            RANSNx16.PACK_FLAG,
+            RANSNx16.PACK_FLAG | RANSNx16.RLE_FLAG
+    };
+
+    /**
+     * @param names the names to compress, each terminated by {@code separator}
+     * @param separator the byte that terminates each name
+     * @param useArithmeticCoder compress the token streams with the arithmetic coder rather than rANS Nx16
+     * @return the compressed stream
+     */
+    public byte[] compress(final byte[] names, final byte separator, final boolean useArithmeticCoder) {
+        if (names.length > 0 && names[names.length - 1] != separator) {
+            throw new IllegalArgumentException("The last name is not terminated by the separator");
+        }
+        final TokenStreams streams = new TokenStreams();
+        List<Token> previousTokens = null;
+        byte[] previousName = null;
+        int numNames = 0;
+        for (int start = 0; start < names.length; numNames++) {
+            int end = start;
+            while (names[end] != separator) {
+                end++;
+            }
+            final byte[] name = Arrays.copyOfRange(names, start, end);
+            start = end + 1;
+
+            if (previousName != null && Arrays.equals(name, previousName)) {
+                streams.get(0, TOKEN_TYPE).write(TOKEN_DUP);
+                writeInt(1, streams.get(0, TOKEN_DUP));
+                continue;
+            }
+            streams.get(0, TOKEN_TYPE).write(TOKEN_DIFF);
+            writeInt(previousName == null ? 0 : 1, streams.get(0, TOKEN_DIFF));
+            final List<Token> tokens = tokenise(name);
+            for (int i = 0; i < tokens.size(); i++) {
+                final Token previous = previousTokens != null && i < previousTokens.size() ? previousTokens.get(i) : null;
+                encodeToken(tokens.get(i), previous, i + 1, streams);
+            }
+            streams.get(tokens.size() + 1, TOKEN_TYPE).write(TOKEN_END);
+            previousTokens = tokens;
+            previousName = name;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(names.length / 4 + 16);
+        writeInt(names.length, out);
+        writeInt(numNames, out);
+        out.write(useArithmeticCoder ? 1 : 0);
+        streams.write(out, useArithmeticCoder);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param compressed a compressed name tokeniser stream
+     * @param separator the byte to terminate each name with
+     * @return the names, each terminated by {@code separator}
+     */
+    public byte[] uncompress(final byte[] compressed, final byte separator) {
+        try {
+            final ByteBuffer in = CompressionUtils.wrap(compressed);
+            final int length = in.getInt();
+            final int numNames = in.getInt();
+            final boolean useArithmeticCoder = in.get() != 0;
+            if (length < 0 || numNames < 0) {
+                throw new CRAMException("Invalid name tokeniser header");
+            }
+            final ByteBuffer[][] streams = readStreams(in, numNames, useArithmeticCoder);
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+            final byte[][][] tokens = new byte[numNames][][];
+            for (int n = 0; n < numNames; n++) {
+                tokens[n] = decodeName(streams, tokens, n);
+                for (final byte[] token : tokens[n]) {
+                    out.write(token, 0, token.length);
+                }
+                out.write(separator);
+            }
+            if (out.size() != length) {
+                throw new CRAMException(String.format(
+                        "Decoded names have length %d, expected %d", out.size(), length));
+            }
+            return out.toByteArray();
+        } catch (final BufferUnderflowException e) {
+            throw new CRAMException("Truncated or corrupt name tokeniser stream", e);
+        }
+    }
+
+    private static void encodeToken(final Token token, final Token previous, final int position, final TokenStreams streams) {
+        final ByteArrayOutputStream types = streams.get(position, TOKEN_TYPE);
+        if (previous != null && Arrays.equals(token.text, previous.text)) {
+            types.write(TOKEN_MATCH);
+            token.effectiveType = previous.effectiveType;
+            return;
+        }
+        final long delta = previous == null ? -1 : token.value - previous.value;
+        if (token.type == TOKEN_DIGITS && delta >= 0 && delta <= MAX_DELTA &&
+                (previous.effectiveType == TOKEN_DIGITS || previous.effectiveType == TOKEN_DELTA)) {
+            types.write(TOKEN_DELTA);
+            streams.get(position, TOKEN_DELTA).write((int) delta);
+            token.effectiveType = TOKEN_DELTA;
+            return;
+        }
+        if (token.type == TOKEN_DIGITS0 && delta >= 0 && delta <= MAX_DELTA && token.text.length == previous.text.length &&
+                (previous.effectiveType == TOKEN_DIGITS0 || previous.effectiveType == TOKEN_DELTA0)) {
+            types.write(TOKEN_DELTA0);
+            streams.get(position, TOKEN_DELTA0).write((int) delta);
+            token.effectiveType = TOKEN_DELTA0;
+            return;
+        }
+
+        types.write(token.type);
+        token.effectiveType = token.type;
+        switch (token.type) {
+            case TOKEN_CHAR:
+                streams.get(position, TOKEN_CHAR).write(token.text[0]);
+                break;
+            case TOKEN_STRING:
+                final ByteArrayOutputStream strings = streams.get(position, TOKEN_STRING);
+                strings.write(token.text, 0, token.text.length);
+                strings.write(0);
+                break;
+            case TOKEN_DIGITS:
+                writeInt((int) token.value, streams.get(position, TOKEN_DIGITS));
+                break;
+            case TOKEN_DIGITS0:
+                writeInt((int) token.value, streams.get(position, TOKEN_DIGITS0));
+                streams.get(position, TOKEN_DZLEN).write(token.text.length);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected token type " + token.type);
+        }
+    }
+
+    /**
+     * Split a name into runs of digits, runs of other alphanumeric characters, and single punctuation characters.
+     */
+    private static List<Token> tokenise(final byte[] name) {
+        final List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < name.length) {
+            final int start = i;
+            if (tokens.size() == MAX_TOKENS - 1) {
+                // the remainder of an unusually long name becomes a single token
+                i = name.length;
+            } else if (isDigit(name[i])) {
+                do {
+                    i++;
+                } while (i < name.length && isDigit(name[i]));
+            } else if (isPunctuation(name[i])) {
+                i++;
+            } else {
+                do {
+                    i++;
+                } while (i < name.length && !isDigit(name[i]) && !isPunctuation(name[i]));
+            }
+            tokens.add(new Token(Arrays.copyOfRange(name, start, i)));
+        }
+        return tokens;
+    }
+
+    private static boolean isDigit(final byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isPunctuation(final byte b) {
+        return b >= 0 && !isDigit(b) && !(b >= 'A' && b <= 'Z') && !(b >= 'a' && b <= 'z');
+    }
+
+    private static ByteBuffer[][] readStreams(final ByteBuffer in, final int numNames, final boolean useArithmeticCoder) {
+        final List<ByteBuffer[]> streams = new ArrayList<>();
+        while (in.hasRemaining()) {
+            final int header = in.get() & 0xFF;
+            final int type = header & TYPE_MASK;
+            if (type >= NUMBER_OF_TOKEN_TYPES) {
+                throw new CRAMException("Invalid token type in name tokeniser stream: " + type);
+            }
+            if ((header & NEW_POSITION_FLAG) != 0 || streams.isEmpty()) {
+                streams.add(new ByteBuffer[NUMBER_OF_TOKEN_TYPES]);
+                if (type != TOKEN_TYPE) {
+                    // the types are implicit: this type in the first name, matching it in the rest
+                    final byte[] types = new byte[numNames];
+                    Arrays.fill(types, (byte) TOKEN_MATCH);
+                    if (numNames > 0) {
+                        types[0] = (byte) type;
+                    }
+                    streams.get(streams.size() - 1)[TOKEN_TYPE] = CompressionUtils.wrap(types);
+                }
+            }
+            final ByteBuffer[] positionStreams = streams.get(streams.size() - 1);
+            if ((header & DUP_STREAM_FLAG) != 0) {
+                final int position = in.get() & 0xFF;
+                final int dupType = in.get() & 0xFF;
+                if (position >= streams.size() || dupType >= NUMBER_OF_TOKEN_TYPES || streams.get(position)[dupType] == null) {
+                    throw new CRAMException("Name tokeniser stream duplicates a missing stream");
+                }
+                positionStreams[type] = CompressionUtils.wrap(streams.get(position)[dupType].array());
+            } else {
+                final int compressedLength = CompressionUtils.readUint7(in);
+                final byte[] compressed = CompressionUtils.readBytes(in, compressedLength);
+                positionStreams[type] = CompressionUtils.wrap(useArithmeticCoder ?
+                        new RangeCodec().uncompress(compressed) :
+                        new RANSNx16().uncompress(compressed));
+            }
+        }
+        return streams.toArray(new ByteBuffer[0][]);
+    }
+
+    private static byte[][] decodeName(final ByteBuffer[][] streams, final byte[][][] names, final int n) {
+        final int nameType = getStream(streams[0], TOKEN_TYPE).get() & 0xFF;
+        if (nameType != TOKEN_DUP && nameType != TOKEN_DIFF) {
+            throw new CRAMException("Invalid name type in name tokeniser stream: " + nameType);
+        }
+        final int distance = getStream(streams[0], nameType).getInt();
+        if (distance < 0 || distance > n || (distance == 0 && nameType == TOKEN_DUP)) {
+            throw new CRAMException("Invalid previous name distance in name tokeniser stream: " + distance);
+        }
+        final byte[][] previous = distance == 0 ? new byte[0][] : names[n - distance];
+        if (nameType == TOKEN_DUP) {
+            return previous;
+        }
+
+        final List<byte[]> tokens = new ArrayList<>();
+        for (int position = 1; ; position++) {
+            if (position >= streams.length) {
+                throw new CRAMException("Name tokeniser stream has no END token");
+            }
+            final ByteBuffer[] positionStreams = streams[position];
+            final int type = getStream(positionStreams, TOKEN_TYPE).get() & 0xFF;
+            final byte[] previousToken = position - 1 < previous.length ? previous[position - 1] : null;
+            final byte[] token;
+            switch (type) {
+                case TOKEN_END:
+                    return tokens.toArray(new byte[0][]);
+                case TOKEN_CHAR:
+                    token = new byte[]{getStream(positionStreams, TOKEN_CHAR).get()};
+                    break;
+                case TOKEN_STRING:
+                    token = readString(getStream(positionStreams, TOKEN_STRING));
+                    break;
+                case TOKEN_DIGITS:
+                    token = toDigits(getStream(positionStreams, TOKEN_DIGITS).getInt() & 0xFFFFFFFFL, 0);
+                    break;
+                case TOKEN_DIGITS0: {
+                    final long value = getStream(positionStreams, TOKEN_DIGITS0).getInt() & 0xFFFFFFFFL;
+                    token = toDigits(value, getStream(positionStreams, TOKEN_DZLEN).get() & 0xFF);
+                    break;
+                }
+                case TOKEN_DELTA:
+                    token = toDigits(parseDigits(previousToken) + (getStream(positionStreams, TOKEN_DELTA).get() & 0xFF), 0);
+                    break;
+                case TOKEN_DELTA0:
+                    token = toDigits(parseDigits(previousToken) + (getStream(positionStreams, TOKEN_DELTA0).get() & 0xFF),
+                            previousToken.length);
+                    break;
+                case TOKEN_MATCH:
+                    if (previousToken == null) {
+                        throw new CRAMException("Name token matches a missing token in the previous name");
+                    }
+                    token = previousToken;
+                    break;
+                case TOKEN_NOP:
+                    token = new byte[0];
+                    break;
+                default:
+                    throw new CRAMException("Invalid token type in name tokeniser stream: " + type);
+            }
+            tokens.add(token);
+        }
+    }
+
+    private static ByteBuffer getStream(final ByteBuffer[] positionStreams, final int type) {
+        final ByteBuffer stream = positionStreams[type];
+        if (stream == null) {
+            throw new CRAMException("Name tokeniser stream is missing token stream of type " + type);
+        }
+        return stream;
+    }
+
+    private static byte[] readString(final ByteBuffer stream) {
+        final int start = stream.position();
+        int end = start;
+        while (end < stream.limit() && stream.get(end) != 0) {
+            end++;
+        }
+        if (end == stream.limit()) {
+            throw new CRAMException("Unterminated string in name tokeniser stream");
+        }
+        final byte[] string = Arrays.copyOfRange(stream.array(), stream.arrayOffset() + start, stream.arrayOffset() + end);
+        stream.position(end + 1);
+        return string;
+    }
+
+    private static long parseDigits(final byte[] token) {
+        if (token == null || token.length == 0 || token.length > 19) {
+            throw new CRAMException("Name token delta refers to a missing or non-numeric token in the previous name");
+        }
+        long value = 0;
+        for (final byte b : token) {
+            if (!isDigit(b)) {
+                throw new CRAMException("Name token delta refers to a non-numeric token in the previous name");
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    // format value in decimal, left padded with zeros to at least width digits
+    private static byte[] toDigits(final long value, final int width) {
+        final byte[] digits = Long.toString(value).getBytes();
+        if (digits.length >= width) {
+            return digits;
+        }
+        final byte[] padded = new byte[width];
+        Arrays.fill(padded, 0, width - digits.length, (byte) '0');
+        System.arraycopy(digits, 0, padded, width - digits.length, digits.length);
+        return padded;
+    }
+
+    private static void writeInt(final int value, final ByteArrayOutputStream out) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static final class Token {
+        private final byte[] text;
+        private final int type;
+        private final long value;
+        // the type used to encode the token, which decides how the next name's token may refer to it
+        private int effectiveType;
+
+        private Token(final byte[] text) {
+            this.text = text;
+            int digits = 0;
+            while (digits < text.length && isDigit(text[digits])) {
+                digits++;
+            }
+            if (digits == text.length && digits <= MAX_DIGITS) {
+                type = text.length > 1 && text[0] == '0' ? TOKEN_DIGITS0 : TOKEN_DIGITS;
+                long v = 0;
+                for (final byte b : text) {
+                    v = v * 10 + (b - '0');
+                }
+                value = v;
+            } else {
+                type = text.length == 1 ? TOKEN_CHAR : TOKEN_STRING;
+                value = -1;
+            }
+        }
+    }
+
+    /**
+     * The uncompressed streams, indexed by token position and type.
+     */
+    private static final class TokenStreams {
+        private final List<ByteArrayOutputStream[]> streams = new ArrayList<>();
+
+        private ByteArrayOutputStream get(final int position, final int type) {
+            while (streams.size() <= position) {
+                streams.add(new ByteArrayOutputStream[NUMBER_OF_TOKEN_TYPES]);
+            }
+            final ByteArrayOutputStream[] positionStreams = streams.get(position);
+            if (positionStreams[type] == null) {
+                positionStreams[type] = new ByteArrayOutputStream();
+            }
+            return positionStreams[type];
+        }
+
+        private void write(final ByteArrayOutputStream out, final boolean useArithmeticCoder) {
+            final List<byte[]> written = new ArrayList<>();
+            final List<int[]> writtenIds = new ArrayList<>();
+            for (int position = 0; position < streams.size(); position++) {
+                boolean newPosition = true;
+                for (int type = 0; type < NUMBER_OF_TOKEN_TYPES; type++) {
+                    final ByteArrayOutputStream stream = streams.get(position)[type];
+                    if (stream == null || (stream.size() == 0 && type != TOKEN_TYPE)) {
+                        continue;
+                    }
+                    final byte[] data = stream.toByteArray();
+                    final int header = type | (newPosition ? NEW_POSITION_FLAG : 0);
+                    newPosition = false;
+
+                    int duplicate = -1;
+                    for (int i = 0; i < written.size() && duplicate < 0; i++) {
+                        if (Arrays.equals(written.get(i), data)) {
+                            duplicate = i;
+                        }
+                    }
+                    if (duplicate >= 0) {
+                        out.write(header | DUP_STREAM_FLAG);
+                        out.write(writtenIds.get(duplicate)[0]);
+                        out.write(writtenIds.get(duplicate)[1]);
+                    } else {
+                        final byte[] compressed = compressStream(data, useArithmeticCoder);
+                        out.write(header);
+                        CompressionUtils.writeUint7(compressed.length, out);
+                        out.write(compressed, 0, compressed.length);
+                        written.add(data);
+                        writtenIds.add(new int[]{position, type});
+                    }
+                }
+            }
+        }
+
+        private static byte[] compressStream(final byte[] data, final boolean useArithmeticCoder) {
+            byte[] best = null;
+            for (final int flags : STREAM_FLAGS) {
+                final byte[] compressed = useArithmeticCoder ?
+                        new RangeCodec().compress(data, flags) :
+                        new RANSNx16().compress(data, flags);
+                if (best == null || compressed.length < best.length) {
+                    best = compressed;
+                }
+            }
+            return best;
+        }
+    }
+}
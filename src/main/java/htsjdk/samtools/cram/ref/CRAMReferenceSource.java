@@ -2,6 +2,8 @@ package htsjdk.samtools.cram.ref;
 
 import htsjdk.samtools.SAMSequenceRecord;
 
+import java.util.Arrays;
+
 /**
  * Interface used to supply a reference source when reading CRAM files.
  */
@@ -19,4 +21,30 @@ public interface CRAMReferenceSource {
      * bases representing the requested sequence, or null if the sequence cannot be found
      */
     byte[] getReferenceBases(final SAMSequenceRecord sequenceRecord, final boolean tryNameVariants);
+
+    /**
+     * Get a region of the bases of a reference sequence, trying common name variations if necessary. The default
+     * implementation retrieves the whole sequence using {@link #getReferenceBases}; implementations that can
+     * read (and cache) parts of a sequence should override this.
+     *
+     * @param sequenceRecord the SAMSequenceRecord identifying the reference being requested
+     * @param zeroBasedStart the zero-based start of the region
+     * @param requestedRegionLength the number of bases requested
+     * @return the upper cased bases of the region, which is truncated if it extends past the end of the
+     * sequence, or null if the sequence cannot be found
+     */
+    default byte[] getReferenceBasesByRegion(
+            final SAMSequenceRecord sequenceRecord,
+            final int zeroBasedStart,
+            final int requestedRegionLength) {
+        final byte[] bases = getReferenceBases(sequenceRecord, true);
+        if (bases == null) {
+            return null;
+        }
+        if (zeroBasedStart < 0 || zeroBasedStart > bases.length || requestedRegionLength < 0) {
+            throw new IllegalArgumentException(String.format("Invalid region %d+%d for reference sequence %s of length %d",
+                    zeroBasedStart, requestedRegionLength, sequenceRecord.getSequenceName(), bases.length));
+        }
+        return Arrays.copyOfRange(bases, zeroBasedStart, (int) Math.min(bases.length, (long) zeroBasedStart + requestedRegionLength));
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.ref;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link ReferenceBasesCache} with an explicit memory budget. Bases are strongly referenced until the total
+ * size of the cached arrays exceeds the budget, at which point the least recently used entries are evicted.
+ * Arrays that are larger than the budget are never cached.
+ *
+ * A single instance can be shared by any number of {@link ReferenceSource}s, e.g. by concurrent CRAM readers in
+ * the same JVM, so that each reference sequence is read from disk only once. Hit, miss and eviction counts are
+ * kept to help with sizing the budget.
+ */
+public class LRUReferenceBasesCache implements ReferenceBasesCache {
+    private final long maxBytes;
+    // access-ordered, so iteration starts with the least recently used entry
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxBytes the maximum total size, in bytes, of the cached bases
+     */
+    public LRUReferenceBasesCache(final long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Reference cache size must be > 0: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized byte[] get(final String key) {
+        final byte[] bases = cache.get(key);
+        if (bases == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return bases;
+    }
+
+    @Override
+    public synchronized void put(final String key, final byte[] bases) {
+        final byte[] previous = cache.remove(key);
+        if (previous != null) {
+            cachedBytes -= previous.length;
+        }
+        if (bases.length > maxBytes) {
+            return;
+        }
+        final Iterator<Map.Entry<String, byte[]>> it = cache.entrySet().iterator();
+        while (cachedBytes + bases.length > maxBytes && it.hasNext()) {
+            cachedBytes -= it.next().getValue().length;
+            it.remove();
+            evictions++;
+        }
+        cache.put(key, bases);
+        cachedBytes += bases.length;
+    }
+
+    /**
+     * Remove all entries from the cache. The hit, miss and eviction counts are not reset.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        cachedBytes = 0;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public synchronized int getNumberOfEntries() {
+        return cache.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("LRUReferenceBasesCache{maxBytes=%d, cachedBytes=%d, entries=%d, hits=%d, misses=%d, evictions=%d}",
+                maxBytes, cachedBytes, cache.size(), hits, misses, evictions);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.ref;
+
+/**
+ * A cache of (upper cased) reference bases used by {@link ReferenceSource}, keyed by a string that identifies
+ * the sequence, or the region of a sequence, that the bases were read from.
+ *
+ * Implementations must be thread-safe, since a cache may be shared by several {@link ReferenceSource}s used by
+ * concurrent CRAM readers and writers. Callers must not modify arrays that have been added to or retrieved from
+ * a cache.
+ *
+ * @see WeakReferenceBasesCache
+ * @see LRUReferenceBasesCache
+ */
+public interface ReferenceBasesCache {
+
+    /**
+     * @param key the key the bases were cached under
+     * @return the cached bases, or null if there are none
+     */
+    byte[] get(final String key);
+
+    /**
+     * Add bases to the cache. The cache may decline to retain them.
+     *
+     * @param key the key to cache the bases under
+     * @param bases the bases to cache
+     */
+    void put(final String key, final byte[] bases);
+}
@@ -32,13 +32,11 @@ import htsjdk.samtools.util.StringUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 /**
@@ -49,24 +47,85 @@ import java.util.regex.Pattern;
  * contains will be refactored and distributed into one or more separate reference
  * source implementations, each corresponding to the type of resource backing the
  * reference.
+ *
+ * Bases are cached in a {@link ReferenceBasesCache}. By default each ReferenceSource has its own
+ * {@link WeakReferenceBasesCache}, unless {@link Defaults#CRAM_REFERENCE_CACHE_SIZE_MB} is set, in which case all
+ * ReferenceSources that aren't given a cache share a single {@link LRUReferenceBasesCache} with that budget.
+ * Sources created from the same reference path share cache entries when they share a cache.
  */
 public class ReferenceSource implements CRAMReferenceSource {
     private static final Log log = Log.getInstance(ReferenceSource.class);
+
+    /**
+     * Size, in bases, of the tiles that are read and cached by {@link #getReferenceBasesByRegion}.
+     */
+    public static final int REGION_TILE_SIZE = 1 << 20;
+
+    private static final ReferenceBasesCache sharedCache = Defaults.CRAM_REFERENCE_CACHE_SIZE_MB > 0 ?
+            new LRUReferenceBasesCache(Defaults.CRAM_REFERENCE_CACHE_SIZE_MB * 1024L * 1024L) :
+            null;
+    private static final AtomicLong sourceCounter = new AtomicLong();
+
     private final ReferenceSequenceFile rsFile;
     private int downloadTriesBeforeFailing = 2;
 
-    private final Map<String, WeakReference<byte[]>> cacheW = new HashMap<>();
+    private final ReferenceBasesCache cache;
+    // prefix for the cache keys of sequences read from rsFile (as opposed to downloaded by MD5), since the cache
+    // may be shared with sources for other references that use the same sequence names
+    private final String cacheKeyPrefix;
 
     public ReferenceSource(final File file) {
         this(IOUtil.toPath(file));
     }
 
     public ReferenceSource(final Path path) {
-        this( path == null ? null : ReferenceSequenceFileFactory.getReferenceSequenceFile(path));
+        this(path, getDefaultReferenceBasesCache());
+    }
+
+    /**
+     * @param path the reference file
+     * @param cache the cache to use for reference bases, which may be shared with other sources
+     */
+    public ReferenceSource(final Path path, final ReferenceBasesCache cache) {
+        this(path == null ? null : ReferenceSequenceFileFactory.getReferenceSequenceFile(path),
+                cache,
+                path == null ? getUniqueCacheKeyPrefix() : path.toAbsolutePath().normalize().toString() + ":");
     }
 
     public ReferenceSource(final ReferenceSequenceFile rsFile) {
+        this(rsFile, getDefaultReferenceBasesCache());
+    }
+
+    /**
+     * @param rsFile the reference
+     * @param cache the cache to use for reference bases, which may be shared with other sources
+     */
+    public ReferenceSource(final ReferenceSequenceFile rsFile, final ReferenceBasesCache cache) {
+        this(rsFile, cache, getUniqueCacheKeyPrefix());
+    }
+
+    private ReferenceSource(final ReferenceSequenceFile rsFile, final ReferenceBasesCache cache, final String cacheKeyPrefix) {
+        if (cache == null) {
+            throw new IllegalArgumentException("A reference bases cache is required");
+        }
         this.rsFile = rsFile;
+        this.cache = cache;
+        this.cacheKeyPrefix = cacheKeyPrefix;
+    }
+
+    private static ReferenceBasesCache getDefaultReferenceBasesCache() {
+        return sharedCache == null ? new WeakReferenceBasesCache() : sharedCache;
+    }
+
+    private static String getUniqueCacheKeyPrefix() {
+        return "#" + sourceCounter.incrementAndGet() + ":";
+    }
+
+    /**
+     * @return the cache used by this source
+     */
+    public ReferenceBasesCache getReferenceBasesCache() {
+        return cache;
     }
 
     /**
@@ -106,34 +165,33 @@ public class ReferenceSource implements CRAMReferenceSource {
         }
     }
 
-    private byte[] findInCache(final String name) {
-        final WeakReference<byte[]> weakReference = cacheW.get(name);
-        if (weakReference != null) {
-            final byte[] bytes = weakReference.get();
-            if (bytes != null)
-                return bytes;
-        }
-        return null;
+    private static String getNameCacheKey(final String cacheKeyPrefix, final String name) {
+        return cacheKeyPrefix + name;
+    }
+
+    // downloaded sequences are identified by their content, so they can be shared by all sources
+    private static String getMD5CacheKey(final String md5) {
+        return "md5:" + md5.toLowerCase();
     }
 
     // Upper case (in-place), and add to the cache
-    private byte[] addToCache(final String sequenceName, final byte[] bases) {
+    private byte[] addToCache(final String key, final byte[] bases) {
         // Normalize to upper case only. We can't use the cram normalization utility Utils.normalizeBases, since
         // we don't want to normalize ambiguity codes, we can't use SamUtils.normalizeBases, since we don't want
         // to normalize no-call ('.') bases.
         for (int i = 0; i < bases.length; i++) {
             bases[i] = StringUtil.toUpperCase(bases[i]);
         }
-        cacheW.put(sequenceName, new WeakReference<>(bases));
+        cache.put(key, bases);
         return bases;
     }
 
     @Override
     public synchronized byte[] getReferenceBases(final SAMSequenceRecord record,
                                                  final boolean tryNameVariants) {
+        final String nameKey = getNameCacheKey(cacheKeyPrefix, record.getSequenceName());
         { // check cache by sequence name:
-            final String name = record.getSequenceName();
-            final byte[] bases = findInCache(name);
+            final byte[] bases = cache.get(nameKey);
             if (bases != null) {
                 return bases;
             }
@@ -142,13 +200,7 @@ public class ReferenceSource implements CRAMReferenceSource {
         final String md5 = record.getAttribute(SAMSequenceRecord.MD5_TAG);
         { // check cache by md5:
             if (md5 != null) {
-                byte[] bases = findInCache(md5);
-                if (bases != null)
-                    return bases;
-                bases = findInCache(md5.toLowerCase());
-                if (bases != null)
-                    return bases;
-                bases = findInCache(md5.toUpperCase());
+                final byte[] bases = cache.get(getMD5CacheKey(md5));
                 if (bases != null)
                     return bases;
             }
@@ -159,7 +211,7 @@ public class ReferenceSource implements CRAMReferenceSource {
         { // try to fetch sequence by name:
             bases = findBasesByName(record.getSequenceName(), tryNameVariants);
             if (bases != null) {
-                return addToCache(record.getSequenceName(), bases);
+                return addToCache(nameKey, bases);
             }
         }
 
@@ -169,7 +221,7 @@ public class ReferenceSource implements CRAMReferenceSource {
                     bases = findBasesByMD5(md5.toLowerCase());
                 }
                 if (bases != null) {
-                    return addToCache(md5, bases);
+                    return addToCache(getMD5CacheKey(md5), bases);
                 }
             }
         }
@@ -178,6 +230,68 @@ public class ReferenceSource implements CRAMReferenceSource {
         return null;
     }
 
+    /**
+     * Get a region of a reference sequence without reading or caching the rest of the sequence. If the reference
+     * is indexed, the region is assembled from tiles of {@link #REGION_TILE_SIZE} bases, which are read and cached
+     * individually, so that only the parts of the reference that are actually used occupy the cache. Otherwise,
+     * the whole sequence is retrieved using {@link #getReferenceBases}.
+     */
+    @Override
+    public synchronized byte[] getReferenceBasesByRegion(
+            final SAMSequenceRecord record,
+            final int zeroBasedStart,
+            final int requestedRegionLength) {
+        final int sequenceLength = record.getSequenceLength();
+        if (rsFile == null || !rsFile.isIndexed() || sequenceLength <= 0) {
+            return CRAMReferenceSource.super.getReferenceBasesByRegion(record, zeroBasedStart, requestedRegionLength);
+        }
+        if (zeroBasedStart < 0 || zeroBasedStart > sequenceLength || requestedRegionLength < 0) {
+            throw new IllegalArgumentException(String.format("Invalid region %d+%d for reference sequence %s of length %d",
+                    zeroBasedStart, requestedRegionLength, record.getSequenceName(), sequenceLength));
+        }
+
+        final int end = (int) Math.min(sequenceLength, (long) zeroBasedStart + requestedRegionLength);
+        final byte[] region = new byte[end - zeroBasedStart];
+        for (int tile = zeroBasedStart / REGION_TILE_SIZE; (long) tile * REGION_TILE_SIZE < end; tile++) {
+            final byte[] tileBases = getTile(record, tile);
+            if (tileBases == null) {
+                // the reference doesn't agree with the sequence record, so let the whole sequence lookup sort it out
+                return CRAMReferenceSource.super.getReferenceBasesByRegion(record, zeroBasedStart, requestedRegionLength);
+            }
+            final int tileStart = tile * REGION_TILE_SIZE;
+            final int copyStart = Math.max(zeroBasedStart, tileStart);
+            final int copyEnd = Math.min(end, tileStart + tileBases.length);
+            System.arraycopy(tileBases, copyStart - tileStart, region, copyStart - zeroBasedStart, copyEnd - copyStart);
+        }
+        return region;
+    }
+
+    private byte[] getTile(final SAMSequenceRecord record, final int tile) {
+        final String key = getNameCacheKey(cacheKeyPrefix, record.getSequenceName()) + "@" + tile;
+        final byte[] cachedBases = cache.get(key);
+        if (cachedBases != null) {
+            return cachedBases;
+        }
+        final long start = (long) tile * REGION_TILE_SIZE + 1;
+        final long stop = Math.min(record.getSequenceLength(), start + REGION_TILE_SIZE - 1);
+        final byte[] bases = findSubsequenceByName(record.getSequenceName(), start, stop);
+        return bases == null ? null : addToCache(key, bases);
+    }
+
+    private byte[] findSubsequenceByName(final String name, final long start, final long stop) {
+        final List<String> names = new ArrayList<>();
+        names.add(name);
+        names.addAll(getVariants(name));
+        for (final String candidate : names) {
+            try {
+                return rsFile.getSubsequenceAt(candidate, start, stop).getBases();
+            } catch (final SAMException e) {
+                // the sequence isn't present under this name, or is shorter than the sequence record claims
+            }
+        }
+        return null;
+    }
+
     private byte[] findBasesByName(final String name, final boolean tryVariants) {
         if (rsFile == null || !rsFile.isIndexed())
             return null;
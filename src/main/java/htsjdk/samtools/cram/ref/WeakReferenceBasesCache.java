@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.ref;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link ReferenceBasesCache} that retains bases only as long as they are strongly reachable elsewhere. This has
+ * no memory overhead, but bases that are not in use may be discarded at the next garbage collection and then
+ * need to be read again. This is the cache used by {@link ReferenceSource} by default.
+ */
+public class WeakReferenceBasesCache implements ReferenceBasesCache {
+    private final Map<String, WeakReference<byte[]>> cache = new HashMap<>();
+
+    @Override
+    public synchronized byte[] get(final String key) {
+        final WeakReference<byte[]> weakReference = cache.get(key);
+        return weakReference == null ? null : weakReference.get();
+    }
+
+    @Override
+    public synchronized void put(final String key, final byte[] bases) {
+        cache.put(key, new WeakReference<>(bases));
+    }
+}
@@ -25,6 +25,8 @@
 package htsjdk.samtools.cram.structure;
 
 import htsjdk.samtools.Defaults;
+import htsjdk.samtools.cram.common.CRAMVersion;
+import htsjdk.samtools.cram.common.CramVersions;
 import htsjdk.utils.ValidationUtils;
 import htsjdk.samtools.cram.ref.ReferenceContextType;
 
@@ -44,6 +46,9 @@ public class CRAMEncodingStrategy {
     // encoding strategies
     private CompressionHeaderEncodingMap customCompressionHeaderEncodingMap;
 
+    // the CRAM version to write; CRAM 3.1 enables the rANS Nx16, fqzcomp and name tokeniser codecs
+    private CRAMVersion cramVersion = CramVersions.DEFAULT_CRAM_VERSION;
+
     //Note: should this have separate values for tags (separate from CRAMRecord data) ?
     private int gzipCompressionLevel = Defaults.COMPRESSION_LEVEL;
 
@@ -124,6 +129,25 @@ public class CRAMEncodingStrategy {
         return this;
     }
 
+    /**
+     * Set the CRAM version to write. Version 3.1 streams use the CRAM 3.1 codecs (rANS Nx16, fqzcomp for
+     * quality scores and the name tokeniser for read names) in the default encoding map, and can only be read
+     * by implementations that support CRAM 3.1.
+     *
+     * @param cramVersion the CRAM version to write, either 3.0 or 3.1
+     * @return updated CRAMEncodingStrategy
+     */
+    public CRAMEncodingStrategy setCRAMVersion(final CRAMVersion cramVersion) {
+        ValidationUtils.nonNull(cramVersion, "CRAM version");
+        ValidationUtils.validateArg(
+                cramVersion.equals(CramVersions.CRAM_v3) || cramVersion.equals(CramVersions.CRAM_v3_1),
+                String.format("CRAM version %s cannot be written", cramVersion));
+        this.cramVersion = cramVersion;
+        return this;
+    }
+
+    public CRAMVersion getCRAMVersion() { return cramVersion; }
+
     /**
      * Set the {@link CompressionHeaderEncodingMap} to use.
      *
@@ -141,6 +165,7 @@ public class CRAMEncodingStrategy {
     @Override
     public String toString() {
         return "CRAMEncodingStrategy{" +
+                "cramVersion=" + cramVersion +
                 ", customCompressionMap='" + customCompressionHeaderEncodingMap + '\'' +
                 ", gzipCompressionLevel=" + gzipCompressionLevel +
                 ", readsPerSlice=" + readsPerSlice +
@@ -154,6 +179,7 @@ public class CRAMEncodingStrategy {
 
         CRAMEncodingStrategy that = (CRAMEncodingStrategy) o;
 
+        if (!cramVersion.equals(that.cramVersion)) return false;
         if (gzipCompressionLevel != that.gzipCompressionLevel) return false;
         if (getMinimumSingleReferenceSliceSize() != that.getMinimumSingleReferenceSliceSize()) return false;
         if (getReadsPerSlice() != that.getReadsPerSlice()) return false;
@@ -167,6 +193,7 @@ public class CRAMEncodingStrategy {
     public int hashCode() {
         int result = getCustomCompressionHeaderEncodingMap() != null ?
                 getCustomCompressionHeaderEncodingMap().hashCode() : 0;
+        result = 31 * result + cramVersion.hashCode();
         result = 31 * result + gzipCompressionLevel;
         result = 31 * result + getMinimumSingleReferenceSliceSize();
         result = 31 * result + getReadsPerSlice();
@@ -25,8 +25,11 @@
 package htsjdk.samtools.cram.structure;
 
 import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.common.CramVersions;
 import htsjdk.samtools.cram.compression.ExternalCompressor;
+import htsjdk.samtools.cram.compression.NameTokeniserExternalCompressor;
 import htsjdk.samtools.cram.compression.rans.RANS;
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
 import htsjdk.samtools.cram.encoding.CRAMEncoding;
 import htsjdk.samtools.cram.encoding.external.ByteArrayStopEncoding;
 import htsjdk.samtools.cram.encoding.external.ExternalByteEncoding;
@@ -79,6 +82,9 @@ public class CompressionHeaderEncodingMap {
     // Keep a compressor cache for the lifetime of this encoding map
     private final CompressorCache compressorCache = new CompressorCache();
 
+    // Use the CRAM 3.1 codecs in place of the CRAM 3.0 RANS codec when creating the default encoding map
+    private boolean useCRAM31Codecs;
+
     /**
      * Constructor used to create the default encoding map for writing CRAMs. The encoding strategy
      * parameter values are used to set compression levels, etc, but any encoding map embedded is ignored
@@ -92,6 +98,7 @@ public class CompressionHeaderEncodingMap {
         ValidationUtils.validateArg(
                 encodingStrategy.getCustomCompressionHeaderEncodingMap() == null,
                 "A custom compression map cannot be used with this constructor");
+        useCRAM31Codecs = encodingStrategy.getCRAMVersion().compatibleWith(CramVersions.CRAM_v3_1);
 
         // NOTE: all of these encodings use external blocks and compressors for actual CRAM
         // data. The only use of core block encodings are as params for other (external)
@@ -116,11 +123,19 @@ public class CompressionHeaderEncodingMap {
         putExternalRansOrderOneEncoding(DataSeries.NS_NextFragmentReferenceSequenceID);
         putExternalGzipEncoding(encodingStrategy, DataSeries.PD_padding);
         // the QQ data series is not used by this implementation when writing CRAMs
-        putExternalRansOrderOneEncoding(DataSeries.QS_QualityScore);
+        if (useCRAM31Codecs) {
+            putExternalFQZCompEncoding(DataSeries.QS_QualityScore);
+        } else {
+            putExternalRansOrderOneEncoding(DataSeries.QS_QualityScore);
+        }
         putExternalRansOrderOneEncoding(DataSeries.RG_ReadGroup);
         putExternalRansOrderZeroEncoding(DataSeries.RI_RefId);
         putExternalRansOrderOneEncoding(DataSeries.RL_ReadLength);
-        putExternalByteArrayStopTabGzipEncoding(encodingStrategy, DataSeries.RN_ReadName);
+        if (useCRAM31Codecs) {
+            putExternalByteArrayStopNameTokeniserEncoding(DataSeries.RN_ReadName);
+        } else {
+            putExternalByteArrayStopTabGzipEncoding(encodingStrategy, DataSeries.RN_ReadName);
+        }
         putExternalGzipEncoding(encodingStrategy, DataSeries.RS_RefSkip);
         putExternalByteArrayStopTabGzipEncoding(encodingStrategy, DataSeries.SC_SoftClip);
         putExternalGzipEncoding(encodingStrategy, DataSeries.TC_TagCount);
@@ -259,14 +274,10 @@ public class CompressionHeaderEncodingMap {
                 encodingStrategy.getGZIPCompressionLevel());
         final int gzipLen = gzip.compress(data).length;
 
-        final ExternalCompressor rans0 = compressorCache.getCompressorForMethod(
-                BlockCompressionMethod.RANS,
-                RANS.ORDER.ZERO.ordinal());
+        final ExternalCompressor rans0 = getRansOrderZeroCompressor();
         final int rans0Len = rans0.compress(data).length;
 
-        final ExternalCompressor rans1 = compressorCache.getCompressorForMethod(
-                BlockCompressionMethod.RANS,
-                RANS.ORDER.ONE.ordinal());
+        final ExternalCompressor rans1 = getRansOrderOneCompressor();
         final int rans1Len = rans1.compress(data).length;
 
         // find the best of general purpose codecs:
@@ -366,18 +377,40 @@ public class CompressionHeaderEncodingMap {
                 compressorCache.getCompressorForMethod(BlockCompressionMethod.GZIP, encodingStrategy.getGZIPCompressionLevel()));
     }
 
-    // add an external encoding appropriate for the dataSeries value type, with a RANS order 1 compressor
-    private void putExternalRansOrderOneEncoding(final DataSeries dataSeries) {
+    // the name tokeniser requires each read name to be NUL terminated
+    private void putExternalByteArrayStopNameTokeniserEncoding(final DataSeries dataSeries) {
+        putExternalEncoding(dataSeries,
+                new ByteArrayStopEncoding(NameTokeniserExternalCompressor.NAME_SEPARATOR, dataSeries.getExternalBlockContentId()).toEncodingDescriptor(),
+                compressorCache.getCompressorForMethod(BlockCompressionMethod.NAME_TOKENISER, ExternalCompressor.NO_COMPRESSION_ARG));
+    }
+
+    // add an external encoding appropriate for the dataSeries value type, with an fqzcomp compressor
+    private void putExternalFQZCompEncoding(final DataSeries dataSeries) {
         putExternalEncoding(
                 dataSeries,
-                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANS, RANS.ORDER.ONE.ordinal()));
+                compressorCache.getCompressorForMethod(BlockCompressionMethod.FQZCOMP, ExternalCompressor.NO_COMPRESSION_ARG));
+    }
+
+    // add an external encoding appropriate for the dataSeries value type, with a RANS order 1 compressor
+    private void putExternalRansOrderOneEncoding(final DataSeries dataSeries) {
+        putExternalEncoding(dataSeries, getRansOrderOneCompressor());
     }
 
     // add an external encoding appropriate for the dataSeries value type, with a RANS order 0 compressor
     private void putExternalRansOrderZeroEncoding(final DataSeries dataSeries) {
-        putExternalEncoding(
-                dataSeries,
-                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANS, RANS.ORDER.ZERO.ordinal()));
+        putExternalEncoding(dataSeries, getRansOrderZeroCompressor());
+    }
+
+    private ExternalCompressor getRansOrderZeroCompressor() {
+        return useCRAM31Codecs ?
+                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANSNx16, 0) :
+                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANS, RANS.ORDER.ZERO.ordinal());
+    }
+
+    private ExternalCompressor getRansOrderOneCompressor() {
+        return useCRAM31Codecs ?
+                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANSNx16, RANSNx16.ORDER_FLAG) :
+                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANS, RANS.ORDER.ONE.ordinal());
     }
 
     @Override
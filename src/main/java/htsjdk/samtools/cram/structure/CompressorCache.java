@@ -58,6 +58,7 @@ public class CompressorCache {
             case BZIP2:
             case RAW:
             case LZMA:
+            case FQZCOMP:
                 ValidationUtils.validateArg(
                         compressorSpecificArg == ExternalCompressor.NO_COMPRESSION_ARG,
                         String.format(argErrorMessage, compressorSpecificArg, compressionMethod));
@@ -83,6 +84,14 @@ public class CompressorCache {
                 }
                 return getCachedCompressorForMethod(compressorTuple.a, compressorTuple.b);
 
+            case RANSNx16:
+            case ADAPTIVE_ARITHMETIC:
+            case NAME_TOKENISER:
+                // the default for these is the same as an explicit 0, so share a single instance
+                return getCachedCompressorForMethod(
+                        compressionMethod,
+                        compressorSpecificArg == ExternalCompressor.NO_COMPRESSION_ARG ? 0 : compressorSpecificArg);
+
             default:
                 throw new IllegalArgumentException(String.format("Unknown compression method %s", compressionMethod));
         }
@@ -49,7 +49,7 @@ public class Container {
     private final List<Slice> slices;
 
     // container's byte offset from the start of the containing stream, used for indexing
-    private final long containerByteOffset;
+    private long containerByteOffset;
 
     /**
      * Create a Container with a {@link ReferenceContext} derived from its {@link Slice}s.
@@ -317,16 +317,7 @@ public class Container {
             final SAMFileHeader samFileHeader) {
         final List<SAMRecord> samRecords = new ArrayList<>(getContainerHeader().getNumberOfRecords());
         for (final Slice slice : getSlices()) {
-            final List<CRAMCompressionRecord> cramCompressionRecords = slice.deserializeCRAMRecords(compressorCache, validationStringency);
-            // before we convert to SAMRecord, we need to normalize the CRAMCompressionRecord in each Slice
-            slice.normalizeCRAMRecords(
-                    cramCompressionRecords,
-                    cramReferenceRegion);
-            for (final CRAMCompressionRecord cramCompressionRecord : cramCompressionRecords) {
-                final SAMRecord samRecord = cramCompressionRecord.toSAMRecord(samFileHeader);
-                samRecord.setValidationStringency(validationStringency);
-                samRecords.add(samRecord);
-            }
+            samRecords.addAll(slice.getSAMRecords(validationStringency, cramReferenceRegion, compressorCache, samFileHeader));
         }
         return samRecords;
     }
@@ -335,6 +326,20 @@ public class Container {
     public CompressionHeader getCompressionHeader() { return compressionHeader; }
     public AlignmentContext getAlignmentContext() { return containerHeader.getAlignmentContext(); }
     public long getContainerByteOffset() { return containerByteOffset; }
+
+    /**
+     * Set the byte offset of this Container, and of its Slices, for a Container that was created before its
+     * position in the output stream was known (i.e., one that was encoded concurrently with preceding Containers).
+     * This must be called before the Container is indexed.
+     *
+     * @param containerByteOffset the Container's byte offset from the start of the stream
+     */
+    public void setContainerByteOffset(final long containerByteOffset) {
+        this.containerByteOffset = containerByteOffset;
+        for (final Slice slice : getSlices()) {
+            slice.setByteOffsetOfContainer(containerByteOffset);
+        }
+    }
     public List<Slice> getSlices() { return slices; }
     public boolean isEOF() {
         return containerHeader.isEOF() && (getSlices() == null || getSlices().size() == 0);
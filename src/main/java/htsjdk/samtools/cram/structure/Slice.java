@@ -78,7 +78,7 @@ public class Slice {
 
     private final CompressionHeader compressionHeader;
     private final SliceBlocks sliceBlocks;
-    private final long byteOffsetOfContainer;
+    private long byteOffsetOfContainer;
 
     private Block sliceHeaderBlock;
 
@@ -273,6 +273,13 @@ public class Slice {
     }
     public byte[] getReferenceMD5() { return referenceMD5; }
 
+    /**
+     * @param byteOffsetOfContainer the stream byte offset of the start of the container in which this Slice resides
+     */
+    public void setByteOffsetOfContainer(final long byteOffsetOfContainer) {
+        this.byteOffsetOfContainer = byteOffsetOfContainer;
+    }
+
     /**
      * The Slice's offset in bytes from the beginning of the Container's Compression Header
      * (or the end of the Container Header), equal to {@link ContainerHeader#getLandmarks()}
@@ -427,6 +434,36 @@ public class Slice {
         return cramCompressionRecords;
     }
 
+    /**
+     * Get the SAMRecords for this Slice by deserializing, normalizing and converting its records.
+     * See {@link Container#getSAMRecords}.
+     *
+     * Slices are independent once their container's compression header is known, so the records for different
+     * slices may be decoded concurrently, as long as each thread uses its own compressor cache and reference region.
+     *
+     * @param validationStringency validation stringency to use (when reading tags)
+     * @param cramReferenceRegion reference region to use to restore bases
+     * @param compressorCache compressor cache to use for decompressing streams
+     * @param samFileHeader the SAMFileHeader for this CRAM stream (for resolving read groups)
+     * @return the {@link SAMRecord}s from this slice
+     */
+    public List<SAMRecord> getSAMRecords(
+            final ValidationStringency validationStringency,
+            final CRAMReferenceRegion cramReferenceRegion,
+            final CompressorCache compressorCache,
+            final SAMFileHeader samFileHeader) {
+        final List<CRAMCompressionRecord> cramCompressionRecords = deserializeCRAMRecords(compressorCache, validationStringency);
+        // before we convert to SAMRecord, we need to normalize the CRAMCompressionRecord in each Slice
+        normalizeCRAMRecords(cramCompressionRecords, cramReferenceRegion);
+        final List<SAMRecord> samRecords = new ArrayList<>(cramCompressionRecords.size());
+        for (final CRAMCompressionRecord cramCompressionRecord : cramCompressionRecords) {
+            final SAMRecord samRecord = cramCompressionRecord.toSAMRecord(samFileHeader);
+            samRecord.setValidationStringency(validationStringency);
+            samRecords.add(samRecord);
+        }
+        return samRecords;
+    }
+
     /**
      * Normalize a list of CRAMCompressionRecord that have been read in from a CRAM stream. Normalization converts raw
      * CRAM records to a state suitable for conversion to SAMRecords, resolving read bases against
@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.reference;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.IOUtil;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An indexed fasta file that is memory-mapped rather than read through a channel.  Subsequences are copied
+ * directly from the mapped file into the returned array one line at a time, using the line geometry in the
+ * {@link FastaSequenceIndex}, so no intermediate buffer is needed, and {@link #getSubsequenceBuffer} can return
+ * a view of the mapped file without copying at all when the requested bases are on a single line.
+ *
+ * The file is mapped when it is opened, and pages are loaded on demand by the operating system, so
+ * repeated lookups in the same region are served from the page cache without system calls. The mapping is
+ * only released when this object is garbage collected.
+ *
+ * {@link #getSequence}, {@link #getSubsequenceAt} and {@link #getSubsequenceBuffer} are safe for concurrent use;
+ * {@link #nextSequence()} and {@link #reset()} are not.  Only uncompressed fasta files on the default file system
+ * can be mapped.
+ */
+public class MemoryMappedIndexedFastaSequenceFile extends AbstractIndexedFastaSequenceFile {
+    // Each mapped segment is at most this large (a single mapping is limited to Integer.MAX_VALUE bytes)
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final MappedByteBuffer[] segments;
+    private final long fileSize;
+
+    /**
+     * Open the given indexed fasta sequence file.  Throw an exception if the file cannot be opened.
+     * @param path The file to open.
+     * @throws FileNotFoundException If the fasta or any of its supporting files cannot be found.
+     */
+    public MemoryMappedIndexedFastaSequenceFile(final Path path) throws FileNotFoundException {
+        this(path, new FastaSequenceIndex(findRequiredFastaIndexFile(path)));
+    }
+
+    /**
+     * Open the given indexed fasta sequence file.  Throw an exception if the file cannot be opened.
+     * @param path The file to open.
+     * @param index Pre-built FastaSequenceIndex, for the case in which one does not exist on disk.
+     */
+    public MemoryMappedIndexedFastaSequenceFile(final Path path, final FastaSequenceIndex index) {
+        super(path, index);
+        try {
+            if (IOUtil.isBlockCompressed(path, true)) {
+                throw new SAMException("Block-compressed FASTA file cannot be memory-mapped: " + path);
+            }
+            // the mapping remains valid after the channel is closed
+            try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                fileSize = channel.size();
+                segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+                for (int i = 0; i < segments.length; i++) {
+                    final long segmentStart = i * SEGMENT_SIZE;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(SEGMENT_SIZE, fileSize - segmentStart));
+                }
+            }
+        } catch (final IOException | UnsupportedOperationException e) {
+            throw new SAMException("FASTA file cannot be memory-mapped: " + path, e);
+        }
+    }
+
+    /**
+     * Gets the subsequence of the contig in the range [start,stop]
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @return The partial reference sequence associated with this range.
+     */
+    @Override
+    public ReferenceSequence getSubsequenceAt(final String contig, final long start, final long stop) {
+        final FastaSequenceIndexEntry indexEntry = getValidatedIndexEntry(contig, start, stop);
+        final byte[] target = new byte[(int) (stop - start + 1)];
+        copyBases(indexEntry, start, target);
+        return new ReferenceSequence(contig, indexEntry.getSequenceIndex(), target);
+    }
+
+    /**
+     * Gets the subsequence of the contig in the range [start,stop] as a read-only buffer. If the range lies on a
+     * single line of the fasta file, the buffer is a view of the mapped file and no bases are copied; otherwise
+     * the bases are copied into a new buffer with the line terminators removed.
+     *
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @return a read-only buffer holding exactly the requested bases
+     */
+    public ByteBuffer getSubsequenceBuffer(final String contig, final long start, final long stop) {
+        final FastaSequenceIndexEntry indexEntry = getValidatedIndexEntry(contig, start, stop);
+        final int length = (int) (stop - start + 1);
+        if (length > 0 && (start - 1) / indexEntry.getBasesPerLine() == (stop - 1) / indexEntry.getBasesPerLine()) {
+            final long offset = getFileOffset(indexEntry, start);
+            final int positionInSegment = (int) (offset % SEGMENT_SIZE);
+            final ByteBuffer view = segments[(int) (offset / SEGMENT_SIZE)].duplicate();
+            if (positionInSegment + length <= view.capacity()) {
+                view.position(positionInSegment).limit(positionInSegment + length);
+                return view.slice().asReadOnlyBuffer();
+            }
+        }
+        final byte[] target = new byte[length];
+        copyBases(indexEntry, start, target);
+        return ByteBuffer.wrap(target).asReadOnlyBuffer();
+    }
+
+    private FastaSequenceIndexEntry getValidatedIndexEntry(final String contig, final long start, final long stop) {
+        if (start > stop + 1) {
+            throw new SAMException(String.format("Malformed query; start point %d lies after end point %d", start, stop));
+        }
+        final FastaSequenceIndexEntry indexEntry = getIndex().getIndexEntry(contig);
+        if (stop > indexEntry.getSize()) {
+            throw new SAMException("Query asks for data past end of contig");
+        }
+        if (stop - start + 1 > Integer.MAX_VALUE) {
+            throw new SAMException(String.format("Query for %s:%d-%d is too large", contig, start, stop));
+        }
+        return indexEntry;
+    }
+
+    // file offset of the 1-based position in the contig
+    private static long getFileOffset(final FastaSequenceIndexEntry indexEntry, final long position) {
+        final int basesPerLine = indexEntry.getBasesPerLine();
+        return indexEntry.getLocation() +
+                ((position - 1) / basesPerLine) * indexEntry.getBytesPerLine() +
+                (position - 1) % basesPerLine;
+    }
+
+    // copy target.length bases starting at the 1-based position start, one line at a time
+    private void copyBases(final FastaSequenceIndexEntry indexEntry, final long start, final byte[] target) {
+        final int basesPerLine = indexEntry.getBasesPerLine();
+        int copied = 0;
+        while (copied < target.length) {
+            final long position = start + copied;
+            final int lineRemaining = basesPerLine - (int) ((position - 1) % basesPerLine);
+            final int count = Math.min(lineRemaining, target.length - copied);
+            copyFromFile(getFileOffset(indexEntry, position), target, copied, count);
+            copied += count;
+        }
+    }
+
+    private void copyFromFile(long offset, final byte[] target, int targetOffset, int count) {
+        if (offset + count > fileSize) {
+            throw new SAMException(String.format("Unable to load %d bytes at offset %d from %s: the index does not match the file",
+                    count, offset, getSource()));
+        }
+        while (count > 0) {
+            // duplicate so that concurrent readers don't share the buffer position
+            final ByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)].duplicate();
+            segment.position((int) (offset % SEGMENT_SIZE));
+            final int n = Math.min(count, segment.remaining());
+            segment.get(target, targetOffset, n);
+            offset += n;
+            targetOffset += n;
+            count -= n;
+        }
+    }
+
+    @Override
+    protected int readFromPosition(final ByteBuffer buffer, final long position) {
+        if (position >= fileSize) {
+            return -1;
+        }
+        final int count = (int) Math.min(buffer.remaining(), fileSize - position);
+        if (buffer.hasArray()) {
+            copyFromFile(position, buffer.array(), buffer.arrayOffset() + buffer.position(), count);
+            buffer.position(buffer.position() + count);
+        } else {
+            final byte[] bytes = new byte[count];
+            copyFromFile(position, bytes, 0, count);
+            buffer.put(bytes);
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // mapped buffers are released when they are garbage collected
+    }
+}
@@ -24,6 +24,7 @@
 
 package htsjdk.samtools.reference;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.GZIIndex;
@@ -40,6 +41,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
@@ -136,7 +138,13 @@ public class ReferenceSequenceFileFactory {
         // Using faidx requires truncateNamesAtWhitespace
         if (truncateNamesAtWhitespace && preferIndexed && canCreateIndexedFastaReader(path)) {
             try {
-                return IOUtil.isBlockCompressed(path, true) ? new BlockCompressedIndexedFastaSequenceFile(path) : new IndexedFastaSequenceFile(path);
+                if (IOUtil.isBlockCompressed(path, true)) {
+                    return new BlockCompressedIndexedFastaSequenceFile(path);
+                } else if (Defaults.USE_MEMORY_MAPPED_FASTA && path.getFileSystem() == FileSystems.getDefault()) {
+                    return new MemoryMappedIndexedFastaSequenceFile(path);
+                } else {
+                    return new IndexedFastaSequenceFile(path);
+                }
             } catch (final IOException e) {
                 throw new SAMException("Error opening FASTA: " + path, e);
             }
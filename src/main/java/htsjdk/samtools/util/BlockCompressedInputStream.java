@@ -257,7 +257,7 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         return read(buffer, 0, buffer.length);
     }
 
-    private volatile ByteArrayOutputStream buf = null;
+    private byte[] lineBytes = null;
     private static final byte eol = '\n';
     private static final byte eolCr = '\r';
     
@@ -271,14 +271,28 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
      * @exception  IOException  If an I/O error occurs
      */
     public String readLine() throws IOException {
+        final int length = readLineBytes();
+        return length < 0 ? null : new String(lineBytes, 0, length);
+    }
+
+    /**
+     * Reads a whole line, as {@link #readLine()}, but into a reusable byte buffer rather than a String.  The line is
+     * copied once out of the decompressed blocks, so lines may span blocks.
+     *
+     * @return  the number of bytes in the line, excluding the line terminating character, or -1 if the end of the
+     *          stream has been reached.  The line is in the first bytes of {@link #getLineBytes()} until the next call.
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public int readLineBytes() throws IOException {
         int available = available();
         if (available == 0) {
-            return null;
+            return -1;
         }
-        if(null == buf){ // lazy initialisation 
-            buf = new ByteArrayOutputStream(8192);
+        if (null == lineBytes) { // lazy initialisation
+            lineBytes = new byte[8192];
         }
-        buf.reset();
+        int length = 0;
         boolean done = false;
         boolean foundCr = false; // \r found flag
         while (!done) {
@@ -300,7 +314,11 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
                 ++bCnt;
             }
             if(mCurrentOffset < linetmpPos) {
-                buf.write(mCurrentBlock.mBlock, mCurrentOffset, bCnt);
+                if (length + bCnt > lineBytes.length) {
+                    lineBytes = Arrays.copyOf(lineBytes, Math.max(lineBytes.length * 2, length + bCnt));
+                }
+                System.arraycopy(mCurrentBlock.mBlock, mCurrentOffset, lineBytes, length, bCnt);
+                length += bCnt;
                 mCurrentOffset = linetmpPos;
             }
             available = available();
@@ -309,7 +327,15 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
                 done = true;
             }
         }
-        return buf.toString();
+        return length;
+    }
+
+    /**
+     * @return the buffer holding the line read by the last call to {@link #readLineBytes()}.  The buffer is reused,
+     * and may be replaced by a larger one, by later calls.
+     */
+    public byte[] getLineBytes() {
+        return lineBytes;
     }
 
     /**
@@ -505,39 +531,76 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         if (mFileBuffer == null) {
             mFileBuffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
         }
+        return inflateCompressedBlock(readCompressedBlock(mFileBuffer), bufferAvailableForReuse, blockGunzipper);
+    }
+
+    /**
+     * Reads the next block from the input stream without inflating it.
+     * @param compressedBuffer buffer of at least {@link BlockCompressedStreamConstants#MAX_COMPRESSED_BLOCK_SIZE} bytes
+     *                         in which to place the compressed block
+     * @return next compressed block in input stream
+     */
+    protected CompressedBlock readCompressedBlock(final byte[] compressedBuffer) {
         long blockAddress = mStreamOffset;
         try {
-            final int headerByteCount = readBytes(mFileBuffer, 0, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH);
+            final int headerByteCount = readBytes(compressedBuffer, 0, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH);
             mStreamOffset += headerByteCount;
             if (headerByteCount == 0) {
                 // Handle case where there is no empty gzip block at end.
-                return new DecompressedBlock(blockAddress, new byte[0], 0);
+                return new CompressedBlock(blockAddress, compressedBuffer, 0, null);
             }
             if (headerByteCount != BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH) {
-                return new DecompressedBlock(blockAddress, headerByteCount, new IOException(INCORRECT_HEADER_SIZE_MSG + getSource()));
+                return new CompressedBlock(blockAddress, compressedBuffer, headerByteCount, new IOException(INCORRECT_HEADER_SIZE_MSG + getSource()));
             }
-            final int blockLength = unpackInt16(mFileBuffer, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
-            if (blockLength < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH || blockLength > mFileBuffer.length) {
-                return new DecompressedBlock(blockAddress, blockLength,
+            final int blockLength = unpackInt16(compressedBuffer, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
+            if (blockLength < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH || blockLength > compressedBuffer.length) {
+                return new CompressedBlock(blockAddress, compressedBuffer, blockLength,
                         new IOException(UNEXPECTED_BLOCK_LENGTH_MSG + blockLength + " for " + getSource()));
             }
             final int remaining = blockLength - BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH;
-            final int dataByteCount = readBytes(mFileBuffer, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH,
+            final int dataByteCount = readBytes(compressedBuffer, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH,
                     remaining);
             mStreamOffset += dataByteCount;
             if (dataByteCount != remaining) {
-                return new DecompressedBlock(blockAddress, blockLength,
+                return new CompressedBlock(blockAddress, compressedBuffer, blockLength,
                         new FileTruncatedException(PREMATURE_END_MSG + getSource()));
             }
-            final byte[] decompressed = inflateBlock(mFileBuffer, blockLength, bufferAvailableForReuse);
-            return new DecompressedBlock(blockAddress, decompressed, blockLength);
+            return new CompressedBlock(blockAddress, compressedBuffer, blockLength, null);
+        } catch (IOException e) {
+            return new CompressedBlock(blockAddress, compressedBuffer, 0, e);
+        }
+    }
+
+    /**
+     * Inflates a block obtained from {@link #readCompressedBlock(byte[])}.  Does not touch the state of this stream,
+     * so may be called from another thread provided each thread uses its own {@link BlockGunzipper}.
+     * @param compressedBlock block to inflate
+     * @param bufferAvailableForReuse buffer in which to place decompressed block. A null or
+     *  incorrectly sized buffer will result in the buffer being ignored and
+     *  a new buffer allocated for decompression.
+     * @param gunzipper used to inflate the block
+     * @return the decompressed block
+     */
+    protected DecompressedBlock inflateCompressedBlock(final CompressedBlock compressedBlock, final byte[] bufferAvailableForReuse,
+                                                       final BlockGunzipper gunzipper) {
+        final long blockAddress = compressedBlock.mBlockAddress;
+        if (compressedBlock.mException != null) {
+            return new DecompressedBlock(blockAddress, compressedBlock.mBlockCompressedSize, compressedBlock.mException);
+        }
+        if (compressedBlock.mBlockCompressedSize == 0) {
+            return new DecompressedBlock(blockAddress, new byte[0], 0);
+        }
+        try {
+            final byte[] decompressed = inflateBlock(compressedBlock.mBuffer, compressedBlock.mBlockCompressedSize,
+                    bufferAvailableForReuse, gunzipper);
+            return new DecompressedBlock(blockAddress, decompressed, compressedBlock.mBlockCompressedSize);
         } catch (IOException e) {
             return new DecompressedBlock(blockAddress, 0, e);
         }
     }
 
     private byte[] inflateBlock(final byte[] compressedBlock, final int compressedLength,
-            final byte[] bufferAvailableForReuse) throws IOException {
+            final byte[] bufferAvailableForReuse, final BlockGunzipper gunzipper) throws IOException {
         final int uncompressedLength = unpackInt32(compressedBlock, compressedLength - 4);
         if (uncompressedLength < 0) {
             throw new RuntimeIOException(getSource() + " has invalid uncompressedLength: " + uncompressedLength);
@@ -547,7 +610,7 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         	// can't reuse the buffer since the size is incorrect
             buffer = new byte[uncompressedLength];
         }
-        blockGunzipper.unzipBlock(buffer, compressedBlock, compressedLength);
+        gunzipper.unzipBlock(buffer, compressedBlock, compressedLength);
         return buffer;
     }
 
@@ -719,6 +782,43 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         return true;
     }
 
+    protected static class CompressedBlock {
+        /**
+         * Buffer holding the compressed block, including its header and footer
+         */
+        private final byte[] mBuffer;
+        /**
+         * Compressed size of block, or 0 at end of stream
+         */
+        private final int mBlockCompressedSize;
+        /**
+         * Stream offset of start of block
+         */
+        private final long mBlockAddress;
+        /**
+         * Exception thrown (if any) when attempting to read block
+         */
+        private final Exception mException;
+
+        private CompressedBlock(long blockAddress, byte[] buffer, int compressedSize, Exception exception) {
+            mBuffer = buffer;
+            mBlockAddress = blockAddress;
+            mBlockCompressedSize = compressedSize;
+            mException = exception;
+        }
+
+        public long getBlockAddress() {
+            return mBlockAddress;
+        }
+
+        /**
+         * @return true if no block can follow this one, because the end of the stream was reached or reading failed
+         */
+        public boolean isLastBlock() {
+            return mException != null || mBlockCompressedSize == 0;
+        }
+    }
+
     protected static class DecompressedBlock {
         /**
          * Decompressed block
@@ -23,6 +23,7 @@
  */
 package htsjdk.samtools.util;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.util.zip.DeflaterFactory;
 
 import java.io.File;
@@ -30,6 +31,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
@@ -46,6 +51,13 @@ import java.util.zip.Deflater;
  * number of buffered bytes has not reached threshold.  close(), on the other hand, must be called
  * when done writing in order to force the last gzip block to be written.
  *
+ * If the stream is created with a non-zero number of deflate threads (see {@link #setDefaultDeflateThreads(int)}),
+ * filled blocks are handed to a pool of worker threads for deflation, and are written to the underlying stream
+ * in order by the thread calling write(), flush() and close().  In this mode {@link #getFilePointer()} must wait
+ * for the compressed size of all in-flight blocks to be known; callers that need a virtual file pointer for every
+ * record (e.g. on-the-fly indexers) should use {@link #getUnresolvedFilePointer()} and
+ * {@link #resolveFilePointer(long)} instead, which do not stall the deflate pipeline.
+ *
  * c.f. http://samtools.sourceforge.net/SAM1.pdf for details of BGZF file format.
  */
 public class BlockCompressedOutputStream
@@ -57,6 +69,9 @@ public class BlockCompressedOutputStream
 
     private static int defaultCompressionLevel = BlockCompressedStreamConstants.DEFAULT_COMPRESSION_LEVEL;
     private static DeflaterFactory defaultDeflaterFactory = new DeflaterFactory();
+    private static int defaultDeflateThreads = Defaults.BGZF_DEFLATE_THREADS;
+
+    private static final ExecutorService deflateThreadPool = ThreadPoolUtil.newDaemonCachedThreadPool("BlockCompressedOutputStream-deflate-");
 
     /**
      * Sets the GZip compression level for subsequent BlockCompressedOutputStream object creation
@@ -90,32 +105,47 @@ public class BlockCompressedOutputStream
         return defaultDeflaterFactory;
     }
 
+    /**
+     * Sets the number of worker threads used to deflate blocks for subsequent BlockCompressedOutputStream
+     * object creation that do not specify it.
+     * @param deflateThreads 0 to deflate blocks synchronously on the writing thread, otherwise the maximum
+     *                       number of blocks of a single stream that are deflated concurrently.
+     */
+    public static void setDefaultDeflateThreads(final int deflateThreads) {
+        if (deflateThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of deflate threads: " + deflateThreads);
+        }
+        defaultDeflateThreads = deflateThreads;
+    }
+
+    public static int getDefaultDeflateThreads() {
+        return defaultDeflateThreads;
+    }
+
     private final BinaryCodec codec;
-    private final byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+    // In parallel mode this is the buffer of currentBlock, and is swapped every time a block is handed off.
+    private byte[] uncompressedBuffer;
     private int numUncompressedBytes = 0;
-    private final byte[] compressedBuffer =
-            new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
-                    BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
-    private final Deflater deflater;
-
-    // A second deflater is created for the very unlikely case where the regular deflation actually makes
-    // things bigger, and the compressed block is too big.  It should be possible to downshift the
-    // primary deflater to NO_COMPRESSION level, recompress, and then restore it to its original setting,
-    // but in practice that doesn't work.
-    // The motivation for deflating at NO_COMPRESSION level is that it will predictably produce compressed
-    // output that is 10 bytes larger than the input, and the threshold at which a block is generated is such that
-    // the size of tbe final gzip block will always be <= 64K.  This is preferred over the previous method,
-    // which would attempt to compress up to 64K bytes, and if the resulting compressed block was too large,
-    // try compressing fewer input bytes (aka "downshifting').  The problem with downshifting is that
-    // getFilePointer might return an inaccurate value.
-    // I assume (AW 29-Oct-2013) that there is no value in using hardware-assisted deflater for no-compression mode,
-    // so just use JDK standard.
-    private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
-    private final CRC32 crc32 = new CRC32();
+    private final BlockDeflater blockDeflater;
     private Path file = null;
     private long mBlockAddress = 0;
     private GZIIndex.GZIIndexer indexer;
 
+    // Parallel mode only.  Blocks are numbered in stream order; blocksWritten is also the number of the first
+    // block whose address is not yet known.
+    private final int deflateThreads;
+    private final int compressionLevel;
+    private final DeflaterFactory deflaterFactory;
+    private final ArrayDeque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+    private final ArrayDeque<PendingBlock> freeBlocks = new ArrayDeque<>();
+    private PendingBlock currentBlock;
+    private int allocatedBlocks = 0;
+    private long blocksSubmitted = 0;
+    private long blocksWritten = 0;
+    // Addresses of blocks firstTrackedBlock..blocksWritten, retained for resolveFilePointer.
+    private ArrayDeque<Long> trackedBlockAddresses = null;
+    private long firstTrackedBlock = 0;
+
 
     // Really a local variable, but allocate once to reduce GC burden.
     private final byte[] singleByteArray = new byte[1];
@@ -172,10 +202,23 @@ public class BlockCompressedOutputStream
      * @param deflaterFactory custom factory to create deflaters (overrides the default)
      */
     public BlockCompressedOutputStream(final Path path, final int compressionLevel, final DeflaterFactory deflaterFactory) {
+        this(path, compressionLevel, deflaterFactory, defaultDeflateThreads);
+    }
+
+    /**
+     * Prepare to compress at the given compression level
+     * @param compressionLevel 1 <= compressionLevel <= 9
+     * @param deflaterFactory custom factory to create deflaters (overrides the default)
+     * @param deflateThreads number of blocks to deflate concurrently, or 0 to deflate on the writing thread
+     */
+    public BlockCompressedOutputStream(final Path path, final int compressionLevel, final DeflaterFactory deflaterFactory,
+                                       final int deflateThreads) {
         this.file = path;
         codec = new BinaryCodec(path, true);
-        deflater = deflaterFactory.makeDeflater(compressionLevel, true);
-        log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        this.compressionLevel = compressionLevel;
+        this.deflaterFactory = deflaterFactory;
+        this.deflateThreads = validateDeflateThreads(deflateThreads);
+        blockDeflater = initializeBuffers();
     }
 
     /**
@@ -235,13 +278,58 @@ public class BlockCompressedOutputStream
      * @param deflaterFactory custom factory to create deflaters (overrides the default)
      */
     public BlockCompressedOutputStream(final OutputStream os, final Path file, final int compressionLevel, final DeflaterFactory deflaterFactory) {
+        this(os, file, compressionLevel, deflaterFactory, defaultDeflateThreads);
+    }
+
+    /**
+     * Creates the output stream.
+     * @param os output stream to create a BlockCompressedOutputStream from
+     * @param file file to which to write the output or null if not available
+     * @param compressionLevel the compression level (0-9)
+     * @param deflaterFactory custom factory to create deflaters (overrides the default)
+     * @param deflateThreads number of blocks to deflate concurrently, or 0 to deflate on the writing thread
+     */
+    public BlockCompressedOutputStream(final OutputStream os, final Path file, final int compressionLevel,
+                                       final DeflaterFactory deflaterFactory, final int deflateThreads) {
         this.file = file;
         codec = new BinaryCodec(os);
         if (file != null) {
             codec.setOutputFileName(file.toAbsolutePath().toUri().toString());
         }
-        deflater = deflaterFactory.makeDeflater(compressionLevel, true);
-        log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        this.compressionLevel = compressionLevel;
+        this.deflaterFactory = deflaterFactory;
+        this.deflateThreads = validateDeflateThreads(deflateThreads);
+        blockDeflater = initializeBuffers();
+    }
+
+    private static int validateDeflateThreads(final int deflateThreads) {
+        if (deflateThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of deflate threads: " + deflateThreads);
+        }
+        return deflateThreads;
+    }
+
+    /**
+     * Sets up the buffer being filled by write().
+     * @return the deflater used on the writing thread, or null in parallel mode.
+     */
+    private BlockDeflater initializeBuffers() {
+        if (deflateThreads == 0) {
+            uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+            final BlockDeflater serialDeflater = new BlockDeflater(deflaterFactory.makeDeflater(compressionLevel, true));
+            log.debug("Using deflater: " + serialDeflater.deflater.getClass().getSimpleName());
+            return serialDeflater;
+        }
+        currentBlock = allocateBlock();
+        uncompressedBuffer = currentBlock.uncompressedBuffer;
+        log.debug("Using deflater: " + currentBlock.deflater.deflater.getClass().getSimpleName() +
+                " on " + deflateThreads + " threads");
+        return null;
+    }
+
+    /** @return true if blocks are deflated by worker threads rather than by the writing thread. */
+    public boolean isParallelDeflation() {
+        return deflateThreads > 0;
     }
 
     /**
@@ -266,7 +354,7 @@ public class BlockCompressedOutputStream
      * @throws RuntimeException this method is called after output has already been written to the stream.
      */
     public void addIndexer(final OutputStream outputStream) {
-        if (mBlockAddress != 0) {
+        if (mBlockAddress != 0 || blocksSubmitted != 0) {
             throw new RuntimeException("Cannot add gzi indexer if this BlockCompressedOutput stream has already written Gzipped blocks");
         }
         indexer = new GZIIndex.GZIIndexer(outputStream);
@@ -318,6 +406,7 @@ public class BlockCompressedOutputStream
         while (numUncompressedBytes > 0) {
             deflateBlock();
         }
+        writePendingBlocks(0);
         codec.getOutputStream().flush();
     }
 
@@ -369,11 +458,63 @@ public class BlockCompressedOutputStream
     /** Encode virtual file pointer
      * Upper 48 bits is the byte offset into the compressed stream of a block.
      * Lower 16 bits is the byte offset into the uncompressed stream inside the block.
+     *
+     * In parallel mode this waits for all in-flight blocks to be deflated and written.
      */
     public long getFilePointer(){
+        writePendingBlocks(0);
         return BlockCompressedFilePointerUtil.makeFilePointer(mBlockAddress, numUncompressedBytes);
     }
 
+    /**
+     * Returns a placeholder for the current virtual file pointer that can be obtained without waiting for in-flight
+     * blocks to be deflated.  It must be converted with {@link #resolveFilePointer(long)} before use, and placeholders
+     * must be resolved in the order in which they were obtained.  When deflating on the writing thread the placeholder
+     * is the virtual file pointer itself.
+     */
+    public long getUnresolvedFilePointer() {
+        if (deflateThreads == 0) {
+            return getFilePointer();
+        }
+        if (trackedBlockAddresses == null) {
+            trackedBlockAddresses = new ArrayDeque<>();
+            trackedBlockAddresses.add(mBlockAddress);
+            firstTrackedBlock = blocksWritten;
+        }
+        return BlockCompressedFilePointerUtil.makeFilePointer(blocksSubmitted, numUncompressedBytes);
+    }
+
+    /**
+     * @return true if {@link #resolveFilePointer(long)} can convert the placeholder without waiting on block deflation.
+     */
+    public boolean isFilePointerResolvable(final long unresolvedFilePointer) {
+        return deflateThreads == 0 || BlockCompressedFilePointerUtil.getBlockAddress(unresolvedFilePointer) <= blocksWritten;
+    }
+
+    /**
+     * Converts a placeholder obtained from {@link #getUnresolvedFilePointer()} into a virtual file pointer,
+     * waiting for the preceding blocks to be deflated and written if necessary.
+     */
+    public long resolveFilePointer(final long unresolvedFilePointer) {
+        if (deflateThreads == 0) {
+            return unresolvedFilePointer;
+        }
+        final long blockNumber = BlockCompressedFilePointerUtil.getBlockAddress(unresolvedFilePointer);
+        if (trackedBlockAddresses == null || blockNumber < firstTrackedBlock || blockNumber > blocksSubmitted) {
+            throw new IllegalArgumentException("File pointer " + unresolvedFilePointer +
+                    " was not obtained from getUnresolvedFilePointer, or was resolved out of order");
+        }
+        while (blockNumber > blocksWritten) {
+            writeNextPendingBlock();
+        }
+        // Placeholders are resolved in order, so earlier addresses will not be needed again
+        for (; firstTrackedBlock < blockNumber; firstTrackedBlock++) {
+            trackedBlockAddresses.removeFirst();
+        }
+        return BlockCompressedFilePointerUtil.makeFilePointer(trackedBlockAddresses.getFirst(),
+                BlockCompressedFilePointerUtil.getBlockOffset(unresolvedFilePointer));
+    }
+
     @Override
     public long getPosition() {
         return getFilePointer();
@@ -390,29 +531,16 @@ public class BlockCompressedOutputStream
         if (numUncompressedBytes == 0) {
             return 0;
         }
-        final int bytesToCompress = numUncompressedBytes;
-        // Compress the input
-        deflater.reset();
-        deflater.setInput(uncompressedBuffer, 0, bytesToCompress);
-        deflater.finish();
-        int compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
-
-        // If it didn't all fit in compressedBuffer.length, set compression level to NO_COMPRESSION
-        // and try again.  This should always fit.
-        if (!deflater.finished()) {
-            noCompressionDeflater.reset();
-            noCompressionDeflater.setInput(uncompressedBuffer, 0, bytesToCompress);
-            noCompressionDeflater.finish();
-            compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
-            if (!noCompressionDeflater.finished()) {
-                throw new IllegalStateException("unpossible");
-            }
+        if (deflateThreads > 0) {
+            submitBlock();
+            return 0;
         }
-        // Data compressed small enough, so write it out.
-        crc32.reset();
-        crc32.update(uncompressedBuffer, 0, bytesToCompress);
+        final int bytesToCompress = numUncompressedBytes;
+        blockDeflater.deflate(uncompressedBuffer, bytesToCompress);
 
-        final int totalBlockSize = writeGzipBlock(compressedSize, bytesToCompress, crc32.getValue());
+        // Data compressed small enough, so write it out.
+        final int totalBlockSize = writeGzipBlock(blockDeflater.compressedBuffer, blockDeflater.compressedSize,
+                bytesToCompress, blockDeflater.crc);
         assert(bytesToCompress <= numUncompressedBytes);
 
         // Call out to the indexer if it exists
@@ -426,11 +554,66 @@ public class BlockCompressedOutputStream
         return totalBlockSize;
     }
 
+    /**
+     * Hands the current block to the deflate workers and switches write() to a free buffer, writing out
+     * completed blocks that are next in stream order along the way.
+     */
+    private void submitBlock() {
+        currentBlock.numUncompressedBytes = numUncompressedBytes;
+        currentBlock.future = deflateThreadPool.submit(currentBlock);
+        pendingBlocks.add(currentBlock);
+        blocksSubmitted++;
+
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peek().future.isDone()) {
+            writeNextPendingBlock();
+        }
+        if (freeBlocks.isEmpty() && allocatedBlocks <= deflateThreads) {
+            currentBlock = allocateBlock();
+        } else {
+            while (freeBlocks.isEmpty()) {
+                writeNextPendingBlock();
+            }
+            currentBlock = freeBlocks.pop();
+        }
+        uncompressedBuffer = currentBlock.uncompressedBuffer;
+        numUncompressedBytes = 0;
+    }
+
+    private PendingBlock allocateBlock() {
+        allocatedBlocks++;
+        return new PendingBlock(new BlockDeflater(deflaterFactory.makeDeflater(compressionLevel, true)));
+    }
+
+    /** Waits for and writes in-flight blocks until no more than maxPending remain. */
+    private void writePendingBlocks(final int maxPending) {
+        while (pendingBlocks.size() > maxPending) {
+            writeNextPendingBlock();
+        }
+    }
+
+    /** Waits for the oldest in-flight block to be deflated and writes it out. */
+    private void writeNextPendingBlock() {
+        final PendingBlock block = pendingBlocks.remove();
+        ThreadPoolUtil.await(block.future, "Interrupted waiting for block deflation");
+        final int totalBlockSize = writeGzipBlock(block.deflater.compressedBuffer, block.deflater.compressedSize,
+                block.numUncompressedBytes, block.deflater.crc);
+        if (indexer != null) {
+            indexer.addGzipBlock(mBlockAddress, block.numUncompressedBytes);
+        }
+        mBlockAddress += totalBlockSize;
+        blocksWritten++;
+        if (trackedBlockAddresses != null) {
+            trackedBlockAddresses.add(mBlockAddress);
+        }
+        block.future = null;
+        freeBlocks.push(block);
+    }
+
     /**
      * Writes the entire gzip block, assuming the compressed data is stored in compressedBuffer
      * @return  size of gzip block that was written.
      */
-    private int writeGzipBlock(final int compressedSize, final int uncompressedSize, final long crc) {
+    private int writeGzipBlock(final byte[] compressedBuffer, final int compressedSize, final int uncompressedSize, final long crc) {
         // Init gzip header
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID1);
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID2);
@@ -453,4 +636,78 @@ public class BlockCompressedOutputStream
         codec.writeInt(uncompressedSize);
         return totalBlockSize;
     }
+
+    /**
+     * Deflates a single block of data, remembering the compressed bytes and CRC of the input.
+     */
+    private static final class BlockDeflater {
+        private final Deflater deflater;
+
+        // A second deflater is created for the very unlikely case where the regular deflation actually makes
+        // things bigger, and the compressed block is too big.  It should be possible to downshift the
+        // primary deflater to NO_COMPRESSION level, recompress, and then restore it to its original setting,
+        // but in practice that doesn't work.
+        // The motivation for deflating at NO_COMPRESSION level is that it will predictably produce compressed
+        // output that is 10 bytes larger than the input, and the threshold at which a block is generated is such that
+        // the size of tbe final gzip block will always be <= 64K.  This is preferred over the previous method,
+        // which would attempt to compress up to 64K bytes, and if the resulting compressed block was too large,
+        // try compressing fewer input bytes (aka "downshifting').  The problem with downshifting is that
+        // getFilePointer might return an inaccurate value.
+        // I assume (AW 29-Oct-2013) that there is no value in using hardware-assisted deflater for no-compression mode,
+        // so just use JDK standard.
+        private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        private final CRC32 crc32 = new CRC32();
+        private final byte[] compressedBuffer =
+                new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
+                        BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        private int compressedSize;
+        private long crc;
+
+        private BlockDeflater(final Deflater deflater) {
+            this.deflater = deflater;
+        }
+
+        private void deflate(final byte[] uncompressedBuffer, final int bytesToCompress) {
+            // Compress the input
+            deflater.reset();
+            deflater.setInput(uncompressedBuffer, 0, bytesToCompress);
+            deflater.finish();
+            compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+
+            // If it didn't all fit in compressedBuffer.length, set compression level to NO_COMPRESSION
+            // and try again.  This should always fit.
+            if (!deflater.finished()) {
+                noCompressionDeflater.reset();
+                noCompressionDeflater.setInput(uncompressedBuffer, 0, bytesToCompress);
+                noCompressionDeflater.finish();
+                compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+                if (!noCompressionDeflater.finished()) {
+                    throw new IllegalStateException("unpossible");
+                }
+            }
+            crc32.reset();
+            crc32.update(uncompressedBuffer, 0, bytesToCompress);
+            crc = crc32.getValue();
+        }
+    }
+
+    /**
+     * A block filled by write() and deflated on a worker thread in parallel mode.
+     */
+    private static final class PendingBlock implements Callable<PendingBlock> {
+        private final byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+        private final BlockDeflater deflater;
+        private int numUncompressedBytes;
+        private Future<PendingBlock> future;
+
+        private PendingBlock(final BlockDeflater deflater) {
+            this.deflater = deflater;
+        }
+
+        @Override
+        public PendingBlock call() {
+            deflater.deflate(uncompressedBuffer, numUncompressedBytes);
+            return this;
+        }
+    }
 }
@@ -0,0 +1,357 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, array-backed index for overlap queries against a large, fixed set of intervals.
+ *
+ * The intervals of each contig are sorted by start and stored in primitive arrays, together with the maximum end
+ * of each subtree of an implicit binary tree laid out over the sorted array (as in cgranges), so there is no
+ * per-interval node object and queries walk contiguous memory.  The query methods mirror those of
+ * {@link OverlapDetector} and {@link IntervalTreeMap}; unlike those classes, intervals cannot be added
+ * or removed once the index has been built.
+ *
+ * <pre>{@code
+ *    FlatIntervalIndex<Interval> index = FlatIntervalIndex.create(intervalList);
+ *    boolean anyOverlap = index.overlapsAny(query);
+ *    List<Interval> overlaps = index.getOverlapping(query);
+ * }</pre>
+ *
+ * Intervals are 1-based and closed, as for {@link Locatable}.  Intervals that have no bases (end &lt; start)
+ * never overlap anything, and are not stored.
+ */
+public final class FlatIntervalIndex<T> {
+    /** Subtrees at or below this level are scanned linearly rather than descended. */
+    private static final int LINEAR_SCAN_LEVEL = 3;
+
+    private final Map<String, ContigIndex> contigs;
+    private final int[] starts;
+    private final int[] ends;
+    /** The largest end in the implicit subtree rooted at each index */
+    private final int[] maxEnds;
+    private final Object[] values;
+
+    private static final class ContigIndex {
+        private final int offset;
+        private final int size;
+        private final int rootLevel;
+
+        private ContigIndex(final int offset, final int size, final int rootLevel) {
+            this.offset = offset;
+            this.size = size;
+            this.rootLevel = rootLevel;
+        }
+    }
+
+    @FunctionalInterface
+    private interface OverlapVisitor {
+        /**
+         * @param index the index of an overlapping interval
+         * @return false to stop the traversal
+         */
+        boolean visit(int index);
+    }
+
+    /**
+     * Creates an index of the given locatables, using each locatable as its own value.
+     */
+    public static <T extends Locatable> FlatIntervalIndex<T> create(final List<T> locatables) {
+        return new FlatIntervalIndex<>(locatables, locatables);
+    }
+
+    /**
+     * Creates an index of the intervals in the given list.
+     */
+    public static FlatIntervalIndex<Interval> create(final IntervalList intervalList) {
+        return create(intervalList.getIntervals());
+    }
+
+    /**
+     * Creates an index mapping each interval to the object at the same position in {@code objects}.
+     */
+    public static <T> FlatIntervalIndex<T> create(final List<T> objects, final List<? extends Locatable> intervals) {
+        return new FlatIntervalIndex<>(objects, intervals);
+    }
+
+    private FlatIntervalIndex(final List<T> objects, final List<? extends Locatable> intervals) {
+        if (objects == null) {
+            throw new IllegalArgumentException("null objects");
+        }
+        if (intervals == null) {
+            throw new IllegalArgumentException("null intervals");
+        }
+        if (objects.size() != intervals.size()) {
+            throw new IllegalArgumentException("Objects and intervals must be the same size but were " + objects.size() + " and " + intervals.size());
+        }
+
+        // bucket the intervals by contig, preserving the order in which contigs are first seen
+        final int n = intervals.size();
+        final Map<String, Integer> contigIds = new LinkedHashMap<>();
+        final int[] contigOf = new int[n];
+        final List<int[]> counts = new ArrayList<>();
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            final Locatable interval = intervals.get(i);
+            if (interval == null) {
+                throw new IllegalArgumentException("null interval");
+            }
+            if (objects.get(i) == null) {
+                throw new IllegalArgumentException("null object");
+            }
+            if (interval.getStart() > interval.getEnd()) {
+                // no overlappable bases
+                contigOf[i] = -1;
+                continue;
+            }
+            final Integer id = contigIds.computeIfAbsent(interval.getContig(), c -> {
+                counts.add(new int[1]);
+                return counts.size() - 1;
+            });
+            contigOf[i] = id;
+            counts.get(id)[0]++;
+            total++;
+        }
+
+        final int[] offsets = new int[counts.size() + 1];
+        for (int c = 0; c < counts.size(); c++) {
+            offsets[c + 1] = offsets[c] + counts.get(c)[0];
+        }
+
+        // within each contig, sort by start and then by input order
+        final long[] keys = new long[total];
+        final int[] fill = Arrays.copyOf(offsets, counts.size());
+        for (int i = 0; i < n; i++) {
+            if (contigOf[i] != -1) {
+                keys[fill[contigOf[i]]++] = ((long) intervals.get(i).getStart() << 32) | i;
+            }
+        }
+
+        starts = new int[total];
+        ends = new int[total];
+        maxEnds = new int[total];
+        values = new Object[total];
+        contigs = new HashMap<>(contigIds.size() * 2);
+        for (final Map.Entry<String, Integer> entry : contigIds.entrySet()) {
+            final int c = entry.getValue();
+            final int offset = offsets[c];
+            final int size = offsets[c + 1] - offset;
+            Arrays.sort(keys, offset, offset + size);
+            for (int j = offset; j < offset + size; j++) {
+                final int i = (int) keys[j];
+                starts[j] = intervals.get(i).getStart();
+                ends[j] = intervals.get(i).getEnd();
+                values[j] = objects.get(i);
+            }
+            contigs.put(entry.getKey(), new ContigIndex(offset, size, buildMaxEnds(offset, size)));
+        }
+    }
+
+    /**
+     * Fill in maxEnds for the implicit tree over [offset, offset + size).  In this layout the level of the node at
+     * (relative) index i is the number of trailing 1 bits of i, and a node at level k has children at i -/+ 2^(k-1).
+     *
+     * @return the level of the root
+     */
+    private int buildMaxEnds(final int offset, final int size) {
+        int lastIndex = 0;
+        int last = 0;
+        for (int i = 0; i < size; i += 2) {
+            lastIndex = i;
+            last = maxEnds[offset + i] = ends[offset + i];
+        }
+        int level = 1;
+        for (; 1L << level <= size; level++) {
+            final int x = 1 << (level - 1);
+            final long step = (long) x << 2;
+            for (long i = (x << 1) - 1; i < size; i += step) {
+                final int node = offset + (int) i;
+                final int leftEnd = maxEnds[node - x];
+                final int rightEnd = i + x < size ? maxEnds[node + x] : last;
+                maxEnds[node] = Math.max(ends[node], Math.max(leftEnd, rightEnd));
+            }
+            // the rightmost node at this level may have a right subtree that is cut off by the end of the array
+            lastIndex = ((lastIndex >> level) & 1) != 0 ? lastIndex - x : lastIndex + x;
+            if (lastIndex < size && maxEnds[offset + lastIndex] > last) {
+                last = maxEnds[offset + lastIndex];
+            }
+        }
+        return level - 1;
+    }
+
+    /**
+     * Visit the intervals of the contig that overlap [start, end], in order of start.
+     *
+     * @return false if the visitor stopped the traversal
+     */
+    private boolean visitOverlaps(final ContigIndex contig, final int start, final int end, final OverlapVisitor visitor) {
+        final int offset = contig.offset;
+        final int size = contig.size;
+        // each stack entry holds a node, its level, and whether its left subtree has been visited
+        final int[] stack = new int[3 * 2 * (contig.rootLevel + 2)];
+        int top = 0;
+        stack[top++] = (int) ((1L << contig.rootLevel) - 1);
+        stack[top++] = contig.rootLevel;
+        stack[top++] = 0;
+        while (top > 0) {
+            final int leftVisited = stack[--top];
+            final int level = stack[--top];
+            final int x = stack[--top];
+            if (level <= LINEAR_SCAN_LEVEL) {
+                final int i0 = x >> level << level;
+                final int i1 = (int) Math.min((long) i0 + (1L << (level + 1)) - 1, size);
+                for (int i = i0; i < i1 && starts[offset + i] <= end; i++) {
+                    if (start <= ends[offset + i] && !visitor.visit(offset + i)) {
+                        return false;
+                    }
+                }
+            } else if (leftVisited == 0) {
+                final int left = x - (1 << (level - 1));
+                stack[top++] = x;
+                stack[top++] = level;
+                stack[top++] = 1;
+                // the left child may be beyond the end of the array, in which case part of its subtree may not be
+                if (left >= size || maxEnds[offset + left] >= start) {
+                    stack[top++] = left;
+                    stack[top++] = level - 1;
+                    stack[top++] = 0;
+                }
+            } else if (x < size && starts[offset + x] <= end) {
+                if (start <= ends[offset + x] && !visitor.visit(offset + x)) {
+                    return false;
+                }
+                stack[top++] = x + (1 << (level - 1));
+                stack[top++] = level - 1;
+                stack[top++] = 0;
+            }
+        }
+        return true;
+    }
+
+    private boolean visitOverlaps(final Locatable locatable, final OverlapVisitor visitor) {
+        if (locatable == null) {
+            throw new IllegalArgumentException("null locatable");
+        }
+        final ContigIndex contig = contigs.get(locatable.getContig());
+        if (contig == null || locatable.getStart() > locatable.getEnd()) {
+            return true;
+        }
+        return visitOverlaps(contig, locatable.getStart(), locatable.getEnd(), visitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T valueAt(final int index) {
+        return (T) values[index];
+    }
+
+    /**
+     * @return the number of intervals in the index
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Gets all the objects that could be returned by this index.
+     */
+    public Set<T> getAll() {
+        final Set<T> all = new HashSet<>();
+        for (int i = 0; i < values.length; i++) {
+            all.add(valueAt(i));
+        }
+        return all;
+    }
+
+    /**
+     * Returns true iff the given locatable overlaps any interval in this index.
+     */
+    public boolean overlapsAny(final Locatable locatable) {
+        return !visitOverlaps(locatable, i -> false);
+    }
+
+    /**
+     * Gets the Set of objects that overlap the provided locatable, as {@link OverlapDetector#getOverlaps(Locatable)}.
+     */
+    public Set<T> getOverlaps(final Locatable locatable) {
+        final Set<T> matches = new HashSet<>();
+        visitOverlaps(locatable, i -> {
+            matches.add(valueAt(i));
+            return true;
+        });
+        return matches;
+    }
+
+    /**
+     * Test overlapping interval, as {@link IntervalTreeMap#containsOverlapping(Locatable)}.
+     * @param key the Locatable
+     * @return true if it contains an object overlapping the interval
+     */
+    public boolean containsOverlapping(final Locatable key) {
+        return overlapsAny(key);
+    }
+
+    /**
+     * Gets the objects whose intervals overlap the provided locatable, in order of interval start.
+     */
+    public List<T> getOverlapping(final Locatable key) {
+        final List<T> result = new ArrayList<>();
+        visitOverlaps(key, i -> result.add(valueAt(i)));
+        return result;
+    }
+
+    /**
+     * Test if this contains an object that is contained by 'key', as {@link IntervalTreeMap#containsContained(Locatable)}.
+     * @param key the Locatable
+     * @return true if it contains an object is contained by 'key'
+     */
+    public boolean containsContained(final Locatable key) {
+        return !visitOverlaps(key, i -> !isContained(i, key));
+    }
+
+    /**
+     * Gets the objects whose intervals are contained by the provided locatable, in order of interval start.
+     */
+    public List<T> getContained(final Locatable key) {
+        final List<T> result = new ArrayList<>();
+        visitOverlaps(key, i -> {
+            if (isContained(i, key)) {
+                result.add(valueAt(i));
+            }
+            return true;
+        });
+        return result;
+    }
+
+    private boolean isContained(final int index, final Locatable key) {
+        return starts[index] >= key.getStart() && ends[index] <= key.getEnd();
+    }
+}
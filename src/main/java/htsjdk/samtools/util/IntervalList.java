@@ -580,10 +580,10 @@ public class IntervalList implements Iterable<Interval> {
 
         final IntervalList result = new IntervalList(list1.getHeader().clone());
 
-        final OverlapDetector<Interval> detector = OverlapDetector.create(list1.getIntervals());
+        final FlatIntervalIndex<Interval> index = FlatIntervalIndex.create(list1.getIntervals());
 
         for (final Interval i : list2.getIntervals()) {
-            detector.getOverlaps(i).stream()
+            index.getOverlapping(i).stream()
                     .map(i::intersect)
                     .forEach(result::add);
         }
@@ -790,20 +790,16 @@ public class IntervalList implements Iterable<Interval> {
 
         header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
 
-        // Create an overlap detector on rhs
+        // Create an overlap index on rhs
         final IntervalList overlapIntervals = new IntervalList(header);
         overlapIntervals.addall(rhs.getIntervals());
 
-        final OverlapDetector<Integer> detector = new OverlapDetector<>(0, 0);
-        final int dummy = -1; // NB: since we don't actually use the returned objects, we can use a dummy value
-        for (final Interval interval : overlapIntervals.sorted().uniqued()) {
-            detector.addLhs(dummy, interval);
-        }
+        final FlatIntervalIndex<Interval> index = FlatIntervalIndex.create(overlapIntervals.sorted().uniqued());
 
         // Go through each input interval in lhs and see if overlaps any interval in rhs
         final IntervalList merged = new IntervalList(header);
         for (final Interval interval : lhs.getIntervals()) {
-            if (detector.overlapsAny(interval)) {
+            if (index.overlapsAny(interval)) {
                 merged.add(interval);
             }
         }
@@ -0,0 +1,256 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMSequenceDictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming merge-join of coordinate sorted records against a sorted, uniqued {@link IntervalList}.
+ *
+ * Records are presented one at a time, in the order of the interval list's sequence dictionary and then by start,
+ * as they come from a coordinate sorted SAM file, VCF or other feature file.  Because both sides are sorted, the
+ * sweeper only needs to keep a cursor into the interval list, so each record is matched in amortized constant time
+ * (plus the number of overlapping intervals returned) without any tree lookups.  Any {@link Locatable} may be
+ * presented, e.g. {@link htsjdk.samtools.SAMRecord}, {@link htsjdk.variant.variantcontext.VariantContext}
+ * or {@link htsjdk.tribble.Feature}.
+ *
+ * Records that have no contig (e.g. unmapped reads) or whose contig is not in the sequence dictionary overlap
+ * nothing.  Presenting a record that sorts before the previous one is an error.
+ *
+ * <pre>{@code
+ *    IntervalSweeper sweeper = new IntervalSweeper(intervalList);
+ *    for (VariantContext vc : vcfReader) {
+ *        if (sweeper.overlapsAny(vc)) { ... }
+ *    }
+ * }</pre>
+ *
+ * Note that this class is not thread safe.
+ */
+public class IntervalSweeper {
+    private final SAMSequenceDictionary dictionary;
+    private final Interval[] intervals;
+    private final int[] sequenceIndices;
+    private final int[] starts;
+    private final int[] ends;
+
+    /**
+     * Index of the first interval that may overlap the current record.  All earlier intervals end before the start
+     * of the current record.
+     */
+    private int current = 0;
+
+    private int lastSequenceIndex = -1;
+    private int lastStart = Integer.MIN_VALUE;
+    private String lastContig = null;
+
+    /**
+     * @param intervalList the intervals to match records against.  The list is sorted and uniqued (so overlapping
+     *                     and abutting intervals are merged) before use.
+     */
+    public IntervalSweeper(final IntervalList intervalList) {
+        this(intervalList.uniqued().getIntervals(), intervalList.getHeader().getSequenceDictionary());
+    }
+
+    /**
+     * @param uniqueIntervals list of intervals of interest, with overlaps merged, in coordinate order
+     * @param dictionary      the sequence dictionary that defines the order of the contigs
+     */
+    public IntervalSweeper(final List<Interval> uniqueIntervals, final SAMSequenceDictionary dictionary) {
+        IntervalUtil.assertOrderedNonOverlapping(uniqueIntervals.iterator(), dictionary);
+        this.dictionary = dictionary;
+        final List<Interval> known = new ArrayList<>(uniqueIntervals.size());
+        for (final Interval interval : uniqueIntervals) {
+            if (dictionary.getSequenceIndex(interval.getContig()) != -1) {
+                known.add(interval);
+            }
+        }
+        final int n = known.size();
+        intervals = known.toArray(new Interval[n]);
+        sequenceIndices = new int[n];
+        starts = new int[n];
+        ends = new int[n];
+        for (int i = 0; i < n; i++) {
+            sequenceIndices[i] = dictionary.getSequenceIndex(intervals[i].getContig());
+            starts[i] = intervals[i].getStart();
+            ends[i] = intervals[i].getEnd();
+        }
+    }
+
+    /**
+     * Move the cursor to the given record.
+     *
+     * @return the sequence index of the record, or -1 if it has no contig in the dictionary
+     */
+    private int advanceTo(final Locatable record) {
+        final String contig = record.getContig();
+        if (contig == null) {
+            return -1;
+        }
+        final int sequenceIndex;
+        if (contig.equals(lastContig)) {
+            sequenceIndex = lastSequenceIndex;
+        } else {
+            sequenceIndex = dictionary.getSequenceIndex(contig);
+            if (sequenceIndex == -1) {
+                return -1;
+            }
+        }
+        final int start = record.getStart();
+        if (sequenceIndex < lastSequenceIndex || (sequenceIndex == lastSequenceIndex && start < lastStart)) {
+            throw new SAMException("Records must be coordinate sorted, but " + contig + ":" + start +
+                    " follows " + lastContig + ":" + lastStart);
+        }
+        lastContig = contig;
+        lastSequenceIndex = sequenceIndex;
+        lastStart = start;
+
+        while (current < intervals.length && (sequenceIndices[current] < sequenceIndex ||
+                (sequenceIndices[current] == sequenceIndex && ends[current] < start))) {
+            current++;
+        }
+        return sequenceIndex;
+    }
+
+    private boolean overlaps(final int index, final int sequenceIndex, final int end) {
+        return index < intervals.length && sequenceIndices[index] == sequenceIndex && starts[index] <= end;
+    }
+
+    /**
+     * @return true if the record overlaps any of the intervals
+     */
+    public boolean overlapsAny(final Locatable record) {
+        final int sequenceIndex = advanceTo(record);
+        return sequenceIndex != -1 && overlaps(current, sequenceIndex, record.getEnd());
+    }
+
+    /**
+     * @return the intervals that overlap the record, in coordinate order
+     */
+    public List<Interval> getOverlaps(final Locatable record) {
+        final int sequenceIndex = advanceTo(record);
+        if (sequenceIndex == -1 || !overlaps(current, sequenceIndex, record.getEnd())) {
+            return Collections.emptyList();
+        }
+        final List<Interval> overlaps = new ArrayList<>();
+        for (int i = current; overlaps(i, sequenceIndex, record.getEnd()); i++) {
+            overlaps.add(intervals[i]);
+        }
+        return overlaps;
+    }
+
+    /**
+     * @return the interval that wholly contains the record, or null if there is none
+     */
+    public Interval getContaining(final Locatable record) {
+        final int sequenceIndex = advanceTo(record);
+        if (sequenceIndex != -1 && overlaps(current, sequenceIndex, record.getEnd()) &&
+                starts[current] <= record.getStart() && record.getEnd() <= ends[current]) {
+            return intervals[current];
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the record is wholly contained by one of the intervals
+     */
+    public boolean isContained(final Locatable record) {
+        return getContaining(record) != null;
+    }
+
+    /**
+     * @return the interval nearest to the record on the same contig: the first overlapping interval if there is one,
+     * otherwise the closest of the intervals before and after the record (the one before it in case of a tie).
+     * Returns null if there are no intervals on the record's contig.
+     */
+    public Interval getNearest(final Locatable record) {
+        final int sequenceIndex = advanceTo(record);
+        if (sequenceIndex == -1) {
+            return null;
+        }
+        if (overlaps(current, sequenceIndex, record.getEnd())) {
+            return intervals[current];
+        }
+        final boolean hasNext = current < intervals.length && sequenceIndices[current] == sequenceIndex;
+        final boolean hasPrevious = current > 0 && sequenceIndices[current - 1] == sequenceIndex;
+        if (hasPrevious && (!hasNext || record.getStart() - ends[current - 1] <= starts[current] - record.getEnd())) {
+            return intervals[current - 1];
+        }
+        return hasNext ? intervals[current] : null;
+    }
+
+    /**
+     * @return true if no interval can overlap any record that sorts at or after the last one presented
+     */
+    public boolean isExhausted() {
+        return current >= intervals.length;
+    }
+
+    /**
+     * Wrap a coordinate sorted iterator so that only the records that overlap the intervals are returned.  Iteration
+     * stops once all the intervals have been passed.  The returned iterator uses this sweeper, so the sweeper must
+     * not be used for anything else while it is in use.
+     */
+    public <T extends Locatable> CloseableIterator<T> filterOverlapping(final Iterator<T> records) {
+        return new CloseableIterator<T>() {
+            private T next = advance();
+
+            private T advance() {
+                while (!isExhausted() && records.hasNext()) {
+                    final T record = records.next();
+                    if (overlapsAny(record)) {
+                        return record;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null) {
+                    throw new NoSuchElementException("Iterator has no more elements.");
+                }
+                final T result = next;
+                next = advance();
+                return result;
+            }
+
+            @Override
+            public void close() {
+                CloserUtil.close(records);
+            }
+        };
+    }
+}
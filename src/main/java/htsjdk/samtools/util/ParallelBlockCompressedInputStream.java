@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.zip.InflaterFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Read-ahead implementation of {@link BlockCompressedInputStream} that keeps a window of compressed blocks
+ * in flight and inflates them concurrently on worker threads, each with its own {@link BlockGunzipper}.
+ *
+ * Compressed blocks are read from the underlying stream by the thread reading from this stream, so
+ * seek() and getFilePointer() behave exactly as for {@link BlockCompressedInputStream}.  Memory use is bounded
+ * by the size of the read-ahead window: one compressed and one decompressed buffer per block in flight.
+ * A seek discards the read-ahead window, so this implementation is best suited to long sequential scans.
+ *
+ * Note that this implementation is not synchronized. If multiple threads access an instance concurrently, it must be synchronized externally.
+ */
+public class ParallelBlockCompressedInputStream extends BlockCompressedInputStream {
+    private static final ExecutorService threadpool = ThreadPoolUtil.newDaemonCachedThreadPool("ParallelBlockCompressedInputStream-inflate-");
+
+    private final int readAheadBlocks;
+    private final InflaterFactory inflaterFactory;
+    private boolean checkCrcs = false;
+    /**
+     * Blocks that have been read from the underlying stream and handed to the workers, in stream order.
+     */
+    private final ArrayDeque<InflateTask> inFlight = new ArrayDeque<>();
+    /**
+     * Tasks (and their buffers and gunzippers) that are no longer in use.
+     */
+    private final ArrayDeque<InflateTask> freeTasks = new ArrayDeque<>();
+    /**
+     * Decompression buffers of blocks that have been consumed by the reader.
+     */
+    private final ArrayDeque<byte[]> freeBuffers = new ArrayDeque<>();
+
+    /**
+     * Note that seek() is not supported if this ctor is used.
+     * @param stream source of bytes
+     * @param readAheadBlocks maximum number of blocks to inflate concurrently
+     */
+    public ParallelBlockCompressedInputStream(final InputStream stream, final int readAheadBlocks) {
+        this(stream, BlockGunzipper.getDefaultInflaterFactory(), readAheadBlocks);
+    }
+
+    /**
+     * Note that seek() is not supported if this ctor is used.
+     * @param stream source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by the {@link BlockGunzipper} of each worker
+     * @param readAheadBlocks maximum number of blocks to inflate concurrently
+     */
+    public ParallelBlockCompressedInputStream(final InputStream stream, final InflaterFactory inflaterFactory, final int readAheadBlocks) {
+        super(stream, true, inflaterFactory);
+        this.inflaterFactory = inflaterFactory;
+        this.readAheadBlocks = validateReadAheadBlocks(readAheadBlocks);
+    }
+
+    /**
+     * @param file source of bytes
+     * @param readAheadBlocks maximum number of blocks to inflate concurrently
+     */
+    public ParallelBlockCompressedInputStream(final File file, final int readAheadBlocks) throws IOException {
+        this(file, BlockGunzipper.getDefaultInflaterFactory(), readAheadBlocks);
+    }
+
+    /**
+     * @param file source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by the {@link BlockGunzipper} of each worker
+     * @param readAheadBlocks maximum number of blocks to inflate concurrently
+     */
+    public ParallelBlockCompressedInputStream(final File file, final InflaterFactory inflaterFactory, final int readAheadBlocks) throws IOException {
+        super(file, inflaterFactory);
+        this.inflaterFactory = inflaterFactory;
+        this.readAheadBlocks = validateReadAheadBlocks(readAheadBlocks);
+    }
+
+    /**
+     * @param strm source of bytes
+     * @param readAheadBlocks maximum number of blocks to inflate concurrently
+     */
+    public ParallelBlockCompressedInputStream(final SeekableStream strm, final int readAheadBlocks) {
+        this(strm, BlockGunzipper.getDefaultInflaterFactory(), readAheadBlocks);
+    }
+
+    /**
+     * @param strm source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by the {@link BlockGunzipper} of each worker
+     * @param readAheadBlocks maximum number of blocks to inflate concurrently
+     */
+    public ParallelBlockCompressedInputStream(final SeekableStream strm, final InflaterFactory inflaterFactory, final int readAheadBlocks) {
+        super(strm, inflaterFactory);
+        this.inflaterFactory = inflaterFactory;
+        this.readAheadBlocks = validateReadAheadBlocks(readAheadBlocks);
+    }
+
+    private static int validateReadAheadBlocks(final int readAheadBlocks) {
+        if (readAheadBlocks < 1) {
+            throw new IllegalArgumentException("Invalid number of read-ahead blocks: " + readAheadBlocks);
+        }
+        return readAheadBlocks;
+    }
+
+    @Override
+    public void setCheckCrcs(final boolean check) {
+        super.setCheckCrcs(check);
+        checkCrcs = check;
+    }
+
+    @Override
+    protected DecompressedBlock nextBlock(final byte[] bufferAvailableForReuse) {
+        if (bufferAvailableForReuse != null && freeBuffers.size() < readAheadBlocks) {
+            freeBuffers.push(bufferAvailableForReuse);
+        }
+        fillReadAhead();
+        final InflateTask task = inFlight.remove();
+        final DecompressedBlock block = task.await();
+        task.future = null;
+        freeTasks.push(task);
+        // keep the workers busy while the caller consumes this block
+        fillReadAhead();
+        return block;
+    }
+
+    @Override
+    protected void prepareForSeek() {
+        discardReadAhead();
+        super.prepareForSeek();
+    }
+
+    @Override
+    public void close() throws IOException {
+        discardReadAhead();
+        super.close();
+    }
+
+    /**
+     * Reads compressed blocks and hands them to the workers until the read-ahead window is full
+     * or the last block of the stream has been queued.
+     */
+    private void fillReadAhead() {
+        while (inFlight.size() < readAheadBlocks &&
+                (inFlight.isEmpty() || !inFlight.peekLast().compressedBlock.isLastBlock())) {
+            final InflateTask task = freeTasks.isEmpty() ? new InflateTask(new BlockGunzipper(inflaterFactory)) : freeTasks.pop();
+            task.gunzipper.setCheckCrcs(checkCrcs);
+            task.compressedBlock = readCompressedBlock(task.compressedBuffer);
+            task.bufferAvailableForReuse = freeBuffers.poll();
+            task.future = threadpool.submit(task);
+            inFlight.add(task);
+        }
+    }
+
+    /**
+     * Abandons all read-ahead blocks.  Tasks that may still be running are not reused.
+     */
+    private void discardReadAhead() {
+        for (final InflateTask task : inFlight) {
+            task.future.cancel(false);
+        }
+        inFlight.clear();
+    }
+
+    private class InflateTask implements Callable<DecompressedBlock> {
+        private final BlockGunzipper gunzipper;
+        private final byte[] compressedBuffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
+        private CompressedBlock compressedBlock;
+        private byte[] bufferAvailableForReuse;
+        private Future<DecompressedBlock> future;
+
+        private InflateTask(final BlockGunzipper gunzipper) {
+            this.gunzipper = gunzipper;
+        }
+
+        @Override
+        public DecompressedBlock call() {
+            return inflateCompressedBlock(compressedBlock, bufferAvailableForReuse, gunzipper);
+        }
+
+        /**
+         * Foreground thread blocking operation that waits for this block to be inflated.
+         */
+        private DecompressedBlock await() {
+            try {
+                return ThreadPoolUtil.awaitInterruptibly(future);
+            } catch (final InterruptedException e) {
+                return new DecompressedBlock(compressedBlock.getBlockAddress(), 0, e);
+            }
+        }
+    }
+}
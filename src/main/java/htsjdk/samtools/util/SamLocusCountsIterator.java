@@ -0,0 +1,614 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.filter.AggregateFilter;
+import htsjdk.samtools.filter.DuplicateReadFilter;
+import htsjdk.samtools.filter.FilteringSamIterator;
+import htsjdk.samtools.filter.SamRecordFilter;
+import htsjdk.samtools.filter.SecondaryOrSupplementaryFilter;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Counts-only alternative to {@link SamLocusIterator}.  Traverses a coordinate sorted SAM file, accumulating
+ * per-locus base counts, base quality sums, and deletion and insertion counts, without creating a
+ * {@link SamLocusIterator.LocusInfo} or any {@link SamLocusIterator.RecordAndOffset} objects.
+ *
+ * Counts are accumulated in primitive ring buffers that span the loci covered by the reads currently overlapping
+ * the iteration position, so memory use depends on read length rather than depth.  The same {@link LocusCounts}
+ * object is returned by every call to {@link #next()}, and is only valid until the next call to {@link #hasNext()}
+ * or {@link #next()}.
+ *
+ * Reads are selected exactly as by {@link SamLocusIterator}: unmapped reads, reads below the mapping quality
+ * cutoff and (optionally) reads that fail vendor quality checks are skipped, and by default duplicate reads and
+ * non-primary alignments are filtered out.  Filtering may be changed via setSamFilters().  Bases below the
+ * quality score cutoff are not counted; as with {@link SamLocusIterator}, the cutoff does not affect
+ * insertions and deletions, which are always counted.  An insertion is counted at the reference position
+ * preceding it (and not at all if it precedes the first base of the reference).
+ */
+public class SamLocusCountsIterator implements Iterable<SamLocusCountsIterator.LocusCounts>, CloseableIterator<SamLocusCountsIterator.LocusCounts> {
+
+    private static final Log LOG = Log.getInstance(SamLocusCountsIterator.class);
+
+    /** Number of base count slots per locus: A, C, G, T and everything else. */
+    private static final int NUM_BASE_SLOTS = 5;
+    private static final int OTHER_BASE_SLOT = 4;
+    private static final byte[] BASE_SLOTS = new byte[256];
+
+    static {
+        Arrays.fill(BASE_SLOTS, (byte) OTHER_BASE_SLOT);
+        BASE_SLOTS['A'] = BASE_SLOTS['a'] = 0;
+        BASE_SLOTS['C'] = BASE_SLOTS['c'] = 1;
+        BASE_SLOTS['G'] = BASE_SLOTS['g'] = 2;
+        BASE_SLOTS['T'] = BASE_SLOTS['t'] = 3;
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final SamReader samReader;
+    private final ReferenceSequenceMask referenceSequenceMask;
+    private final List<Interval> intervals;
+    private final boolean useIndex;
+    private PeekableIterator<SAMRecord> samIterator;
+    private List<SamRecordFilter> samFilters = Arrays.asList(new SecondaryOrSupplementaryFilter(),
+            new DuplicateReadFilter());
+
+    private int qualityScoreCutoff = Integer.MIN_VALUE;
+    private int mappingQualityScoreCutoff = Integer.MIN_VALUE;
+    private boolean includeNonPfReads = true;
+
+    /**
+     * If true, emit a LocusCounts for every locus in the target map, or if no target map,
+     * emit a LocusCounts for every locus in the reference sequence.
+     * If false, emit a LocusCounts only if a locus has coverage.
+     */
+    private boolean emitUncoveredLoci = true;
+
+    /**
+     * Set to true when past all aligned reads in input SAM file
+     */
+    private boolean finishedAlignedReads = false;
+
+    /**
+     * Ring buffers holding the counts for the loci [windowStart, windowEnd) of sequence windowContig,
+     * indexed by (position & slotMask).  Slots outside of the window are always zero.
+     */
+    private int[] baseCounts = new int[INITIAL_CAPACITY * NUM_BASE_SLOTS];
+    private long[] qualitySums = new long[INITIAL_CAPACITY];
+    private int[] deletionCounts = new int[INITIAL_CAPACITY];
+    private int[] insertionCounts = new int[INITIAL_CAPACITY];
+    private int slotMask = INITIAL_CAPACITY - 1;
+
+    private int windowContig = -1;
+    private int windowStart = 0;
+    private int windowEnd = 0;
+
+    /**
+     * When emitting uncovered loci, the last position of the mask that has been visited.
+     */
+    private int maskSequence = 0;
+    private int maskPosition = 0;
+
+    private final LocusCounts locusCounts = new LocusCounts();
+    /** True if locusCounts holds a locus that has not yet been returned by next() */
+    private boolean nextReady = false;
+    /** True if locusCounts has been returned by next(), so its slot may be released */
+    private boolean emitted = false;
+
+    /**
+     * Prepare to iterate through the given SAM records, skipping non-primary alignments.  Do not use
+     * BAM index even if available.
+     *
+     * @param samReader must be coordinate sorted
+     */
+    public SamLocusCountsIterator(final SamReader samReader) {
+        this(samReader, null);
+    }
+
+    /**
+     * Prepare to iterate through the given SAM records, skipping non-primary alignments.
+     *
+     * @param samReader    must be coordinate sorted
+     * @param intervalList Either the list of desired intervals, or null.  Note that if an intervalList is
+     *                     passed in that is not coordinate sorted, it will eventually be coordinated sorted by this class.
+     */
+    public SamLocusCountsIterator(final SamReader samReader, final IntervalList intervalList) {
+        this(samReader, intervalList, samReader.hasIndex());
+    }
+
+    /**
+     * Prepare to iterate through the given SAM records, skipping non-primary alignments
+     *
+     * @param samReader    must be coordinate sorted
+     * @param intervalList Either the list of desired intervals, or null.  Note that if an intervalList is
+     *                     passed in that is not coordinate sorted, it will eventually be coordinated sorted by this class.
+     * @param useIndex     If true, do indexed lookup to improve performance.  Not relevant if intervalList == null.
+     */
+    public SamLocusCountsIterator(final SamReader samReader, final IntervalList intervalList, final boolean useIndex) {
+        final SAMFileHeader.SortOrder sortOrder = samReader.getFileHeader().getSortOrder();
+        if (sortOrder == null || sortOrder == SAMFileHeader.SortOrder.unsorted) {
+            LOG.warn(getClass().getSimpleName() + " constructed with samReader that has SortOrder == unsorted.  ",
+                    "Assuming SAM is coordinate sorted, but exceptions may occur if it is not.");
+        } else if (sortOrder != SAMFileHeader.SortOrder.coordinate) {
+            throw new SAMException(getClass().getSimpleName() + " cannot operate on a SAM file that is not coordinate sorted.");
+        }
+        this.samReader = samReader;
+        this.useIndex = useIndex;
+        if (intervalList != null) {
+            intervals = intervalList.uniqued().getIntervals();
+            this.referenceSequenceMask = new IntervalListReferenceSequenceMask(intervalList);
+        } else {
+            intervals = null;
+            this.referenceSequenceMask = new WholeGenomeReferenceSequenceMask(samReader.getFileHeader());
+        }
+    }
+
+    public SAMFileHeader getHeader() {
+        return samReader.getFileHeader();
+    }
+
+    /**
+     * @return iterator over all/all covered locus position in reference according to <code>emitUncoveredLoci</code>
+     * value.
+     */
+    @Override
+    public Iterator<LocusCounts> iterator() {
+        if (samIterator != null) {
+            throw new IllegalStateException("Cannot call iterator() more than once on " + getClass().getSimpleName());
+        }
+        CloseableIterator<SAMRecord> tempIterator;
+        if (intervals != null) {
+            tempIterator = new SamRecordIntervalIteratorFactory().makeSamRecordIntervalIterator(samReader, intervals, useIndex);
+        } else {
+            tempIterator = samReader.iterator();
+        }
+        if (samFilters != null) {
+            tempIterator = new FilteringSamIterator(tempIterator, new AggregateFilter(samFilters));
+        }
+        samIterator = new PeekableIterator<>(tempIterator);
+        return this;
+    }
+
+    /**
+     * Closes inner <code>SamIterator</code>.
+     */
+    @Override
+    public void close() {
+        if (samIterator != null) {
+            samIterator.close();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (samIterator == null) {
+            iterator();
+        }
+        if (!nextReady) {
+            releaseEmittedLocus();
+            nextReady = emitUncoveredLoci ? advanceToNextMaskPosition() : advanceToNextCoveredPosition();
+        }
+        return nextReady;
+    }
+
+    /**
+     * @return counts for the next locus.  The returned object is reused, and is only valid until the next
+     * call to {@link #hasNext()} or {@link #next()}.
+     */
+    @Override
+    public LocusCounts next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        nextReady = false;
+        emitted = true;
+        return locusCounts;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Can not remove records from a SAM file via an iterator!");
+    }
+
+    /**
+     * Finds the next locus that has coverage and is in the mask.  Loci are complete once the next read starts more
+     * than one position after them (a leading insertion is counted at the position before the read start).
+     */
+    private boolean advanceToNextCoveredPosition() {
+        while (true) {
+            final SAMRecord rec = peekNextRead();
+            if (windowStart >= windowEnd) {
+                if (rec == null) {
+                    return false;
+                }
+                windowContig = rec.getReferenceIndex();
+                windowStart = windowEnd = rec.getAlignmentStart() - 1;
+                accumulateSamRecord(rec);
+                samIterator.next();
+                continue;
+            }
+
+            final int limit = rec != null && rec.getReferenceIndex() == windowContig ? rec.getAlignmentStart() - 1 : Integer.MAX_VALUE;
+            while (windowStart < windowEnd && windowStart < limit) {
+                if (isCovered(windowStart & slotMask) && referenceSequenceMask.get(windowContig, windowStart)) {
+                    locusCounts.set(windowContig, windowStart);
+                    return true;
+                }
+                clearSlot(windowStart & slotMask);
+                windowStart++;
+            }
+            if (windowStart < windowEnd) {
+                // the next read may contribute to the first incomplete locus
+                accumulateSamRecord(rec);
+                samIterator.next();
+            }
+        }
+    }
+
+    /**
+     * Moves to the next position in the mask, and accumulates all the reads that may contribute to it.
+     */
+    private boolean advanceToNextMaskPosition() {
+        while (true) {
+            if (maskSequence > referenceSequenceMask.getMaxSequenceIndex()) {
+                return false;
+            }
+            final int nextPosition = referenceSequenceMask.nextPosition(maskSequence, maskPosition);
+            if (nextPosition != -1) {
+                maskPosition = nextPosition;
+                break;
+            }
+            maskSequence++;
+            maskPosition = 0;
+        }
+
+        // counts for earlier loci are no longer needed
+        if (windowContig != maskSequence) {
+            clearWindow(windowEnd);
+            windowContig = maskSequence;
+            windowStart = windowEnd = maskPosition;
+        } else {
+            clearWindow(maskPosition);
+            windowStart = maskPosition;
+            windowEnd = Math.max(windowEnd, maskPosition);
+        }
+
+        SAMRecord rec;
+        while ((rec = peekNextRead()) != null) {
+            final int sequenceIndex = rec.getReferenceIndex();
+            if (sequenceIndex > maskSequence || (sequenceIndex == maskSequence && rec.getAlignmentStart() - 1 > maskPosition)) {
+                break;
+            }
+            if (sequenceIndex == maskSequence) {
+                accumulateSamRecord(rec);
+            }
+            samIterator.next();
+        }
+        locusCounts.set(maskSequence, maskPosition);
+        return true;
+    }
+
+    /**
+     * @return the next read that passes the mapping quality and PF filters, without consuming it,
+     * or null if there are no more aligned reads
+     */
+    private SAMRecord peekNextRead() {
+        while (!finishedAlignedReads && samIterator.hasNext()) {
+            final SAMRecord rec = samIterator.peek();
+            // There might be unmapped reads mixed in with the mapped ones, but when a read
+            // is encountered with no reference index it means that all the mapped reads have been seen.
+            if (rec.getReferenceIndex() == -1) {
+                finishedAlignedReads = true;
+            } else if (rec.getReadUnmappedFlag()
+                    || rec.getMappingQuality() < mappingQualityScoreCutoff
+                    || (!includeNonPfReads && rec.getReadFailsVendorQualityCheckFlag())) {
+                samIterator.next();
+            } else {
+                return rec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add the bases, deletions and insertions of the given read to the counts.  Loci before the start of the
+     * window have already been emitted or skipped, and are ignored.
+     */
+    private void accumulateSamRecord(final SAMRecord rec) {
+        if (rec.getReferenceIndex() != windowContig) {
+            throw new IllegalStateException("Read " + rec.getReadName() + " is not on the sequence being accumulated; is the input coordinate sorted?");
+        }
+        final int alignmentEnd = rec.getAlignmentEnd();
+        ensureCapacity(alignmentEnd + 1);
+
+        final byte[] bases = rec.getReadBases();
+        final byte[] baseQualities = rec.getBaseQualities();
+        final boolean dontCheckQualities = qualityScoreCutoff == 0 || baseQualities.length == 0;
+        int readOffset = 0;
+        int refPosition = rec.getAlignmentStart();
+        for (final CigarElement element : rec.getCigar().getCigarElements()) {
+            final int length = element.getLength();
+            switch (element.getOperator()) {
+                case M:
+                case EQ:
+                case X:
+                    for (int i = 0; i < length; i++) {
+                        final int position = refPosition + i;
+                        final int offset = readOffset + i;
+                        if (position >= windowStart && (dontCheckQualities || baseQualities[offset] >= qualityScoreCutoff)) {
+                            final int slot = position & slotMask;
+                            final int baseSlot = bases.length == 0 ? OTHER_BASE_SLOT : BASE_SLOTS[bases[offset] & 0xFF];
+                            baseCounts[slot * NUM_BASE_SLOTS + baseSlot]++;
+                            if (baseQualities.length != 0) {
+                                qualitySums[slot] += baseQualities[offset];
+                            }
+                        }
+                    }
+                    readOffset += length;
+                    refPosition += length;
+                    break;
+                case I:
+                    // insertions are included in the previous base, unless the read starts at the first base of the reference
+                    if (refPosition - 1 >= windowStart && refPosition > 1) {
+                        insertionCounts[(refPosition - 1) & slotMask]++;
+                    }
+                    readOffset += length;
+                    break;
+                case D:
+                    for (int position = Math.max(refPosition, windowStart); position < refPosition + length; position++) {
+                        deletionCounts[position & slotMask]++;
+                    }
+                    refPosition += length;
+                    break;
+                case N:
+                    refPosition += length;
+                    break;
+                case S:
+                    readOffset += length;
+                    break;
+                default:
+                    break;
+            }
+        }
+        windowEnd = Math.max(windowEnd, alignmentEnd + 1);
+    }
+
+    /**
+     * Grow the ring buffers if necessary so that they can hold the loci from windowStart up to (but not including) end.
+     */
+    private void ensureCapacity(final int end) {
+        final long required = (long) end - windowStart;
+        if (required <= slotMask + 1) {
+            return;
+        }
+        if (required > (1 << 30) / NUM_BASE_SLOTS) {
+            throw new SAMException("Cannot accumulate counts for a span of " + required + " loci");
+        }
+        final int capacity = Integer.highestOneBit((int) required - 1) << 1;
+        final int newMask = capacity - 1;
+        final int[] newBaseCounts = new int[capacity * NUM_BASE_SLOTS];
+        final long[] newQualitySums = new long[capacity];
+        final int[] newDeletionCounts = new int[capacity];
+        final int[] newInsertionCounts = new int[capacity];
+        for (int position = windowStart; position < windowEnd; position++) {
+            final int slot = position & slotMask;
+            final int newSlot = position & newMask;
+            System.arraycopy(baseCounts, slot * NUM_BASE_SLOTS, newBaseCounts, newSlot * NUM_BASE_SLOTS, NUM_BASE_SLOTS);
+            newQualitySums[newSlot] = qualitySums[slot];
+            newDeletionCounts[newSlot] = deletionCounts[slot];
+            newInsertionCounts[newSlot] = insertionCounts[slot];
+        }
+        baseCounts = newBaseCounts;
+        qualitySums = newQualitySums;
+        deletionCounts = newDeletionCounts;
+        insertionCounts = newInsertionCounts;
+        slotMask = newMask;
+    }
+
+    /**
+     * Zero the counts of the locus most recently returned by next(), if it is no longer in the window.
+     */
+    private void releaseEmittedLocus() {
+        if (emitted) {
+            emitted = false;
+            if (!emitUncoveredLoci) {
+                clearSlot(windowStart & slotMask);
+                windowStart++;
+            }
+        }
+    }
+
+    /**
+     * Zero the counts of the window loci before the given position.
+     */
+    private void clearWindow(final int end) {
+        final int stop = Math.min(end, windowEnd);
+        if (stop - windowStart > slotMask) {
+            Arrays.fill(baseCounts, 0);
+            Arrays.fill(qualitySums, 0);
+            Arrays.fill(deletionCounts, 0);
+            Arrays.fill(insertionCounts, 0);
+        } else {
+            for (int position = windowStart; position < stop; position++) {
+                clearSlot(position & slotMask);
+            }
+        }
+    }
+
+    private void clearSlot(final int slot) {
+        Arrays.fill(baseCounts, slot * NUM_BASE_SLOTS, (slot + 1) * NUM_BASE_SLOTS, 0);
+        qualitySums[slot] = 0;
+        deletionCounts[slot] = 0;
+        insertionCounts[slot] = 0;
+    }
+
+    private boolean isCovered(final int slot) {
+        if (deletionCounts[slot] != 0 || insertionCounts[slot] != 0) {
+            return true;
+        }
+        for (int i = slot * NUM_BASE_SLOTS; i < (slot + 1) * NUM_BASE_SLOTS; i++) {
+            if (baseCounts[i] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void setSamFilters(final List<SamRecordFilter> samFilters) {
+        this.samFilters = samFilters;
+    }
+
+    public int getQualityScoreCutoff() {
+        return qualityScoreCutoff;
+    }
+
+    public void setQualityScoreCutoff(final int qualityScoreCutoff) {
+        this.qualityScoreCutoff = qualityScoreCutoff;
+    }
+
+    public int getMappingQualityScoreCutoff() {
+        return mappingQualityScoreCutoff;
+    }
+
+    public void setMappingQualityScoreCutoff(final int mappingQualityScoreCutoff) {
+        this.mappingQualityScoreCutoff = mappingQualityScoreCutoff;
+    }
+
+    public boolean isIncludeNonPfReads() {
+        return includeNonPfReads;
+    }
+
+    public void setIncludeNonPfReads(final boolean includeNonPfReads) {
+        this.includeNonPfReads = includeNonPfReads;
+    }
+
+    public boolean isEmitUncoveredLoci() {
+        return emitUncoveredLoci;
+    }
+
+    public void setEmitUncoveredLoci(final boolean emitUncoveredLoci) {
+        this.emitUncoveredLoci = emitUncoveredLoci;
+    }
+
+    /**
+     * Flyweight view of the counts accumulated at the current locus.  Only valid until the next call to
+     * {@link #hasNext()} or {@link #next()} of the iterator that returned it.
+     */
+    public final class LocusCounts implements Locus {
+        private int sequenceIndex;
+        private int position;
+        private SAMSequenceRecord sequenceRecord;
+
+        private LocusCounts() {
+        }
+
+        private void set(final int sequenceIndex, final int position) {
+            if (sequenceRecord == null || this.sequenceIndex != sequenceIndex) {
+                sequenceRecord = getHeader().getSequence(sequenceIndex);
+            }
+            this.sequenceIndex = sequenceIndex;
+            this.position = position;
+        }
+
+        private int slot() {
+            return position & slotMask;
+        }
+
+        @Override
+        public int getSequenceIndex() {
+            return sequenceIndex;
+        }
+
+        /**
+         * @return 1-based reference position
+         */
+        @Override
+        public int getPosition() {
+            return position;
+        }
+
+        public String getSequenceName() {
+            return sequenceRecord.getSequenceName();
+        }
+
+        public int getSequenceLength() {
+            return sequenceRecord.getSequenceLength();
+        }
+
+        /**
+         * @param base A, C, G or T (in either case); any other base returns the count of bases that are not A, C, G or T
+         * @return the number of reads with the given base at this locus
+         */
+        public int getBaseCount(final byte base) {
+            return baseCounts[slot() * NUM_BASE_SLOTS + BASE_SLOTS[base & 0xFF]];
+        }
+
+        /**
+         * @return the number of bases at this locus that passed the base quality cutoff
+         */
+        public int getDepth() {
+            int depth = 0;
+            for (int i = slot() * NUM_BASE_SLOTS; i < (slot() + 1) * NUM_BASE_SLOTS; i++) {
+                depth += baseCounts[i];
+            }
+            return depth;
+        }
+
+        /**
+         * @return the sum of the base qualities of the bases counted in {@link #getDepth()}
+         */
+        public long getQualitySum() {
+            return qualitySums[slot()];
+        }
+
+        /**
+         * @return the number of reads with a deletion spanning this locus
+         */
+        public int getDeletionCount() {
+            return deletionCounts[slot()];
+        }
+
+        /**
+         * @return the number of reads with an insertion immediately after this locus
+         */
+        public int getInsertionCount() {
+            return insertionCounts[slot()];
+        }
+
+        @Override
+        public String toString() {
+            return getSequenceName() + ":" + position;
+        }
+    }
+}
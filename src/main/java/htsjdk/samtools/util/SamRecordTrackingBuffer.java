@@ -25,6 +25,7 @@
 package htsjdk.samtools.util;
 
 import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.DefaultSAMRecordFactory;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
@@ -208,7 +209,7 @@ public class SamRecordTrackingBuffer<T extends SamRecordWithOrdinal> {
         public BufferBlock(final int maxBlockSize, final int maxBlockRecordsInMemory, final List<File> tmpDirs,
                            final SAMFileHeader header,
                            final long originalStartIndex) {
-            this.recordsQueue = DiskBackedQueue.newInstance(new BAMRecordCodec(header), maxBlockRecordsInMemory, tmpDirs);
+            this.recordsQueue = DiskBackedQueue.newInstance(new BAMRecordCodec(header, DefaultSAMRecordFactory.getInstance(), true), maxBlockRecordsInMemory, tmpDirs);
             this.maxBlockSize = maxBlockSize;
             this.currentStartIndex = 0;
             this.endIndex = -1;
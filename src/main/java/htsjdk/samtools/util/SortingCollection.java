@@ -26,6 +26,7 @@ package htsjdk.samtools.util;
 import htsjdk.samtools.Defaults;
 
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -33,14 +34,19 @@ import java.lang.reflect.Array;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Collection to which many records can be added.  After all records are added, the collection can be
@@ -53,11 +59,22 @@ import java.util.TreeSet;
  * If this becomes a limiting factor, a file handle cache could be added.
  * <p>
  * If Snappy DLL is available and snappy.disable system property is not set to true, then Snappy is used
- * to compress temporary files.
+ * to compress temporary files.  A different spill format can be selected with {@link #setTempStreamFactory(TempStreamFactory)}
+ * (or {@link Defaults#TEMP_FILE_COMPRESSION}), and the size of each temporary file is reported by
+ * {@link #getTempFileStatistics()}.
+ * <p>
+ * If {@link #setSpillThreads(int)} (or {@link Defaults#SORTING_COLLECTION_THREADS}) is greater than zero, full buffers
+ * are sorted and written to disk on background threads while the caller keeps adding records to a fresh buffer.
+ * Up to spillThreads + 1 buffers of maxRecordsInRam records may then be held in memory at once.
+ * If {@link #setMaxFilesToMerge(int)} (or {@link Defaults#SORTING_COLLECTION_MAX_FILES_TO_MERGE}) is set, temporary
+ * files are merged in groups into larger intermediate files until no more than that many remain, so that iteration
+ * does not need a file handle per spill.  The records returned are the same, in the same order, in all modes.
  */
 public class SortingCollection<T> implements Iterable<T> {
     private static final Log log = Log.getInstance(SortingCollection.class);
 
+    private static final ExecutorService threadpool = ThreadPoolUtil.newDaemonCachedThreadPool("SortingCollection-spill-");
+
     /**
      * Client must implement this class, which defines the way in which records are written to and
      * read from file.
@@ -110,6 +127,7 @@ public class SortingCollection<T> implements Iterable<T> {
      * For sorting, both when spilling records to file, and merge sorting.
      */
     private final Comparator<T> comparator;
+    private final Class<T> componentType;
     private final int maxRecordsInRam;
     private int numRecordsInRam = 0;
     private T[] ramRecords;
@@ -128,10 +146,27 @@ public class SortingCollection<T> implements Iterable<T> {
 
     private boolean destructiveIteration = true;
 
-    private final TempStreamFactory tempStreamFactory = new TempStreamFactory();
+    private TempStreamFactory tempStreamFactory = new TempStreamFactory();
+
+    /**
+     * Sizes of the temporary files written so far, in the order they were completed.
+     */
+    private final List<TempFileStatistics> tempFileStatistics = Collections.synchronizedList(new ArrayList<>());
 
     private final boolean printRecordSizeSampling;
 
+    private int spillThreads = Defaults.SORTING_COLLECTION_THREADS;
+    private int maxFilesToMerge = Defaults.SORTING_COLLECTION_MAX_FILES_TO_MERGE;
+
+    /**
+     * Buffers handed to background threads to be sorted and written to disk, in the order they were filled.
+     */
+    private final ArrayDeque<SpillTask> spillsInFlight = new ArrayDeque<>();
+    /**
+     * Buffers that have been written to disk and can be refilled.
+     */
+    private final ArrayDeque<T[]> freeBuffers = new ArrayDeque<>();
+
     /**
      * Prepare to accumulate records to be sorted
      *
@@ -156,11 +191,88 @@ public class SortingCollection<T> implements Iterable<T> {
         this.tmpDirs = tmpDir;
         this.codec = codec;
         this.comparator = comparator;
+        this.componentType = componentType;
         this.maxRecordsInRam = maxRecordsInRam;
+        this.ramRecords = newRecordBuffer();
+        this.printRecordSizeSampling = printRecordSizeSampling;
+    }
+
+    private T[] newRecordBuffer() {
         @SuppressWarnings("unchecked")
         T[] ramRecords = (T[]) Array.newInstance(componentType, maxRecordsInRam);
-        this.ramRecords = ramRecords;
-        this.printRecordSizeSampling = printRecordSizeSampling;
+        return ramRecords;
+    }
+
+    /**
+     * @return the maximum number of buffers that are sorted and spilled to disk concurrently on background threads,
+     * or 0 if spilling happens on the thread calling {@link #add(Object)}
+     */
+    public int getSpillThreads() {
+        return spillThreads;
+    }
+
+    /**
+     * Sort and spill full buffers on background threads, so that the caller can keep adding records while they are
+     * written.  The codec must support {@link Codec#clone()}, and the comparator must be safe to call concurrently.
+     * Must be called before any records are added.
+     *
+     * @param spillThreads maximum number of buffers spilled concurrently, or 0 to spill on the calling thread
+     */
+    public void setSpillThreads(final int spillThreads) {
+        if (spillThreads < 0) {
+            throw new IllegalArgumentException("spillThreads must be >= 0");
+        }
+        if (numRecordsInRam > 0 || !files.isEmpty() || iterationStarted) {
+            throw new IllegalStateException("Cannot change spillThreads after records have been added");
+        }
+        this.spillThreads = spillThreads;
+    }
+
+    /**
+     * Select how temporary files are compressed.  Must be called before any records are spilled to disk.
+     */
+    public void setTempStreamFactory(final TempStreamFactory tempStreamFactory) {
+        if (tempStreamFactory == null) {
+            throw new IllegalArgumentException("tempStreamFactory must not be null");
+        }
+        if (!files.isEmpty()) {
+            throw new IllegalStateException("Cannot change the temporary file format after records have been spilled");
+        }
+        this.tempStreamFactory = tempStreamFactory;
+    }
+
+    /**
+     * @return the number of records and bytes written to each temporary file so far, including intermediate files
+     * written by multi-level merges, in the order the files were completed
+     */
+    public List<TempFileStatistics> getTempFileStatistics() {
+        synchronized (tempFileStatistics) {
+            return Collections.unmodifiableList(new ArrayList<>(tempFileStatistics));
+        }
+    }
+
+    /**
+     * @return the maximum number of temporary files merged at once, or 0 if all files are merged in a single pass
+     */
+    public int getMaxFilesToMerge() {
+        return maxFilesToMerge;
+    }
+
+    /**
+     * Limit the number of temporary files that are opened at once.  If more files than this are spilled, they are
+     * merged into larger intermediate files (on background threads if {@link #getSpillThreads()} is greater than zero)
+     * when the caller is done adding records.
+     *
+     * @param maxFilesToMerge maximum number of files to merge at once (at least 2), or 0 for no limit
+     */
+    public void setMaxFilesToMerge(final int maxFilesToMerge) {
+        if (maxFilesToMerge < 0 || maxFilesToMerge == 1) {
+            throw new IllegalArgumentException("maxFilesToMerge must be 0 or >= 2");
+        }
+        if (doneAdding) {
+            throw new IllegalStateException("Cannot change maxFilesToMerge after calling doneAdding()");
+        }
+        this.maxFilesToMerge = maxFilesToMerge;
     }
 
     public void add(final T rec) {
@@ -179,7 +291,7 @@ public class SortingCollection<T> implements Iterable<T> {
                 startMem = Runtime.getRuntime().freeMemory();
             }
 
-            spillToDisk();
+            spill();
 
             if (printRecordSizeSampling) {
                 //Garbage collect again and get free memory
@@ -216,11 +328,15 @@ public class SortingCollection<T> implements Iterable<T> {
         }
 
         if (this.numRecordsInRam > 0) {
-            spillToDisk();
+            spill();
         }
+        waitForSpills();
 
         // Facilitate GC
         this.ramRecords = null;
+        this.freeBuffers.clear();
+
+        mergeTempFiles();
     }
 
     /**
@@ -244,22 +360,8 @@ public class SortingCollection<T> implements Iterable<T> {
      */
     public void spillToDisk() {
         try {
-            Arrays.parallelSort(this.ramRecords, 0, this.numRecordsInRam, this.comparator);
-
             final Path f = newTempFile();
-            try (OutputStream os
-                         = tempStreamFactory.wrapTempOutputStream(Files.newOutputStream(f), Defaults.BUFFER_SIZE)) {
-                this.codec.setOutputStream(os);
-                for (int i = 0; i < this.numRecordsInRam; ++i) {
-                    this.codec.encode(ramRecords[i]);
-                    // Facilitate GC
-                    this.ramRecords[i] = null;
-                }
-                os.flush();
-            } catch (RuntimeIOException ex) {
-                throw new RuntimeIOException("Problem writing temporary file " + f.toUri() +
-                        ".  Try setting TMP_DIR to a file system with lots of space.", ex);
-            }
+            sortAndWrite(this.ramRecords, this.numRecordsInRam, f, this.codec);
 
             this.numRecordsInRam = 0;
             this.files.add(f);
@@ -268,6 +370,140 @@ public class SortingCollection<T> implements Iterable<T> {
         }
     }
 
+    private void spill() {
+        if (spillThreads > 0) {
+            spillInBackground();
+        } else {
+            spillToDisk();
+        }
+    }
+
+    /**
+     * Hand the full buffer to a background thread to be sorted and written, and continue with an empty buffer.
+     * The temp file is registered immediately, so that files are merged in the order their records were added.
+     */
+    private void spillInBackground() {
+        while (spillsInFlight.size() >= spillThreads) {
+            finishSpill(spillsInFlight.remove());
+        }
+        final Path f;
+        try {
+            f = newTempFile();
+        } catch (IOException e) {
+            throw new RuntimeIOException(e);
+        }
+        this.files.add(f);
+        final SpillTask task = new SpillTask(this.ramRecords, this.numRecordsInRam, f);
+        task.future = threadpool.submit(task);
+        spillsInFlight.add(task);
+
+        this.ramRecords = freeBuffers.isEmpty() ? newRecordBuffer() : freeBuffers.pop();
+        this.numRecordsInRam = 0;
+    }
+
+    private void finishSpill(final SpillTask task) {
+        task.await();
+        freeBuffers.push(task.records);
+    }
+
+    private void waitForSpills() {
+        while (!spillsInFlight.isEmpty()) {
+            finishSpill(spillsInFlight.remove());
+        }
+    }
+
+    /**
+     * Sort the first numRecords of records, write them to f with the given codec, and clear them from the array.
+     */
+    private void sortAndWrite(final T[] records, final int numRecords, final Path f, final Codec<T> codec) throws IOException {
+        Arrays.parallelSort(records, 0, numRecords, this.comparator);
+
+        final CountingOutputStream counter;
+        try (OutputStream os
+                     = tempStreamFactory.wrapTempOutputStream(Files.newOutputStream(f), Defaults.BUFFER_SIZE)) {
+            counter = new CountingOutputStream(os);
+            codec.setOutputStream(counter);
+            for (int i = 0; i < numRecords; ++i) {
+                codec.encode(records[i]);
+                // Facilitate GC
+                records[i] = null;
+            }
+            counter.flush();
+        } catch (RuntimeIOException ex) {
+            throw new RuntimeIOException("Problem writing temporary file " + f.toUri() +
+                    ".  Try setting TMP_DIR to a file system with lots of space.", ex);
+        }
+        recordTempFileStatistics(f, numRecords, counter.getCount());
+    }
+
+    private void recordTempFileStatistics(final Path f, final long numRecords, final long uncompressedBytes) throws IOException {
+        final TempFileStatistics stats = new TempFileStatistics(f, numRecords, uncompressedBytes, Files.size(f));
+        tempFileStatistics.add(stats);
+        log.debug(stats);
+    }
+
+    /**
+     * Merge groups of adjacent temp files into intermediate files until no more than maxFilesToMerge remain.
+     * Only adjacent files are merged together, so records that compare equal keep the order in which they were added.
+     */
+    private void mergeTempFiles() {
+        if (maxFilesToMerge == 0) {
+            return;
+        }
+        while (this.files.size() > maxFilesToMerge) {
+            final List<Path> inputs = new ArrayList<>(this.files);
+            final List<Path> nextLevel = new ArrayList<>();
+            final List<Path> merged = new ArrayList<>();
+            final int numGroups = (inputs.size() + maxFilesToMerge - 1) / maxFilesToMerge;
+            final int concurrentMerges = Math.max(1, Math.min(spillThreads, numGroups));
+            log.debug(String.format("Merging %d temporary files into %d files", inputs.size(), numGroups));
+            final int bufferSize = checkMemoryAndAdjustBuffer(concurrentMerges * (maxFilesToMerge + 1));
+
+            final ArrayDeque<MergeTask> mergesInFlight = new ArrayDeque<>();
+            try {
+                for (int start = 0; start < inputs.size(); start += maxFilesToMerge) {
+                    final List<Path> group = inputs.subList(start, Math.min(start + maxFilesToMerge, inputs.size()));
+                    if (group.size() == 1) {
+                        nextLevel.add(group.get(0));
+                        continue;
+                    }
+                    final Path f;
+                    try {
+                        f = newTempFile();
+                    } catch (IOException e) {
+                        throw new RuntimeIOException(e);
+                    }
+                    // registered so that cleanup() deletes it if the merge fails
+                    this.files.add(f);
+                    nextLevel.add(f);
+                    merged.addAll(group);
+
+                    final MergeTask task = new MergeTask(group, f, bufferSize);
+                    if (spillThreads > 0) {
+                        while (mergesInFlight.size() >= concurrentMerges) {
+                            mergesInFlight.remove().await();
+                        }
+                        task.future = threadpool.submit(task);
+                        mergesInFlight.add(task);
+                    } else {
+                        task.call();
+                    }
+                }
+                while (!mergesInFlight.isEmpty()) {
+                    mergesInFlight.remove().await();
+                }
+            } finally {
+                for (final MergeTask task : mergesInFlight) {
+                    task.cancelAndWait();
+                }
+            }
+
+            IOUtil.deletePaths(merged);
+            this.files.clear();
+            this.files.addAll(nextLevel);
+        }
+    }
+
 
     /**
      * Creates a new tmp file on one of the available temp filesystems, registers it for deletion
@@ -304,6 +540,13 @@ public class SortingCollection<T> implements Iterable<T> {
         this.iterationStarted = true;
         this.cleanedUp = true;
 
+        // make sure no background thread is still writing to a file that is about to be deleted
+        for (final SpillTask task : spillsInFlight) {
+            task.cancelAndWait();
+        }
+        spillsInFlight.clear();
+        freeBuffers.clear();
+
         IOUtil.deletePaths(this.files);
     }
 
@@ -444,6 +687,38 @@ public class SortingCollection<T> implements Iterable<T> {
                 tmpDirs.toArray(new Path[tmpDirs.size()]));
     }
 
+    // Since we need to open and buffer all temp files in the sorting collection at once it is important
+    // to have enough memory left to do this. This method checks to make sure that, given the number of files and
+    // the size of the buffer, we can reasonably open all files. If we can't it will return a buffer size that
+    // is appropriate given the number of temp files and the amount of memory left on the heap. If there isn't
+    // enough memory for buffering it will return zero and all reading will be unbuffered.
+    private static int checkMemoryAndAdjustBuffer(int numFiles) {
+        int bufferSize = Defaults.BUFFER_SIZE;
+
+        // garbage collect so that our calculation is accurate.
+        final Runtime rt = Runtime.getRuntime();
+        rt.gc();
+
+        //                             free in heap       space available to expand heap
+        final long allocatableMemory = rt.freeMemory() + (rt.maxMemory() - rt.totalMemory());
+
+        // There is ~20k in overhead per file.
+        final long freeMemory = allocatableMemory - (numFiles * 20 * 1024);
+        // use the floor value from the divide
+        final int memoryPerFile = (int) (freeMemory / numFiles);
+
+        if (memoryPerFile < 0) {
+            log.warn("There is not enough memory per file for buffering. Reading will be unbuffered.");
+            bufferSize = 0;
+        } else if (bufferSize > memoryPerFile) {
+            log.warn(String.format("Default io buffer size of %s is larger than available memory per file of %s.",
+                    StringUtil.humanReadableByteCount(bufferSize),
+                    StringUtil.humanReadableByteCount(memoryPerFile)));
+            bufferSize = memoryPerFile;
+        }
+        return bufferSize;
+    }
+
     /**
      * For iteration when number of records added is less than the threshold for spilling to disk.
      */
@@ -503,10 +778,13 @@ public class SortingCollection<T> implements Iterable<T> {
         private final TreeSet<PeekFileRecordIterator> queue;
 
         MergingIterator() {
+            this(files, checkMemoryAndAdjustBuffer(files.size()));
+        }
+
+        MergingIterator(final List<Path> files, final int suggestedBufferSize) {
             this.queue = new TreeSet<>(new PeekFileRecordIteratorComparator());
             int n = 0;
             log.debug(String.format("Creating merging iterator from %d files", files.size()));
-            int suggestedBufferSize = checkMemoryAndAdjustBuffer(files.size());
             for (final Path f : files) {
                 final FileRecordIterator it = new FileRecordIterator(f, suggestedBufferSize);
                 if (it.hasNext()) {
@@ -517,38 +795,6 @@ public class SortingCollection<T> implements Iterable<T> {
             }
         }
 
-        // Since we need to open and buffer all temp files in the sorting collection at once it is important
-        // to have enough memory left to do this. This method checks to make sure that, given the number of files and
-        // the size of the buffer, we can reasonably open all files. If we can't it will return a buffer size that
-        // is appropriate given the number of temp files and the amount of memory left on the heap. If there isn't
-        // enough memory for buffering it will return zero and all reading will be unbuffered.
-        private int checkMemoryAndAdjustBuffer(int numFiles) {
-            int bufferSize = Defaults.BUFFER_SIZE;
-
-            // garbage collect so that our calculation is accurate.
-            final Runtime rt = Runtime.getRuntime();
-            rt.gc();
-
-            //                             free in heap       space available to expand heap
-            final long allocatableMemory = rt.freeMemory() + (rt.maxMemory() - rt.totalMemory());
-
-            // There is ~20k in overhead per file.
-            final long freeMemory = allocatableMemory - (numFiles * 20 * 1024);
-            // use the floor value from the divide
-            final int memoryPerFile = (int) (freeMemory / numFiles);
-
-            if (memoryPerFile < 0) {
-                log.warn("There is not enough memory per file for buffering. Reading will be unbuffered.");
-                bufferSize = 0;
-            } else if (bufferSize > memoryPerFile) {
-                log.warn(String.format("Default io buffer size of %s is larger than available memory per file of %s.",
-                        StringUtil.humanReadableByteCount(bufferSize),
-                        StringUtil.humanReadableByteCount(memoryPerFile)));
-                bufferSize = memoryPerFile;
-            }
-            return bufferSize;
-        }
-
         @Override
         public boolean hasNext() {
             return !this.queue.isEmpty();
@@ -597,9 +843,10 @@ public class SortingCollection<T> implements Iterable<T> {
         FileRecordIterator(final Path file, final int bufferSize) {
             this.file = file;
             try {
-                this.is = Files.newInputStream(file);
+                // close the wrapping stream too, so that any decompressor it holds is released
+                this.is = tempStreamFactory.wrapTempInputStream(Files.newInputStream(file), bufferSize);
                 this.codec = SortingCollection.this.codec.clone();
-                this.codec.setInputStream(tempStreamFactory.wrapTempInputStream(this.is, bufferSize));
+                this.codec.setInputStream(this.is);
                 advance();
             } catch (IOException e) {
                 throw new RuntimeIOException(e);
@@ -637,6 +884,164 @@ public class SortingCollection<T> implements Iterable<T> {
     }
 
 
+    /**
+     * Work done on a background thread on behalf of this collection.
+     */
+    private abstract static class BackgroundTask implements Callable<Void> {
+        Future<Void> future;
+
+        /**
+         * Foreground thread blocking operation that waits for this task to complete.
+         */
+        void await() {
+            ThreadPoolUtil.await(future, "Interrupted while waiting for a SortingCollection background task");
+        }
+
+        /**
+         * Cancel this task if it has not started, otherwise wait for it to finish, ignoring any failure.
+         */
+        void cancelAndWait() {
+            if (future == null || future.cancel(false)) {
+                return;
+            }
+            try {
+                future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final Exception e) {
+                // the task's outcome is no longer of interest
+            }
+        }
+    }
+
+    /**
+     * Sorts a full buffer and writes it to a temp file, using its own copy of the codec.
+     */
+    private class SpillTask extends BackgroundTask {
+        private final T[] records;
+        private final int numRecords;
+        private final Path file;
+
+        private SpillTask(final T[] records, final int numRecords, final Path file) {
+            this.records = records;
+            this.numRecords = numRecords;
+            this.file = file;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            sortAndWrite(records, numRecords, file, codec.clone());
+            return null;
+        }
+    }
+
+    /**
+     * Merges a group of sorted temp files into a single sorted temp file.
+     */
+    private class MergeTask extends BackgroundTask {
+        private final List<Path> inputs;
+        private final Path output;
+        private final int bufferSize;
+
+        private MergeTask(final List<Path> inputs, final Path output, final int bufferSize) {
+            this.inputs = inputs;
+            this.output = output;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public Void call() {
+            final Codec<T> outputCodec = codec.clone();
+            long numRecords = 0;
+            try {
+                final CountingOutputStream counter;
+                try (MergingIterator it = new MergingIterator(inputs, bufferSize);
+                     OutputStream os = tempStreamFactory.wrapTempOutputStream(Files.newOutputStream(output), Defaults.BUFFER_SIZE)) {
+                    counter = new CountingOutputStream(os);
+                    outputCodec.setOutputStream(counter);
+                    while (it.hasNext()) {
+                        outputCodec.encode(it.next());
+                        ++numRecords;
+                    }
+                    counter.flush();
+                }
+                recordTempFileStatistics(output, numRecords, counter.getCount());
+            } catch (IOException e) {
+                throw new RuntimeIOException("Problem writing temporary file " + output.toUri() +
+                        ".  Try setting TMP_DIR to a file system with lots of space.", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Number of records and bytes written to one temporary file.
+     */
+    public static final class TempFileStatistics {
+        private final Path path;
+        private final long numRecords;
+        private final long uncompressedBytes;
+        private final long bytesOnDisk;
+
+        TempFileStatistics(final Path path, final long numRecords, final long uncompressedBytes, final long bytesOnDisk) {
+            this.path = path;
+            this.numRecords = numRecords;
+            this.uncompressedBytes = uncompressedBytes;
+            this.bytesOnDisk = bytesOnDisk;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getNumRecords() {
+            return numRecords;
+        }
+
+        /** @return the number of bytes written by the codec */
+        public long getUncompressedBytes() {
+            return uncompressedBytes;
+        }
+
+        /** @return the size of the file after compression */
+        public long getBytesOnDisk() {
+            return bytesOnDisk;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d records written to %s: %s encoded, %s on disk", numRecords, path.toUri(),
+                    StringUtil.humanReadableByteCount(uncompressedBytes), StringUtil.humanReadableByteCount(bytesOnDisk));
+        }
+    }
+
+    /**
+     * Counts the bytes the codec writes, before they are compressed.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(final OutputStream os) {
+            super(os);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
     /**
      * Just a typedef
      */
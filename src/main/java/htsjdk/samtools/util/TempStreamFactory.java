@@ -23,17 +23,22 @@
  */
 package htsjdk.samtools.util;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.SAMException;
 
 import java.io.BufferedOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
 
 /**
- * Factory class for wrapping input and output streams for temporary files.  If available, Snappy is used to
- * compress output files.  Therefore, if a temporary output file is written with an output stream obtained
- * from this class, it must be read by an input stream created by this class, otherwise a file written with
- * compression will not be read with decompression.
+ * Factory class for wrapping input and output streams for temporary files.  By default, Snappy is used to
+ * compress output files if it is available.  Therefore, if a temporary output file is written with an output stream
+ * obtained from this class, it must be read by an input stream created by an instance of this class with the same
+ * {@link Compression}, otherwise a file written with compression will not be read with decompression.
+ * <p>
+ * The compression used by the no-arg constructor is {@link Defaults#TEMP_FILE_COMPRESSION}.  Subclasses may
+ * override the wrap methods to plug in a different spill format.
  */
 public class TempStreamFactory {
     private static SnappyLoader snappyLoader = null;
@@ -44,14 +49,59 @@ public class TempStreamFactory {
     }
 
     /**
-     * Wrap the given InputStream in a SnappyInputStream if available.
-     * @return If Snappy is available, a SnappyInputStream wrapping inputStream.
+     * How temporary files are compressed.
+     */
+    public enum Compression {
+        /** Snappy if it is available, otherwise no compression. */
+        SNAPPY,
+        /** BGZF blocks, deflated at the factory's compression level (fast levels such as 1 are recommended). */
+        DEFLATE,
+        /** No compression. */
+        NONE
+    }
+
+    private final Compression compression;
+    private final int compressionLevel;
+
+    /**
+     * Create a factory using {@link Defaults#TEMP_FILE_COMPRESSION} and {@link Defaults#TEMP_FILE_COMPRESSION_LEVEL}.
+     */
+    public TempStreamFactory() {
+        this(Defaults.TEMP_FILE_COMPRESSION, Defaults.TEMP_FILE_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * @param compression how temporary files are compressed
+     * @param compressionLevel deflate level used for {@link Compression#DEFLATE}, ignored otherwise
+     */
+    public TempStreamFactory(final Compression compression, final int compressionLevel) {
+        if (compression == null) {
+            throw new IllegalArgumentException("compression must not be null");
+        }
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.compression = compression;
+        this.compressionLevel = compressionLevel;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Wrap the given InputStream for reading a temporary file written by {@link #wrapTempOutputStream(OutputStream, int)}.
+     * @return If Snappy is selected and available, a SnappyInputStream wrapping inputStream.
+     * If Deflate is selected, a BlockCompressedInputStream wrapping inputStream.
      * If not, and bufferSize > 0, a BufferedInputStream.
      * Otherwise inputStream is returned.
      */
     public InputStream wrapTempInputStream(final InputStream inputStream, final int bufferSize) {
+        if (compression == Compression.DEFLATE) {
+            return new BlockCompressedInputStream(inputStream, bufferSize > 0);
+        }
         InputStream is = IOUtil.maybeBufferInputStream(inputStream, bufferSize);
-        if (getSnappyLoader().isSnappyAvailable()) {
+        if (compression == Compression.SNAPPY && getSnappyLoader().isSnappyAvailable()) {
             try {
                 return getSnappyLoader().wrapInputStream(is);
             } catch (Exception e) {
@@ -63,15 +113,18 @@ public class TempStreamFactory {
     }
 
     /**
-     * Wrap the given OutputStream in a SnappyOutputStream if available.
-     * @return If Snappy is available, a SnappyOutputStream wrapping outputStream.
+     * Wrap the given OutputStream for writing a temporary file.
+     * @return If Snappy is selected and available, a SnappyOutputStream wrapping outputStream.
+     * If Deflate is selected, a BlockCompressedOutputStream wrapping outputStream.
      * If not, and bufferSize > 0, a BufferedOutputStream.
      * Otherwise outputStream is returned.
      */
     public OutputStream wrapTempOutputStream(final OutputStream outputStream, final int bufferSize) {
         OutputStream os = outputStream;
         if (bufferSize > 0) os = new BufferedOutputStream(os, bufferSize);
-        if (getSnappyLoader().isSnappyAvailable()) {
+        if (compression == Compression.DEFLATE) {
+            os = new BlockCompressedOutputStream(os, (Path) null, compressionLevel);
+        } else if (compression == Compression.SNAPPY && getSnappyLoader().isSnappyAvailable()) {
             try {
                 os = getSnappyLoader().wrapOutputStream(os);
             } catch (Exception e) {
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Utilities for the worker thread pools of the classes that encode, decode, compress or sort on background threads.
+ */
+public final class ThreadPoolUtil {
+
+    private ThreadPoolUtil() {
+    }
+
+    /**
+     * Creates an unbounded pool of daemon threads, which are created as needed and reused while they are idle, so that
+     * a pool may be shared by all instances of a class.  Callers bound the work they have in flight themselves.
+     *
+     * @param namePrefix prefix of the names of the threads, e.g. "BlockCompressedOutputStream-deflate-"
+     */
+    public static ExecutorService newDaemonCachedThreadPool(final String namePrefix) {
+        return Executors.newCachedThreadPool(r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName(namePrefix + t.getName());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Creates an executor that runs at most maxConcurrentTasks of the tasks given to it at once on the given executor,
+     * queueing the others until a running task finishes.  This allows an instance to limit the number of threads it
+     * uses of a shared pool while still having more tasks queued than running.
+     *
+     * @param executor the executor that runs the tasks
+     * @param maxConcurrentTasks maximum number of tasks to run at once, at least 1
+     */
+    public static Executor limitConcurrency(final Executor executor, final int maxConcurrentTasks) {
+        if (maxConcurrentTasks < 1) {
+            throw new IllegalArgumentException("Invalid maximum number of concurrent tasks: " + maxConcurrentTasks);
+        }
+        return new ConcurrencyLimitingExecutor(executor, maxConcurrentTasks);
+    }
+
+    /**
+     * Waits for a task to complete, and returns its result.  An Error or RuntimeException thrown by the task is
+     * rethrown as is, and a checked exception is wrapped in a RuntimeException.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public static <T> T awaitInterruptibly(final Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) throw (Error) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Waits for a task to complete, and returns its result, as {@link #awaitInterruptibly(Future)}.  If the current
+     * thread is interrupted while waiting, its interrupt status is restored and a RuntimeException is thrown.
+     *
+     * @param interruptedMessage message of the exception thrown if the current thread is interrupted
+     */
+    public static <T> T await(final Future<T> future, final String interruptedMessage) {
+        try {
+            return awaitInterruptibly(future);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(interruptedMessage, e);
+        }
+    }
+
+    private static final class ConcurrencyLimitingExecutor implements Executor {
+        private final Executor executor;
+        private final int maxConcurrentTasks;
+        private final Queue<Runnable> queued = new ArrayDeque<>();
+        private int running = 0;
+
+        private ConcurrencyLimitingExecutor(final Executor executor, final int maxConcurrentTasks) {
+            this.executor = executor;
+            this.maxConcurrentTasks = maxConcurrentTasks;
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            synchronized (this) {
+                if (running == maxConcurrentTasks) {
+                    queued.add(task);
+                    return;
+                }
+                running++;
+            }
+            executor.execute(() -> run(task));
+        }
+
+        private void run(final Runnable task) {
+            try {
+                task.run();
+            } finally {
+                final Runnable next;
+                synchronized (this) {
+                    next = queued.poll();
+                    if (next == null) {
+                        running--;
+                    }
+                }
+                if (next != null) {
+                    executor.execute(() -> run(next));
+                }
+            }
+        }
+    }
+}
@@ -43,6 +43,7 @@ public class AsciiLineReader implements LineReader, LocationAware {
 
     private PositionalBufferedStream is;
     private char[] lineBuffer;
+    private byte[] lineBytes;
     private int lineTerminatorLength = -1;
 
     protected AsciiLineReader() {};
@@ -182,10 +183,68 @@ public class AsciiLineReader implements LineReader, LocationAware {
         return readLine(is);
     }
 
+    /**
+     * Read a line, as {@link #readLine()}, but into a reusable byte buffer rather than a String, for callers that
+     * parse the line's bytes directly.
+     *
+     * @return the number of bytes in the line, excluding the line terminator, or -1 if the end of the stream has
+     *         been reached.  The line is in the first bytes of {@link #getLineBytes()} until the next call.
+     */
+    public int readLineBytes() throws IOException {
+        if ( is == null ){
+            throw new TribbleException("readLineBytes() called but no default stream was provided to the class on creation");
+        }
+        if (lineBytes == null) {
+            lineBytes = new byte[10000];
+        }
+        int linePosition = 0;
+
+        while (true) {
+            final int b = is.read();
+
+            if (b == -1) {
+                // eof reached.  Return the last line, or -1 if this is a new line
+                if (linePosition > 0) {
+                    this.lineTerminatorLength = 0;
+                    return linePosition;
+                } else {
+                    return -1;
+                }
+            }
+
+            if (b == LINEFEED || b == CARRIAGE_RETURN) {
+                if (b == CARRIAGE_RETURN && is.peek() == LINEFEED) {
+                    is.read(); // <= skip the trailing \n in case of \r\n termination
+                    this.lineTerminatorLength = 2;
+                }
+                else {
+                    this.lineTerminatorLength = 1;
+                }
+                return linePosition;
+            } else {
+                if (linePosition == lineBytes.length) {
+                    final byte[] temp = new byte[BUFFER_OVERFLOW_INCREASE_FACTOR * lineBytes.length];
+                    System.arraycopy(lineBytes, 0, temp, 0, lineBytes.length);
+                    lineBytes = temp;
+                }
+                lineBytes[linePosition++] = (byte) b;
+            }
+        }
+    }
+
+    /**
+     * @return the buffer holding the line read by the last call to {@link #readLineBytes()}.  The buffer is reused,
+     * and may be replaced by a larger one, by later calls.
+     */
+    public byte[] getLineBytes() {
+        return lineBytes;
+    }
+
     @Override
     public void close() {
         if ( is != null ) is.close();
         lineBuffer = null;
+        lineBytes = null;
     }
     
     @Override
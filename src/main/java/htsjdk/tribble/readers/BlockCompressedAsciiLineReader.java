@@ -25,6 +25,16 @@ class BlockCompressedAsciiLineReader extends AsciiLineReader {
         return bcs.readLine();
     };
 
+    @Override
+    public int readLineBytes() throws IOException {
+        return bcs.readLineBytes();
+    }
+
+    @Override
+    public byte[] getLineBytes() {
+        return bcs.getLineBytes();
+    }
+
     @Override
     public String readLine(final PositionalBufferedStream stream) {
         throw new UnsupportedOperationException("A BlockCompressedAsciiLineReader class cannot be used to read from a PositionalBufferedStream");
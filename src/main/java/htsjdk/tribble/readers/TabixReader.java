@@ -23,11 +23,13 @@
  */
 package htsjdk.tribble.readers;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.seekablestream.ISeekableStreamFactory;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.seekablestream.SeekableStreamFactory;
 import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.FileExtensions;
+import htsjdk.samtools.util.ParallelBlockCompressedInputStream;
 import htsjdk.tribble.util.ParsingUtils;
 
 import java.io.IOException;
@@ -155,7 +157,9 @@ public class TabixReader implements AutoCloseable {
      */
     public TabixReader(final String filePath, final String indexPath, SeekableStream stream, Function<SeekableByteChannel, SeekableByteChannel> indexWrapper) throws IOException {
         mFilePath = filePath;
-        mFp = new BlockCompressedInputStream(stream);
+        mFp = Defaults.BGZF_INFLATE_THREADS > 0 ?
+                new ParallelBlockCompressedInputStream(stream, Defaults.BGZF_INFLATE_THREADS) :
+                new BlockCompressedInputStream(stream);
         mIndexWrapper = indexWrapper;
         if(indexPath == null){
             mIndexPath = ParsingUtils.appendToPath(filePath, FileExtensions.TABIX_INDEX);
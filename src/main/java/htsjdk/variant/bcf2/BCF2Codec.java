@@ -25,6 +25,7 @@
 
 package htsjdk.variant.bcf2;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.BinaryFeatureCodec;
 import htsjdk.tribble.Feature;
@@ -33,6 +34,7 @@ import htsjdk.tribble.TribbleException;
 import htsjdk.tribble.readers.*;
 import htsjdk.variant.utils.GeneralUtils;
 import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.ColumnarGenotypesContext;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.LazyGenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
@@ -48,9 +50,13 @@ import htsjdk.variant.vcf.VCFHeaderLineType;
 import java.io.*;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Decode BCF2 files
@@ -95,12 +101,21 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
     private BCF2GenotypeFieldDecoders gtFieldDecoders = null;
 
     /**
-     * A cached array of GenotypeBuilders for efficient genotype decoding.
+     * The samples and FORMAT fields whose genotype values are decoded, or null to decode all of them
+     */
+    private Set<String> samplesToDecode = null;
+    private Set<String> formatFieldsToDecode = null;
+
+    /**
+     * The genotypes to decode, with a cached array of GenotypeBuilders for efficient genotype decoding.
      *
      * Caching it allows us to avoid recreating this intermediate data
      * structure each time we decode genotypes
      */
-    private GenotypeBuilder[] builders = null;
+    private GenotypeSubset genotypeSubset = null;
+
+    /** Should genotypes be decoded into a ColumnarGenotypesContext? */
+    private boolean useColumnarGenotypes = Defaults.COLUMNAR_GENOTYPES;
 
     // for error handling
     private int recordNo = 0;
@@ -218,14 +233,122 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
         gtFieldDecoders = new BCF2GenotypeFieldDecoders(header);
 
         // create and initialize the genotype builder array
-        final int nSamples = header.getNGenotypeSamples();
-        builders = new GenotypeBuilder[nSamples];
-        for ( int i = 0; i < nSamples; i++ ) {
-            builders[i] = new GenotypeBuilder(header.getGenotypeSamples().get(i));
-        }
+        genotypeSubset = createGenotypeSubset();
 
         // position right before next line (would be right before first real record byte at end of header)
-        return new FeatureCodecHeader(header, inputStream.getPosition());
+        return new FeatureCodecHeader(getDecodedSamplesHeader(), inputStream.getPosition());
+    }
+
+    /**
+     * @return the header of the file if all samples are decoded, otherwise a copy of it that lists only the samples
+     * whose genotypes are decoded, as the records hold only their genotypes
+     */
+    private VCFHeader getDecodedSamplesHeader() {
+        if ( samplesToDecode == null )
+            return header;
+
+        final List<String> decodedSamples = new ArrayList<>(samplesToDecode.size());
+        for ( final String sample : header.getGenotypeSamples() ) {
+            if ( samplesToDecode.contains(sample) )
+                decodedSamples.add(sample);
+        }
+        final VCFHeader decodedSamplesHeader = new VCFHeader(header.getMetaDataInInputOrder(), decodedSamples);
+        if ( header.getVCFHeaderVersion() != null )
+            decodedSamplesHeader.setVCFHeaderVersion(header.getVCFHeaderVersion());
+        return decodedSamplesHeader;
+    }
+
+    /**
+     * Decode the genotypes of only some samples, in the records decoded from now on.  The genotypes of these records
+     * hold only the given samples, in header order, and the values of the other samples are skipped without being
+     * decoded.  If this is set before the header is read, the header returned by {@link #readHeader} lists only
+     * these samples.
+     *
+     * @param sampleNames the samples to decode, which must all be in the header, or null to decode all samples
+     */
+    public void setSamplesToDecode(final Collection<String> sampleNames) {
+        samplesToDecode = sampleNames == null ? null : new HashSet<>(sampleNames);
+        if ( header != null )
+            genotypeSubset = createGenotypeSubset();
+    }
+
+    /**
+     * Decode only some FORMAT fields, e.g. only GT, in the records decoded from now on.  The other fields are
+     * skipped without being decoded, using their encoded sizes, and are absent from the genotypes.
+     *
+     * @param formatFields the FORMAT keys of the fields to decode, or null to decode all fields
+     */
+    public void setFormatFieldsToDecode(final Collection<String> formatFields) {
+        formatFieldsToDecode = formatFields == null ? null : new HashSet<>(formatFields);
+        if ( header != null )
+            genotypeSubset = createGenotypeSubset();
+    }
+
+    /**
+     * Decode genotypes into a {@link ColumnarGenotypesContext}, which stores them in primitive arrays and only creates
+     * Genotype objects for the samples that are accessed.  Defaults to {@link Defaults#COLUMNAR_GENOTYPES}.
+     */
+    public void setUseColumnarGenotypes(final boolean useColumnarGenotypes) {
+        this.useColumnarGenotypes = useColumnarGenotypes;
+    }
+
+    /**
+     * @return the genotypes to decode given the header and the requested samples and fields
+     */
+    private GenotypeSubset createGenotypeSubset() {
+        final List<String> headerSamples = header.getGenotypeSamples();
+        if ( samplesToDecode == null ) {
+            final GenotypeBuilder[] builders = new GenotypeBuilder[headerSamples.size()];
+            for ( int i = 0; i < builders.length; i++ ) {
+                builders[i] = new GenotypeBuilder(headerSamples.get(i));
+            }
+            return new GenotypeSubset(null, formatFieldsToDecode, builders, header.getSampleNamesInOrder(), header.getSampleNameToOffset());
+        }
+
+        for ( final String sample : samplesToDecode ) {
+            if ( !header.getSampleNameToOffset().containsKey(sample) )
+                throw new IllegalArgumentException("Sample " + sample + " is not in the header of the BCF2 file");
+        }
+
+        final int[] sampleOffsets = new int[samplesToDecode.size()];
+        final GenotypeBuilder[] builders = new GenotypeBuilder[samplesToDecode.size()];
+        final ArrayList<String> sampleNamesInOrder = new ArrayList<>(samplesToDecode.size());
+        final HashMap<String, Integer> sampleNameToOffset = new HashMap<>(samplesToDecode.size());
+        int n = 0;
+        for ( int i = 0; i < headerSamples.size(); i++ ) {
+            final String sample = headerSamples.get(i);
+            if ( samplesToDecode.contains(sample) ) {
+                sampleOffsets[n] = i;
+                builders[n] = new GenotypeBuilder(sample);
+                sampleNamesInOrder.add(sample);
+                sampleNameToOffset.put(sample, n++);
+            }
+        }
+        Collections.sort(sampleNamesInOrder);
+        return new GenotypeSubset(sampleOffsets, formatFieldsToDecode, builders, sampleNamesInOrder, sampleNameToOffset);
+    }
+
+    /**
+     * The samples and FORMAT fields to decode from the genotype blocks of records, with a builder for each sample
+     * that is decoded
+     */
+    static final class GenotypeSubset {
+        /** offsets of the decoded samples among those of the file, or null if all samples are decoded */
+        final int[] sampleOffsets;
+        /** FORMAT keys of the decoded fields, or null if all fields are decoded */
+        final Set<String> formatFields;
+        final GenotypeBuilder[] builders;
+        final List<String> sampleNamesInOrder;
+        final Map<String, Integer> sampleNameToOffset;
+
+        private GenotypeSubset(final int[] sampleOffsets, final Set<String> formatFields, final GenotypeBuilder[] builders,
+                               final List<String> sampleNamesInOrder, final Map<String, Integer> sampleNameToOffset) {
+            this.sampleOffsets = sampleOffsets;
+            this.formatFields = formatFields;
+            this.builders = builders;
+            this.sampleNamesInOrder = sampleNamesInOrder;
+            this.sampleNameToOffset = sampleNameToOffset;
+        }
     }
 
     @Override
@@ -347,25 +470,17 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
      * @return the alleles
      */
     private List<Allele> decodeAlleles( final VariantContextBuilder builder, final int pos, final int nAlleles ) throws IOException {
-        // TODO -- probably need inline decoder for efficiency here (no sense in going bytes -> string -> vector -> bytes
         List<Allele> alleles = new ArrayList<Allele>(nAlleles);
-        String ref = null;
 
         for ( int i = 0; i < nAlleles; i++ ) {
-            final String alleleBases = (String)decoder.decodeTypedValue();
-
-            final boolean isRef = i == 0;
-            final Allele allele = Allele.create(alleleBases, isRef);
-            if ( isRef ) ref = alleleBases;
-
+            final Allele allele = decoder.decodeAllele(i == 0);
+            if ( allele == null )
+                error("BCF2 record is missing the bases of allele " + i);
             alleles.add(allele);
         }
-        assert ref != null;
 
         builder.alleles(alleles);
 
-        assert !ref.isEmpty();
-
         return alleles;
     }
 
@@ -433,10 +548,13 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
                                              final VariantContextBuilder builder ) {
         if (siteInfo.nSamples > 0) {
             final LazyGenotypesContext.LazyParser lazyParser =
-                    new BCF2LazyGenotypesDecoder(this, siteInfo.alleles, siteInfo.nSamples, siteInfo.nFormatFields, builders);
+                    new BCF2LazyGenotypesDecoder(this, siteInfo.alleles, siteInfo.nSamples, siteInfo.nFormatFields, genotypeSubset,
+                            useColumnarGenotypes);
 
             final LazyData lazyData = new LazyData(header, siteInfo.nFormatFields, decoder.getRecordBytes());
-            final LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, lazyData, header.getNGenotypeSamples());
+            final LazyGenotypesContext lazy = useColumnarGenotypes ?
+                    new ColumnarGenotypesContext(lazyParser, lazyData, genotypeSubset.builders.length) :
+                    new LazyGenotypesContext(lazyParser, lazyData, genotypeSubset.builders.length);
 
             // did we resort the sample names?  If so, we need to load the genotype data
             if ( !header.samplesWereAlreadySorted() )
@@ -27,6 +27,7 @@ package htsjdk.variant.bcf2;
 
 import htsjdk.tribble.TribbleException;
 import htsjdk.variant.utils.GeneralUtils;
+import htsjdk.variant.variantcontext.Allele;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -100,6 +101,23 @@ public final class BCF2Decoder {
         return recordBytes.length;
     }
 
+    /**
+     * @return the offset in the current block of the next byte to be decoded
+     */
+    public int getBlockOffset() {
+        return recordBytes.length - recordStream.available();
+    }
+
+    /**
+     * Skips over the next bytes of the current block, e.g. the values of a genotype field that are not needed
+     *
+     * @param nBytes the number of bytes to skip
+     */
+    public void skipBytes(final int nBytes) {
+        final long skipped = recordStream.skip(nBytes);
+        if ( skipped != nBytes ) throw new TribbleException("Tried to skip " + nBytes + " bytes but only " + skipped + " remain in the BCF2 block");
+    }
+
     public boolean blockIsFullyDecoded() {
         return recordStream.available() == 0;
     }
@@ -152,6 +170,34 @@ public final class BCF2Decoder {
         }
     }
 
+    /**
+     * Decode the next typed value as the bases of an allele.  Canonical alleles (see
+     * {@link Allele#getCanonicalAllele(byte[], int, int, boolean)}) are looked up directly in the record bytes,
+     * without going through an intermediate String.
+     *
+     * @param isRef is this the reference allele?
+     * @return the allele, or null if the value is missing
+     */
+    public final Allele decodeAllele(final boolean isRef) throws IOException {
+        final byte typeDescriptor = readTypeDescriptor();
+        final int size = decodeNumberOfElements(typeDescriptor);
+        if ( size > 0 && BCF2Utils.decodeType(typeDescriptor) == BCF2Type.CHAR ) {
+            final int start = getBlockOffset();
+            if ( start + size <= recordBytes.length ) {
+                int end = start;
+                while ( end < start + size && recordBytes[end] != 0 ) end++;
+                final Allele canonical = Allele.getCanonicalAllele(recordBytes, start, end, isRef);
+                if ( canonical != null ) {
+                    skipBytes(size);
+                    return canonical;
+                }
+            }
+        }
+
+        final Object bases = decodeTypedValue(typeDescriptor, size);
+        return bases == null ? null : Allele.create((String) bases, isRef);
+    }
+
     public final Object decodeSingleValue(final BCF2Type type) throws IOException {
         // TODO -- decodeTypedValue should integrate this routine
         final int value = decodeInt(type);
@@ -27,6 +27,7 @@ package htsjdk.variant.bcf2;
 
 import htsjdk.tribble.TribbleException;
 import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.ColumnarGenotypesContext;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.LazyGenotypesContext;
@@ -49,15 +50,20 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
     private final List<Allele> siteAlleles;
     private final int nSamples;
     private final int nFields;
+    private final BCF2Codec.GenotypeSubset genotypeSubset;
     private final GenotypeBuilder[] builders;
+    private final boolean useColumnarGenotypes;
 
     BCF2LazyGenotypesDecoder(final BCF2Codec codec, final List<Allele> alleles, final int nSamples,
-                             final int nFields, final GenotypeBuilder[] builders) {
+                             final int nFields, final BCF2Codec.GenotypeSubset genotypeSubset,
+                             final boolean useColumnarGenotypes) {
         this.codec = codec;
         this.siteAlleles = alleles;
         this.nSamples = nSamples;
         this.nFields = nFields;
-        this.builders = builders;
+        this.genotypeSubset = genotypeSubset;
+        this.builders = genotypeSubset.builders;
+        this.useColumnarGenotypes = useColumnarGenotypes;
     }
 
     @Override
@@ -67,8 +73,11 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
             // load our byte[] data into the decoder
             final BCF2Decoder decoder = new BCF2Decoder(((BCF2Codec.LazyData)data).bytes);
 
-            for ( int i = 0; i < nSamples; i++ )
-                builders[i].reset(true);
+            for ( final GenotypeBuilder gb : builders )
+                gb.reset(true);
+
+            // the values of the decoded samples, when only some of them are decoded
+            final BCF2Decoder sampleDecoder = genotypeSubset.sampleOffsets == null ? decoder : new BCF2Decoder();
 
             for ( int i = 0; i < nFields; i++ ) {
                 // get the field name
@@ -78,20 +87,45 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
                 // the type of each element
                 final byte typeDescriptor = decoder.readTypeDescriptor();
                 final int numElements = decoder.decodeNumberOfElements(typeDescriptor);
+
+                // the values of each field are stored sample by sample, in blocks of the same size
+                final int bytesPerSample = numElements * BCF2Utils.decodeType(typeDescriptor).getSizeInBytes();
+                if ( genotypeSubset.formatFields != null && !genotypeSubset.formatFields.contains(field) ) {
+                    decoder.skipBytes(nSamples * bytesPerSample);
+                    continue;
+                }
+                if ( genotypeSubset.sampleOffsets != null ) {
+                    final int[] sampleOffsets = genotypeSubset.sampleOffsets;
+                    final byte[] bytes = decoder.getRecordBytes();
+                    final int fieldStart = decoder.getBlockOffset();
+                    final byte[] sampleBytes = new byte[sampleOffsets.length * bytesPerSample];
+                    for ( int j = 0; j < sampleOffsets.length; j++ )
+                        System.arraycopy(bytes, fieldStart + sampleOffsets[j] * bytesPerSample, sampleBytes, j * bytesPerSample, bytesPerSample);
+                    sampleDecoder.setRecordBytes(sampleBytes);
+                    decoder.skipBytes(nSamples * bytesPerSample);
+                }
+
                 final BCF2GenotypeFieldDecoders.Decoder fieldDecoder = codec.getGenotypeFieldDecoder(field);
                 try {
-                    fieldDecoder.decode(siteAlleles, field, decoder, typeDescriptor, numElements, builders);
+                    fieldDecoder.decode(siteAlleles, field, sampleDecoder, typeDescriptor, numElements, builders);
                 } catch ( ClassCastException e ) {
                     throw new TribbleException("BUG: expected encoding of field " + field
                             + " inconsistent with the value observed in the decoded value");
                 }
             }
 
-            final ArrayList<Genotype> genotypes = new ArrayList<Genotype>(nSamples);
+            if ( useColumnarGenotypes ) {
+                final ColumnarGenotypesContext.Columns columns = new ColumnarGenotypesContext.Columns(builders.length, siteAlleles);
+                for ( final GenotypeBuilder gb : builders )
+                    columns.add(gb.make());
+                return new LazyGenotypesContext.LazyData(columns, genotypeSubset.sampleNamesInOrder, genotypeSubset.sampleNameToOffset);
+            }
+
+            final ArrayList<Genotype> genotypes = new ArrayList<Genotype>(builders.length);
             for ( final GenotypeBuilder gb : builders )
                 genotypes.add(gb.make());
 
-            return new LazyGenotypesContext.LazyData(genotypes, codec.getHeader().getSampleNamesInOrder(), codec.getHeader().getSampleNameToOffset());
+            return new LazyGenotypesContext.LazyData(genotypes, genotypeSubset.sampleNamesInOrder, genotypeSubset.sampleNameToOffset);
         } catch ( IOException e ) {
             throw new TribbleException("Unexpected IOException parsing already read genotypes data block", e);
         }
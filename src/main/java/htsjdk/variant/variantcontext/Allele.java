@@ -30,6 +30,7 @@ import htsjdk.samtools.util.StringUtil;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Immutable representation of an allele.
@@ -235,28 +236,29 @@ public class Allele implements Comparable<Allele>, Serializable {
             throw new IllegalArgumentException("create: the Allele base string cannot be null; use new Allele() or new Allele(\"\") to create a Null allele");
 
         if ( bases.length == 1 ) {
-            // optimization to return a static constant Allele for each single base object
-            switch (bases[0]) {
-                case '.':
-                    if ( isRef ) throw new IllegalArgumentException("Cannot tag a NoCall allele as the reference allele");
-                    return NO_CALL;
-                case '*':
-                    if ( isRef ) throw new IllegalArgumentException("Cannot tag a spanning deletions allele as the reference allele");
-                    return SPAN_DEL;
-                case 'A': case 'a' : return isRef ? REF_A : ALT_A;
-                case 'C': case 'c' : return isRef ? REF_C : ALT_C;
-                case 'G': case 'g' : return isRef ? REF_G : ALT_G;
-                case 'T': case 't' : return isRef ? REF_T : ALT_T;
-                case 'N': case 'n' : return isRef ? REF_N : ALT_N;
-                default: throw new IllegalArgumentException("Illegal base [" + (char)bases[0] + "] seen in the allele");
-            }
+            return create(bases[0], isRef);
         } else {
-            return new Allele(bases, isRef);
+            final Allele canonical = getCanonicalAllele(bases, 0, bases.length, isRef);
+            return canonical != null ? canonical : new Allele(bases, isRef);
         }
     }
 
     public static Allele create(final byte base, final boolean isRef) {
-        return create( new byte[]{ base }, isRef);
+        // optimization to return a static constant Allele for each single base object
+        switch (base) {
+            case '.':
+                if ( isRef ) throw new IllegalArgumentException("Cannot tag a NoCall allele as the reference allele");
+                return NO_CALL;
+            case '*':
+                if ( isRef ) throw new IllegalArgumentException("Cannot tag a spanning deletions allele as the reference allele");
+                return SPAN_DEL;
+            case 'A': case 'a' : return isRef ? REF_A : ALT_A;
+            case 'C': case 'c' : return isRef ? REF_C : ALT_C;
+            case 'G': case 'g' : return isRef ? REF_G : ALT_G;
+            case 'T': case 't' : return isRef ? REF_T : ALT_T;
+            case 'N': case 'n' : return isRef ? REF_N : ALT_N;
+            default: throw new IllegalArgumentException("Illegal base [" + (char)base + "] seen in the allele");
+        }
     }
 
     public static Allele create(final byte base) {
@@ -399,7 +401,8 @@ public class Allele implements Comparable<Allele>, Serializable {
      * @param isRef  is this the reference allele?
      */
     public static Allele create(final String bases, final boolean isRef) {
-        return create(bases.getBytes(), isRef);
+        final Allele canonical = getCanonicalAllele(bases, 0, bases.length(), isRef);
+        return canonical != null ? canonical : create(bases.getBytes(), isRef);
     }
 
 
@@ -434,6 +437,156 @@ public class Allele implements Comparable<Allele>, Serializable {
         return new Allele(allele, ignoreRefState);
     }
 
+    // ---------------------------------------------------------------------------------------------------------
+    //
+    // canonical alleles
+    //
+    // ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Alleles made only of A, C, G and T bases up to this length are canonical, i.e. shared by all callers.
+     */
+    public static final int MAX_CANONICAL_ALLELE_LENGTH = 6;
+
+    /**
+     * Returns the shared instance of the allele with the given bases, without allocating anything, if the allele is
+     * one of the canonical alleles: a single base, NO_CALL, SPAN_DEL, an allele of at most
+     * {@link #MAX_CANONICAL_ALLELE_LENGTH} A, C, G or T bases, or one of the {@link #NON_REF_STRING} and
+     * {@link #UNSPECIFIED_ALTERNATE_ALLELE_STRING} symbolic alleles.  Canonical alleles are valid by construction,
+     * so parsers can use this to skip the validation of the overwhelming majority of alleles.
+     *
+     * This method is thread-safe.
+     *
+     * @param bases the characters holding the bases of the allele
+     * @param start the offset of the first base in bases
+     * @param end the offset just after the last base in bases
+     * @param isRef is this the reference allele?
+     * @return the canonical allele, or null if the bases do not form a canonical allele
+     */
+    public static Allele getCanonicalAllele(final CharSequence bases, final int start, final int end, final boolean isRef) {
+        final int length = end - start;
+        if ( length == 1 ) {
+            return canonicalSingleBase(bases.charAt(start), isRef);
+        } else if ( length <= 1 ) {
+            return null;
+        } else if ( bases.charAt(start) == SYMBOLIC_ALLELE_START ) {
+            if ( isRef ) return null;
+            if ( regionMatches(bases, start, end, NON_REF_STRING) ) return NON_REF_ALLELE;
+            if ( regionMatches(bases, start, end, UNSPECIFIED_ALTERNATE_ALLELE_STRING) ) return UNSPECIFIED_ALTERNATE_ALLELE;
+            return null;
+        } else if ( length > MAX_CANONICAL_ALLELE_LENGTH ) {
+            return null;
+        }
+
+        int code = 0;
+        for ( int i = start; i < end; i++ ) {
+            final int baseCode = CanonicalAlleles.baseCode(bases.charAt(i));
+            if ( baseCode < 0 ) return null;
+            code = (code << 2) | baseCode;
+        }
+        return CanonicalAlleles.get(length, code, isRef);
+    }
+
+    /**
+     * Same as {@link #getCanonicalAllele(CharSequence, int, int, boolean)}, for bases stored as bytes.
+     */
+    public static Allele getCanonicalAllele(final byte[] bases, final int start, final int end, final boolean isRef) {
+        final int length = end - start;
+        if ( length == 1 ) {
+            return canonicalSingleBase((char) bases[start], isRef);
+        } else if ( length <= 1 ) {
+            return null;
+        } else if ( bases[start] == SYMBOLIC_ALLELE_START ) {
+            if ( isRef ) return null;
+            if ( regionMatches(bases, start, end, NON_REF_STRING) ) return NON_REF_ALLELE;
+            if ( regionMatches(bases, start, end, UNSPECIFIED_ALTERNATE_ALLELE_STRING) ) return UNSPECIFIED_ALTERNATE_ALLELE;
+            return null;
+        } else if ( length > MAX_CANONICAL_ALLELE_LENGTH ) {
+            return null;
+        }
+
+        int code = 0;
+        for ( int i = start; i < end; i++ ) {
+            final int baseCode = CanonicalAlleles.baseCode((char) bases[i]);
+            if ( baseCode < 0 ) return null;
+            code = (code << 2) | baseCode;
+        }
+        return CanonicalAlleles.get(length, code, isRef);
+    }
+
+    private static Allele canonicalSingleBase(final char base, final boolean isRef) {
+        switch (base) {
+            case '.': return isRef ? null : NO_CALL;
+            case '*': return isRef ? null : SPAN_DEL;
+            case 'A': case 'a' : return isRef ? REF_A : ALT_A;
+            case 'C': case 'c' : return isRef ? REF_C : ALT_C;
+            case 'G': case 'g' : return isRef ? REF_G : ALT_G;
+            case 'T': case 't' : return isRef ? REF_T : ALT_T;
+            case 'N': case 'n' : return isRef ? REF_N : ALT_N;
+            default: return null;
+        }
+    }
+
+    private static boolean regionMatches(final CharSequence bases, final int start, final int end, final String s) {
+        if ( end - start != s.length() ) return false;
+        for ( int i = 0; i < s.length(); i++ ) {
+            if ( bases.charAt(start + i) != s.charAt(i) ) return false;
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(final byte[] bases, final int start, final int end, final String s) {
+        if ( end - start != s.length() ) return false;
+        for ( int i = 0; i < s.length(); i++ ) {
+            if ( bases[start + i] != s.charAt(i) ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The shared multi-base alleles, indexed by length and by their bases packed two bits per base.  Entries are
+     * created on first use; the holder class keeps the tables out of Allele's own static initialization.
+     */
+    private static final class CanonicalAlleles {
+        private static final byte[] BASES = { 'A', 'C', 'G', 'T' };
+        private static final int[] OFFSETS = new int[MAX_CANONICAL_ALLELE_LENGTH + 2];
+        static {
+            // lengths 0 and 1 are never stored in the tables
+            for ( int length = 2; length <= MAX_CANONICAL_ALLELE_LENGTH; length++ ) {
+                OFFSETS[length + 1] = OFFSETS[length] + (1 << (2 * length));
+            }
+        }
+        private static final AtomicReferenceArray<Allele> REF = new AtomicReferenceArray<>(OFFSETS[MAX_CANONICAL_ALLELE_LENGTH + 1]);
+        private static final AtomicReferenceArray<Allele> ALT = new AtomicReferenceArray<>(OFFSETS[MAX_CANONICAL_ALLELE_LENGTH + 1]);
+
+        static int baseCode(final char base) {
+            switch (base) {
+                case 'A': case 'a': return 0;
+                case 'C': case 'c': return 1;
+                case 'G': case 'g': return 2;
+                case 'T': case 't': return 3;
+                default: return -1;
+            }
+        }
+
+        static Allele get(final int length, final int code, final boolean isRef) {
+            final AtomicReferenceArray<Allele> table = isRef ? REF : ALT;
+            final int index = OFFSETS[length] + code;
+            final Allele allele = table.get(index);
+            if ( allele != null ) {
+                return allele;
+            }
+
+            final byte[] bases = new byte[length];
+            for ( int i = 0; i < length; i++ ) {
+                bases[i] = BASES[(code >>> (2 * (length - 1 - i))) & 3];
+            }
+            final Allele created = new Allele(bases, isRef);
+            // if another thread got there first, use its allele so that there is only ever one instance
+            return table.compareAndSet(index, null, created) ? created : table.get(index);
+        }
+    }
+
     // ---------------------------------------------------------------------------------------------------------
     //
     // accessor routines
@@ -0,0 +1,418 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy-loading GenotypesContext that stores decoded genotypes in primitive columns rather than as Genotype objects.
+ *
+ * The alleles of each genotype are stored as indices into the alleles of the site, with a bit for its phasing, GQ and
+ * DP in int arrays, and AD and PL flattened into a single int array each.  Other FORMAT fields are kept in one column
+ * per key.  A Genotype object is only created when a sample is accessed, e.g. by {@link #get(int)} or
+ * {@link #get(String)}, and is then kept so that later accesses return the same object.  This saves most of the
+ * memory used by sites with many samples of which only some are examined, or that are only written out again.
+ *
+ * Operations that need the list of all genotypes, including all modifications, create the Genotype objects of every
+ * sample, after which this behaves as any other GenotypesContext.
+ *
+ * @see htsjdk.samtools.Defaults#COLUMNAR_GENOTYPES
+ */
+public class ColumnarGenotypesContext extends LazyGenotypesContext {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The decoded genotypes, or null if they have not been decoded yet, or have been turned into Genotype objects
+     */
+    private transient Columns columns = null;
+
+    /**
+     * The Genotype objects of the samples that have been accessed
+     */
+    private transient Genotype[] genotypes = null;
+
+    /**
+     * @param parser the parser to be used to decode the genotypes data into {@link Columns}
+     * @param unparsedGenotypeData the encoded genotypes data that we will decode if necessary
+     * @param nUnparsedGenotypes the number of genotypes that will be produced if / when we actually decode the genotypes data
+     */
+    public ColumnarGenotypesContext(final LazyParser parser, final Object unparsedGenotypeData, final int nUnparsedGenotypes) {
+        super(parser, unparsedGenotypeData, nUnparsedGenotypes);
+    }
+
+    @Override
+    protected void setDecodedData(final LazyData parsed) {
+        super.setDecodedData(parsed);
+        columns = parsed.columns;
+    }
+
+    private Columns getColumns() {
+        decode();
+        return columns;
+    }
+
+    /**
+     * Creates the Genotype objects of all samples, and stops using the columns
+     */
+    @Override
+    protected ArrayList<Genotype> getGenotypes() {
+        final Columns c = getColumns();
+        if ( c != null ) {
+            final ArrayList<Genotype> all = new ArrayList<>(c.size());
+            for ( int i = 0; i < c.size(); i++ ) {
+                all.add(get(i));
+            }
+            notToBeDirectlyAccessedGenotypes = all;
+            columns = null;
+            genotypes = null;
+        }
+        return super.getGenotypes();
+    }
+
+    @Override
+    public int size() {
+        return columns != null ? columns.size() : super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return columns != null ? columns.size() == 0 : super.isEmpty();
+    }
+
+    @Override
+    public Genotype get(final int i) {
+        final Columns c = getColumns();
+        if ( c == null ) {
+            return super.get(i);
+        }
+        if ( i < 0 || i >= c.size() ) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + c.size());
+        }
+        if ( genotypes == null ) {
+            genotypes = new Genotype[c.size()];
+        }
+        Genotype g = genotypes[i];
+        if ( g == null ) {
+            g = c.makeGenotype(i);
+            genotypes[i] = g;
+        }
+        return g;
+    }
+
+    @Override
+    public Genotype get(final String sampleName) {
+        if ( getColumns() == null ) {
+            return super.get(sampleName);
+        }
+        ensureSampleNameMap();
+        final Integer offset = sampleNameToOffset.get(sampleName);
+        return offset == null ? null : get(offset);
+    }
+
+    @Override
+    public Iterator<Genotype> iterator() {
+        if ( getColumns() == null ) {
+            return super.iterator();
+        }
+        return new Iterator<Genotype>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public Genotype next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    @Override
+    public int getMaxPloidy(final int defaultPloidy) {
+        final Columns c = getColumns();
+        if ( c == null ) {
+            return super.getMaxPloidy(defaultPloidy);
+        }
+        if ( defaultPloidy < 0 ) throw new IllegalArgumentException("defaultPloidy must be greater than or equal to 0");
+        final int maxPloidy = c.getMaxPloidy();
+        return maxPloidy == 0 ? defaultPloidy : maxPloidy;
+    }
+
+    @Override
+    protected synchronized void ensureSampleNameMap() {
+        final Columns c = getColumns();
+        if ( c != null && sampleNameToOffset == null ) {
+            sampleNameToOffset = new HashMap<>(c.size());
+            for ( int i = 0; i < c.size(); i++ ) {
+                sampleNameToOffset.put(c.getSampleName(i), i);
+            }
+        } else {
+            super.ensureSampleNameMap();
+        }
+    }
+
+    @Override
+    protected synchronized void ensureSampleOrdering() {
+        final Columns c = getColumns();
+        if ( c != null && sampleNamesInOrder == null ) {
+            sampleNamesInOrder = new ArrayList<>(c.size());
+            for ( int i = 0; i < c.size(); i++ ) {
+                sampleNamesInOrder.add(c.getSampleName(i));
+            }
+            Collections.sort(sampleNamesInOrder);
+        } else {
+            super.ensureSampleOrdering();
+        }
+    }
+
+    /**
+     * The genotypes of a site, in columns.  Genotypes are added in the order of their samples, as they are decoded,
+     * and are copied into the columns, so codecs can reuse the objects they decode them into.
+     *
+     * AD and PL arrays that are empty are stored as missing, and extended attributes with null values are not stored.
+     */
+    public static final class Columns {
+        private final int capacity;
+        private final String[] sampleNames;
+        private int size = 0;
+
+        /** the alleles of the site, followed by any other alleles seen in the genotypes */
+        private List<Allele> alleles;
+        private boolean allelesCopied = false;
+
+        /** the indices of the alleles of each genotype, ploidyStride per sample, with -1 for no-calls */
+        private short[] alleleIndices;
+        private int ploidyStride;
+        private final byte[] ploidies;
+        private final long[] phased;
+
+        /** columns that are only allocated once a sample has a value for them */
+        private int[] gq = null;
+        private int[] dp = null;
+        private IntArrayColumn ad = null;
+        private IntArrayColumn pl = null;
+        private String[] filters = null;
+        private final List<String> attributeKeys = new ArrayList<>(0);
+        private final List<Object[]> attributeValues = new ArrayList<>(0);
+
+        /**
+         * @param nSamples the number of genotypes that will be added
+         * @param alleles the alleles of the site
+         */
+        public Columns(final int nSamples, final List<Allele> alleles) {
+            this.capacity = nSamples;
+            this.sampleNames = new String[nSamples];
+            this.alleles = alleles;
+            this.ploidyStride = 2;
+            this.alleleIndices = new short[nSamples * ploidyStride];
+            this.ploidies = new byte[nSamples];
+            this.phased = new long[(nSamples + 63) / 64];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        String getSampleName(final int i) {
+            return sampleNames[i];
+        }
+
+        /**
+         * Adds the genotype of the next sample
+         */
+        public void add(final Genotype g) {
+            if ( size == capacity ) {
+                throw new IllegalStateException("Cannot add more than " + capacity + " genotypes");
+            }
+            final int i = size++;
+            sampleNames[i] = g.getSampleName();
+
+            final int ploidy = g.getPloidy();
+            if ( ploidy > Byte.MAX_VALUE ) {
+                throw new IllegalArgumentException("Unsupported ploidy " + ploidy + " for sample " + g.getSampleName());
+            }
+            if ( ploidy > ploidyStride ) {
+                setPloidyStride(ploidy);
+            }
+            ploidies[i] = (byte) ploidy;
+            for ( int j = 0; j < ploidy; j++ ) {
+                alleleIndices[i * ploidyStride + j] = getAlleleIndex(g.getAllele(j));
+            }
+            if ( g.isPhased() ) {
+                phased[i >> 6] |= 1L << i;
+            }
+
+            if ( g.hasGQ() ) {
+                if ( gq == null ) gq = newMissingInts(capacity);
+                gq[i] = g.getGQ();
+            }
+            if ( g.hasDP() ) {
+                if ( dp == null ) dp = newMissingInts(capacity);
+                dp[i] = g.getDP();
+            }
+            if ( ad == null && g.getAD() != null ) ad = new IntArrayColumn(capacity, g.getAD().length);
+            if ( ad != null ) ad.set(i, g.getAD());
+            if ( pl == null && g.getPL() != null ) pl = new IntArrayColumn(capacity, g.getPL().length);
+            if ( pl != null ) pl.set(i, g.getPL());
+            if ( g.getFilters() != null ) {
+                if ( filters == null ) filters = new String[capacity];
+                // filters are mostly the same from one sample to the next, so keep a single copy of them
+                filters[i] = i > 0 && g.getFilters().equals(filters[i - 1]) ? filters[i - 1] : g.getFilters();
+            }
+
+            for ( final Map.Entry<String, Object> attribute : g.getExtendedAttributes().entrySet() ) {
+                int column = attributeKeys.indexOf(attribute.getKey());
+                if ( column == -1 ) {
+                    column = attributeKeys.size();
+                    attributeKeys.add(attribute.getKey());
+                    attributeValues.add(new Object[capacity]);
+                }
+                attributeValues.get(column)[i] = attribute.getValue();
+            }
+        }
+
+        private static int[] newMissingInts(final int n) {
+            final int[] values = new int[n];
+            Arrays.fill(values, -1);
+            return values;
+        }
+
+        private void setPloidyStride(final int newStride) {
+            final short[] newIndices = new short[capacity * newStride];
+            for ( int i = 0; i < size; i++ ) {
+                System.arraycopy(alleleIndices, i * ploidyStride, newIndices, i * newStride, ploidyStride);
+            }
+            alleleIndices = newIndices;
+            ploidyStride = newStride;
+        }
+
+        private short getAlleleIndex(final Allele allele) {
+            if ( allele.isNoCall() ) {
+                return -1;
+            }
+            for ( int i = 0; i < alleles.size(); i++ ) {
+                if ( alleles.get(i).equals(allele) ) {
+                    return (short) i;
+                }
+            }
+            if ( alleles.size() > Short.MAX_VALUE ) {
+                throw new IllegalArgumentException("Too many alleles to store the genotype of sample " + sampleNames[size - 1]);
+            }
+            if ( !allelesCopied ) {
+                alleles = new ArrayList<>(alleles);
+                allelesCopied = true;
+            }
+            alleles.add(allele);
+            return (short) (alleles.size() - 1);
+        }
+
+        int getMaxPloidy() {
+            int maxPloidy = 0;
+            for ( int i = 0; i < size; i++ ) {
+                maxPloidy = Math.max(maxPloidy, ploidies[i]);
+            }
+            return maxPloidy;
+        }
+
+        /**
+         * @return a new Genotype object holding the genotype of the ith sample
+         */
+        Genotype makeGenotype(final int i) {
+            final GenotypeBuilder gb = new GenotypeBuilder(sampleNames[i]);
+
+            final int ploidy = ploidies[i];
+            if ( ploidy > 0 ) {
+                final List<Allele> gtAlleles = new ArrayList<>(ploidy);
+                for ( int j = 0; j < ploidy; j++ ) {
+                    final int index = alleleIndices[i * ploidyStride + j];
+                    gtAlleles.add(index == -1 ? Allele.NO_CALL : alleles.get(index));
+                }
+                gb.alleles(gtAlleles);
+            }
+            gb.phased((phased[i >> 6] & (1L << i)) != 0);
+
+            if ( gq != null ) gb.GQ(gq[i]);
+            if ( dp != null ) gb.DP(dp[i]);
+            if ( ad != null ) gb.AD(ad.get(i));
+            if ( pl != null ) gb.PL(pl.get(i));
+            if ( filters != null ) gb.filter(filters[i]);
+
+            gb.maxAttributes(attributeKeys.size());
+            for ( int k = 0; k < attributeKeys.size(); k++ ) {
+                final Object value = attributeValues.get(k)[i];
+                if ( value != null ) {
+                    gb.attribute(attributeKeys.get(k), value);
+                }
+            }
+            return gb.make();
+        }
+    }
+
+    /**
+     * Optional int arrays of samples, added in sample order, stored one after the other
+     */
+    private static final class IntArrayColumn {
+        /** the end of the values of each sample, which start at the end of those of the previous sample */
+        private final int[] ends;
+        private int[] values;
+        private int length = 0;
+
+        /**
+         * @param nSamples the number of samples
+         * @param expectedLength the expected number of values per sample, usually the same for all samples
+         */
+        IntArrayColumn(final int nSamples, final int expectedLength) {
+            ends = new int[nSamples];
+            values = new int[Math.max(1, nSamples * expectedLength)];
+        }
+
+        void set(final int i, final int[] sampleValues) {
+            if ( sampleValues != null ) {
+                if ( length + sampleValues.length > values.length ) {
+                    values = Arrays.copyOf(values, Math.max(2 * values.length, length + sampleValues.length));
+                }
+                System.arraycopy(sampleValues, 0, values, length, sampleValues.length);
+                length += sampleValues.length;
+            }
+            ends[i] = length;
+        }
+
+        int[] get(final int i) {
+            final int start = i == 0 ? 0 : ends[i - 1];
+            return start == ends[i] ? null : Arrays.copyOfRange(values, start, ends[i]);
+        }
+    }
+}
@@ -92,9 +92,10 @@ public class GenotypesContext implements List<Genotype>, Serializable {
         // Ugly, but we can't do this in LazyGenotypesContext.writeObject(), since
         // by the time that's called we'll already have serialized the superclass
         // data in GenotypesContext, and we need to make sure that we decode any lazy
-        // data BEFORE serializing the fields in GenotypesContext.
-        if ( getClass() == LazyGenotypesContext.class ) {
-            ((LazyGenotypesContext)this).decode();
+        // data BEFORE serializing the fields in GenotypesContext.  A ColumnarGenotypesContext
+        // creates all of its genotypes as well.
+        if ( this instanceof LazyGenotypesContext ) {
+            getGenotypes();
         }
 
         out.defaultWriteObject();
@@ -108,6 +108,7 @@ public class LazyGenotypesContext extends GenotypesContext {
      */
     public static class LazyData {
         final ArrayList<Genotype> genotypes;
+        final ColumnarGenotypesContext.Columns columns;
         final Map<String, Integer> sampleNameToOffset;
         final List<String> sampleNamesInOrder;
 
@@ -115,6 +116,19 @@ public class LazyGenotypesContext extends GenotypesContext {
                         final List<String> sampleNamesInOrder,
                         final Map<String, Integer> sampleNameToOffset) {
             this.genotypes = genotypes;
+            this.columns = null;
+            this.sampleNamesInOrder = sampleNamesInOrder;
+            this.sampleNameToOffset = sampleNameToOffset;
+        }
+
+        /**
+         * Genotypes decoded into columns, for a {@link ColumnarGenotypesContext}
+         */
+        public LazyData(final ColumnarGenotypesContext.Columns columns,
+                        final List<String> sampleNamesInOrder,
+                        final Map<String, Integer> sampleNameToOffset) {
+            this.genotypes = null;
+            this.columns = columns;
             this.sampleNamesInOrder = sampleNamesInOrder;
             this.sampleNameToOffset = sampleNameToOffset;
         }
@@ -156,9 +170,7 @@ public class LazyGenotypesContext extends GenotypesContext {
         if ( ! loaded ) {
             //System.out.printf("Loading genotypes... %s:%d%n", contig, start);
             LazyData parsed = parser.parse(unparsedGenotypeData);
-            notToBeDirectlyAccessedGenotypes = parsed.genotypes;
-            sampleNamesInOrder = parsed.sampleNamesInOrder;
-            sampleNameToOffset = parsed.sampleNameToOffset;
+            setDecodedData(parsed);
             loaded = true;
             unparsedGenotypeData = null; // don't hold the unparsed data any longer
             nUnparsedGenotypes = 0;
@@ -169,6 +181,15 @@ public class LazyGenotypesContext extends GenotypesContext {
         }
     }
 
+    /**
+     * Stores the results of decoding the genotypes data
+     */
+    protected void setDecodedData(final LazyData parsed) {
+        notToBeDirectlyAccessedGenotypes = parsed.genotypes;
+        sampleNamesInOrder = parsed.sampleNamesInOrder;
+        sampleNameToOffset = parsed.sampleNameToOffset;
+    }
+
     /**
      * Overrides the ensure* functionality.  If the data hasn't been loaded
      * yet and we want to build the cache, just decode it and we're done.  If we've
@@ -26,9 +26,11 @@
 package htsjdk.variant.variantcontext.writer;
 
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.LocationAware;
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.Tuple;
 import htsjdk.tribble.index.DynamicIndexCreator;
 import htsjdk.tribble.index.Index;
 import htsjdk.tribble.index.IndexCreator;
@@ -42,6 +44,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 
 /**
  * this class writes VCF files
@@ -55,6 +58,11 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     private LocationAware locationSource = null;
     private IndexCreator indexer = null;
 
+    // Set when writing to a stream that deflates blocks in parallel, in which case features are
+    // added to the index once the positions preceding them are known.
+    private BlockCompressedOutputStream parallelLocationSource = null;
+    private final ArrayDeque<Tuple<VariantContext, Long>> pendingFeatures = new ArrayDeque<>();
+
     private IndexingVariantContextWriter(final String name, final Path location, final OutputStream output, final SAMSequenceDictionary refDict) {
         this.name = name;
         this.location = location;
@@ -135,6 +143,10 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
         indexer = idxCreator;
         if (outputStream instanceof LocationAware) {
             locationSource = (LocationAware)outputStream;
+            if (outputStream instanceof BlockCompressedOutputStream &&
+                    ((BlockCompressedOutputStream) outputStream).isParallelDeflation()) {
+                parallelLocationSource = (BlockCompressedOutputStream) outputStream;
+            }
         } else {
             final PositionalOutputStream positionalOutputStream = new PositionalOutputStream(outputStream);
             locationSource = positionalOutputStream;
@@ -173,6 +185,7 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
 
             // close the index stream (keep it separate to help debugging efforts)
             if (indexer != null) {
+                addPendingFeatures(true);
                 indexer.setIndexSequenceDictionary(refDict);
                 final Index index = indexer.finalizeIndex(locationSource.getPosition());
                 index.writeBasedOnFeaturePath(location);
@@ -199,8 +212,30 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     @Override
     public void add(final VariantContext vc) {
         // if we are doing on the fly indexing, add the record ***before*** we write any bytes
-        if ( indexer != null )
-            indexer.addFeature(vc, locationSource.getPosition());
+        if ( indexer != null ) {
+            if ( parallelLocationSource != null ) {
+                pendingFeatures.add(new Tuple<>(vc, parallelLocationSource.getUnresolvedFilePointer()));
+                addPendingFeatures(false);
+            } else {
+                indexer.addFeature(vc, locationSource.getPosition());
+            }
+        }
+    }
+
+    /**
+     * Adds features whose positions are known to the index, in the order they were written.
+     *
+     * @param waitForBlocks if true, wait for block deflation so that all pending features are added
+     */
+    private void addPendingFeatures(final boolean waitForBlocks) {
+        while (!pendingFeatures.isEmpty()) {
+            final Tuple<VariantContext, Long> pending = pendingFeatures.peek();
+            if (!waitForBlocks && !parallelLocationSource.isFilePointerResolvable(pending.b)) {
+                return;
+            }
+            pendingFeatures.remove();
+            indexer.addFeature(pending.a, parallelLocationSource.resolveFilePointer(pending.b));
+        }
     }
 
     /**
@@ -25,6 +25,7 @@
 
 package htsjdk.variant.vcf;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.AsciiFeatureCodec;
@@ -40,6 +41,7 @@ import htsjdk.variant.variantcontext.*;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -83,6 +85,16 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
 
     protected boolean warnedAboutNoEqualsForNonFlag = false;
 
+    // for decoding lines from bytes: the column boundaries of the current line, and the contigs, filters and
+    // INFO keys seen so far, seeded with the IDs in the header that the cache was built for
+    private final int[] fieldStarts = new int[NUM_STANDARD_FIELDS + 1];
+    private final int[] fieldEnds = new int[NUM_STANDARD_FIELDS + 1];
+    private ByteStringCache byteStringCache = null;
+    private VCFHeader byteStringCacheHeader = null;
+
+    // exact powers of ten, for parsing short decimals without rounding error
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
     /**
      * If true, then we'll magically fix up VCF headers on the fly when we read them in
      */
@@ -94,6 +106,19 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
      */
     protected String remappedSampleName = null;
 
+    /**
+     * If non-null, only the genotypes of these samples, and only these FORMAT fields, are decoded.  The columns of the
+     * samples to decode are found when the header is read; nFileSamples is then the number of samples in the file.
+     */
+    private Set<String> samplesToDecode = null;
+    private Set<String> formatFieldsToDecode = null;
+    private int[] sampleColumnsToDecode = null;
+    private int nFileSamples = 0;
+    private byte[] genotypeBytes = null;
+
+    /** Should genotypes be decoded into a ColumnarGenotypesContext? */
+    private boolean useColumnarGenotypes = Defaults.COLUMNAR_GENOTYPES;
+
     protected AbstractVCFCodec() {
         super(VariantContext.class);
     }
@@ -108,17 +133,20 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         final List<Allele> alleles;
         final String contig;
         final int start;
+        final boolean useColumnarGenotypes;
 
-        LazyVCFGenotypesParser(final List<Allele> alleles, final String contig, final int start) {
+        LazyVCFGenotypesParser(final List<Allele> alleles, final String contig, final int start,
+                               final boolean useColumnarGenotypes) {
             this.alleles = alleles;
             this.contig = contig;
             this.start = start;
+            this.useColumnarGenotypes = useColumnarGenotypes;
         }
 
         @Override
         public LazyGenotypesContext.LazyData parse(final Object data) {
             //System.out.printf("Loading genotypes... %s:%d%n", contig, start);
-            return createGenotypeMap((String) data, alleles, contig, start);
+            return createGenotypeMap((String) data, alleles, contig, start, useColumnarGenotypes);
         }
     }
 
@@ -187,6 +215,10 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                     sampleNames.add(remappedSampleName);
                 }
 
+                if ( samplesToDecode != null ) {
+                    sampleNames = selectSamplesToDecode(sampleNames);
+                }
+
             } else {
                 if ( str.startsWith(VCFConstants.INFO_HEADER_START) ) {
                     final VCFInfoHeaderLine info = new VCFInfoHeaderLine(str.substring(7), version);
@@ -221,6 +253,54 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return this.header;
     }
 
+    /**
+     * Find the columns of the samples to decode, in the order in which they appear in the file.
+     *
+     * @param sampleNames the samples in the file
+     * @return the samples to decode
+     */
+    private Set<String> selectSamplesToDecode(final Set<String> sampleNames) {
+        for ( final String sample : samplesToDecode ) {
+            if ( !sampleNames.contains(sample) )
+                throw new TribbleException("Cannot decode the genotypes of sample " + sample + " because it is not in the VCF header");
+        }
+
+        final Set<String> selected = new LinkedHashSet<>();
+        sampleColumnsToDecode = new int[samplesToDecode.size()];
+        nFileSamples = sampleNames.size();
+        int column = 0;
+        for ( final String sample : sampleNames ) {
+            if ( samplesToDecode.contains(sample) ) {
+                sampleColumnsToDecode[selected.size()] = column;
+                selected.add(sample);
+            }
+            column++;
+        }
+        return selected;
+    }
+
+    /**
+     * Use the same header, version and genotype decoding settings as another codec that has read the header of the
+     * same file, e.g. to decode parts of the file on other threads.
+     */
+    void copyHeaderState(final AbstractVCFCodec other) {
+        this.header = other.header;
+        this.version = other.version;
+        this.vcfTextTransformer = other.vcfTextTransformer;
+        this.samplesToDecode = other.samplesToDecode;
+        this.formatFieldsToDecode = other.formatFieldsToDecode;
+        this.sampleColumnsToDecode = other.sampleColumnsToDecode;
+        this.nFileSamples = other.nFileSamples;
+        this.useColumnarGenotypes = other.useColumnarGenotypes;
+    }
+
+    /**
+     * @return true if the records have FORMAT and sample columns, even if none of their samples are decoded
+     */
+    private boolean fileHasGenotypingData() {
+        return sampleColumnsToDecode == null ? header.hasGenotypingData() : nFileSamples > 0;
+    }
+
     /**
      * @return the header that was either explicitly set on this codec, or read from the file. May be null.
      * The returned value should not be modified.
@@ -328,6 +408,42 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return decodeLine(line, true);
     }
 
+    /**
+     * Decode a line held in a byte buffer, such as the one filled by {@link htsjdk.tribble.readers.AsciiLineReader#readLineBytes()},
+     * into a VariantContext.  This gives the same result as {@link #decode(String)}, but tokenizes the line and parses
+     * its numbers directly from the bytes, and looks up contigs, filters and INFO keys without creating Strings for them,
+     * so only the values that are kept by the VariantContext are allocated.
+     *
+     * @param line buffer holding the line, without its line terminator
+     * @param offset offset of the line in the buffer
+     * @param length length of the line
+     * @return a VariantContext, or null if the line is a header line
+     */
+    public VariantContext decode(final byte[] line, final int offset, final int length) {
+        if (length > 0 && line[offset] == VCFHeader.HEADER_INDICATOR.charAt(0)) return null;
+
+        if (header == null) throw new TribbleException("VCF Header cannot be null when decoding a record");
+
+        if (byteStringCacheHeader != header) {
+            byteStringCache = new ByteStringCache();
+            header.getContigLines().forEach(contig -> byteStringCache.put(contig.getID()));
+            header.getFilterLines().forEach(filter -> byteStringCache.put(filter.getID()));
+            header.getInfoHeaderLines().forEach(info -> byteStringCache.put(info.getID()));
+            byteStringCacheHeader = header;
+        }
+
+        final boolean hasGenotypingData = fileHasGenotypingData();
+        final int nParts = splitFields(line, offset, offset + length, hasGenotypingData ? NUM_STANDARD_FIELDS + 1 : NUM_STANDARD_FIELDS);
+
+        if (( !hasGenotypingData && nParts != NUM_STANDARD_FIELDS) ||
+                (hasGenotypingData && nParts != (NUM_STANDARD_FIELDS + 1)) )
+            throw new TribbleException("Line " + lineNo + ": there aren't enough columns for line " + new String(line, offset, length, StandardCharsets.ISO_8859_1) +
+                    " (we expected " + (hasGenotypingData ? NUM_STANDARD_FIELDS + 1 : NUM_STANDARD_FIELDS) +
+                    " tokens, and saw " + nParts + " )");
+
+        return parseVCFLine(line, nParts);
+    }
+
     /**
      * Throw if new a version/header are not compatible with the existing version/header. Generally, any version
      * before v4.2 can be up-converted to v4.2, but not to v4.3. Once a header is established as v4.3, it cannot
@@ -370,14 +486,14 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         if (header == null) throw new TribbleException("VCF Header cannot be null when decoding a record");
 
         if (parts == null)
-            parts = new String[Math.min(header.getColumnCount(), NUM_STANDARD_FIELDS+1)];
+            parts = new String[fileHasGenotypingData() ? NUM_STANDARD_FIELDS + 1 : NUM_STANDARD_FIELDS];
 
         final int nParts = ParsingUtils.split(line, parts, VCFConstants.FIELD_SEPARATOR_CHAR, true);
 
         // if we have don't have a header, or we have a header with no genotyping data check that we
         // have eight columns.  Otherwise check that we have nine (normal columns + genotyping data)
-        if (( (header == null || !header.hasGenotypingData()) && nParts != NUM_STANDARD_FIELDS) ||
-                (header != null && header.hasGenotypingData() && nParts != (NUM_STANDARD_FIELDS + 1)) )
+        if (( (header == null || !fileHasGenotypingData()) && nParts != NUM_STANDARD_FIELDS) ||
+                (header != null && fileHasGenotypingData() && nParts != (NUM_STANDARD_FIELDS + 1)) )
             throw new TribbleException("Line " + lineNo + ": there aren't enough columns for line " + line + " (we expected " + (header == null ? NUM_STANDARD_FIELDS : NUM_STANDARD_FIELDS + 1) +
                     " tokens, and saw " + nParts + " )");
 
@@ -428,6 +544,19 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         final Map<String, Object> attrs = parseInfo(parts[7]);
         builder.attributes(attrs);
 
+        return finishVCFLine(builder, chr, pos, ref, alts, attrs,
+                parts.length > NUM_STANDARD_FIELDS && includeGenotypes ? selectGenotypeColumns(parts[8]) : null);
+    }
+
+    /**
+     * set the stop, alleles and genotypes of a partially parsed VCF line, and make the variant context
+     *
+     * @param genotypeData the FORMAT and sample columns, or null if genotypes should not be included
+     * @return a variant context object
+     */
+    private VariantContext finishVCFLine(final VariantContextBuilder builder, final String chr, final int pos,
+                                         final String ref, final String alts, final Map<String, Object> attrs,
+                                         final String genotypeData) {
         if ( attrs.containsKey(VCFConstants.END_KEY) ) {
             // update stop with the end key if provided
             try {
@@ -444,10 +573,12 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         builder.alleles(alleles);
 
         // do we have genotyping data
-        if (parts.length > NUM_STANDARD_FIELDS && includeGenotypes) {
-            final LazyGenotypesContext.LazyParser lazyParser = new LazyVCFGenotypesParser(alleles, chr, pos);
+        if (genotypeData != null) {
+            final LazyVCFGenotypesParser lazyParser = new LazyVCFGenotypesParser(alleles, chr, pos, useColumnarGenotypes);
             final int nGenotypes = header.getNGenotypeSamples();
-            LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, parts[8], nGenotypes);
+            LazyGenotypesContext lazy = lazyParser.useColumnarGenotypes ?
+                    new ColumnarGenotypesContext(lazyParser, genotypeData, nGenotypes) :
+                    new LazyGenotypesContext(lazyParser, genotypeData, nGenotypes);
 
             // did we resort the sample names?  If so, we need to load the genotype data
             if ( !header.samplesWereAlreadySorted() )
@@ -466,6 +597,268 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return vc;
     }
 
+    /**
+     * Split a line into its tab separated columns, recording their boundaries in fieldStarts and fieldEnds.  This
+     * matches {@link ParsingUtils#split(String, String[], char, boolean)}: trailing columns beyond maxFields are
+     * condensed into the last one.
+     *
+     * @return the number of columns
+     */
+    private int splitFields(final byte[] line, final int offset, final int end, final int maxFields) {
+        int nFields = 0;
+        int start = offset;
+        int tab = indexOf(line, offset, end, VCFConstants.FIELD_SEPARATOR_CHAR);
+
+        if (tab == offset) {
+            if (end - offset > 1) {
+                start = offset + 1;
+                tab = indexOf(line, start, end, VCFConstants.FIELD_SEPARATOR_CHAR);
+            } else {
+                return 0;
+            }
+        }
+
+        while (tab >= 0 && nFields < maxFields) {
+            fieldStarts[nFields] = start;
+            fieldEnds[nFields++] = tab;
+            start = tab + 1;
+            tab = indexOf(line, start, end, VCFConstants.FIELD_SEPARATOR_CHAR);
+        }
+
+        if (nFields == maxFields) {
+            fieldEnds[nFields - 1] = end;
+        } else {
+            fieldStarts[nFields] = start;
+            fieldEnds[nFields++] = end;
+        }
+        return nFields;
+    }
+
+    private static int indexOf(final byte[] line, final int start, final int end, final char c) {
+        for (int i = start; i < end; i++) {
+            if (line[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private String getField(final byte[] line, final int field) {
+        return new String(line, fieldStarts[field], fieldEnds[field] - fieldStarts[field], StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * parse out a VCF line from bytes, as {@link #parseVCFLine(String[], boolean)} does from Strings
+     *
+     * @param nParts the number of columns in fieldStarts and fieldEnds
+     * @return a variant context object
+     */
+    private VariantContext parseVCFLine(final byte[] line, final int nParts) {
+        VariantContextBuilder builder = new VariantContextBuilder();
+        builder.source(getName());
+
+        lineNo++;
+
+        final String chr = byteStringCache.get(line, fieldStarts[0], fieldEnds[0]);
+        builder.chr(chr);
+        final int pos = parsePosition(line, fieldStarts[1], fieldEnds[1]);
+        builder.start(pos);
+
+        if ( fieldStarts[2] == fieldEnds[2] )
+            generateException("The VCF specification requires a valid ID field");
+        else if ( fieldEnds[2] - fieldStarts[2] == 1 && line[fieldStarts[2]] == VCFConstants.EMPTY_ID_FIELD.charAt(0) )
+            builder.noID();
+        else
+            builder.id(getField(line, 2));
+
+        final String ref = getField(line, 3).toUpperCase();
+        final String alts = getField(line, 4);
+        builder.log10PError(parseQual(line, fieldStarts[5], fieldEnds[5]));
+
+        final List<String> filters = parseFilters(byteStringCache.get(line, fieldStarts[6], fieldEnds[6]));
+        if ( filters != null ) {
+            builder.filters(new HashSet<>(filters));
+        }
+        final Map<String, Object> attrs = parseInfo(line, fieldStarts[7], fieldEnds[7]);
+        builder.attributes(attrs);
+
+        return finishVCFLine(builder, chr, pos, ref, alts, attrs,
+                nParts > NUM_STANDARD_FIELDS ? selectGenotypeColumns(line, fieldStarts[8], fieldEnds[8]) : null);
+    }
+
+    /**
+     * @return the FORMAT column and the columns of the samples to decode, without splitting the other columns, or
+     * null if no samples are decoded
+     */
+    private String selectGenotypeColumns(final String genotypeData) {
+        if ( sampleColumnsToDecode == null ) return genotypeData;
+        if ( sampleColumnsToDecode.length == 0 ) return null;
+
+        final StringBuilder selected = new StringBuilder();
+        int column = -1; // the FORMAT column precedes the samples
+        int next = 0;
+        int start = 0;
+        while ( start <= genotypeData.length() && next < sampleColumnsToDecode.length ) {
+            int end = genotypeData.indexOf(VCFConstants.FIELD_SEPARATOR_CHAR, start);
+            if ( end == -1 ) end = genotypeData.length();
+            if ( column == -1 ) {
+                selected.append(genotypeData, start, end);
+            } else if ( column == sampleColumnsToDecode[next] ) {
+                selected.append(VCFConstants.FIELD_SEPARATOR_CHAR).append(genotypeData, start, end);
+                next++;
+            }
+            column++;
+            start = end + 1;
+        }
+        return selected.toString();
+    }
+
+    /**
+     * as {@link #selectGenotypeColumns(String)}, for the genotype columns in line[start, end)
+     */
+    private String selectGenotypeColumns(final byte[] line, final int start, final int end) {
+        if ( sampleColumnsToDecode == null ) return new String(line, start, end - start, StandardCharsets.ISO_8859_1);
+        if ( sampleColumnsToDecode.length == 0 ) return null;
+
+        if ( genotypeBytes == null ) genotypeBytes = new byte[1024];
+        int length = 0;
+        int column = -1; // the FORMAT column precedes the samples
+        int next = 0;
+        int columnStart = start;
+        while ( columnStart <= end && next < sampleColumnsToDecode.length ) {
+            int columnEnd = indexOf(line, columnStart, end, VCFConstants.FIELD_SEPARATOR_CHAR);
+            if ( columnEnd == -1 ) columnEnd = end;
+            if ( column == -1 || column == sampleColumnsToDecode[next] ) {
+                // sample columns are copied with the tab that precedes them
+                final int copyStart = column == -1 ? columnStart : columnStart - 1;
+                final int copyLength = columnEnd - copyStart;
+                if ( length + copyLength > genotypeBytes.length )
+                    genotypeBytes = Arrays.copyOf(genotypeBytes, Math.max(2 * genotypeBytes.length, length + copyLength));
+                System.arraycopy(line, copyStart, genotypeBytes, length, copyLength);
+                length += copyLength;
+                if ( column != -1 ) next++;
+            }
+            column++;
+            columnStart = columnEnd + 1;
+        }
+        return new String(genotypeBytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * parse the start position from bytes, falling back to {@link Integer#parseInt(String)} for anything other than
+     * a short run of digits
+     */
+    private int parsePosition(final byte[] line, final int start, final int end) {
+        if (start < end && end - start <= 9) {
+            int pos = 0;
+            int i = start;
+            for (; i < end; i++) {
+                final int digit = line[i] - '0';
+                if (digit < 0 || digit > 9) break;
+                pos = pos * 10 + digit;
+            }
+            if (i == end) return pos;
+        }
+        final String posString = new String(line, start, end - start, StandardCharsets.ISO_8859_1);
+        try {
+            return Integer.parseInt(posString);
+        } catch (NumberFormatException e) {
+            generateException(posString + " is not a valid start position in the VCF format");
+        }
+        return -1;
+    }
+
+    /**
+     * parse out the qual value from bytes.  Unsigned decimals of up to 15 digits are parsed directly, since they are
+     * exactly the quotient of two exactly representable doubles; anything else goes through {@link #parseQual(String)}.
+     */
+    private static double parseQual(final byte[] line, final int start, final int end) {
+        long mantissa = 0;
+        int nDigits = 0;
+        int nFractionDigits = -1;
+        for (int i = start; i < end; i++) {
+            final byte b = line[i];
+            if (b >= '0' && b <= '9' && nDigits < POWERS_OF_TEN.length - 1) {
+                mantissa = mantissa * 10 + (b - '0');
+                nDigits++;
+                if (nFractionDigits >= 0) nFractionDigits++;
+            } else if (b == '.' && nFractionDigits < 0) {
+                nFractionDigits = 0;
+            } else {
+                return parseQual(new String(line, start, end - start, StandardCharsets.ISO_8859_1));
+            }
+        }
+        if (nDigits == 0) {
+            return parseQual(new String(line, start, end - start, StandardCharsets.ISO_8859_1));
+        }
+        final double qual = nFractionDigits > 0 ? mantissa / POWERS_OF_TEN[nFractionDigits] : mantissa;
+        return qual / -10.0;
+    }
+
+    /**
+     * parse out the info fields from bytes, as {@link #parseInfo(String)} does from a String
+     * @return a mapping of keys to objects
+     */
+    private Map<String, Object> parseInfo(final byte[] line, final int start, final int end) {
+        Map<String, Object> attributes = new HashMap<String, Object>();
+
+        if ( start == end )
+            generateException("The VCF specification requires a valid (non-zero length) info field");
+
+        if ( end - start != 1 || line[start] != VCFConstants.EMPTY_INFO_FIELD.charAt(0) ) {
+            if ( indexOf(line, start, end, '\t') != -1 || indexOf(line, start, end, ' ') != -1 )
+                generateException("The VCF specification does not allow for whitespace in the INFO field. Offending field value was \"" + new String(line, start, end - start, StandardCharsets.ISO_8859_1) + "\"");
+
+            int fieldStart = start;
+            while (true) {
+                int fieldEnd = indexOf(line, fieldStart, end, VCFConstants.INFO_FIELD_SEPARATOR_CHAR);
+                if (fieldEnd == -1) fieldEnd = end;
+
+                final String key;
+                Object value;
+
+                final int eqI = indexOf(line, fieldStart, fieldEnd, '=');
+                if ( eqI != -1 ) {
+                    key = byteStringCache.get(line, fieldStart, eqI);
+
+                    // split on the INFO field separator
+                    int valueEnd = indexOf(line, eqI + 1, fieldEnd, VCFConstants.INFO_FIELD_ARRAY_SEPARATOR_CHAR);
+                    if ( valueEnd == -1 ) {
+                        value = vcfTextTransformer.decodeText(new String(line, eqI + 1, fieldEnd - eqI - 1, StandardCharsets.ISO_8859_1));
+                        if ( isFlagSetToZero(key, value) ) {
+                            // deal with the case where a flag field has =0, such as DB=0, by skipping the add
+                            value = null;
+                        }
+                    } else {
+                        final List<String> infoValueSplit = new ArrayList<>();
+                        int valueStart = eqI + 1;
+                        while (true) {
+                            infoValueSplit.add(new String(line, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1));
+                            if (valueEnd == fieldEnd) break;
+                            valueStart = valueEnd + 1;
+                            valueEnd = indexOf(line, valueStart, fieldEnd, VCFConstants.INFO_FIELD_ARRAY_SEPARATOR_CHAR);
+                            if (valueEnd == -1) valueEnd = fieldEnd;
+                        }
+                        value = vcfTextTransformer.decodeText(infoValueSplit);
+                    }
+                } else {
+                    key = byteStringCache.get(line, fieldStart, fieldEnd);
+                    value = getInfoValueWithoutEquals(key);
+                }
+
+                if ( value != null ) {
+                    // this line ensures that key/value pairs that look like key=; are parsed correctly as MISSING
+                    if ( "".equals(value) ) value = VCFConstants.MISSING_VALUE_v4;
+
+                    attributes.put(key, value);
+                }
+
+                if (fieldEnd == end) break;
+                fieldStart = fieldEnd + 1;
+            }
+        }
+
+        return attributes;
+    }
+
     /**
      * get the name of this codec
      * @return our set name
@@ -528,8 +921,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                     List<String> infoValueSplit = ParsingUtils.split(valueString, VCFConstants.INFO_FIELD_ARRAY_SEPARATOR_CHAR);
                     if ( infoValueSplit.size() == 1 ) {
                         value = vcfTextTransformer.decodeText(infoValueSplit.get(0));
-                        final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
-                        if ( headerLine != null && headerLine.getType() == VCFHeaderLineType.Flag && value.equals("0") ) {
+                        if ( isFlagSetToZero(key, value) ) {
                             // deal with the case where a flag field has =0, such as DB=0, by skipping the add
                             continue;
                         }
@@ -538,18 +930,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                     }
                 } else {
                     key = infoFields.get(i);
-                    final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
-                    if ( headerLine != null && headerLine.getType() != VCFHeaderLineType.Flag ) {
-                        if ( GeneralUtils.DEBUG_MODE_ENABLED && ! warnedAboutNoEqualsForNonFlag ) {
-                            System.err.println("Found info key " + key + " without a = value, but the header says the field is of type "
-                                               + headerLine.getType() + " but this construct is only value for FLAG type fields");
-                            warnedAboutNoEqualsForNonFlag = true;
-                        }
-
-                        value = VCFConstants.MISSING_VALUE_v4;
-                    } else {
-                        value = true;
-                    }
+                    value = getInfoValueWithoutEquals(key);
                 }
 
                 // this line ensures that key/value pairs that look like key=; are parsed correctly as MISSING
@@ -562,6 +943,32 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return attributes;
     }
 
+    /**
+     * @return true if key is a flag field whose value is 0, such as DB=0, which should not be added
+     */
+    private boolean isFlagSetToZero(final String key, final Object value) {
+        final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
+        return headerLine != null && headerLine.getType() == VCFHeaderLineType.Flag && value.equals("0");
+    }
+
+    /**
+     * @return the value of an info field that has no = value: true for flags, otherwise missing
+     */
+    private Object getInfoValueWithoutEquals(final String key) {
+        final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
+        if ( headerLine != null && headerLine.getType() != VCFHeaderLineType.Flag ) {
+            if ( GeneralUtils.DEBUG_MODE_ENABLED && ! warnedAboutNoEqualsForNonFlag ) {
+                System.err.println("Found info key " + key + " without a = value, but the header says the field is of type "
+                                   + headerLine.getType() + " but this construct is only value for FLAG type fields");
+                warnedAboutNoEqualsForNonFlag = true;
+            }
+
+            return VCFConstants.MISSING_VALUE_v4;
+        } else {
+            return true;
+        }
+    }
+
     /**
      * create a an allele from an index and an array of alleles
      * @param index the index
@@ -636,9 +1043,12 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
      */
     protected static List<Allele> parseAlleles(String ref, String alts, int lineNo) {
         List<Allele> alleles = new ArrayList<Allele>(2); // we are almost always biallelic
-        // ref
-        checkAllele(ref, true, lineNo);
-        Allele refAllele = Allele.create(ref, true);
+        // ref.  Canonical alleles are valid by construction, so only the others need to be checked
+        Allele refAllele = ref == null ? null : Allele.getCanonicalAllele(ref, 0, ref.length(), true);
+        if ( refAllele == null ) {
+            checkAllele(ref, true, lineNo);
+            refAllele = Allele.create(ref, true);
+        }
         alleles.add(refAllele);
 
         if ( alts.indexOf(',') == -1 ) // only 1 alternatives, don't call string split
@@ -703,9 +1113,11 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
      * @param lineNo  the line number for this record
      */
     private static void parseSingleAltAllele(List<Allele> alleles, String alt, int lineNo) {
-        checkAllele(alt, false, lineNo);
-
-        Allele allele = Allele.create(alt, false);
+        Allele allele = Allele.getCanonicalAllele(alt, 0, alt.length(), false);
+        if ( allele == null ) {
+            checkAllele(alt, false, lineNo);
+            allele = Allele.create(alt, false);
+        }
         if ( ! allele.isNoCall() )
             alleles.add(allele);
     }
@@ -751,6 +1163,19 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                                                               final List<Allele> alleles,
                                                               final String chr,
                                                               final int pos) {
+        return createGenotypeMap(str, alleles, chr, pos, useColumnarGenotypes);
+    }
+
+    /**
+     * create a genotype map, either as a list of genotypes or as {@link ColumnarGenotypesContext.Columns}
+     *
+     * @param useColumnarGenotypes must match the kind of LazyGenotypesContext the data is handed to
+     */
+    private LazyGenotypesContext.LazyData createGenotypeMap(final String str,
+                                                            final List<Allele> alleles,
+                                                            final String chr,
+                                                            final int pos,
+                                                            final boolean useColumnarGenotypes) {
         if (genotypeParts == null)
             genotypeParts = new String[header.getColumnCount() - NUM_STANDARD_FIELDS];
 
@@ -758,7 +1183,8 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         if ( nParts != genotypeParts.length )
             generateException("there are " + (nParts-1) + " genotypes while the header requires that " + (genotypeParts.length-1) + " genotypes be present for all records at " + chr + ":" + pos, lineNo);
 
-        ArrayList<Genotype> genotypes = new ArrayList<Genotype>(nParts);
+        final ArrayList<Genotype> genotypes = useColumnarGenotypes ? null : new ArrayList<Genotype>(nParts);
+        final ColumnarGenotypesContext.Columns columns = useColumnarGenotypes ? new ColumnarGenotypesContext.Columns(nParts - 1, alleles) : null;
 
         // get the format keys
         List<String> genotypeKeys = ParsingUtils.split(genotypeParts[0], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
@@ -793,6 +1219,8 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
                     // todo -- all of these on the fly parsing of the missing value should be static constants
                     if (gtKey.equals(VCFConstants.GENOTYPE_KEY)) {
                         genotypeAlleleLocation = i;
+                    } else if ( formatFieldsToDecode != null && !formatFieldsToDecode.contains(gtKey) ) {
+                        // the field was not requested
                     } else if ( missing ) {
                         // if its truly missing (there no provided value) skip adding it to the attributes
                     } else if (gtKey.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
@@ -831,18 +1259,24 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             if ( genotypeAlleleLocation > 0 )
                 generateException("Saw GT field at position " + genotypeAlleleLocation + ", but it must be at the first position for genotypes when present");
 
-            final List<Allele> GTalleles = (genotypeAlleleLocation == -1 ? new ArrayList<Allele>(0) : parseGenotypeAlleles(genotypeValues.get(genotypeAlleleLocation), alleles, alleleMap));
+            final boolean decodeGT = genotypeAlleleLocation != -1 && ( formatFieldsToDecode == null || formatFieldsToDecode.contains(VCFConstants.GENOTYPE_KEY) );
+            final List<Allele> GTalleles = (!decodeGT ? new ArrayList<Allele>(0) : parseGenotypeAlleles(genotypeValues.get(genotypeAlleleLocation), alleles, alleleMap));
             gb.alleles(GTalleles);
-            gb.phased(genotypeAlleleLocation != -1 && genotypeValues.get(genotypeAlleleLocation).indexOf(VCFConstants.PHASED) != -1);
+            gb.phased(decodeGT && genotypeValues.get(genotypeAlleleLocation).indexOf(VCFConstants.PHASED) != -1);
 
             // add it to the list
             try {
-                genotypes.add(gb.make());
+                if ( columns != null )
+                    columns.add(gb.make());
+                else
+                    genotypes.add(gb.make());
             } catch (TribbleException e) {
                 throw new TribbleException.InternalCodecException(e.getMessage() + ", at position " + chr+":"+pos);
             }
         }
 
+        if ( columns != null )
+            return new LazyGenotypesContext.LazyData(columns, header.getSampleNamesInOrder(), header.getSampleNameToOffset());
         return new LazyGenotypesContext.LazyData(genotypes, header.getSampleNamesInOrder(), header.getSampleNameToOffset());
     }
 
@@ -879,6 +1313,34 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         this.remappedSampleName = remappedSampleName;
     }
 
+    /**
+     * Decode the genotypes of only some samples.  Must be called before the header is read.  The header read by this
+     * codec and the records it decodes then hold only these samples, in file order, and the columns of the other
+     * samples are skipped without being split or parsed.
+     *
+     * @param sampleNames the samples to decode, which must all be in the header, or null to decode all samples
+     */
+    public void setSamplesToDecode( final Collection<String> sampleNames ) {
+        this.samplesToDecode = sampleNames == null ? null : new HashSet<>(sampleNames);
+    }
+
+    /**
+     * Decode only some FORMAT fields of the genotypes, e.g. only GT.  The other fields are absent from the genotypes.
+     *
+     * @param formatFields the FORMAT keys of the fields to decode, or null to decode all fields
+     */
+    public void setFormatFieldsToDecode( final Collection<String> formatFields ) {
+        this.formatFieldsToDecode = formatFields == null ? null : new HashSet<>(formatFields);
+    }
+
+    /**
+     * Decode genotypes into a {@link ColumnarGenotypesContext}, which stores them in primitive arrays and only creates
+     * Genotype objects for the samples that are accessed.  Defaults to {@link Defaults#COLUMNAR_GENOTYPES}.
+     */
+    public void setUseColumnarGenotypes( final boolean useColumnarGenotypes ) {
+        this.useColumnarGenotypes = useColumnarGenotypes;
+    }
+
     protected void generateException(String message) {
         // throw new TribbleException(String.format("The provided VCF file is malformed at approximately line number %d: %s", lineNo, message));
     }
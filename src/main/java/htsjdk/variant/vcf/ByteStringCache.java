@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.vcf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns Strings decoded from byte ranges, so that repeated keys (contigs, INFO keys, filters) can be looked up
+ * from a line's bytes without first creating a String for them.  Strings are decoded as ISO-8859-1, as
+ * {@link htsjdk.tribble.readers.AsciiLineReader} decodes lines.
+ *
+ * Note that this class is not thread-safe.
+ */
+final class ByteStringCache {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[][] keys = new byte[INITIAL_CAPACITY][];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * @return the cached String for bytes[start, end), creating and caching it if this is the first time it is seen
+     */
+    String get(final byte[] bytes, final int start, final int end) {
+        final int hash = hash(bytes, start, end);
+        final int mask = keys.length - 1;
+        int i = hash & mask;
+        for (byte[] key = keys[i]; key != null; i = (i + 1) & mask, key = keys[i]) {
+            if (hashes[i] == hash && equals(key, bytes, start, end)) {
+                return values[i];
+            }
+        }
+        final String value = new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        insert(i, Arrays.copyOfRange(bytes, start, end), hash, value);
+        return value;
+    }
+
+    /**
+     * Add a String to the cache, so that later lookups of its bytes return this instance.
+     */
+    void put(final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        final int hash = hash(bytes, 0, bytes.length);
+        final int mask = keys.length - 1;
+        int i = hash & mask;
+        for (byte[] key = keys[i]; key != null; i = (i + 1) & mask, key = keys[i]) {
+            if (hashes[i] == hash && equals(key, bytes, 0, bytes.length)) {
+                values[i] = value;
+                return;
+            }
+        }
+        insert(i, bytes, hash, value);
+    }
+
+    private void insert(final int slot, final byte[] key, final int hash, final String value) {
+        keys[slot] = key;
+        hashes[slot] = hash;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    private void resize() {
+        final byte[][] oldKeys = keys;
+        final int[] oldHashes = hashes;
+        final String[] oldValues = values;
+        keys = new byte[oldKeys.length * 2][];
+        hashes = new int[keys.length];
+        values = new String[keys.length];
+        final int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                hashes[i] = oldHashes[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int hash(final byte[] bytes, final int start, final int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the high bits, since the table is indexed by the low bits
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(final byte[] key, final byte[] bytes, final int start, final int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.vcf;
+
+import htsjdk.samtools.Defaults;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.ParallelBlockCompressedInputStream;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.ThreadPoolUtil;
+import htsjdk.tribble.TribbleException;
+import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.readers.PositionalBufferedStream;
+import htsjdk.variant.variantcontext.VariantContext;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Iterator over all the records of a VCF file that decodes them on several threads, and returns them in file order.
+ *
+ * The reading thread reads the (decompressed) text in chunks of about {@link #CHUNK_SIZE} bytes, cut at the end of a
+ * line, and hands each chunk to a worker, which decodes its lines with a {@link VCFCodec} of its own.  A bounded
+ * window of chunks is kept in flight.  Block compressed files are also inflated in parallel, with a
+ * {@link ParallelBlockCompressedInputStream}.
+ *
+ * Genotypes are decoded lazily, as they are by {@link VCFCodec}, so decoding them is left to the consumer.
+ *
+ * Note that this class is not thread-safe.
+ *
+ * @see htsjdk.samtools.Defaults#VCF_DECODE_THREADS
+ */
+public class ParallelVCFIterator implements CloseableIterator<VariantContext> {
+    private static final ExecutorService decodeThreadpool = ThreadPoolUtil.newDaemonCachedThreadPool("ParallelVCFIterator-decode-");
+
+    /** Approximate size of the chunks of text decoded by each task.  Chunks are extended to hold at least one line. */
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private final String source;
+    private final PositionalBufferedStream inputStream;
+    private final VCFHeader header;
+    /** The codec that read the header, whose state is shared with the codecs of the workers. */
+    private final VCFCodec headerCodec;
+    private final int decodeThreads;
+
+    /** Chunks handed to the workers, in file order. */
+    private final ArrayDeque<Future<List<VariantContext>>> inFlight = new ArrayDeque<>();
+    /** The start of a line that did not fit in the last chunk read. */
+    private byte[] carry = new byte[0];
+    private int carryLength = 0;
+    private boolean endOfInput = false;
+    private Iterator<VariantContext> records = Collections.emptyIterator();
+
+    /**
+     * @param path VCF file, which may be block compressed or gzipped
+     * @param decodeThreads number of chunks to decode concurrently
+     */
+    public ParallelVCFIterator(final Path path, final int decodeThreads) throws IOException {
+        this(path, decodeThreads, null, null);
+    }
+
+    /**
+     * @param path VCF file, which may be block compressed or gzipped
+     * @param decodeThreads number of chunks to decode concurrently
+     * @param samplesToDecode samples whose genotypes are decoded, or null for all samples
+     * @param formatFieldsToDecode FORMAT fields that are decoded, or null for all fields
+     * @see AbstractVCFCodec#setSamplesToDecode(Collection)
+     * @see AbstractVCFCodec#setFormatFieldsToDecode(Collection)
+     */
+    public ParallelVCFIterator(final Path path, final int decodeThreads,
+                               final Collection<String> samplesToDecode, final Collection<String> formatFieldsToDecode) throws IOException {
+        if (decodeThreads < 1) {
+            throw new IllegalArgumentException("Invalid number of decode threads: " + decodeThreads);
+        }
+        this.source = path.toUri().toString();
+        this.decodeThreads = decodeThreads;
+        this.inputStream = new PositionalBufferedStream(openDecompressed(path, decodeThreads));
+        try {
+            this.headerCodec = new VCFCodec();
+            this.headerCodec.setSamplesToDecode(samplesToDecode);
+            this.headerCodec.setFormatFieldsToDecode(formatFieldsToDecode);
+            this.header = (VCFHeader) headerCodec.readActualHeader(new VCFHeaderLineIterator(AsciiLineReader.from(this.inputStream)));
+        } catch (final RuntimeException e) {
+            CloserUtil.close(this.inputStream);
+            throw e;
+        }
+    }
+
+    private static InputStream openDecompressed(final Path path, final int decodeThreads) throws IOException {
+        final InputStream stream = new BufferedInputStream(Files.newInputStream(path), Defaults.NON_ZERO_BUFFER_SIZE);
+        if (IOUtil.isBlockCompressed(path)) {
+            return new ParallelBlockCompressedInputStream(stream, decodeThreads);
+        } else if (IOUtil.hasGzipFileExtension(path)) {
+            return new GZIPInputStream(stream, Defaults.NON_ZERO_BUFFER_SIZE);
+        } else {
+            return stream;
+        }
+    }
+
+    /**
+     * @return the header of the file, as read by {@link VCFCodec#readActualHeader}
+     */
+    public VCFHeader getHeader() {
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!records.hasNext()) {
+            fillDecodeWindow();
+            final Future<List<VariantContext>> chunk = inFlight.poll();
+            if (chunk == null) {
+                return false;
+            }
+            records = await(chunk).iterator();
+            // keep the workers busy while the caller consumes this chunk
+            fillDecodeWindow();
+        }
+        return true;
+    }
+
+    @Override
+    public VariantContext next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return records.next();
+    }
+
+    @Override
+    public void close() {
+        for (final Future<List<VariantContext>> chunk : inFlight) {
+            chunk.cancel(false);
+        }
+        inFlight.clear();
+        records = Collections.emptyIterator();
+        endOfInput = true;
+        CloserUtil.close(inputStream);
+    }
+
+    /**
+     * Reads chunks and hands them to the workers until there are twice as many chunks in flight as decode threads,
+     * so that the workers have the next chunks to hand while the caller consumes the oldest one.
+     */
+    private void fillDecodeWindow() {
+        while (!endOfInput && inFlight.size() < 2 * decodeThreads) {
+            final ChunkDecodeTask task = readChunk();
+            if (task != null) {
+                inFlight.add(decodeThreadpool.submit(task));
+            }
+        }
+    }
+
+    /**
+     * Reads the next chunk of whole lines, keeping any trailing partial line for the next chunk.
+     *
+     * @return the task that decodes the chunk, or null if there is no more input
+     */
+    private ChunkDecodeTask readChunk() {
+        byte[] chunk = new byte[Math.max(CHUNK_SIZE, 2 * carryLength)];
+        System.arraycopy(carry, 0, chunk, 0, carryLength);
+        int length = carryLength;
+        int searchFrom = carryLength;
+        try {
+            while (true) {
+                final int n = inputStream.read(chunk, length, chunk.length - length);
+                if (n < 0) {
+                    endOfInput = true;
+                    carryLength = 0;
+                    return length == 0 ? null : new ChunkDecodeTask(chunk, length);
+                }
+                length += n;
+                if (length == chunk.length) {
+                    for (int i = length - 1; i >= searchFrom; i--) {
+                        if (chunk[i] == '\n') {
+                            carryLength = length - (i + 1);
+                            if (carry.length < carryLength) {
+                                carry = new byte[Math.max(carryLength, 2 * carry.length)];
+                            }
+                            System.arraycopy(chunk, i + 1, carry, 0, carryLength);
+                            return new ChunkDecodeTask(chunk, i + 1);
+                        }
+                    }
+                    // a line longer than the chunk
+                    searchFrom = length;
+                    final byte[] larger = new byte[2 * chunk.length];
+                    System.arraycopy(chunk, 0, larger, 0, length);
+                    chunk = larger;
+                }
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading " + source, e);
+        }
+    }
+
+    private List<VariantContext> await(final Future<List<VariantContext>> chunk) {
+        try {
+            return ThreadPoolUtil.awaitInterruptibly(chunk);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TribbleException("Interrupted while decoding VCF records from " + source, e);
+        } catch (final TribbleException e) {
+            e.setSource(source);
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes the lines of a chunk.  Each task has a codec of its own, since codecs are not safe for concurrent use,
+     * and the records' lazy genotypes are later decoded by the codec that read them.
+     */
+    private class ChunkDecodeTask implements Callable<List<VariantContext>> {
+        private final byte[] chunk;
+        private final int length;
+
+        ChunkDecodeTask(final byte[] chunk, final int length) {
+            this.chunk = chunk;
+            this.length = length;
+        }
+
+        @Override
+        public List<VariantContext> call() {
+            final VCFCodec codec = new VCFCodec();
+            // the header was repaired when it was read
+            codec.disableOnTheFlyModifications();
+            codec.copyHeaderState(headerCodec);
+
+            final List<VariantContext> records = new ArrayList<>();
+            int lineStart = 0;
+            while (lineStart < length) {
+                // lines end with \n, \r or \r\n, as for AsciiLineReader
+                int lineEnd = lineStart;
+                while (lineEnd < length && chunk[lineEnd] != '\n' && chunk[lineEnd] != '\r') {
+                    lineEnd++;
+                }
+                final VariantContext vc = codec.decode(chunk, lineStart, lineEnd - lineStart);
+                if (vc != null) {
+                    records.add(vc);
+                }
+                lineStart = lineEnd + 1;
+                if (lineEnd < length - 1 && chunk[lineEnd] == '\r' && chunk[lineEnd + 1] == '\n') {
+                    lineStart++;
+                }
+            }
+            return records;
+        }
+    }
+}
@@ -11,16 +11,21 @@ import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.writer.IntGenotypeFieldAccessors;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Array;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Functions specific to encoding VCF records.
+ *
+ * Note that this class is not thread-safe.
  */
 public class VCFEncoder {
 
@@ -39,6 +44,11 @@ public class VCFEncoder {
 
     private boolean outputTrailingFormatFields = false;
 
+    /** Reused to encode every record, as bytes for {@link #writeLine} and as characters for the String APIs. */
+    private final ByteLineBuffer byteLineBuffer = new ByteLineBuffer();
+    private final CharLineBuffer charLineBuffer = new CharLineBuffer();
+    private final List<String> infoKeys = new ArrayList<>();
+
     /**
      * Prepare a VCFEncoder that will encode records appropriate to the given VCF header, optionally
      * allowing missing fields in the header.
@@ -77,13 +87,8 @@ public class VCFEncoder {
      * @return the VCF line
      */
     public String encode(final VariantContext context) {
-        try {
-            final StringBuilder stringBuilder = new StringBuilder(1000);
-            write(stringBuilder, context);
-            return stringBuilder.toString();
-        } catch (final IOException error) {
-            throw new RuntimeIOException("Cannot encode variant", error);
-        }
+        encodeLine(charLineBuffer, context);
+        return charLineBuffer.toString();
     }
 
 
@@ -99,80 +104,102 @@ public class VCFEncoder {
      * @throws IOException
      */
     public void write(final Appendable vcfOutput, final VariantContext context) throws IOException {
+        encodeLine(charLineBuffer, context);
+        charLineBuffer.appendTo(vcfOutput);
+    }
+
+    /**
+     * encodes a {@link VariantContext} as a VCF line, including the terminating newline, and writes it to an
+     * {@link OutputStream} in a single call
+     *
+     * The line is built as {@link #VCF_CHARSET} bytes in a buffer that is reused for every record, and numbers are
+     * formatted in place, so unlike {@link #write(Appendable, VariantContext)} the line need not be converted to
+     * bytes.  This makes it much cheaper for records with many samples, e.g. when writing to a
+     * {@link htsjdk.samtools.util.BlockCompressedOutputStream}.  Characters that are not in {@link #VCF_CHARSET} are
+     * replaced with '?', as they would be by a writer in that charset.
+     *
+     * @param vcfOutput the stream to write to
+     * @param context the variant
+     * @throws IOException
+     */
+    public void writeLine(final OutputStream vcfOutput, final VariantContext context) throws IOException {
+        encodeLine(byteLineBuffer, context);
+        byteLineBuffer.append('\n');
+        vcfOutput.write(byteLineBuffer.bytes, 0, byteLineBuffer.length);
+    }
+
+    /**
+     * Encodes a {@link VariantContext} as a VCF line, without the terminating newline, into a line buffer.
+     */
+    private void encodeLine(final LineBuffer line, final VariantContext context) {
         if (this.header == null) {
             throw new NullPointerException("The header field must be set on the VCFEncoder before encoding records.");
         }
+        line.length = 0;
+
         // CHROM
-        vcfOutput.append(context.getContig()).append(VCFConstants.FIELD_SEPARATOR)
-                // POS
-                .append(String.valueOf(context.getStart())).append(VCFConstants.FIELD_SEPARATOR)
-                // ID
-                .append(context.getID()).append(VCFConstants.FIELD_SEPARATOR)
-                // REF
-                .append(context.getReference().getDisplayString()).append(VCFConstants.FIELD_SEPARATOR);
+        line.append(context.getContig());
+        line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
+        // POS
+        line.appendNumber(context.getStart());
+        line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
+        // ID
+        line.append(context.getID());
+        line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
+        // REF
+        line.append(context.getReference().getDisplayBases());
+        line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
 
         // ALT
         if ( context.isVariant() ) {
-            Allele altAllele = context.getAlternateAllele(0);
-            String alt = altAllele.getDisplayString();
-            vcfOutput.append(alt);
-
-            for (int i = 1; i < context.getAlternateAlleles().size(); i++) {
-                altAllele = context.getAlternateAllele(i);
-                alt = altAllele.getDisplayString();
-                vcfOutput.append(',');
-                vcfOutput.append(alt);
+            final List<Allele> alleles = context.getAlleles();
+            for (int i = 1; i < alleles.size(); i++) {
+                if (i > 1) {
+                    line.append(',');
+                }
+                line.append(alleles.get(i).getDisplayBases());
             }
         } else {
-            vcfOutput.append(VCFConstants.EMPTY_ALTERNATE_ALLELE_FIELD);
+            line.append(VCFConstants.EMPTY_ALTERNATE_ALLELE_FIELD);
         }
-
-        vcfOutput.append(VCFConstants.FIELD_SEPARATOR);
+        line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
 
         // QUAL
         if ( !context.hasLog10PError()) {
-            vcfOutput.append(VCFConstants.MISSING_VALUE_v4);
+            line.append(VCFConstants.MISSING_VALUE_v4);
         } else {
-            vcfOutput.append(formatQualValue(context.getPhredScaledQual()));
+            appendQualValue(line, context.getPhredScaledQual());
         }
-        vcfOutput.append(VCFConstants.FIELD_SEPARATOR)
-                // FILTER
-                .append(getFilterString(context)).append(VCFConstants.FIELD_SEPARATOR);
+        line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
 
-        // INFO
-        final Map<String, String> infoFields = new TreeMap<>();
-        for (final Map.Entry<String, Object> field : context.getAttributes().entrySet()) {
-            if (!this.header.hasInfoLine(field.getKey())) {
-                fieldIsMissingFromHeaderError(context, field.getKey(), "INFO");
-            }
+        // FILTER
+        line.append(getFilterString(context));
+        line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
 
-            final String outputValue = formatVCFField(field.getValue());
-            if (outputValue != null) {
-                infoFields.put(field.getKey(), outputValue);
-            }
-        }
-        writeInfoString(infoFields, vcfOutput);
+        // INFO
+        appendInfo(line, context);
 
         // FORMAT
         final GenotypesContext gc = context.getGenotypes();
         if (gc.isLazyWithData() && ((LazyGenotypesContext) gc).getUnparsedGenotypeData() instanceof String) {
-            vcfOutput.append(VCFConstants.FIELD_SEPARATOR);
-            vcfOutput.append(((LazyGenotypesContext) gc).getUnparsedGenotypeData().toString());
+            line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
+            line.append(((LazyGenotypesContext) gc).getUnparsedGenotypeData().toString());
         } else {
             final List<String> genotypeAttributeKeys = context.calcVCFGenotypeKeys(this.header);
             if ( !genotypeAttributeKeys.isEmpty()) {
-                for (final String format : genotypeAttributeKeys) {
+                line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
+                for (int i = 0; i < genotypeAttributeKeys.size(); i++) {
+                    final String format = genotypeAttributeKeys.get(i);
                     if (!this.header.hasFormatLine(format)) {
                         fieldIsMissingFromHeaderError(context, format, "FORMAT");
                     }
+                    if (i > 0) {
+                        line.append(VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
+                    }
+                    line.appendKey(format);
                 }
-                final String genotypeFormatString = ParsingUtils.join(VCFConstants.GENOTYPE_FIELD_SEPARATOR, genotypeAttributeKeys);
 
-                vcfOutput.append(VCFConstants.FIELD_SEPARATOR);
-                vcfOutput.append(genotypeFormatString);
-
-                final Map<Allele, String> alleleStrings = buildAlleleStrings(context);
-                appendGenotypeData(context, alleleStrings, genotypeAttributeKeys, vcfOutput);
+                appendGenotypeData(line, context, null, genotypeAttributeKeys);
             }
         }
     }
@@ -199,8 +226,16 @@ public class VCFEncoder {
         }
     }
 
+    private static void appendQualValue(final LineBuffer line, final double qual) {
+        if (!appendFixed(line, qual, 2)) {
+            line.append(formatQualValue(qual));
+        } else if (line.endsWith(QUAL_FORMAT_EXTENSION_TO_TRIM)) {
+            line.length -= QUAL_FORMAT_EXTENSION_TO_TRIM.length();
+        }
+    }
+
     private static String formatQualValue(final double qual) {
-        String s = String.format(QUAL_FORMAT_STRING, qual);
+        String s = String.format(Locale.ROOT, QUAL_FORMAT_STRING, qual);
         if (s.endsWith(QUAL_FORMAT_EXTENSION_TO_TRIM)) {
             s = s.substring(0, s.length() - QUAL_FORMAT_EXTENSION_TO_TRIM.length());
         }
@@ -273,7 +308,108 @@ public class VCFEncoder {
             format = "%.2f";
         }
 
-        return String.format(format, d);
+        return String.format(Locale.ROOT, format, d);
+    }
+
+    /**
+     * Appends d as {@link #formatVCFDouble(double)} would format it, without creating a String unless the rounding of
+     * its last digit is in doubt
+     */
+    private static void appendVCFDouble(final LineBuffer line, final double d) {
+        if (d < 1) {
+            if (d < 0.01) {
+                line.append(formatVCFDouble(d));
+            } else if (!appendFixed(line, d, 3)) {
+                line.append(formatVCFDouble(d));
+            }
+        } else if (!appendFixed(line, d, 2)) {
+            line.append(formatVCFDouble(d));
+        }
+    }
+
+    /**
+     * Appends d rounded half up to the given number of decimals, as String.format("%.2f") or "%.3f" does.  That rounds
+     * the shortest decimal representation of d, which only differs from rounding d * 10^decimals when the latter is
+     * close to a tie, so those values are left to String.format, as are large and negative values.
+     *
+     * @return false, with nothing appended, if d was not formatted
+     */
+    private static boolean appendFixed(final LineBuffer line, final double d, final int decimals) {
+        if (!(d >= 0 && d < 1e7)) {
+            return false;
+        }
+        final long scale = decimals == 2 ? 100 : 1000;
+        final double scaled = d * scale;
+        final double floor = Math.floor(scaled);
+        final double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < 1e-3) {
+            return false;
+        }
+        final long units = (long) floor + (fraction > 0.5 ? 1 : 0);
+        line.appendNumber(units / scale);
+        line.append('.');
+        long remainder = units % scale;
+        for (long divisor = scale / 10; divisor > 0; divisor /= 10) {
+            line.append((char) ('0' + remainder / divisor));
+            remainder %= divisor;
+        }
+        return true;
+    }
+
+    /**
+     * Appends val as {@link #formatVCFField(Object)} would format it, except that a false Boolean, which is not written,
+     * must be handled by the caller
+     */
+    @SuppressWarnings("rawtypes")
+    private static void appendVCFField(final LineBuffer line, final Object val) {
+        if (val == null) {
+            line.append(VCFConstants.MISSING_VALUE_v4);
+        } else if (val instanceof String) {
+            line.append((String) val);
+        } else if (val instanceof Integer || val instanceof Long || val instanceof Short || val instanceof Byte) {
+            line.appendNumber(((Number) val).longValue());
+        } else if (val instanceof Double) {
+            appendVCFDouble(line, (Double) val);
+        } else if (val instanceof Boolean) {
+            if (!(Boolean) val) {
+                line.append("null");
+            }
+        } else if (val instanceof List) {
+            final List list = (List) val;
+            if (list.isEmpty()) {
+                line.append(VCFConstants.MISSING_VALUE_v4);
+            }
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendVCFField(line, list.get(i));
+            }
+        } else if (val instanceof int[]) {
+            final int[] values = (int[]) val;
+            if (values.length == 0) {
+                line.append(VCFConstants.MISSING_VALUE_v4);
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.appendNumber(values[i]);
+            }
+        } else if (val.getClass().isArray()) {
+            final int length = Array.getLength(val);
+            if (length == 0) {
+                line.append(VCFConstants.MISSING_VALUE_v4);
+            }
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendVCFField(line, Array.get(val, i));
+            }
+        } else {
+            line.append(val.toString());
+        }
     }
 
     static int countOccurrences(final char c, final String s) {
@@ -293,125 +429,139 @@ public class VCFEncoder {
      * Add the genotype data
      */
     public void addGenotypeData(final VariantContext vc, final Map<Allele, String> alleleMap, final List<String> genotypeFormatKeys, final StringBuilder builder) {
+        final CharLineBuffer line = this.charLineBuffer;
+        line.length = 0;
+        appendGenotypeData(line, vc, alleleMap, genotypeFormatKeys);
         try {
-            appendGenotypeData(vc,alleleMap,genotypeFormatKeys,builder);
+            line.appendTo(builder);
         } catch (final IOException err) {
             throw new RuntimeIOException("addGenotypeData failed",err);
         }
     }
 
     /**
-     * Add the genotype Data to a java.lang.Appendable
-     * @param vc the variant
-     * @param alleleMap
-     * @param genotypeFormatKeys
-     * @param vcfoutput VCF output
-     * @throws IOException
+     * Add the genotype data to a {@link LineBuffer}
+     * @param alleleMap the encodings of the alleles, or null to encode them by their index in the variant's alleles
      */
-    private void appendGenotypeData(final VariantContext vc, final Map<Allele, String> alleleMap, final List<String> genotypeFormatKeys, final Appendable vcfoutput) throws IOException {final int ploidy = vc.getMaxPloidy(2);
+    private void appendGenotypeData(final LineBuffer line, final VariantContext vc, final Map<Allele, String> alleleMap, final List<String> genotypeFormatKeys) {
+        final int ploidy = vc.getMaxPloidy(2);
+        final List<Allele> alleles = vc.getAlleles();
+        final boolean hasGT = genotypeFormatKeys.contains(VCFConstants.GENOTYPE_KEY);
+        final GenotypesContext genotypes = vc.getGenotypes();
 
+        int sampleIndex = 0;
         for (final String sample : this.header.getGenotypeSamples()) {
-            vcfoutput.append(VCFConstants.FIELD_SEPARATOR);
+            line.append(VCFConstants.FIELD_SEPARATOR_CHAR);
 
-            Genotype g = vc.getGenotype(sample);
+            // genotypes are usually in the order of the header, which saves building the map of sample names
+            Genotype g = sampleIndex < genotypes.size() ? genotypes.get(sampleIndex) : null;
+            sampleIndex++;
+            if (g == null || !g.getSampleName().equals(sample)) {
+                g = vc.getGenotype(sample);
+            }
             if (g == null) {
                 g = GenotypeBuilder.createMissing(sample, ploidy);
             }
 
-            final List<String> attrs = new ArrayList<>(genotypeFormatKeys.size());
+            // the end of the last field that is kept when trailing missing values are stripped off
+            int keptLength = line.length;
+            boolean isFirstAttribute = true;
             for (final String field : genotypeFormatKeys) {
                 if (field.equals(VCFConstants.GENOTYPE_KEY)) {
                     if (!g.isAvailable()) {
                         throw new IllegalStateException("GTs cannot be missing for some samples if they are available for others in the record");
                     }
 
-                    writeAllele(g.getAllele(0), alleleMap, vcfoutput);
+                    appendAllele(line, g.getAllele(0), alleles, alleleMap);
                     for (int i = 1; i < g.getPloidy(); i++) {
-                        vcfoutput.append(g.isPhased() ? VCFConstants.PHASED : VCFConstants.UNPHASED);
-                        writeAllele(g.getAllele(i), alleleMap, vcfoutput);
+                        line.append(g.isPhased() ? VCFConstants.PHASED : VCFConstants.UNPHASED);
+                        appendAllele(line, g.getAllele(i), alleles, alleleMap);
                     }
+                    keptLength = line.length;
                     continue;
+                }
 
+                final int fieldStart = line.length;
+                if (!isFirstAttribute || hasGT) {
+                    line.append(VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
+                }
+                final int valueStart = line.length;
+                if (field.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
+                    line.append(g.isFiltered() ? g.getFilters() : VCFConstants.PASSES_FILTERS_v4);
                 } else {
-                    final String outputValue;
-                    if (field.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
-                        outputValue = g.isFiltered() ? g.getFilters() : VCFConstants.PASSES_FILTERS_v4;
-                    } else {
-                        final IntGenotypeFieldAccessors.Accessor accessor = GENOTYPE_FIELD_ACCESSORS.getAccessor(field);
-                        if (accessor != null) {
-                            final int[] intValues = accessor.getValues(g);
-                            if (intValues == null) {
-                                outputValue = VCFConstants.MISSING_VALUE_v4;
-                            } else if (intValues.length == 1) { // fast path
-                                outputValue = Integer.toString(intValues[0]);
-                            } else {
-                                final StringBuilder sb = new StringBuilder();
-                                sb.append(intValues[0]);
-                                for (int i = 1; i < intValues.length; i++) {
-                                    sb.append(',');
-                                    sb.append(intValues[i]);
-                                }
-                                outputValue = sb.toString();
-                            }
+                    final IntGenotypeFieldAccessors.Accessor accessor = GENOTYPE_FIELD_ACCESSORS.getAccessor(field);
+                    if (accessor != null) {
+                        final int[] intValues = accessor.getValues(g);
+                        if (intValues == null) {
+                            line.append(VCFConstants.MISSING_VALUE_v4);
                         } else {
-                            Object val = g.hasExtendedAttribute(field) ? g.getExtendedAttribute(field) : VCFConstants.MISSING_VALUE_v4;
-                            outputValue = formatVCFField(val);
+                            line.appendNumber(intValues[0]);
+                            for (int i = 1; i < intValues.length; i++) {
+                                line.append(',');
+                                line.appendNumber(intValues[i]);
+                            }
                         }
-                    }
-
-                    if (outputValue != null) {
-                        attrs.add(outputValue);
-                    }
-                }
-            }
-
-            // strip off trailing missing values
-            if (!outputTrailingFormatFields) {
-                for (int i = attrs.size() - 1; i >= 0; i--) {
-                    if (isMissingValue(attrs.get(i))) {
-                        attrs.remove(i);
                     } else {
-                        break;
+                        final Object val = g.hasExtendedAttribute(field) ? g.getExtendedAttribute(field) : VCFConstants.MISSING_VALUE_v4;
+                        if (Boolean.FALSE.equals(val)) {
+                            line.length = fieldStart;
+                            continue;
+                        }
+                        appendVCFField(line, val);
                     }
                 }
-            }
+                isFirstAttribute = false;
 
-            for (int i = 0; i < attrs.size(); i++) {
-                if ( i > 0 || genotypeFormatKeys.contains(VCFConstants.GENOTYPE_KEY)) {
-                    vcfoutput.append(VCFConstants.GENOTYPE_FIELD_SEPARATOR);
+                if (outputTrailingFormatFields || !line.isMissingValue(valueStart)) {
+                    keptLength = line.length;
                 }
-                vcfoutput.append(attrs.get(i));
             }
+
+            // strip off trailing missing values
+            line.length = keptLength;
         }
     }
 
     /*
-     * Create the info string; assumes that no values are null
+     * Add the info string to a LineBuffer, sorted by key
      */
-    private void writeInfoString(final Map<String, String> infoFields, final Appendable vcfoutput) throws IOException {
-        if ( infoFields.isEmpty() ) {
-            vcfoutput.append(VCFConstants.EMPTY_INFO_FIELD);
-            return;
+    private void appendInfo(final LineBuffer line, final VariantContext context) {
+        final Map<String, Object> attributes = context.getAttributes();
+        infoKeys.clear();
+        for (final String key : attributes.keySet()) {
+            if (!this.header.hasInfoLine(key)) {
+                fieldIsMissingFromHeaderError(context, key, "INFO");
+            }
+            infoKeys.add(key);
         }
+        Collections.sort(infoKeys);
 
         boolean isFirst = true;
-        for (final Map.Entry<String, String> entry : infoFields.entrySet()) {
+        for (final String key : infoKeys) {
+            final Object value = attributes.get(key);
+            if (Boolean.FALSE.equals(value)) {
+                continue;
+            }
             if (isFirst) {
                 isFirst = false;
             } else {
-                vcfoutput.append(VCFConstants.INFO_FIELD_SEPARATOR);
+                line.append(VCFConstants.INFO_FIELD_SEPARATOR_CHAR);
             }
-
-            vcfoutput.append(entry.getKey());
-
-            if ( ! entry.getValue().isEmpty()) {
-                final VCFInfoHeaderLine metaData = this.header.getInfoHeaderLine(entry.getKey());
-                if ( metaData == null || metaData.getCountType() != VCFHeaderLineCount.INTEGER || metaData.getCount() != 0 ) {
-                    vcfoutput.append('=');
-                    vcfoutput.append(entry.getValue());
-                }
+            line.appendKey(key);
+
+            final int valueStart = line.length;
+            line.append('=');
+            appendVCFField(line, value);
+            final VCFInfoHeaderLine metaData = this.header.getInfoHeaderLine(key);
+            if ( line.length == valueStart + 1 ||
+                    (metaData != null && metaData.getCountType() == VCFHeaderLineCount.INTEGER && metaData.getCount() == 0) ) {
+                line.length = valueStart;
             }
         }
+
+        if (isFirst) {
+            line.append(VCFConstants.EMPTY_INFO_FIELD);
+        }
     }
 
     public Map<Allele, String> buildAlleleStrings(final VariantContext vc) {
@@ -426,11 +576,201 @@ public class VCFEncoder {
         return alleleMap;
     }
 
-    private static void writeAllele(final Allele allele, final Map<Allele, String> alleleMap, final Appendable vcfOutput) throws IOException {
-        final String encoding = alleleMap.get(allele);
-        if (encoding == null) {
-            throw new RuntimeException("Allele " + allele + " is not an allele in the variant context");
+    private static void appendAllele(final LineBuffer line, final Allele allele, final List<Allele> alleles, final Map<Allele, String> alleleMap) {
+        if (alleleMap != null) {
+            final String encoding = alleleMap.get(allele);
+            if (encoding == null) {
+                throw new RuntimeException("Allele " + allele + " is not an allele in the variant context");
+            }
+            line.append(encoding);
+            return;
+        }
+        if (allele.isNoCall()) {
+            line.append(VCFConstants.EMPTY_ALLELE);
+            return;
+        }
+        for (int i = 0; i < alleles.size(); i++) {
+            if (alleles.get(i).equals(allele)) {
+                line.appendNumber(i);
+                return;
+            }
+        }
+        throw new RuntimeException("Allele " + allele + " is not an allele in the variant context");
+    }
+
+    /**
+     * A growable buffer for the text of a line, to which numbers are appended without creating Strings
+     */
+    private abstract static class LineBuffer {
+        protected int length = 0;
+        private final char[] digits = new char[20];
+
+        abstract void append(final char c);
+
+        abstract void append(final String s);
+
+        /** Appends bytes in {@link #VCF_CHARSET}, e.g. the bases of an allele */
+        abstract void append(final byte[] b);
+
+        /** Appends the key of an INFO or FORMAT field */
+        abstract void appendKey(final String key);
+
+        abstract char charAt(final int index);
+
+        void appendNumber(long value) {
+            if (value == Long.MIN_VALUE) {
+                append(Long.toString(value));
+                return;
+            }
+            if (value < 0) {
+                append('-');
+                value = -value;
+            }
+            int nDigits = 0;
+            do {
+                digits[nDigits++] = (char) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            while (nDigits > 0) {
+                append(digits[--nDigits]);
+            }
+        }
+
+        boolean endsWith(final String suffix) {
+            final int start = length - suffix.length();
+            if (start < 0) {
+                return false;
+            }
+            for (int i = 0; i < suffix.length(); i++) {
+                if (charAt(start + i) != suffix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return true if the text from start to the end of the buffer is a missing value, see {@link VCFEncoder#isMissingValue(String)}
+         */
+        boolean isMissingValue(final int start) {
+            for (int i = start; i < length; i++) {
+                final char c = charAt(i);
+                if (c != VCFConstants.MISSING_VALUE_v4.charAt(0) && c != ',') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A line buffer holding the bytes of a line in {@link #VCF_CHARSET}, along with the bytes of INFO and FORMAT keys
+     */
+    private static final class ByteLineBuffer extends LineBuffer {
+        private byte[] bytes = new byte[1024];
+        private final Map<String, byte[]> keyBytes = new HashMap<>();
+
+        private void ensureCapacity(final int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + extra));
+            }
+        }
+
+        @Override
+        void append(final char c) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) c;
+        }
+
+        @Override
+        void append(final byte[] b) {
+            ensureCapacity(b.length);
+            System.arraycopy(b, 0, bytes, length, b.length);
+            length += b.length;
+        }
+
+        /**
+         * Appends s, replacing characters that are not in ISO-8859-1 with '?' as the charset's encoder does
+         */
+        @Override
+        void append(final String s) {
+            final int n = s.length();
+            ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                final char c = s.charAt(i);
+                if (c < 256) {
+                    bytes[length++] = (byte) c;
+                } else {
+                    if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        i++;
+                    }
+                    bytes[length++] = '?';
+                }
+            }
+        }
+
+        @Override
+        void appendKey(final String key) {
+            append(keyBytes.computeIfAbsent(key, k -> k.getBytes(VCF_CHARSET)));
+        }
+
+        @Override
+        char charAt(final int index) {
+            return (char) (bytes[index] & 0xFF);
+        }
+    }
+
+    /**
+     * A line buffer holding the characters of a line, for the encoder's String and {@link Appendable} output
+     */
+    private static final class CharLineBuffer extends LineBuffer {
+        private char[] chars = new char[1024];
+
+        private void ensureCapacity(final int extra) {
+            if (length + extra > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(2 * chars.length, length + extra));
+            }
+        }
+
+        @Override
+        void append(final char c) {
+            ensureCapacity(1);
+            chars[length++] = c;
+        }
+
+        @Override
+        void append(final String s) {
+            final int n = s.length();
+            ensureCapacity(n);
+            s.getChars(0, n, chars, length);
+            length += n;
+        }
+
+        @Override
+        void append(final byte[] b) {
+            ensureCapacity(b.length);
+            for (final byte c : b) {
+                chars[length++] = (char) (c & 0xFF);
+            }
+        }
+
+        @Override
+        void appendKey(final String key) {
+            append(key);
+        }
+
+        @Override
+        char charAt(final int index) {
+            return chars[index];
+        }
+
+        void appendTo(final Appendable output) throws IOException {
+            output.append(toString());
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
         }
-        vcfOutput.append(encoding);
     }
 }
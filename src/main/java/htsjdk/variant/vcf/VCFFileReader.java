@@ -24,6 +24,7 @@
 
 package htsjdk.variant.vcf;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.FileExtensions;
@@ -39,6 +40,7 @@ import htsjdk.variant.variantcontext.VariantContext;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -47,6 +49,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class VCFFileReader implements VCFReader {
 
+    private final Path path;
+    private final Collection<String> samplesToDecode;
+    private final Collection<String> formatFieldsToDecode;
     private final FeatureReader<VariantContext> reader;
 
     /**
@@ -109,10 +114,23 @@ public class VCFFileReader implements VCFReader {
      * the name seems to indicate that it's a BCF.
      *
      * @param path to vcf/bcf
+     * @param samplesToDecode samples whose genotypes are decoded, or null for all samples
+     * @param formatFieldsToDecode FORMAT fields that are decoded, or null for all fields
      * @return FeatureCodec for input Path
      */
-    private static FeatureCodec<VariantContext, ?> getCodecForPath(Path path) {
-        return isBCF(path) ? new BCF2Codec() : new VCFCodec();
+    private static FeatureCodec<VariantContext, ?> getCodecForPath(final Path path, final Collection<String> samplesToDecode,
+                                                                   final Collection<String> formatFieldsToDecode) {
+        if (isBCF(path)) {
+            final BCF2Codec codec = new BCF2Codec();
+            codec.setSamplesToDecode(samplesToDecode);
+            codec.setFormatFieldsToDecode(formatFieldsToDecode);
+            return codec;
+        } else {
+            final VCFCodec codec = new VCFCodec();
+            codec.setSamplesToDecode(samplesToDecode);
+            codec.setFormatFieldsToDecode(formatFieldsToDecode);
+            return codec;
+        }
     }
 
     /**
@@ -142,9 +160,24 @@ public class VCFFileReader implements VCFReader {
      * Allows construction of a VCFFileReader that will or will not assert the presence of an index as desired.
      */
     public VCFFileReader(final Path path, final boolean requireIndex) {
+        this(path, requireIndex, null, null);
+    }
+
+    /**
+     * Constructs a VCFFileReader that decodes the genotypes of only some samples, and only some FORMAT fields.  The
+     * header and records hold only the selected samples, and the genotypes of the others are skipped unparsed.
+     *
+     * @param samplesToDecode samples whose genotypes are decoded, or null for all samples
+     * @param formatFieldsToDecode FORMAT fields that are decoded, e.g. GT, or null for all fields
+     */
+    public VCFFileReader(final Path path, final boolean requireIndex,
+                         final Collection<String> samplesToDecode, final Collection<String> formatFieldsToDecode) {
+        this.path = path;
+        this.samplesToDecode = samplesToDecode;
+        this.formatFieldsToDecode = formatFieldsToDecode;
         this.reader = AbstractFeatureReader.getFeatureReader(
                 path.toUri().getPath(),
-                getCodecForPath(path),
+                getCodecForPath(path, samplesToDecode, formatFieldsToDecode),
                 requireIndex);
     }
 
@@ -152,10 +185,25 @@ public class VCFFileReader implements VCFReader {
      * Allows construction of a VCFFileReader with a specified index path.
      */
     public VCFFileReader(final Path path, final Path indexPath, final boolean requireIndex) {
+        this(path, indexPath, requireIndex, null, null);
+    }
+
+    /**
+     * Constructs a VCFFileReader with a specified index path that decodes the genotypes of only some samples, and only
+     * some FORMAT fields, as {@link #VCFFileReader(Path, boolean, Collection, Collection)}.
+     *
+     * @param samplesToDecode samples whose genotypes are decoded, or null for all samples
+     * @param formatFieldsToDecode FORMAT fields that are decoded, e.g. GT, or null for all fields
+     */
+    public VCFFileReader(final Path path, final Path indexPath, final boolean requireIndex,
+                         final Collection<String> samplesToDecode, final Collection<String> formatFieldsToDecode) {
+        this.path = path;
+        this.samplesToDecode = samplesToDecode;
+        this.formatFieldsToDecode = formatFieldsToDecode;
         this.reader = AbstractFeatureReader.getFeatureReader(
                 path.toUri().getPath(),
                 indexPath.toUri().getPath(),
-                getCodecForPath(path),
+                getCodecForPath(path, samplesToDecode, formatFieldsToDecode),
                 requireIndex);
     }
 
@@ -321,11 +369,15 @@ public class VCFFileReader implements VCFReader {
     }
 
     /**
-     * Returns an iterator over all records in this VCF/BCF file.
+     * Returns an iterator over all records in this VCF/BCF file.  VCF records are decoded on several threads by a
+     * {@link ParallelVCFIterator} if {@link Defaults#VCF_DECODE_THREADS} is set.
      */
     @Override
     public CloseableIterator<VariantContext> iterator() {
         try {
+            if (Defaults.VCF_DECODE_THREADS > 0 && !isBCF(path)) {
+                return new ParallelVCFIterator(path, Defaults.VCF_DECODE_THREADS, samplesToDecode, formatFieldsToDecode);
+            }
             return reader.iterator();
         } catch (final IOException ioe) {
             throw new TribbleException("Could not create an iterator from a feature reader.", ioe);
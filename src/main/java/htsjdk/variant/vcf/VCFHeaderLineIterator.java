@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.vcf;
+
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.readers.LineIterator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over the header lines of a VCF, for {@link VCFCodec#readActualHeader(LineIterator)}.  Unlike
+ * {@link htsjdk.tribble.readers.LineIteratorImpl} it does not read ahead of the line returned by {@link #next()}, so
+ * the records can then be read from the same {@link AsciiLineReader} with {@link AsciiLineReader#readLineBytes()}.
+ * Lines are decoded as ISO-8859-1, as they are by {@link AsciiLineReader#readLine()} and the records are by
+ * {@link AbstractVCFCodec#decode(byte[], int, int)}.
+ */
+class VCFHeaderLineIterator implements LineIterator {
+    private final AsciiLineReader lineReader;
+    private String nextLine = null;
+
+    VCFHeaderLineIterator(final AsciiLineReader lineReader) {
+        this.lineReader = lineReader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.nextLine == null) {
+            try {
+                final int length = this.lineReader.readLineBytes();
+                this.nextLine = length < 0 ? null : new String(this.lineReader.getLineBytes(), 0, length, StandardCharsets.ISO_8859_1);
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+        return this.nextLine != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final String line = this.nextLine;
+        this.nextLine = null;
+        return line;
+    }
+
+    @Override
+    public String peek() {
+        return hasNext() ? this.nextLine : null;
+    }
+}